@@ -17,12 +17,14 @@ package org.openwms.core.aop;
 
 import org.openwms.core.annotation.FireAfterTransaction;
 import org.openwms.core.annotation.FireAfterTransactionAsynchronous;
+import org.openwms.core.event.EventClock;
+import org.openwms.core.event.EventExecutor;
 import org.openwms.core.event.RootApplicationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationEvent;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import java.util.EventObject;
@@ -57,9 +59,20 @@ public class FireAfterTransactionAspect {
     public static final String COMPONENT_NAME = "fireAfterTransactionAspect";
     private static final Logger LOGGER = LoggerFactory.getLogger(FireAfterTransactionAspect.class);
     private final ApplicationContext ctx;
+    private final ObjectProvider<EventClock> eventClock;
+    private final EventExecutor executor;
 
-    public FireAfterTransactionAspect(ApplicationContext ctx) {
+    public FireAfterTransactionAspect(ApplicationContext ctx, ObjectProvider<EventClock> eventClock, EventExecutor executor) {
         this.ctx = ctx;
+        this.eventClock = eventClock;
+        this.executor = executor;
+    }
+
+    private ApplicationEvent stamp(ApplicationEvent event) {
+        if (event instanceof RootApplicationEvent) {
+            eventClock.ifAvailable(c -> c.stamp((RootApplicationEvent) event));
+        }
+        return event;
     }
 
     /**
@@ -75,7 +88,7 @@ public class FireAfterTransactionAspect {
             for (int i = 0; i < events.events().length; i++) {
                 Class<? extends EventObject> event = events.events()[i];
                 if (ApplicationEvent.class.isAssignableFrom(event)) {
-                    ctx.publishEvent((ApplicationEvent) event.getConstructor(Object.class).newInstance(publisher));
+                    ctx.publishEvent(stamp((ApplicationEvent) event.getConstructor(Object.class).newInstance(publisher)));
                 }
             }
         } catch (Exception e) {
@@ -85,19 +98,22 @@ public class FireAfterTransactionAspect {
 
     /**
      * Only {@link ApplicationEvent}s are created and published over Springs
-     * {@link ApplicationContext}.
+     * {@link ApplicationContext}. The events are created and stamped on the calling thread,
+     * publishing happens on the dedicated {@link EventExecutor}.
      *
      * @param publisher The instance that is publishing the event
      * @param events Stores a list of event classes to fire
      * @throws Exception Any exception is re-thrown
      */
-    @Async
     public void fireEventAsync(Object publisher, FireAfterTransactionAsynchronous events) throws Exception {
         for (int i = 0; i < events.events().length; i++) {
             Class<? extends EventObject> event = events.events()[i];
             if (RootApplicationEvent.class.isAssignableFrom(event)) {
-                LOGGER.debug("Sending event: [{}]", event);
-                ctx.publishEvent((RootApplicationEvent) event.getConstructor(Object.class).newInstance(publisher));
+                ApplicationEvent instance = stamp((RootApplicationEvent) event.getConstructor(Object.class).newInstance(publisher));
+                executor.execute(() -> {
+                    LOGGER.debug("Sending event: [{}]", event);
+                    ctx.publishEvent(instance);
+                });
             }
         }
     }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.app;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.ameba.annotation.ExcludeFromScan;
+import org.openwms.core.event.EventExecutor;
+import org.openwms.core.event.EventMulticasterProperties;
+import org.openwms.core.event.TypeIndexedApplicationEventMulticaster;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.util.function.SingletonSupplier;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A EventMulticasterConfiguration replaces Springs default event multicaster with the
+ * {@link TypeIndexedApplicationEventMulticaster}. Import it explicitly to activate it.
+ * Listeners in parallel or asynchronous mode are invoked on the {@link EventExecutor}.
+ *
+ * @author Heiko Scherrer
+ */
+@ExcludeFromScan
+@Configuration
+@EnableConfigurationProperties(EventMulticasterProperties.class)
+public class EventMulticasterConfiguration {
+
+    @Bean(name = AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME)
+    public TypeIndexedApplicationEventMulticaster applicationEventMulticaster(BeanFactory beanFactory,
+            EventMulticasterProperties properties, EventExecutor eventExecutor,
+            ObjectProvider<TypeIndexedApplicationEventMulticaster.TimingRecorder> timingRecorder) {
+        TypeIndexedApplicationEventMulticaster multicaster = new TypeIndexedApplicationEventMulticaster(beanFactory);
+        multicaster.setExecutor(eventExecutor);
+        multicaster.setDefaultMode(properties.getDefaultMode());
+        properties.getListenerModes().forEach(multicaster::setListenerMode);
+        timingRecorder.ifAvailable(multicaster::setTimingRecorder);
+        return multicaster;
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class EventMulticasterMetricsConfiguration {
+
+        @Bean
+        TypeIndexedApplicationEventMulticaster.TimingRecorder listenerTimingRecorder(ObjectProvider<MeterRegistry> registry) {
+            return new MicrometerTimingRecorder(SingletonSupplier.of(registry::getIfAvailable));
+        }
+
+        /**
+         * Records listener invocations as Micrometer Timers. The Timers are registered once
+         * per listener and outcome and then cached, so an invocation neither looks up the
+         * registry nor builds tags.
+         */
+        static final class MicrometerTimingRecorder implements TypeIndexedApplicationEventMulticaster.TimingRecorder {
+
+            private static final String NAME = "owms.core.event.listener";
+            private final Supplier<MeterRegistry> registry;
+            private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+            MicrometerTimingRecorder(Supplier<MeterRegistry> registry) {
+                this.registry = registry;
+            }
+
+            @Override
+            public void record(String listenerName, long nanos, boolean failed) {
+                Timer[] byOutcome = timers.get(listenerName);
+                if (byOutcome == null) {
+                    MeterRegistry r = registry.get();
+                    if (r == null) {
+                        return;
+                    }
+                    byOutcome = timers.computeIfAbsent(listenerName, name -> new Timer[]{timer(r, name, "success"), timer(r, name, "failure")});
+                }
+                byOutcome[failed ? 1 : 0].record(nanos, TimeUnit.NANOSECONDS);
+            }
+
+            private static Timer timer(MeterRegistry registry, String listenerName, String outcome) {
+                return Timer.builder(NAME)
+                        .description("Time spent in application event listeners")
+                        .tag("listener", listenerName)
+                        .tag("outcome", outcome)
+                        .register(registry);
+            }
+        }
+    }
+}
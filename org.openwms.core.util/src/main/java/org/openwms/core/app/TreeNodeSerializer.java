@@ -0,0 +1,128 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.app;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.openwms.core.util.LazyTreeNode;
+import org.openwms.core.util.TreeNode;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A TreeNodeSerializer streams {@link TreeNode} hierarchies to a {@link JsonGenerator}
+ * without building intermediate objects and without recursion. Each node is written as
+ * an object with the fields {@code id} (omitted for the root), {@code data} and
+ * {@code children}. Nodes below the depth limit and {@link LazyTreeNode}s whose children
+ * are not loaded yet are written with a {@code hasChildren} flag instead of their
+ * children, so that clients can expand them on demand.
+ * <p>
+ * The depth limit can be set per call with the attribute {@link #MAX_DEPTH_ATTRIBUTE},
+ * e.g. {@code objectMapper.writer().withAttribute(MAX_DEPTH_ATTRIBUTE, 2)}.
+ * </p>
+ *
+ * @author Heiko Scherrer
+ */
+public class TreeNodeSerializer extends StdSerializer<TreeNode<?>> {
+
+    /** Name of the serialization attribute that overrides the depth limit. */
+    public static final String MAX_DEPTH_ATTRIBUTE = "owms.treeNode.maxDepth";
+    private final int maxDepth;
+    private final boolean loadLazyChildren;
+
+    /**
+     * Create a TreeNodeSerializer without depth limit that does not load lazy children.
+     */
+    public TreeNodeSerializer() {
+        this(Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Create a TreeNodeSerializer.
+     *
+     * @param maxDepth The default depth limit, {@literal 0} writes only the root
+     * @param loadLazyChildren Whether children of {@link LazyTreeNode}s are loaded to write
+     * them
+     */
+    public TreeNodeSerializer(int maxDepth, boolean loadLazyChildren) {
+        super(TreeNode.class, false);
+        this.maxDepth = maxDepth;
+        this.loadLazyChildren = loadLazyChildren;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void serialize(TreeNode<?> root, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        Object attribute = provider.getAttribute(MAX_DEPTH_ATTRIBUTE);
+        int limit = attribute instanceof Number ? ((Number) attribute).intValue() : maxDepth;
+        Deque<Iterator<? extends Map.Entry<Object, ? extends TreeNode<?>>>> stack = new ArrayDeque<>();
+        Iterator<? extends Map.Entry<Object, ? extends TreeNode<?>>> children = writeNode(null, root, 0, limit, gen, provider);
+        if (children != null) {
+            stack.push(children);
+        }
+        while (!stack.isEmpty()) {
+            Iterator<? extends Map.Entry<Object, ? extends TreeNode<?>>> it = stack.peek();
+            if (it.hasNext()) {
+                Map.Entry<Object, ? extends TreeNode<?>> entry = it.next();
+                children = writeNode(entry.getKey(), entry.getValue(), stack.size(), limit, gen, provider);
+                if (children != null) {
+                    stack.push(children);
+                }
+            } else {
+                stack.pop();
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
+        }
+    }
+
+    /**
+     * Write the fields of a node and open its children array.
+     *
+     * @return The iterator over the children if the array has been opened, otherwise the
+     * node object is already closed
+     */
+    private Iterator<? extends Map.Entry<Object, ? extends TreeNode<?>>> writeNode(Object identifier, TreeNode<?> node, int depth,
+            int limit, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        if (identifier != null) {
+            provider.defaultSerializeField("id", identifier, gen);
+        }
+        provider.defaultSerializeField("data", node.getData(), gen);
+        boolean unloaded = node instanceof LazyTreeNode && !((LazyTreeNode<?>) node).isLoaded();
+        if (unloaded && (!loadLazyChildren || depth >= limit)) {
+            // Asking an unloaded node whether it is a leaf would load the next level
+            gen.writeBooleanField("hasChildren", true);
+        } else if (node.isLeaf()) {
+            gen.writeEndObject();
+            return null;
+        } else if (depth >= limit) {
+            gen.writeBooleanField("hasChildren", true);
+        } else {
+            gen.writeArrayFieldStart("children");
+            return node.getChildren();
+        }
+        gen.writeEndObject();
+        return null;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.openwms.core.SpringProfiles;
+import org.openwms.core.time.HybridLogicalClock;
+import org.openwms.core.time.TimeProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * A EventClock stamps {@link RootApplicationEvent}s with the timestamp of a
+ * {@link HybridLogicalClock} when running in a {@link SpringProfiles#DISTRIBUTED}
+ * environment. Events are stamped by the core event publishers, consumers of remote
+ * events must call {@link #received(RootApplicationEvent)} to keep the clock of this
+ * node causally ordered with the sender.
+ *
+ * @author Heiko Scherrer
+ */
+@Profile(SpringProfiles.DISTRIBUTED)
+@Component(value = EventClock.COMPONENT_NAME)
+public class EventClock {
+
+    /** Springs service name. */
+    public static final String COMPONENT_NAME = "eventClock";
+    private final HybridLogicalClock clock;
+
+    /**
+     * Autowiring constructor.
+     *
+     * @param timeProvider An optional TimeProvider, the system clock is used otherwise
+     */
+    public EventClock(ObjectProvider<TimeProvider> timeProvider) {
+        TimeProvider provider = timeProvider.getIfAvailable();
+        this.clock = provider == null ? new HybridLogicalClock() : new HybridLogicalClock(provider);
+    }
+
+    /**
+     * Stamp an event that is about to be published, if not already stamped.
+     *
+     * @param event The event to stamp
+     * @param <T> Any subtype of RootApplicationEvent
+     * @return The same event
+     */
+    public <T extends RootApplicationEvent> T stamp(T event) {
+        if (event.getHlcTimestamp() == 0) {
+            event.setHlcTimestamp(clock.now());
+        }
+        return event;
+    }
+
+    /**
+     * Advance the clock of this node with the timestamp of an event received from a
+     * remote node.
+     *
+     * @param event The received event
+     */
+    public void received(RootApplicationEvent event) {
+        if (event.getHlcTimestamp() != 0) {
+            clock.update(event.getHlcTimestamp());
+        }
+    }
+
+    /**
+     * Get the clock of this node.
+     *
+     * @return The clock
+     */
+    public HybridLogicalClock getClock() {
+        return clock;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.openwms.core.exception.IllegalConfigurationValueException;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A EventExecutor is the {@link Executor} dedicated to asynchronous core event work. It
+ * either runs each task on a new virtual thread or on a bounded platform thread pool and
+ * keeps counters about submitted, completed and rejected tasks to observe saturation.
+ * <p>
+ * The executor is registered as Spring bean with name {@value #COMPONENT_NAME} and is
+ * used by the core event infrastructure.
+ * </p>
+ *
+ * @author Heiko Scherrer
+ * @see EventExecutorConfiguration
+ */
+public class EventExecutor implements Executor {
+
+    /** Springs bean name. */
+    public static final String COMPONENT_NAME = "coreEventExecutor";
+    private static final ThreadLocal<EventExecutor> CURRENT = new ThreadLocal<>();
+
+    private final ExecutorService delegate;
+    private final ThreadPoolExecutor pool;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger();
+
+    private EventExecutor(ExecutorService delegate, ThreadPoolExecutor pool) {
+        this.delegate = delegate;
+        this.pool = pool;
+    }
+
+    /**
+     * Create an EventExecutor according to the given properties.
+     *
+     * @param properties The configuration
+     * @return The instance
+     * @throws IllegalConfigurationValueException In case virtual threads are requested but
+     * not supported by the running JVM or the pool sizes are invalid
+     */
+    public static EventExecutor of(EventExecutorProperties properties) {
+        return properties.isVirtualThreads()
+                ? virtualThreads()
+                : platformThreads(properties.getCorePoolSize(), properties.getMaxPoolSize(), properties.getQueueCapacity(),
+                properties.getKeepAlive(), properties.getRejectionPolicy(), properties.getThreadNamePrefix());
+    }
+
+    /**
+     * Create an EventExecutor that runs each task on a new virtual thread.
+     *
+     * @return The instance
+     * @throws IllegalConfigurationValueException In case the JVM does not support virtual threads
+     */
+    public static EventExecutor virtualThreads() {
+        try {
+            ExecutorService executor = (ExecutorService) java.util.concurrent.Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new EventExecutor(executor, null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalConfigurationValueException("Virtual threads are not supported by the running JVM", e);
+        }
+    }
+
+    /**
+     * Create an EventExecutor backed by a platform thread pool.
+     *
+     * @param corePoolSize Number of threads kept in the pool
+     * @param maxPoolSize Maximum number of threads
+     * @param queueCapacity Capacity of the work queue, {@literal 0} means direct hand-off
+     * @param keepAlive Idle time of threads above the core size
+     * @param policy What to do with tasks that cannot be accepted
+     * @param threadNamePrefix Prefix of thread names
+     * @return The instance
+     * @throws IllegalConfigurationValueException In case the sizes are invalid or
+     * {@code DISCARD_OLDEST} is combined with direct hand-off
+     */
+    public static EventExecutor platformThreads(int corePoolSize, int maxPoolSize, int queueCapacity, Duration keepAlive,
+            EventExecutorProperties.RejectionPolicy policy, String threadNamePrefix) {
+        if (corePoolSize < 0 || maxPoolSize <= 0 || maxPoolSize < corePoolSize || queueCapacity < 0) {
+            throw new IllegalConfigurationValueException(String.format(
+                    "Invalid event executor sizes: core [%d], max [%d], queue [%d]", corePoolSize, maxPoolSize, queueCapacity));
+        }
+        if (queueCapacity == 0 && policy == EventExecutorProperties.RejectionPolicy.DISCARD_OLDEST) {
+            // There is no oldest task to discard in a SynchronousQueue, the policy would retry recursively
+            throw new IllegalConfigurationValueException("Rejection policy DISCARD_OLDEST requires a queue capacity greater than 0");
+        }
+        BlockingQueue<Runnable> queue;
+        if (queueCapacity == 0) {
+            queue = new SynchronousQueue<>();
+        } else if (queueCapacity == Integer.MAX_VALUE) {
+            queue = new LinkedBlockingQueue<>();
+        } else {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+        EventExecutor[] holder = new EventExecutor[1];
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(corePoolSize, maxPoolSize, keepAlive.toMillis(), TimeUnit.MILLISECONDS, queue,
+                new PrefixThreadFactory(threadNamePrefix), new CountingRejectionHandler(holder, handlerFor(policy)));
+        holder[0] = new EventExecutor(pool, pool);
+        return holder[0];
+    }
+
+    private static RejectedExecutionHandler handlerFor(EventExecutorProperties.RejectionPolicy policy) {
+        switch (policy) {
+            case ABORT:
+                return new ThreadPoolExecutor.AbortPolicy();
+            case DISCARD:
+                return new ThreadPoolExecutor.DiscardPolicy();
+            case DISCARD_OLDEST:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+            case CALLER_RUNS:
+            default:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Runnable command) {
+        submitted.increment();
+        delegate.execute(() -> {
+            EventExecutor outer = CURRENT.get();
+            CURRENT.set(this);
+            active.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                active.decrementAndGet();
+                completed.increment();
+                if (outer == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(outer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Check whether the calling thread currently runs a task of this executor. Work that
+     * waits for other tasks of this executor must not be started from such a thread, it
+     * would occupy a pool thread while waiting for tasks queued behind it.
+     *
+     * @return {@literal true} if so
+     */
+    public boolean isExecutorThread() {
+        return CURRENT.get() == this;
+    }
+
+    /**
+     * Shutdown the executor and wait a short while for running tasks to complete.
+     */
+    public void shutdown() {
+        delegate.shutdown();
+        try {
+            delegate.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Whether tasks run on virtual threads.
+     *
+     * @return {@literal true} if so
+     */
+    public boolean isVirtualThreads() {
+        return pool == null;
+    }
+
+    /** @return The number of tasks currently executing */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /** @return The number of tasks waiting in the queue, always {@literal 0} for virtual threads */
+    public int getQueueSize() {
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    /** @return The remaining capacity of the queue, {@link Integer#MAX_VALUE} for virtual threads */
+    public int getQueueRemainingCapacity() {
+        return pool == null ? Integer.MAX_VALUE : pool.getQueue().remainingCapacity();
+    }
+
+    /** @return The current number of pool threads, for virtual threads the number of active tasks */
+    public int getPoolSize() {
+        return pool == null ? active.get() : pool.getPoolSize();
+    }
+
+    /** @return The maximum number of pool threads, {@link Integer#MAX_VALUE} for virtual threads */
+    public int getMaxPoolSize() {
+        return pool == null ? Integer.MAX_VALUE : pool.getMaximumPoolSize();
+    }
+
+    /** @return The total number of tasks submitted so far */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /** @return The total number of tasks completed so far */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /** @return The total number of tasks rejected so far */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private static final class CountingRejectionHandler implements RejectedExecutionHandler {
+
+        private final EventExecutor[] owner;
+        private final RejectedExecutionHandler delegate;
+
+        CountingRejectionHandler(EventExecutor[] owner, RejectedExecutionHandler delegate) {
+            this.owner = owner;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            owner[0].rejected.increment();
+            delegate.rejectedExecution(r, executor);
+        }
+    }
+
+    private static final class PrefixThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        PrefixThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * A EventExecutorConfiguration provides the {@link EventExecutor} that is used for
+ * asynchronous core event work, separated from the application's default executor. It
+ * is configured with properties prefixed with {@value EventExecutorProperties#PREFIX}.
+ * When Micrometer is on the classpath, saturation metrics of the executor are published
+ * with the prefix {@code owms.core.event.executor}.
+ *
+ * @author Heiko Scherrer
+ */
+@Configuration
+@EnableConfigurationProperties(EventExecutorProperties.class)
+public class EventExecutorConfiguration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventExecutorConfiguration.class);
+
+    @Bean(name = EventExecutor.COMPONENT_NAME, destroyMethod = "shutdown")
+    public EventExecutor coreEventExecutor(EventExecutorProperties properties) {
+        EventExecutor executor = EventExecutor.of(properties);
+        LOGGER.info("Core event executor uses [{}]", executor.isVirtualThreads()
+                ? "virtual threads"
+                : String.format("platform threads, core [%d], max [%d], queue [%d], rejection [%s]", properties.getCorePoolSize(),
+                properties.getMaxPoolSize(), properties.getQueueCapacity(), properties.getRejectionPolicy()));
+        return executor;
+    }
+
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class EventExecutorMetricsConfiguration {
+
+        private static final String PREFIX = "owms.core.event.executor";
+
+        @Bean
+        MeterBinder coreEventExecutorMetrics(EventExecutor executor) {
+            return registry -> {
+                Gauge.builder(PREFIX + ".active", executor, EventExecutor::getActiveCount)
+                        .description("Number of event tasks currently executing").register(registry);
+                Gauge.builder(PREFIX + ".queued", executor, EventExecutor::getQueueSize)
+                        .description("Number of event tasks waiting in the queue").register(registry);
+                Gauge.builder(PREFIX + ".queue.remaining", executor, EventExecutor::getQueueRemainingCapacity)
+                        .description("Remaining capacity of the event task queue").register(registry);
+                Gauge.builder(PREFIX + ".pool.size", executor, EventExecutor::getPoolSize)
+                        .description("Current number of event executor threads").register(registry);
+                Gauge.builder(PREFIX + ".pool.max", executor, EventExecutor::getMaxPoolSize)
+                        .description("Maximum number of event executor threads").register(registry);
+                FunctionCounter.builder(PREFIX + ".submitted", executor, EventExecutor::getSubmittedCount)
+                        .description("Total number of submitted event tasks").register(registry);
+                FunctionCounter.builder(PREFIX + ".completed", executor, EventExecutor::getCompletedCount)
+                        .description("Total number of completed event tasks").register(registry);
+                FunctionCounter.builder(PREFIX + ".rejected", executor, EventExecutor::getRejectedCount)
+                        .description("Total number of event tasks rejected because the executor was saturated").register(registry);
+            };
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * A EventExecutorProperties holds the configuration of the executor that is dedicated to
+ * asynchronous core event work. All properties are prefixed with {@value #PREFIX}.
+ *
+ * @author Heiko Scherrer
+ * @see EventExecutorConfiguration
+ */
+@ConfigurationProperties(prefix = EventExecutorProperties.PREFIX)
+public class EventExecutorProperties {
+
+    /** The prefix of all event executor properties. */
+    public static final String PREFIX = "owms.core.event.executor";
+
+    /** Policy applied to tasks that are rejected because the pool and queue are saturated. */
+    public enum RejectionPolicy {
+        /** Throw a {@link java.util.concurrent.RejectedExecutionException}. */
+        ABORT,
+        /** Run the task in the thread of the caller. */
+        CALLER_RUNS,
+        /** Silently discard the task. */
+        DISCARD,
+        /** Discard the oldest queued task and retry, requires a queue capacity greater than 0. */
+        DISCARD_OLDEST
+    }
+
+    /** Use a virtual thread per task instead of a platform thread pool (requires a JVM with virtual thread support). */
+    private boolean virtualThreads = false;
+    /** The number of platform threads kept in the pool. */
+    private int corePoolSize = 2;
+    /** The maximum number of platform threads in the pool. */
+    private int maxPoolSize = 8;
+    /** The capacity of the queue in front of the pool. */
+    private int queueCapacity = 1000;
+    /** Time an idle thread above the core size is kept alive. */
+    private Duration keepAlive = Duration.ofSeconds(60);
+    /** What to do when the pool and queue are saturated. */
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+    /** Name prefix of the executor threads. */
+    private String threadNamePrefix = "owms-event-";
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    public void setCorePoolSize(int corePoolSize) {
+        this.corePoolSize = corePoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Duration getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Duration keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+        this.rejectionPolicy = rejectionPolicy;
+    }
+
+    public String getThreadNamePrefix() {
+        return threadNamePrefix;
+    }
+
+    public void setThreadNamePrefix(String threadNamePrefix) {
+        this.threadNamePrefix = threadNamePrefix;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A EventMulticasterProperties holds the configuration of the
+ * {@link TypeIndexedApplicationEventMulticaster}. All properties are prefixed with
+ * {@value #PREFIX}.
+ *
+ * @author Heiko Scherrer
+ */
+@ConfigurationProperties(prefix = EventMulticasterProperties.PREFIX)
+public class EventMulticasterProperties {
+
+    /** The prefix of all multicaster properties. */
+    public static final String PREFIX = "owms.core.event.multicaster";
+
+    /** How listeners are invoked when no listener specific mode is set. */
+    private TypeIndexedApplicationEventMulticaster.DispatchMode defaultMode = TypeIndexedApplicationEventMulticaster.DispatchMode.SYNCHRONOUS;
+    /** Listener specific modes with the listener name as key (use the bracket notation for names containing dots). */
+    private Map<String, TypeIndexedApplicationEventMulticaster.DispatchMode> listenerModes = new HashMap<>();
+
+    public TypeIndexedApplicationEventMulticaster.DispatchMode getDefaultMode() {
+        return defaultMode;
+    }
+
+    public void setDefaultMode(TypeIndexedApplicationEventMulticaster.DispatchMode defaultMode) {
+        this.defaultMode = defaultMode;
+    }
+
+    public Map<String, TypeIndexedApplicationEventMulticaster.DispatchMode> getListenerModes() {
+        return listenerModes;
+    }
+
+    public void setListenerModes(Map<String, TypeIndexedApplicationEventMulticaster.DispatchMode> listenerModes) {
+        this.listenerModes = listenerModes;
+    }
+}
@@ -15,9 +15,13 @@
  */
 package org.openwms.core.event;
 
+import java.time.Duration;
+import java.time.Instant;
+
 /**
  * An EventPublisher publishes any type of {@link RootApplicationEvent}s to registered
- * {@code EventListener}s.
+ * {@code EventListener}s. Events may also be published with a delay, implementations
+ * that do not support delayed publishing throw an {@link UnsupportedOperationException}.
  *
  * @author Heiko Scherrer
  * @see EventListener
@@ -30,4 +34,30 @@ public interface EventPublisher<T extends RootApplicationEvent> {
      * @param event The event to publish
      */
     void publish(T event);
+
+    /**
+     * Publish an event of type T to event listeners at the given point in time.
+     *
+     * @param event The event to publish
+     * @param instant When to publish the event, points in time in the past publish immediately
+     * @return A handle to cancel the publication
+     * @throws UnsupportedOperationException If the implementation does not support delayed publishing
+     */
+    default ScheduledEvent<T> publishAt(T event, Instant instant) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support delayed publishing");
+    }
+
+    /**
+     * Publish an event of type T to event listeners after the given delay. The default
+     * implementation calculates the due time from the system clock, implementations that
+     * know the {@link org.openwms.core.time.TimeProvider} should use that instead.
+     *
+     * @param event The event to publish
+     * @param delay The delay
+     * @return A handle to cancel the publication
+     * @throws UnsupportedOperationException If the implementation does not support delayed publishing
+     */
+    default ScheduledEvent<T> publishAfter(T event, Duration delay) {
+        return publishAt(event, Instant.now().plus(delay));
+    }
 }
\ No newline at end of file
@@ -15,32 +15,188 @@
  */
 package org.openwms.core.event;
 
-import org.springframework.scheduling.annotation.Async;
+import org.openwms.core.time.TimeProvider;
+import org.openwms.core.util.HierarchicalTimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
 /**
- * A NonBlockingEventPublisherImpl is publishing events asynchronously.
+ * A NonBlockingEventPublisherImpl is publishing events asynchronously on the dedicated
+ * {@link EventExecutor}. Delayed events are kept in a {@link HierarchicalTimingWheel}
+ * and are published on the {@link EventExecutor} when they are due. If a
+ * {@link PendingEventStore} exists, delayed events survive a restart.
  *
  * @author Heiko Scherrer
  */
 @Component(value = NonBlockingEventPublisherImpl.COMPONENT_NAME)
-public class NonBlockingEventPublisherImpl<T extends RootApplicationEvent> implements EventPublisher<T> {
+public class NonBlockingEventPublisherImpl<T extends RootApplicationEvent> implements EventPublisher<T>, InitializingBean, DisposableBean {
 
     /** Springs service name. */
     public static final String COMPONENT_NAME = "nonBlockingEventPublisherImpl";
+    private static final Logger LOGGER = LoggerFactory.getLogger(NonBlockingEventPublisherImpl.class);
 
     private final EventDispatcher dispatcher;
+    private final ObjectProvider<EventClock> eventClock;
+    private final EventExecutor executor;
+    private final PendingEventStore pendingEventStore;
+    private final TimeProvider timeProvider;
+    private final HierarchicalTimingWheel<Scheduled> timingWheel;
 
-    public NonBlockingEventPublisherImpl(EventDispatcher dispatcher) {
+    /**
+     * Autowiring constructor.
+     *
+     * @param dispatcher Dispatches the events to the listeners
+     * @param eventClock An optional EventClock to stamp events
+     * @param executor Runs the dispatching
+     * @param pendingEventStore An optional store to keep delayed events across restarts
+     * @param timeProvider An optional TimeProvider, the system clock is used otherwise
+     */
+    public NonBlockingEventPublisherImpl(EventDispatcher dispatcher, ObjectProvider<EventClock> eventClock, EventExecutor executor,
+            ObjectProvider<PendingEventStore> pendingEventStore, ObjectProvider<TimeProvider> timeProvider) {
         this.dispatcher = dispatcher;
+        this.eventClock = eventClock;
+        this.executor = executor;
+        this.pendingEventStore = pendingEventStore.getIfAvailable();
+        this.timeProvider = timeProvider.getIfAvailable();
+        this.timingWheel = new HierarchicalTimingWheel<>("owms-delayed-events", s -> this.executor.execute(s::fire));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Re-schedules all events of the {@link PendingEventStore}.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterPropertiesSet() {
+        if (pendingEventStore != null) {
+            for (PendingEventStore.PendingEvent pending : pendingEventStore.loadAll()) {
+                schedule(pending.getId(), (T) pending.getEvent(), pending.getDueAt(), Duration.between(now(), pending.getDueAt()));
+            }
+            LOGGER.info("Re-scheduled [{}] pending events", timingWheel.size());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Stops the timing wheel, stored events are kept for the next start.
+     */
+    @Override
+    public void destroy() {
+        timingWheel.stop();
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The event is stamped on the calling thread, so the order of its timestamp matches
+     * the order of publication, and dispatched on the {@link EventExecutor}.
      */
-    @Async
     @Override
     public void publish(T event) {
-        dispatcher.dispatch(event);
+        stamp(event);
+        executor.execute(() -> dispatcher.dispatch(event));
+    }
+
+    private void stamp(T event) {
+        eventClock.ifAvailable(c -> c.stamp(event));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The instant is interpreted on the clock of the {@link TimeProvider}, the event is
+     * published after the remaining delay between its current time and the instant.
+     */
+    @Override
+    public ScheduledEvent<T> publishAt(T event, Instant instant) {
+        return publish(event, instant, Duration.between(now(), instant));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The due time is calculated from the current time of the {@link TimeProvider}, the
+     * event is published after the delay regardless of the TimeProvider's clock.
+     */
+    @Override
+    public ScheduledEvent<T> publishAfter(T event, Duration delay) {
+        return publish(event, now().plus(delay), delay);
+    }
+
+    private ScheduledEvent<T> publish(T event, Instant dueAt, Duration delay) {
+        String id = UUID.randomUUID().toString();
+        if (pendingEventStore != null) {
+            pendingEventStore.save(id, event, dueAt);
+        }
+        return schedule(id, event, dueAt, delay);
+    }
+
+    private Instant now() {
+        return timeProvider == null ? Instant.now() : timeProvider.now();
+    }
+
+    private Scheduled schedule(String id, T event, Instant dueAt, Duration delay) {
+        Scheduled scheduled = new Scheduled(id, event, dueAt);
+        scheduled.timeout = timingWheel.schedule(scheduled, delay);
+        return scheduled;
+    }
+
+    private class Scheduled implements ScheduledEvent<T> {
+
+        private final String id;
+        private final T event;
+        private final Instant dueAt;
+        private volatile HierarchicalTimingWheel.Timeout<Scheduled> timeout;
+
+        Scheduled(String id, T event, Instant dueAt) {
+            this.id = id;
+            this.event = event;
+            this.dueAt = dueAt;
+        }
+
+        void fire() {
+            try {
+                stamp(event);
+                dispatcher.dispatch(event);
+            } finally {
+                if (pendingEventStore != null) {
+                    pendingEventStore.remove(id);
+                }
+            }
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public T getEvent() {
+            return event;
+        }
+
+        @Override
+        public Instant getDueAt() {
+            return dueAt;
+        }
+
+        @Override
+        public boolean cancel() {
+            boolean cancelled = timeout.cancel();
+            if (cancelled && pendingEventStore != null) {
+                pendingEventStore.remove(id);
+            }
+            return cancelled;
+        }
     }
-}
\ No newline at end of file
+}
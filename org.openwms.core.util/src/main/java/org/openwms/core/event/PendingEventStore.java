@@ -0,0 +1,81 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * A PendingEventStore is an optional persistence hook to keep events that are scheduled
+ * for delayed publishing across restarts. If a bean of this type exists, the
+ * {@link NonBlockingEventPublisherImpl} saves each scheduled event, removes it once it has
+ * been published or cancelled and re-schedules all stored events on startup.
+ *
+ * @author Heiko Scherrer
+ */
+public interface PendingEventStore {
+
+    /**
+     * Store a scheduled event.
+     *
+     * @param id The unique identifier of the publication
+     * @param event The event
+     * @param dueAt When the event is due
+     */
+    void save(String id, RootApplicationEvent event, Instant dueAt);
+
+    /**
+     * Remove a stored event.
+     *
+     * @param id The unique identifier of the publication
+     */
+    void remove(String id);
+
+    /**
+     * Load all stored events.
+     *
+     * @return All events not yet published
+     */
+    Collection<PendingEvent> loadAll();
+
+    /**
+     * A PendingEvent is a stored event together with its publication details.
+     */
+    class PendingEvent {
+
+        private final String id;
+        private final RootApplicationEvent event;
+        private final Instant dueAt;
+
+        public PendingEvent(String id, RootApplicationEvent event, Instant dueAt) {
+            this.id = id;
+            this.event = event;
+            this.dueAt = dueAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public RootApplicationEvent getEvent() {
+            return event;
+        }
+
+        public Instant getDueAt() {
+            return dueAt;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.openwms.core.util.HierarchicalTimingWheel;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+import static java.lang.String.format;
+
+/**
+ * A RequestReplyTemplate offers non-blocking request/reply communication over the
+ * {@link EventDispatcher}. A request event is stamped with a new correlation identifier
+ * and dispatched, the returned {@link CompletableFuture} completes as soon as a reply
+ * event of the expected type with the same correlation identifier is dispatched. The
+ * replying side uses {@link #reply(RootApplicationEvent, RootApplicationEvent)} to copy
+ * the correlation identifier.
+ * <p>
+ * All pending requests expire through one {@link HierarchicalTimingWheel}, an expired
+ * request completes exceptionally with a {@link TimeoutException}. A pending request is
+ * removed as soon as its future completes in any way, including cancellation by the
+ * caller. Timeouts complete on the timer thread, so expensive continuations should use
+ * the asynchronous stages of the future.
+ * </p>
+ *
+ * @author Heiko Scherrer
+ */
+@Component(value = RequestReplyTemplate.COMPONENT_NAME)
+public class RequestReplyTemplate implements EventListener, DisposableBean {
+
+    /** Springs service name. */
+    public static final String COMPONENT_NAME = "requestReplyTemplate";
+    /** Timeout used when none is given. */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final EventDispatcher dispatcher;
+    private final Map<String, PendingRequest<?>> pendingRequests = new ConcurrentHashMap<>();
+    private final Set<Class<? extends RootApplicationEvent>> subscribedReplyTypes = ConcurrentHashMap.newKeySet();
+    private final HierarchicalTimingWheel<String> timeouts;
+
+    /**
+     * Autowiring constructor.
+     *
+     * @param dispatcher The EventDispatcher to send requests and receive replies
+     */
+    public RequestReplyTemplate(EventDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        this.timeouts = new HierarchicalTimingWheel<>("owms-request-timeouts", this::expire);
+    }
+
+    /**
+     * Send a request and wait for the reply with the {@link #DEFAULT_TIMEOUT}.
+     *
+     * @param request The request event
+     * @param replyType The exact type of the expected reply event
+     * @param <R> The type of reply event
+     * @return A future that completes with the reply
+     */
+    public <R extends RootApplicationEvent> CompletableFuture<R> request(RootApplicationEvent request, Class<R> replyType) {
+        return request(request, replyType, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Send a request and wait for the reply.
+     *
+     * @param request The request event
+     * @param replyType The exact type of the expected reply event
+     * @param timeout How long to wait for the reply
+     * @param <R> The type of reply event
+     * @return A future that completes with the reply or exceptionally with a
+     * {@link TimeoutException}
+     */
+    public <R extends RootApplicationEvent> CompletableFuture<R> request(RootApplicationEvent request, Class<R> replyType, Duration timeout) {
+        if (subscribedReplyTypes.add(replyType)) {
+            dispatcher.subscribe(replyType, this);
+        }
+        String correlationId = UUID.randomUUID().toString();
+        request.setCorrelationId(correlationId);
+        PendingRequest<R> pending = new PendingRequest<>(request, replyType);
+        pendingRequests.put(correlationId, pending);
+        HierarchicalTimingWheel.Timeout<String> timer = timeouts.schedule(correlationId, timeout);
+        pending.future.whenComplete((r, e) -> {
+            pendingRequests.remove(correlationId);
+            timer.cancel();
+        });
+        try {
+            dispatcher.dispatch(request);
+        } catch (RuntimeException e) {
+            pending.future.completeExceptionally(e);
+        }
+        return pending.future;
+    }
+
+    /**
+     * Send a reply to a request.
+     *
+     * @param request The request event to reply to
+     * @param reply The reply event
+     * @param <R> The type of reply event
+     */
+    public <R extends RootApplicationEvent> void reply(RootApplicationEvent request, R reply) {
+        reply.setCorrelationId(request.getCorrelationId());
+        dispatcher.dispatch(reply);
+    }
+
+    /**
+     * Get the number of requests waiting for a reply.
+     *
+     * @return The number
+     */
+    public int getPendingCount() {
+        return pendingRequests.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Completes the pending request with the same correlation identifier.
+     */
+    @Override
+    public void onEvent(RootApplicationEvent event) {
+        String correlationId = event.getCorrelationId();
+        if (correlationId == null) {
+            return;
+        }
+        PendingRequest<?> pending = pendingRequests.get(correlationId);
+        if (pending != null) {
+            pending.complete(event);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cancels all pending requests.
+     */
+    @Override
+    public void destroy() {
+        timeouts.stop();
+        pendingRequests.values().forEach(p -> p.future.completeExceptionally(new CancellationException("Shutting down")));
+        pendingRequests.clear();
+        subscribedReplyTypes.forEach(t -> dispatcher.unsubscribe(t, this));
+    }
+
+    private void expire(String correlationId) {
+        PendingRequest<?> pending = pendingRequests.remove(correlationId);
+        if (pending != null) {
+            pending.future.completeExceptionally(new TimeoutException(format("No reply of type [%s] received for request [%s]",
+                    pending.replyType.getName(), correlationId)));
+        }
+    }
+
+    private static final class PendingRequest<R extends RootApplicationEvent> {
+
+        private final RootApplicationEvent request;
+        private final Class<R> replyType;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        PendingRequest(RootApplicationEvent request, Class<R> replyType) {
+            this.request = request;
+            this.replyType = replyType;
+        }
+
+        void complete(RootApplicationEvent event) {
+            if (event != request && replyType.isInstance(event)) {
+                future.complete(replyType.cast(event));
+            }
+        }
+    }
+}
@@ -18,16 +18,25 @@ package org.openwms.core.event;
 import org.springframework.context.ApplicationEvent;
 
 import java.io.Serializable;
+import java.util.Comparator;
 
 /**
  * A RootApplicationEvent is typically used as a super class for specific event types
- * within the application domain.
+ * within the application domain. In a distributed environment each event may carry the
+ * timestamp of a {@link org.openwms.core.time.HybridLogicalClock} to order events of
+ * different nodes causally.
  *
  * @author <a href="mailto:russelltina@users.sourceforge.net">Tina Russell</a>
  * @author Heiko Scherrer
  */
 public class RootApplicationEvent extends ApplicationEvent implements Serializable {
 
+    /** Orders events by their hybrid logical clock timestamp. */
+    public static final Comparator<RootApplicationEvent> HLC_ORDER = Comparator.comparingLong(RootApplicationEvent::getHlcTimestamp);
+
+    private long hlcTimestamp;
+    private String correlationId;
+
     /**
      * Create a new RootApplicationEvent.
      *
@@ -36,4 +45,40 @@ public class RootApplicationEvent extends ApplicationEvent implements Serializab
     public RootApplicationEvent(Object source) {
         super(source);
     }
+
+    /**
+     * Get the hybrid logical clock timestamp of the event.
+     *
+     * @return The timestamp or {@literal 0} if the event has not been stamped
+     */
+    public long getHlcTimestamp() {
+        return hlcTimestamp;
+    }
+
+    /**
+     * Set the hybrid logical clock timestamp of the event.
+     *
+     * @param hlcTimestamp The timestamp
+     */
+    public void setHlcTimestamp(long hlcTimestamp) {
+        this.hlcTimestamp = hlcTimestamp;
+    }
+
+    /**
+     * Get the identifier that correlates a reply event with its request event.
+     *
+     * @return The identifier or {@literal null} if not correlated
+     */
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    /**
+     * Set the identifier that correlates a reply event with its request event.
+     *
+     * @param correlationId The identifier
+     */
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import java.time.Instant;
+
+/**
+ * A ScheduledEvent is the handle to an event that is published with a delay.
+ *
+ * @param <T> A subtype of RootApplicationEvent
+ * @author Heiko Scherrer
+ * @see EventPublisher#publishAt(RootApplicationEvent, Instant)
+ */
+public interface ScheduledEvent<T extends RootApplicationEvent> {
+
+    /**
+     * Get the unique identifier of the scheduled publication.
+     *
+     * @return The identifier
+     */
+    String getId();
+
+    /**
+     * Get the event to publish.
+     *
+     * @return The event
+     */
+    T getEvent();
+
+    /**
+     * Get the point in time when the event is due.
+     *
+     * @return The point in time
+     */
+    Instant getDueAt();
+
+    /**
+     * Cancel the publication.
+     *
+     * @return {@literal true} if cancelled, {@literal false} if already published or cancelled
+     */
+    boolean cancel();
+}
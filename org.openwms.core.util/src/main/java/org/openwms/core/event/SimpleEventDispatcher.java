@@ -19,17 +19,18 @@ import org.ameba.exception.ServiceLayerException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import static java.lang.String.format;
 
 /**
  * A SimpleEventDispatcher is a Spring managed component that stores all subscribers in an
  * in-memory key-value store implementation and calls all subscribers sequentially and
- * synchronously.
+ * synchronously. Subscriptions may change while events are dispatched, listeners are
+ * held in copy-on-write sets so dispatching does not lock.
  *
  * @author Heiko Scherrer
  */
@@ -38,7 +39,7 @@ public class SimpleEventDispatcher implements EventDispatcher {
 
     /** Springs service name. */
     public static final String COMPONENT_NAME = "simpleEventDispatcher";
-    private final Map<Class<? extends RootApplicationEvent>, Set<EventListener>> subscriptions = new HashMap<>();
+    private final Map<Class<? extends RootApplicationEvent>, Set<EventListener>> subscriptions = new ConcurrentHashMap<>();
     private final ApplicationContext ctx;
 
     /**
@@ -55,16 +56,7 @@ public class SimpleEventDispatcher implements EventDispatcher {
      */
     @Override
     public void subscribe(Class<? extends RootApplicationEvent> event, EventListener listener) {
-        synchronized (subscriptions) {
-            Set<EventListener> listeners = subscriptions.get(event);
-            if (listeners == null) {
-                listeners = new HashSet<>(1);
-                listeners.add(listener);
-            } else {
-                listeners.add(listener);
-                subscriptions.put(event, listeners);
-            }
-        }
+        subscriptions.computeIfAbsent(event, e -> new CopyOnWriteArraySet<>()).add(listener);
     }
 
     /**
@@ -85,10 +77,9 @@ public class SimpleEventDispatcher implements EventDispatcher {
      */
     @Override
     public void unsubscribe(Class<? extends RootApplicationEvent> event, EventListener listener) {
-        if (subscriptions.containsKey(event)) {
-            synchronized (subscriptions.get(event)) {
-                subscriptions.get(event).remove(listener);
-            }
+        Set<EventListener> listeners = subscriptions.get(event);
+        if (listeners != null) {
+            listeners.remove(listener);
         }
     }
 
@@ -110,11 +101,11 @@ public class SimpleEventDispatcher implements EventDispatcher {
      */
     @Override
     public <T extends RootApplicationEvent> void dispatch(T event) {
-        if (null == event || !subscriptions.containsKey(event.getClass())) {
+        if (null == event) {
             return;
         }
-        synchronized (subscriptions.get(event.getClass())) {
-            Set<EventListener> listeners = subscriptions.get(event.getClass());
+        Set<EventListener> listeners = subscriptions.get(event.getClass());
+        if (listeners != null) {
             listeners.forEach(l -> l.onEvent(event));
         }
     }
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationListenerMethodAdapter;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+import org.springframework.core.ResolvableType;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * A TypeIndexedApplicationEventMulticaster is a drop-in replacement of Springs
+ * {@link SimpleApplicationEventMulticaster}. For each combination of event type and
+ * source type the matching listeners are resolved once and kept as a plain array, so
+ * that publishing an event costs one map lookup and an array iteration. The index is
+ * dropped whenever listeners are added or removed.
+ * <p>
+ * Each listener is invoked in one of the {@link DispatchMode}s, either the default mode
+ * or a mode configured for the listener name. The listener name is the listener id for
+ * {@code @EventListener} methods and the class name otherwise. The time spent in each
+ * listener is recorded and available as {@link ListenerStatistics}.
+ * </p>
+ * Note: Listener beans of non-singleton scope are resolved once per event type and then
+ * reused.
+ *
+ * @author Heiko Scherrer
+ */
+public class TypeIndexedApplicationEventMulticaster extends SimpleApplicationEventMulticaster {
+
+    /** Defines how a listener is invoked. */
+    public enum DispatchMode {
+        /** Invoke the listener in the publishing thread. */
+        SYNCHRONOUS,
+        /**
+         * Invoke the listener on the executor and wait until all parallel listeners are
+         * done. If the event is published on a thread of the executor itself, the listener
+         * is invoked in the publishing thread instead, waiting there could exhaust the
+         * executor.
+         */
+        PARALLEL,
+        /** Invoke the listener on the executor and do not wait. */
+        ASYNCHRONOUS
+    }
+
+    /** Callback to record the execution time of listener invocations, e.g. to publish metrics. */
+    @FunctionalInterface
+    public interface TimingRecorder {
+
+        /**
+         * Record one listener invocation.
+         *
+         * @param listenerName The name of the listener
+         * @param nanos The duration of the invocation in nanoseconds
+         * @param failed Whether the invocation has thrown an exception
+         */
+        void record(String listenerName, long nanos, boolean failed);
+    }
+
+    private static final ThreadLocal<Executor> FAN_OUT = new ThreadLocal<>();
+    private final Map<CacheKey, ListenerEntry[]> listenerIndex = new ConcurrentHashMap<>(64);
+    private final Map<String, DispatchMode> listenerModes = new ConcurrentHashMap<>();
+    private final Map<String, ListenerStatistics> statistics = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile DispatchMode defaultMode = DispatchMode.SYNCHRONOUS;
+    private volatile Executor executor;
+    private volatile TimingRecorder timingRecorder;
+
+    /**
+     * Create a new TypeIndexedApplicationEventMulticaster.
+     */
+    public TypeIndexedApplicationEventMulticaster() {
+        super();
+    }
+
+    /**
+     * Create a new TypeIndexedApplicationEventMulticaster for the given BeanFactory.
+     *
+     * @param beanFactory The BeanFactory to resolve listener beans from
+     */
+    public TypeIndexedApplicationEventMulticaster(BeanFactory beanFactory) {
+        super(beanFactory);
+    }
+
+    /**
+     * Set the Executor used for listeners in {@link DispatchMode#PARALLEL} and
+     * {@link DispatchMode#ASYNCHRONOUS} mode. Without an Executor all listeners are
+     * invoked synchronously.
+     *
+     * @param executor The Executor to use
+     */
+    public void setExecutor(@Nullable Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Set the mode used for all listeners without an explicit mode.
+     *
+     * @param defaultMode The default mode
+     */
+    public void setDefaultMode(DispatchMode defaultMode) {
+        this.defaultMode = Objects.requireNonNull(defaultMode);
+        invalidate();
+    }
+
+    /**
+     * Set the mode to invoke a particular listener.
+     *
+     * @param listenerName The name of the listener
+     * @param mode The mode to use for this listener
+     */
+    public void setListenerMode(String listenerName, DispatchMode mode) {
+        listenerModes.put(listenerName, Objects.requireNonNull(mode));
+        invalidate();
+    }
+
+    /**
+     * Set a callback that is notified about each listener invocation.
+     *
+     * @param timingRecorder The callback
+     */
+    public void setTimingRecorder(@Nullable TimingRecorder timingRecorder) {
+        this.timingRecorder = timingRecorder;
+    }
+
+    /**
+     * Get the recorded statistics of all listeners invoked so far.
+     *
+     * @return An unmodifiable view with the listener name as key
+     */
+    public Map<String, ListenerStatistics> getListenerStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Uses the precomputed listener array for the type of event and its source.
+     */
+    @Override
+    public void multicastEvent(ApplicationEvent event, @Nullable ResolvableType eventType) {
+        ResolvableType type = eventType != null ? eventType : ResolvableType.forInstance(event);
+        CacheKey key = new CacheKey(type, event.getSource() == null ? null : event.getSource().getClass());
+        ListenerEntry[] entries = listenerIndex.get(key);
+        if (entries == null) {
+            long gen = generation.get();
+            entries = resolveListeners(event, type);
+            listenerIndex.put(key, entries);
+            if (gen != generation.get()) {
+                listenerIndex.remove(key);
+            }
+        }
+        dispatch(event, entries);
+    }
+
+    private ListenerEntry[] resolveListeners(ApplicationEvent event, ResolvableType type) {
+        Collection<ApplicationListener<?>> listeners = getApplicationListeners(event, type);
+        ListenerEntry[] result = new ListenerEntry[listeners.size()];
+        int i = 0;
+        for (ApplicationListener<?> listener : listeners) {
+            String name = nameOf(listener);
+            result[i++] = new ListenerEntry(listener, name, listenerModes.getOrDefault(name, defaultMode),
+                    statistics.computeIfAbsent(name, n -> new ListenerStatistics()));
+        }
+        return result;
+    }
+
+    private void dispatch(ApplicationEvent event, ListenerEntry[] entries) {
+        Executor exec = executor;
+        boolean nested = exec != null && isExecutorThread(exec);
+        List<CompletableFuture<Void>> parallel = null;
+        for (ListenerEntry entry : entries) {
+            if (exec == null || entry.mode == DispatchMode.SYNCHRONOUS || (entry.mode == DispatchMode.PARALLEL && nested)) {
+                invoke(entry, event);
+            } else if (entry.mode == DispatchMode.PARALLEL) {
+                if (parallel == null) {
+                    parallel = new ArrayList<>(entries.length);
+                }
+                parallel.add(CompletableFuture.runAsync(() -> fanOut(exec, entry, event), exec));
+            } else {
+                exec.execute(() -> fanOut(exec, entry, event));
+            }
+        }
+        if (parallel != null) {
+            try {
+                CompletableFuture.allOf(parallel.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException ce) {
+                if (ce.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ce.getCause();
+                }
+                throw ce;
+            }
+        }
+    }
+
+    private static boolean isExecutorThread(Executor exec) {
+        return FAN_OUT.get() == exec || (exec instanceof EventExecutor && ((EventExecutor) exec).isExecutorThread());
+    }
+
+    private void fanOut(Executor exec, ListenerEntry entry, ApplicationEvent event) {
+        Executor outer = FAN_OUT.get();
+        FAN_OUT.set(exec);
+        try {
+            invoke(entry, event);
+        } finally {
+            if (outer == null) {
+                FAN_OUT.remove();
+            } else {
+                FAN_OUT.set(outer);
+            }
+        }
+    }
+
+    private void invoke(ListenerEntry entry, ApplicationEvent event) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            invokeListener(entry.listener, event);
+            failed = false;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            entry.statistics.record(nanos, failed);
+            TimingRecorder recorder = timingRecorder;
+            if (recorder != null) {
+                recorder.record(entry.name, nanos, failed);
+            }
+        }
+    }
+
+    private static String nameOf(ApplicationListener<?> listener) {
+        if (listener instanceof ApplicationListenerMethodAdapter) {
+            return ((ApplicationListenerMethodAdapter) listener).getListenerId();
+        }
+        return listener.getClass().getName();
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        listenerIndex.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addApplicationListener(ApplicationListener<?> listener) {
+        super.addApplicationListener(listener);
+        invalidate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addApplicationListenerBean(String listenerBeanName) {
+        super.addApplicationListenerBean(listenerBeanName);
+        invalidate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeApplicationListener(ApplicationListener<?> listener) {
+        super.removeApplicationListener(listener);
+        invalidate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeApplicationListenerBean(String listenerBeanName) {
+        super.removeApplicationListenerBean(listenerBeanName);
+        invalidate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeApplicationListeners(Predicate<ApplicationListener<?>> predicate) {
+        super.removeApplicationListeners(predicate);
+        invalidate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeApplicationListenerBeans(Predicate<String> predicate) {
+        super.removeApplicationListenerBeans(predicate);
+        invalidate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAllListeners() {
+        super.removeAllListeners();
+        invalidate();
+    }
+
+    /**
+     * A ListenerStatistics holds the accumulated invocation times of one listener.
+     */
+    public static final class ListenerStatistics {
+
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos, boolean failed) {
+            invocations.increment();
+            totalNanos.add(nanos);
+            if (failed) {
+                failures.increment();
+            }
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /** @return The number of invocations */
+        public long getInvocations() {
+            return invocations.sum();
+        }
+
+        /** @return The number of invocations that have thrown an exception */
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /** @return The total time spent in the listener in nanoseconds */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /** @return The longest invocation in nanoseconds */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /** @return The mean invocation time in nanoseconds */
+        public double getMeanNanos() {
+            long count = invocations.sum();
+            return count == 0 ? 0 : (double) totalNanos.sum() / count;
+        }
+    }
+
+    private static final class ListenerEntry {
+
+        private final ApplicationListener<?> listener;
+        private final String name;
+        private final DispatchMode mode;
+        private final ListenerStatistics statistics;
+
+        ListenerEntry(ApplicationListener<?> listener, String name, DispatchMode mode, ListenerStatistics statistics) {
+            this.listener = listener;
+            this.name = name;
+            this.mode = mode;
+            this.statistics = statistics;
+        }
+    }
+
+    private static final class CacheKey {
+
+        private final ResolvableType eventType;
+        private final Class<?> sourceType;
+
+        CacheKey(ResolvableType eventType, @Nullable Class<?> sourceType) {
+            this.eventType = eventType;
+            this.sourceType = sourceType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return eventType.equals(other.eventType) && sourceType == other.sourceType;
+        }
+
+        @Override
+        public int hashCode() {
+            return eventType.hashCode() * 29 + (sourceType == null ? 0 : sourceType.hashCode());
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.integration.persistence;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.lang.String.format;
+
+/**
+ * A QueryStreamer processes huge query results with constant memory. Rows are read with
+ * a Hibernate forward-only {@link ScrollableResults} and a JDBC fetch size, and the
+ * persistence context is flushed and cleared every {@code clearInterval} rows or after
+ * each chunk, so neither the result list nor the first-level cache grows with the number
+ * of rows. Rows are loaded as managed entities, so changes made to them are written with
+ * the flush before each clear. Entities handed out before a clear are detached
+ * afterwards, lazy associations of them must have been initialized before. If Hibernate is not on the classpath or the
+ * query is not a Hibernate query, the standard {@link TypedQuery#getResultStream()} is
+ * used instead of the Hibernate scroll.
+ * <p>
+ * All methods must be called within a transaction, the returned streams must be closed.
+ * </p>
+ *
+ * @author Heiko Scherrer
+ */
+public class QueryStreamer {
+
+    /** Number of rows the JDBC driver fetches per round trip. */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    /** Number of rows after which the persistence context is cleared. */
+    public static final int DEFAULT_CLEAR_INTERVAL = 1000;
+    private static final boolean HIBERNATE_PRESENT = isPresent("org.hibernate.query.Query");
+    private final EntityManager em;
+    private final int fetchSize;
+    private final int clearInterval;
+
+    /**
+     * Create a QueryStreamer with default fetch size and clear interval.
+     *
+     * @param em The EntityManager the queries have been created with
+     */
+    public QueryStreamer(EntityManager em) {
+        this(em, DEFAULT_FETCH_SIZE, DEFAULT_CLEAR_INTERVAL);
+    }
+
+    /**
+     * Create a QueryStreamer.
+     *
+     * @param em The EntityManager the queries have been created with
+     * @param fetchSize The JDBC fetch size
+     * @param clearInterval Clear the persistence context every this many rows,
+     * {@literal 0} to never clear while streaming rows or sequential chunks
+     */
+    public QueryStreamer(EntityManager em, int fetchSize, int clearInterval) {
+        if (fetchSize < 1 || clearInterval < 0) {
+            throw new IllegalArgumentException(format("Invalid fetch size [%d] or clear interval [%d]", fetchSize, clearInterval));
+        }
+        this.em = Objects.requireNonNull(em);
+        this.fetchSize = fetchSize;
+        this.clearInterval = clearInterval;
+    }
+
+    /**
+     * Stream the result of a query. The stream holds a database cursor and must be closed,
+     * preferably with try-with-resources.
+     *
+     * @param query The query, rows with more than one selection are returned as
+     * {@code Object[]}
+     * @param <T> Type of rows
+     * @return A sequential stream of rows
+     */
+    public <T> Stream<T> stream(TypedQuery<T> query) {
+        Stream<T> rows = open(query);
+        if (clearInterval == 0) {
+            return rows;
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new ClearingIterator<>(rows.iterator()), Spliterator.ORDERED), false)
+                .onClose(rows::close);
+    }
+
+    /**
+     * Call back for each row of a query.
+     *
+     * @param query The query
+     * @param action Called with each row
+     * @param <T> Type of rows
+     * @return The number of rows
+     */
+    public <T> long forEach(TypedQuery<T> query, Consumer<? super T> action) {
+        long count = 0;
+        try (Stream<T> rows = stream(query)) {
+            Iterator<T> it = rows.iterator();
+            while (it.hasNext()) {
+                action.accept(it.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Call back for each chunk of rows of a query on the calling thread. The rows of a
+     * chunk are managed while the callback runs, the persistence context is flushed and
+     * cleared after each callback unless the clear interval is {@literal 0}.
+     *
+     * @param query The query
+     * @param chunkSize The maximum number of rows per chunk
+     * @param action Called with each chunk
+     * @param <T> Type of rows
+     * @return The number of rows
+     */
+    public <T> long forEachChunk(TypedQuery<T> query, int chunkSize, Consumer<? super List<T>> action) {
+        checkChunkSize(chunkSize, 1);
+        long count = 0;
+        try (Stream<T> rows = open(query)) {
+            Iterator<T> it = rows.iterator();
+            while (it.hasNext()) {
+                List<T> chunk = nextChunk(it, chunkSize);
+                action.accept(chunk);
+                count += chunk.size();
+                if (clearInterval > 0) {
+                    clear();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Call back for each chunk of rows of a query on an {@link Executor}. Rows are read on
+     * the calling thread while earlier chunks are processed, at most
+     * {@code maxPendingChunks} chunks are held in memory at a time. The persistence
+     * context is flushed and cleared before each chunk is handed off, so the chunks
+     * contain detached entities and all other entities of the caller are detached as
+     * well. The callback must not rely on the EntityManager of the caller. The first
+     * failure of a callback stops reading and is rethrown once all running callbacks have
+     * finished.
+     *
+     * @param query The query
+     * @param chunkSize The maximum number of rows per chunk
+     * @param action Called with each chunk
+     * @param executor Runs the callbacks
+     * @param maxPendingChunks The maximum number of chunks read but not yet processed
+     * @param <T> Type of rows
+     * @return The number of rows
+     */
+    public <T> long forEachChunk(TypedQuery<T> query, int chunkSize, Consumer<? super List<T>> action, Executor executor,
+            int maxPendingChunks) {
+        checkChunkSize(chunkSize, maxPendingChunks);
+        Semaphore permits = new Semaphore(maxPendingChunks);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        long count = 0;
+        try (Stream<T> rows = open(query)) {
+            Iterator<T> it = rows.iterator();
+            while (failure.get() == null && it.hasNext()) {
+                List<T> chunk = nextChunk(it, chunkSize);
+                count += chunk.size();
+                clear();
+                permits.acquireUninterruptibly();
+                try {
+                    CompletableFuture.runAsync(() -> action.accept(chunk), executor).whenComplete((v, e) -> {
+                        if (e != null) {
+                            failure.compareAndSet(null, e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e));
+                        }
+                        permits.release();
+                    });
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        } finally {
+            permits.acquireUninterruptibly(maxPendingChunks);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return count;
+    }
+
+    private <T> Stream<T> open(TypedQuery<T> query) {
+        if (HIBERNATE_PRESENT) {
+            Stream<T> rows = HibernateScroll.open(query, fetchSize);
+            if (rows != null) {
+                return rows;
+            }
+        }
+        return query.setHint("javax.persistence.fetchSize", fetchSize).getResultStream();
+    }
+
+    private static <T> List<T> nextChunk(Iterator<T> rows, int chunkSize) {
+        List<T> chunk = new ArrayList<>(chunkSize);
+        while (chunk.size() < chunkSize && rows.hasNext()) {
+            chunk.add(rows.next());
+        }
+        return chunk;
+    }
+
+    private void clear() {
+        em.flush();
+        em.clear();
+    }
+
+    private static void checkChunkSize(int chunkSize, int maxPendingChunks) {
+        if (chunkSize < 1 || maxPendingChunks < 1) {
+            throw new IllegalArgumentException(format("Invalid chunk size [%d] or number of pending chunks [%d]", chunkSize, maxPendingChunks));
+        }
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, QueryStreamer.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Flushes and clears the persistence context before the row after each interval is
+     * fetched, so the rows handed out last are still managed while they are processed.
+     */
+    private final class ClearingIterator<T> implements Iterator<T> {
+
+        private final Iterator<T> rows;
+        private long count;
+
+        ClearingIterator(Iterator<T> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (count > 0 && count % clearInterval == 0) {
+                clear();
+                count = 0;
+            }
+            return rows.hasNext();
+        }
+
+        @Override
+        public T next() {
+            T row = rows.next();
+            count++;
+            return row;
+        }
+    }
+
+    /**
+     * Holds all references to Hibernate, so that the class is only loaded if Hibernate is
+     * on the classpath.
+     */
+    private static final class HibernateScroll {
+
+        private HibernateScroll() {
+        }
+
+        /**
+         * Scroll through the result of a Hibernate query.
+         *
+         * @return The rows or {@literal null} if the query is no Hibernate query
+         */
+        static <T> Stream<T> open(TypedQuery<T> query, int fetchSize) {
+            Query<?> hibernateQuery;
+            try {
+                hibernateQuery = query.unwrap(Query.class);
+            } catch (PersistenceException e) {
+                return null;
+            }
+            ScrollableResults results = hibernateQuery
+                    .setFetchSize(fetchSize)
+                    .setCacheMode(CacheMode.IGNORE)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new ScrollIterator<T>(results), Spliterator.ORDERED), false)
+                    .onClose(results::close);
+        }
+    }
+
+    private static final class ScrollIterator<T> implements Iterator<T> {
+
+        private final ScrollableResults results;
+        private Boolean hasNext;
+
+        ScrollIterator(ScrollableResults results) {
+            this.results = results;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                hasNext = results.next();
+            }
+            return hasNext;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            Object[] row = results.get();
+            return (T) (row.length == 1 ? row[0] : row);
+        }
+    }
+}
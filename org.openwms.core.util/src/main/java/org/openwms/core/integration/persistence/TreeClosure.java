@@ -0,0 +1,174 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.integration.persistence;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A TreeClosure is one row of a closure table. For every node of a tree there is one row
+ * per ancestor, including the node itself with depth {@literal 0}. All descendants or all
+ * ancestors of a node are then found with a single indexed query. Several trees share the
+ * table and are distinguished by their name.
+ * <p>
+ * The entity must be part of the persistence unit, e.g. by adding this package to the
+ * entity scan of the application.
+ * </p>
+ *
+ * @author Heiko Scherrer
+ * @see TreeClosureRepository
+ */
+@Entity
+@IdClass(TreeClosure.Key.class)
+@Table(name = "COR_TREE_CLOSURE", indexes = {
+        @Index(name = "IDX_TREE_CLOSURE_ANC", columnList = "C_TREE, C_ANCESTOR, C_DEPTH"),
+        @Index(name = "IDX_TREE_CLOSURE_DESC", columnList = "C_TREE, C_DESCENDANT, C_DEPTH")
+})
+public class TreeClosure implements Serializable {
+
+    /** The name of the tree. */
+    @Id
+    @Column(name = "C_TREE", length = 64)
+    private String tree;
+
+    /** The key of the ancestor node. */
+    @Id
+    @Column(name = "C_ANCESTOR")
+    private String ancestor;
+
+    /** The key of the descendant node. */
+    @Id
+    @Column(name = "C_DESCENDANT")
+    private String descendant;
+
+    /** The number of edges between ancestor and descendant. */
+    @Column(name = "C_DEPTH", nullable = false)
+    private int depth;
+
+    /** Dear JPA... */
+    protected TreeClosure() {
+    }
+
+    /**
+     * Create a TreeClosure.
+     *
+     * @param tree The name of the tree
+     * @param ancestor The key of the ancestor node
+     * @param descendant The key of the descendant node
+     * @param depth The number of edges between both
+     */
+    public TreeClosure(String tree, String ancestor, String descendant, int depth) {
+        this.tree = tree;
+        this.ancestor = ancestor;
+        this.descendant = descendant;
+        this.depth = depth;
+    }
+
+    public String getTree() {
+        return tree;
+    }
+
+    public String getAncestor() {
+        return ancestor;
+    }
+
+    public String getDescendant() {
+        return descendant;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TreeClosure)) return false;
+        TreeClosure that = (TreeClosure) o;
+        return Objects.equals(tree, that.tree) && Objects.equals(ancestor, that.ancestor) && Objects.equals(descendant, that.descendant);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(tree, ancestor, descendant);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return tree + ":" + ancestor + "->" + descendant + "(" + depth + ")";
+    }
+
+    /**
+     * The primary key of a {@link TreeClosure}.
+     */
+    public static class Key implements Serializable {
+
+        private String tree;
+        private String ancestor;
+        private String descendant;
+
+        /** Dear JPA... */
+        protected Key() {
+        }
+
+        /**
+         * Create a Key.
+         *
+         * @param tree The name of the tree
+         * @param ancestor The key of the ancestor node
+         * @param descendant The key of the descendant node
+         */
+        public Key(String tree, String ancestor, String descendant) {
+            this.tree = tree;
+            this.ancestor = ancestor;
+            this.descendant = descendant;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(tree, key.tree) && Objects.equals(ancestor, key.ancestor) && Objects.equals(descendant, key.descendant);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(tree, ancestor, descendant);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.integration.persistence;
+
+import org.openwms.core.util.TreeNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A TreeClosureAdapter applies modifications to a {@link TreeNode} hierarchy and keeps the
+ * closure table of a {@link TreeClosureRepository} in sync. Each node is identified in the
+ * table by a unique key, e.g. the business key of the attached entity.
+ * <p>
+ * The tree must only be modified through the adapter, otherwise {@link #rebuild(TreeNode)}
+ * is required. All methods must be called within a transaction.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class TreeClosureAdapter<T> {
+
+    /** Default number of rows persisted before the persistence context is cleared. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final TreeClosureRepository repository;
+    private final Function<TreeNode<T>, String> keyFunction;
+
+    /**
+     * Create a TreeClosureAdapter.
+     *
+     * @param repository The repository of the closure table
+     * @param keyFunction Resolves the unique key of a node
+     */
+    public TreeClosureAdapter(TreeClosureRepository repository, Function<TreeNode<T>, String> keyFunction) {
+        this.repository = Objects.requireNonNull(repository);
+        this.keyFunction = Objects.requireNonNull(keyFunction);
+    }
+
+    /**
+     * Get the repository to query the closure table.
+     *
+     * @return The repository
+     */
+    public TreeClosureRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Replace all rows of the tree with the closure of the given hierarchy.
+     *
+     * @param root The root of the hierarchy
+     */
+    public void rebuild(TreeNode<T> root) {
+        repository.deleteTree();
+        List<TreeClosure> rows = new ArrayList<>();
+        Deque<String> ancestors = new ArrayDeque<>();
+        Deque<Iterator<Map.Entry<Object, TreeNode<T>>>> stack = new ArrayDeque<>();
+        visit(root, ancestors, rows);
+        stack.push(root.getChildren());
+        while (!stack.isEmpty()) {
+            Iterator<Map.Entry<Object, TreeNode<T>>> it = stack.peek();
+            if (it.hasNext()) {
+                TreeNode<T> child = it.next().getValue();
+                visit(child, ancestors, rows);
+                stack.push(child.getChildren());
+            } else {
+                stack.pop();
+                ancestors.pop();
+            }
+            if (rows.size() >= DEFAULT_BATCH_SIZE) {
+                repository.persistAll(rows, DEFAULT_BATCH_SIZE);
+                rows.clear();
+            }
+        }
+        repository.persistAll(rows, DEFAULT_BATCH_SIZE);
+    }
+
+    private void visit(TreeNode<T> node, Deque<String> ancestors, List<TreeClosure> rows) {
+        String key = keyOf(node);
+        ancestors.push(key);
+        int depth = 0;
+        for (String ancestor : ancestors) {
+            rows.add(new TreeClosure(repository.getTree(), ancestor, key, depth++));
+        }
+    }
+
+    /**
+     * Add a child with its subtree. A former child with the same identifier is removed
+     * together with its subtree, a child that already has a parent is moved.
+     *
+     * @param parent The parent
+     * @param identifier The identifier of the child
+     * @param child The child
+     */
+    public void addChild(TreeNode<T> parent, Object identifier, TreeNode<T> child) {
+        if (child.getParent() != null) {
+            moveTo(child, parent, identifier);
+            return;
+        }
+        TreeNode<T> former = parent.getChild(identifier);
+        if (former != null && !former.equals(child)) {
+            repository.deleteSubtree(keyOf(former));
+        }
+        parent.addChild(identifier, child);
+        String parentKey = keyOf(parent);
+        repository.insertLeaf(parentKey, keyOf(child));
+        Deque<TreeNode<T>> pending = new ArrayDeque<>();
+        pending.push(child);
+        while (!pending.isEmpty()) {
+            TreeNode<T> node = pending.pop();
+            String key = keyOf(node);
+            Iterator<Map.Entry<Object, TreeNode<T>>> children = node.getChildren();
+            while (children.hasNext()) {
+                TreeNode<T> descendant = children.next().getValue();
+                repository.insertLeaf(key, keyOf(descendant));
+                pending.push(descendant);
+            }
+        }
+    }
+
+    /**
+     * Remove a child with its subtree.
+     *
+     * @param parent The parent
+     * @param identifier The identifier of the child
+     */
+    public void removeChild(TreeNode<T> parent, Object identifier) {
+        TreeNode<T> child = parent.getChild(identifier);
+        if (child != null) {
+            repository.deleteSubtree(keyOf(child));
+            parent.removeChild(identifier);
+        }
+    }
+
+    /**
+     * Move a node with its subtree below a new parent.
+     *
+     * @param node The node to move
+     * @param newParent The new parent
+     * @param identifier The identifier at the new parent
+     * @throws IllegalArgumentException If the new parent is part of the subtree
+     */
+    public void moveTo(TreeNode<T> node, TreeNode<T> newParent, Object identifier) {
+        String key = keyOf(node);
+        TreeNode<T> former = newParent.getChild(identifier);
+        if (node.equals(former)) {
+            return;
+        }
+        repository.moveSubtree(key, keyOf(newParent));
+        if (former != null) {
+            repository.deleteSubtree(keyOf(former));
+        }
+        TreeNode<T> oldParent = node.getParent();
+        if (oldParent != null) {
+            Iterator<Map.Entry<Object, TreeNode<T>>> siblings = oldParent.getChildren();
+            while (siblings.hasNext()) {
+                Map.Entry<Object, TreeNode<T>> entry = siblings.next();
+                if (node.equals(entry.getValue())) {
+                    oldParent.removeChild(entry.getKey());
+                    break;
+                }
+            }
+        }
+        newParent.addChild(identifier, node);
+    }
+
+    private String keyOf(TreeNode<T> node) {
+        String key = keyFunction.apply(node);
+        if (key == null) {
+            throw new IllegalArgumentException("No key for tree node " + node);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.integration.persistence;
+
+import org.openwms.core.lang.Partitions;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static java.lang.String.format;
+
+/**
+ * A TreeClosureRepository maintains the {@link TreeClosure} rows of one tree and answers
+ * subtree and ancestor queries with a single indexed query each. Modifications touch only
+ * the rows of the affected subtree, the rest of the tree is never renumbered.
+ * <p>
+ * All methods must be called within a transaction. Rows are written with native inserts
+ * and bulk deletes, the repository does not keep any {@link TreeClosure} managed, so a
+ * removed row can be inserted again in the same transaction. {@link TreeClosure}s the
+ * caller has loaded as entities are not updated by these modifications.
+ * </p>
+ *
+ * @author Heiko Scherrer
+ */
+public class TreeClosureRepository {
+
+    /** Maximum number of elements in one IN clause. */
+    static final int IN_CLAUSE_LIMIT = Partitions.DEFAULT_PARTITION_SIZE;
+    private static final String INSERT_SELF =
+            "insert into COR_TREE_CLOSURE (C_TREE, C_ANCESTOR, C_DESCENDANT, C_DEPTH) values (?1, ?2, ?2, 0)";
+    private static final String INSERT_BELOW_PARENT =
+            "insert into COR_TREE_CLOSURE (C_TREE, C_ANCESTOR, C_DESCENDANT, C_DEPTH) " +
+            "select c.C_TREE, c.C_ANCESTOR, ?1, c.C_DEPTH + 1 from COR_TREE_CLOSURE c " +
+            "where c.C_TREE = ?2 and c.C_DESCENDANT = ?3";
+    private static final String INSERT_SUBTREE_BELOW_PARENT =
+            "insert into COR_TREE_CLOSURE (C_TREE, C_ANCESTOR, C_DESCENDANT, C_DEPTH) " +
+            "select sup.C_TREE, sup.C_ANCESTOR, sub.C_DESCENDANT, sup.C_DEPTH + sub.C_DEPTH + 1 " +
+            "from COR_TREE_CLOSURE sup, COR_TREE_CLOSURE sub " +
+            "where sup.C_TREE = ?1 and sup.C_DESCENDANT = ?2 and sub.C_TREE = ?1 and sub.C_ANCESTOR = ?3";
+
+    private final EntityManager em;
+    private final String tree;
+
+    /**
+     * Create a TreeClosureRepository.
+     *
+     * @param em The EntityManager to use
+     * @param tree The name of the tree
+     */
+    public TreeClosureRepository(EntityManager em, String tree) {
+        this.em = Objects.requireNonNull(em);
+        this.tree = Objects.requireNonNull(tree);
+    }
+
+    /**
+     * Get the name of the tree.
+     *
+     * @return The name
+     */
+    public String getTree() {
+        return tree;
+    }
+
+    /**
+     * Find the keys of all descendants of a node.
+     *
+     * @param key The key of the node
+     * @return The keys ordered by depth, not including the node itself
+     */
+    public List<String> findDescendants(String key) {
+        return findDescendants(key, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the keys of all descendants of a node up to a depth.
+     *
+     * @param key The key of the node
+     * @param maxDepth The maximum depth, {@literal 1} for direct children only
+     * @return The keys ordered by depth, not including the node itself
+     */
+    public List<String> findDescendants(String key, int maxDepth) {
+        return em.createQuery("select c.descendant from TreeClosure c " +
+                        "where c.tree = :tree and c.ancestor = :key and c.depth between 1 and :maxDepth order by c.depth", String.class)
+                .setParameter("tree", tree)
+                .setParameter("key", key)
+                .setParameter("maxDepth", maxDepth)
+                .getResultList();
+    }
+
+    /**
+     * Find the keys of all ancestors of a node, that is the path to the root.
+     *
+     * @param key The key of the node
+     * @return The keys from the root down to the parent of the node
+     */
+    public List<String> findAncestors(String key) {
+        return em.createQuery("select c.ancestor from TreeClosure c " +
+                        "where c.tree = :tree and c.descendant = :key and c.depth > 0 order by c.depth desc", String.class)
+                .setParameter("tree", tree)
+                .setParameter("key", key)
+                .getResultList();
+    }
+
+    /**
+     * Check whether a node is an ancestor of another node or the node itself.
+     *
+     * @param ancestor The key of the potential ancestor
+     * @param descendant The key of the potential descendant
+     * @return {@literal true} if so
+     */
+    public boolean isAncestorOrSelf(String ancestor, String descendant) {
+        return em.createQuery("select count(c) from TreeClosure c " +
+                        "where c.tree = :tree and c.ancestor = :ancestor and c.descendant = :descendant", Long.class)
+                .setParameter("tree", tree)
+                .setParameter("ancestor", ancestor)
+                .setParameter("descendant", descendant)
+                .getSingleResult() > 0;
+    }
+
+    /**
+     * Get the depth of a node below the root.
+     *
+     * @param key The key of the node
+     * @return The depth, {@literal 0} for the root or unknown nodes
+     */
+    public int depthOf(String key) {
+        Integer depth = em.createQuery("select max(c.depth) from TreeClosure c where c.tree = :tree and c.descendant = :key", Integer.class)
+                .setParameter("tree", tree)
+                .setParameter("key", key)
+                .getSingleResult();
+        return depth == null ? 0 : depth;
+    }
+
+    /**
+     * Add a node without parent.
+     *
+     * @param key The key of the node
+     */
+    public void insertRoot(String key) {
+        insertSelf(key);
+    }
+
+    /**
+     * Add a node below a parent, that must already exist.
+     *
+     * @param parentKey The key of the parent
+     * @param key The key of the new node
+     */
+    public void insertLeaf(String parentKey, String key) {
+        em.flush();
+        em.createNativeQuery(INSERT_BELOW_PARENT)
+                .setParameter(1, key)
+                .setParameter(2, tree)
+                .setParameter(3, parentKey)
+                .executeUpdate();
+        insertSelf(key);
+    }
+
+    /**
+     * Remove a node and all its descendants.
+     *
+     * @param key The key of the node
+     * @return The number of removed nodes
+     */
+    public int deleteSubtree(String key) {
+        List<String> subtree = new ArrayList<>(findDescendants(key));
+        subtree.add(key);
+        deleteRows(subtree, null);
+        return subtree.size();
+    }
+
+    /**
+     * Move a node with all its descendants below a new parent. Only the rows that connect
+     * the former ancestors with the subtree are replaced.
+     *
+     * @param key The key of the node to move
+     * @param newParentKey The key of the new parent
+     * @throws IllegalArgumentException If the new parent is part of the subtree
+     */
+    public void moveSubtree(String key, String newParentKey) {
+        if (isAncestorOrSelf(key, newParentKey)) {
+            throw new IllegalArgumentException(format("Cannot move node [%s] below its own descendant [%s]", key, newParentKey));
+        }
+        List<String> formerAncestors = findAncestors(key);
+        if (!formerAncestors.isEmpty()) {
+            List<String> subtree = new ArrayList<>(findDescendants(key));
+            subtree.add(key);
+            deleteRows(subtree, formerAncestors);
+        }
+        em.flush();
+        em.createNativeQuery(INSERT_SUBTREE_BELOW_PARENT)
+                .setParameter(1, tree)
+                .setParameter(2, newParentKey)
+                .setParameter(3, key)
+                .executeUpdate();
+    }
+
+    /**
+     * Remove all rows of the tree.
+     *
+     * @return The number of removed rows
+     */
+    public int deleteTree() {
+        return em.createQuery("delete from TreeClosure c where c.tree = :tree")
+                .setParameter("tree", tree)
+                .executeUpdate();
+    }
+
+    /**
+     * Persist rows in batches. Each batch is flushed and its rows are detached afterwards,
+     * other entities of the persistence context are left untouched.
+     *
+     * @param rows The rows
+     * @param batchSize Number of rows after which the persistence context is flushed
+     */
+    public void persistAll(Iterable<TreeClosure> rows, int batchSize) {
+        List<TreeClosure> batch = new ArrayList<>(batchSize);
+        for (TreeClosure row : rows) {
+            em.persist(row);
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                detach(batch);
+            }
+        }
+        detach(batch);
+    }
+
+    private void detach(List<TreeClosure> batch) {
+        em.flush();
+        batch.forEach(em::detach);
+        batch.clear();
+    }
+
+    private void insertSelf(String key) {
+        em.createNativeQuery(INSERT_SELF)
+                .setParameter(1, tree)
+                .setParameter(2, key)
+                .executeUpdate();
+    }
+
+    private void deleteRows(List<String> descendants, List<String> ancestors) {
+        em.flush();
+        String jpql = "delete from TreeClosure c where c.tree = :tree and c.descendant in :descendants" +
+                (ancestors == null ? "" : " and c.ancestor in :ancestors");
+        for (List<String> chunk : Partitions.partitionPadded(descendants, IN_CLAUSE_LIMIT)) {
+            Query query = em.createQuery(jpql)
+                    .setParameter("tree", tree)
+                    .setParameter("descendants", chunk);
+            if (ancestors != null) {
+                query.setParameter("ancestors", ancestors);
+            }
+            query.executeUpdate();
+        }
+    }
+}
@@ -16,9 +16,15 @@
 package org.openwms.core.lang;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
 
 /**
  * A CollectionUtil.
@@ -27,6 +33,12 @@ import java.util.Map;
  */
 public final class CollectionUtil {
 
+    /**
+     * Lists of at least this size are converted with parallel key and value extraction by
+     * the methods that take a {@link DuplicateKeyPolicy}.
+     */
+    public static final int PARALLEL_THRESHOLD = 10_000;
+
     private CollectionUtil() {
     }
 
@@ -47,7 +59,9 @@ public final class CollectionUtil {
 
     /**
      * Convert a list into a {@link LinkedHashMap} using a {@link ListExtractor} to
-     * determine the keys and values for the new Map.
+     * determine the keys and values for the new Map. Later elements replace earlier
+     * elements with the same key. The extractor is always called sequentially on the
+     * calling thread.
      *
      * @param <K> Type of list key
      * @param <V> Type of list value
@@ -60,10 +74,146 @@ public final class CollectionUtil {
         if (list == null || extractor == null || list.isEmpty()) {
             return Collections.emptyMap();
         }
-        Map<K, V> map = new LinkedHashMap<>(list.size());
-        for (V node : list) {
-            map.put(extractor.extractKey(node), extractor.extractValue(node));
+        return fill(new LinkedHashMap<>(capacityFor(list.size())), list, extractor, DuplicateKeyPolicy.keepLast(), false);
+    }
+
+    /**
+     * Convert a list into a presized {@link LinkedHashMap} in list order. Keys and values
+     * of lists with at least {@link #PARALLEL_THRESHOLD} elements are extracted in
+     * parallel, so the extractor must be thread-safe and must not depend on the calling
+     * thread.
+     *
+     * @param <K> Type of list key
+     * @param <V> Type of list value
+     * @param list The list to convert
+     * @param extractor To determine key and value for each list entry
+     * @param policy Resolves elements with the same key
+     * @return A created {@link LinkedHashMap} or an empty map when the list or the
+     * extractor is {@literal null}
+     * @throws IllegalStateException if the policy rejects a duplicate key
+     */
+    public static <K, V> Map<K, V> asHashMap(List<V> list, ListExtractor<K, V> extractor, DuplicateKeyPolicy<V> policy) {
+        if (list == null || extractor == null || list.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return fill(new LinkedHashMap<>(capacityFor(list.size())), list, extractor, Objects.requireNonNull(policy), true);
+    }
+
+    /**
+     * Convert a list into a presized {@link HashMap} when the iteration order of the
+     * result does not matter. This avoids the linked entries of a {@link LinkedHashMap}.
+     * Duplicates are still resolved in list order. Like
+     * {@link #asHashMap(List, ListExtractor, DuplicateKeyPolicy)} large lists are
+     * extracted in parallel.
+     *
+     * @param <K> Type of list key
+     * @param <V> Type of list value
+     * @param list The list to convert
+     * @param extractor To determine key and value for each list entry
+     * @param policy Resolves elements with the same key
+     * @return A created {@link HashMap} or an empty map when the list or the extractor is
+     * {@literal null}
+     * @throws IllegalStateException if the policy rejects a duplicate key
+     */
+    public static <K, V> Map<K, V> asUnorderedMap(List<V> list, ListExtractor<K, V> extractor, DuplicateKeyPolicy<V> policy) {
+        if (list == null || extractor == null || list.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return fill(new HashMap<>(capacityFor(list.size())), list, extractor, Objects.requireNonNull(policy), true);
+    }
+
+    /**
+     * Get a read-only {@link ListMapView} backed by the list. In contrast to
+     * {@link #asHashMap(List, ListExtractor)} nothing is copied up front, so this is the
+     * cheaper choice when only a few lookups are done on the result.
+     *
+     * @param <K> Type of list key
+     * @param <V> Type of list value
+     * @param list The list to view, must not be modified while the view is used
+     * @param extractor To determine key and value for each list entry
+     * @return The view or an empty map when one of the arguments is {@literal null}
+     */
+    public static <K, V> Map<K, V> asMapView(List<V> list, ListExtractor<K, V> extractor) {
+        if (list == null || extractor == null || list.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return new ListMapView<>(list, extractor);
+    }
+
+    /**
+     * A {@link Collector} that accumulates stream elements into a {@link LinkedHashMap}.
+     * Partial results of parallel streams are combined in encounter order, so the policy
+     * sees duplicates in the same order as with a sequential stream.
+     *
+     * @param <K> Type of key
+     * @param <V> Type of stream elements and values
+     * @param extractor To determine key and value for each element
+     * @param policy Resolves elements with the same key
+     * @return The collector
+     */
+    public static <K, V> Collector<V, ?, Map<K, V>> toMap(ListExtractor<K, V> extractor, DuplicateKeyPolicy<V> policy) {
+        return toMap(extractor, policy, LinkedHashMap::new);
+    }
+
+    /**
+     * A {@link Collector} that accumulates stream elements into Maps created by a factory.
+     *
+     * @param <K> Type of key
+     * @param <V> Type of stream elements and values
+     * @param <M> Type of the resulting Map
+     * @param extractor To determine key and value for each element
+     * @param policy Resolves elements with the same key
+     * @param mapFactory Creates empty Maps
+     * @return The collector
+     */
+    public static <K, V, M extends Map<K, V>> Collector<V, ?, M> toMap(ListExtractor<K, V> extractor, DuplicateKeyPolicy<V> policy,
+            Supplier<M> mapFactory) {
+        Objects.requireNonNull(extractor);
+        Objects.requireNonNull(policy);
+        return Collector.of(
+                mapFactory,
+                (map, element) -> put(map, extractor.extractKey(element), extractor.extractValue(element), policy),
+                (left, right) -> {
+                    for (Map.Entry<K, V> entry : right.entrySet()) {
+                        put(left, entry.getKey(), entry.getValue(), policy);
+                    }
+                    return left;
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V, M extends Map<K, V>> M fill(M map, List<V> list, ListExtractor<K, V> extractor, DuplicateKeyPolicy<V> policy,
+            boolean parallel) {
+        int size = list.size();
+        if (!parallel || size < PARALLEL_THRESHOLD) {
+            for (V node : list) {
+                put(map, extractor.extractKey(node), extractor.extractValue(node), policy);
+            }
+            return map;
+        }
+        Object[] nodes = list instanceof RandomAccess ? null : list.toArray();
+        Object[] keys = new Object[size];
+        Object[] values = new Object[size];
+        IntStream.range(0, size).parallel().forEach(i -> {
+            V node = nodes == null ? list.get(i) : (V) nodes[i];
+            keys[i] = extractor.extractKey(node);
+            values[i] = extractor.extractValue(node);
+        });
+        for (int i = 0; i < size; i++) {
+            put(map, (K) keys[i], (V) values[i], policy);
         }
         return map;
     }
-}
\ No newline at end of file
+
+    private static <K, V> void put(Map<K, V> map, K key, V value, DuplicateKeyPolicy<V> policy) {
+        int size = map.size();
+        V existing = map.putIfAbsent(key, value);
+        if (map.size() == size) {
+            map.put(key, policy.resolve(key, existing, value));
+        }
+    }
+
+    private static int capacityFor(int size) {
+        return (int) Math.min((long) (size / 0.75f) + 1, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import org.openwms.core.DomainObject;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+
+/**
+ * A DomainObjectIndex holds {@link DomainObject}s with {@code Long} ids in a
+ * {@link LongObjectMap}, so lookups by id neither box the id nor allocate an entry per
+ * entity. Entities are only replaced by instances with the same or a higher
+ * {@link DomainObject#getVersion() version}, so a stale copy read in parallel cannot
+ * overwrite a newer one. A DomainObjectIndex is not thread-safe.
+ *
+ * @param <T> Type of entities
+ * @author Heiko Scherrer
+ */
+public class DomainObjectIndex<T extends DomainObject<Long>> {
+
+    private final LongObjectMap<T> entities;
+
+    /**
+     * Create an empty DomainObjectIndex.
+     */
+    public DomainObjectIndex() {
+        this(0);
+    }
+
+    /**
+     * Create a DomainObjectIndex that holds the expected number of entities without
+     * resizing.
+     *
+     * @param expectedSize The expected number of entities
+     */
+    public DomainObjectIndex(int expectedSize) {
+        this.entities = new LongObjectMap<>(expectedSize);
+    }
+
+    /**
+     * Create a DomainObjectIndex of all entities, the latest version of each id wins.
+     *
+     * @param entities The persisted entities
+     * @param <T> Type of entities
+     * @return The index
+     */
+    public static <T extends DomainObject<Long>> DomainObjectIndex<T> of(Collection<? extends T> entities) {
+        DomainObjectIndex<T> index = new DomainObjectIndex<>(entities.size());
+        for (T entity : entities) {
+            index.put(entity);
+        }
+        return index;
+    }
+
+    /**
+     * Store an entity unless a newer version of it is stored already.
+     *
+     * @param entity The persisted entity
+     * @return {@literal true} if stored, {@literal false} if the stored version is newer
+     * @throws IllegalArgumentException if the entity has no id
+     */
+    public boolean put(T entity) {
+        long id = idOf(entity);
+        T existing = entities.get(id);
+        if (existing != null && existing.getVersion() > entity.getVersion()) {
+            return false;
+        }
+        entities.put(id, entity);
+        return true;
+    }
+
+    /**
+     * Get an entity by id.
+     *
+     * @param id The id
+     * @return The entity or {@literal null}
+     */
+    public T get(long id) {
+        return entities.get(id);
+    }
+
+    /**
+     * Get the version of a stored entity.
+     *
+     * @param id The id
+     * @return The version or {@literal -1} if absent
+     */
+    public long getVersion(long id) {
+        T entity = entities.get(id);
+        return entity == null ? -1 : entity.getVersion();
+    }
+
+    /**
+     * Check whether the stored entity has exactly the given version.
+     *
+     * @param id The id
+     * @param version The expected version
+     * @return {@literal true} if stored with that version
+     */
+    public boolean isCurrent(long id, long version) {
+        T entity = entities.get(id);
+        return entity != null && entity.getVersion() == version;
+    }
+
+    /**
+     * Remove an entity by id.
+     *
+     * @param id The id
+     * @return The removed entity or {@literal null}
+     */
+    public T remove(long id) {
+        return entities.remove(id);
+    }
+
+    /**
+     * Get the number of entities.
+     *
+     * @return The size
+     */
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+     * Call back for each entity in no particular order.
+     *
+     * @param consumer The callback
+     */
+    public void forEach(Consumer<? super T> consumer) {
+        entities.forEach((id, entity) -> consumer.accept(entity));
+    }
+
+    private static long idOf(DomainObject<Long> entity) {
+        Long id = entity.getId();
+        if (id == null) {
+            throw new IllegalArgumentException(format("Transient entity [%s] cannot be indexed", entity));
+        }
+        return id;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+
+import static java.lang.String.format;
+
+/**
+ * A DuplicateKeyPolicy decides which value is kept when a list contains more than one
+ * element with the same key while it is converted into a Map.
+ *
+ * @param <V> Type of values
+ * @author Heiko Scherrer
+ * @see CollectionUtil
+ */
+@FunctionalInterface
+public interface DuplicateKeyPolicy<V> {
+
+    /**
+     * Resolve a key collision.
+     *
+     * @param key The duplicate key
+     * @param existing The value already stored for the key, earlier in list order
+     * @param candidate The value of the later list element
+     * @return The value to store for the key
+     * @throws IllegalStateException if the policy rejects duplicates
+     */
+    V resolve(Object key, V existing, V candidate);
+
+    /**
+     * Keep the value of the first element.
+     *
+     * @param <V> Type of values
+     * @return The policy
+     */
+    static <V> DuplicateKeyPolicy<V> keepFirst() {
+        return (key, existing, candidate) -> existing;
+    }
+
+    /**
+     * Keep the value of the last element, like {@link java.util.Map#put(Object, Object)}.
+     *
+     * @param <V> Type of values
+     * @return The policy
+     */
+    static <V> DuplicateKeyPolicy<V> keepLast() {
+        return (key, existing, candidate) -> candidate;
+    }
+
+    /**
+     * Reject duplicate keys with an {@link IllegalStateException}.
+     *
+     * @param <V> Type of values
+     * @return The policy
+     */
+    static <V> DuplicateKeyPolicy<V> fail() {
+        return (key, existing, candidate) -> {
+            throw new IllegalStateException(format("Duplicate key [%s] for values [%s] and [%s]", key, existing, candidate));
+        };
+    }
+
+    /**
+     * Merge both values.
+     *
+     * @param merger Combines the existing and the candidate value
+     * @param <V> Type of values
+     * @return The policy
+     */
+    static <V> DuplicateKeyPolicy<V> merge(BinaryOperator<V> merger) {
+        Objects.requireNonNull(merger);
+        return (key, existing, candidate) -> merger.apply(existing, candidate);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A ListMapView is a read-only {@link java.util.Map} backed by a list and a
+ * {@link ListExtractor}. Nothing is copied when the view is created. Lists up to
+ * {@link #LINEAR_SCAN_THRESHOLD} elements are searched linearly, larger lists are indexed
+ * on the first lookup with an open-addressing table of two {@code int} arrays instead of
+ * one entry object per element. Like {@link CollectionUtil#asHashMap(List, ListExtractor)}
+ * the last element wins for duplicate keys, iteration follows the list order of the
+ * winning elements. The backing list must not be modified while the view is used.
+ *
+ * @param <K> Type of keys
+ * @param <V> Type of list elements and values
+ * @author Heiko Scherrer
+ * @see CollectionUtil#asMapView(List, ListExtractor)
+ */
+public final class ListMapView<K, V> extends AbstractMap<K, V> {
+
+    /** Lists up to this size are never indexed. */
+    public static final int LINEAR_SCAN_THRESHOLD = 16;
+    private final List<V> list;
+    private final ListExtractor<K, V> extractor;
+    private volatile Index index;
+    private Set<Entry<K, V>> entrySet;
+
+    ListMapView(List<V> list, ListExtractor<K, V> extractor) {
+        this.list = Objects.requireNonNull(list);
+        this.extractor = Objects.requireNonNull(extractor);
+    }
+
+    /**
+     * Check whether the open-addressing index has been built.
+     *
+     * @return {@literal true} if indexed
+     */
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public V get(Object key) {
+        int position = positionOf(key);
+        return position < 0 ? null : extractor.extractValue(elementAt(position));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return positionOf(key) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        if (list.size() > LINEAR_SCAN_THRESHOLD) {
+            return index().size;
+        }
+        int size = 0;
+        for (int i = 0; i < list.size(); i++) {
+            if (isWinner(i)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return list.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned set is read-only.
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private int positionOf(Object key) {
+        int size = list.size();
+        if (size > LINEAR_SCAN_THRESHOLD) {
+            return index().find(key);
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            if (Objects.equals(key, extractor.extractKey(list.get(i)))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isWinner(int position) {
+        return positionOf(extractor.extractKey(elementAt(position))) == position;
+    }
+
+    private V elementAt(int position) {
+        Index current = index;
+        return current == null ? list.get(position) : current.elementAt(position);
+    }
+
+    private Index index() {
+        Index current = index;
+        if (current == null) {
+            current = new Index();
+            index = current;
+        }
+        return current;
+    }
+
+    private static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Slots hold the list position plus one, {@literal 0} marks a free slot. The table is
+     * kept at most half full, so probe sequences stay short.
+     */
+    private final class Index {
+
+        private final Object[] elements;
+        private final int[] positions;
+        private final int[] hashes;
+        private final int mask;
+        private final int size;
+
+        Index() {
+            elements = list instanceof RandomAccess ? null : list.toArray();
+            int count = elements == null ? list.size() : elements.length;
+            int capacity = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+            positions = new int[capacity];
+            hashes = new int[capacity];
+            mask = capacity - 1;
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                K key = extractor.extractKey(elementAt(i));
+                int h = hash(key);
+                int slot = h & mask;
+                while (positions[slot] != 0 && !(hashes[slot] == h && Objects.equals(key, extractor.extractKey(elementAt(positions[slot] - 1))))) {
+                    slot = (slot + 1) & mask;
+                }
+                if (positions[slot] == 0) {
+                    hashes[slot] = h;
+                    distinct++;
+                }
+                positions[slot] = i + 1;
+            }
+            size = distinct;
+        }
+
+        @SuppressWarnings("unchecked")
+        V elementAt(int position) {
+            return elements == null ? list.get(position) : (V) elements[position];
+        }
+
+        int find(Object key) {
+            int h = hash(key);
+            int slot = h & mask;
+            while (positions[slot] != 0) {
+                if (hashes[slot] == h && Objects.equals(key, extractor.extractKey(elementAt(positions[slot] - 1)))) {
+                    return positions[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public int size() {
+            return ListMapView.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new Iterator<>() {
+                private int next = advance(0);
+
+                private int advance(int from) {
+                    int position = from;
+                    while (position < list.size() && !isWinner(position)) {
+                        position++;
+                    }
+                    return position;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < list.size();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    V element = elementAt(next);
+                    next = advance(next + 1);
+                    return new SimpleImmutableEntry<>(extractor.extractKey(element), extractor.extractValue(element));
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A LongHashSet is a set of primitive {@code long} values with open addressing in a
+ * single array. A LongHashSet is not thread-safe.
+ *
+ * @author Heiko Scherrer
+ */
+public class LongHashSet {
+
+    private long[] keys;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private boolean hasZero;
+
+    /**
+     * Create an empty LongHashSet.
+     */
+    public LongHashSet() {
+        this(0);
+    }
+
+    /**
+     * Create a LongHashSet that holds the expected number of values without resizing.
+     *
+     * @param expectedSize The expected number of values
+     */
+    public LongHashSet(int expectedSize) {
+        allocate(LongHashing.capacityFor(expectedSize));
+    }
+
+    /**
+     * Check whether a value is contained.
+     *
+     * @param value The value
+     * @return {@literal true} if contained
+     */
+    public boolean contains(long value) {
+        if (value == 0) {
+            return hasZero;
+        }
+        int slot = LongHashing.mix(value) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value The value
+     * @return {@literal true} if it was not contained before
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int slot = LongHashing.mix(value) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param value The value
+     * @return {@literal true} if it was contained
+     */
+    public boolean remove(long value) {
+        if (value == 0) {
+            if (!hasZero) {
+                return false;
+            }
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int slot = LongHashing.mix(value) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == value) {
+                shiftBack(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of values.
+     *
+     * @return The size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether the set is empty.
+     *
+     * @return {@literal true} if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all values, the capacity is kept.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        hasZero = false;
+        size = 0;
+    }
+
+    /**
+     * Call back for each value in no particular order. The set must not be modified
+     * meanwhile.
+     *
+     * @param consumer The callback
+     */
+    public void forEach(LongConsumer consumer) {
+        if (hasZero) {
+            consumer.accept(0);
+        }
+        for (long k : keys) {
+            if (k != 0) {
+                consumer.accept(k);
+            }
+        }
+    }
+
+    /**
+     * Copy the values into an array.
+     *
+     * @return The values in no particular order
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int i = 0;
+        if (hasZero) {
+            i++;
+        }
+        for (long k : keys) {
+            if (k != 0) {
+                result[i++] = k;
+            }
+        }
+        return result;
+    }
+
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int i = slot;
+        long k;
+        while ((k = keys[i = (i + 1) & mask]) != 0) {
+            if (LongHashing.canShift(k, gap, i, mask)) {
+                keys[gap] = k;
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = LongHashing.resizeAt(capacity);
+    }
+
+    private void rehash(int capacity) {
+        if (keys.length == LongHashing.MAX_CAPACITY) {
+            throw new IllegalStateException("LongHashSet cannot grow beyond its maximum capacity");
+        }
+        long[] oldKeys = keys;
+        allocate(capacity);
+        for (long k : oldKeys) {
+            if (k != 0) {
+                int slot = LongHashing.mix(k) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = k;
+            }
+        }
+    }
+}
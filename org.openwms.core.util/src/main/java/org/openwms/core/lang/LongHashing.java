@@ -0,0 +1,67 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+/**
+ * A LongHashing holds the hashing and sizing rules shared by the open-addressing
+ * collections with primitive {@code long} keys. Tables are powers of two, probed linearly
+ * and filled up to {@link #LOAD_FACTOR}. The key {@literal 0} marks a free slot and is
+ * stored aside by each collection.
+ *
+ * @author Heiko Scherrer
+ */
+final class LongHashing {
+
+    static final float LOAD_FACTOR = 0.75f;
+    static final int MIN_CAPACITY = 8;
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private LongHashing() {
+    }
+
+    /**
+     * Spread the bits of a key, sequential ids would otherwise cluster.
+     */
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+
+    static int capacityFor(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative");
+        }
+        long required = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (required > MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) required - 1) << 1);
+    }
+
+    static int resizeAt(int capacity) {
+        return capacity == MAX_CAPACITY ? MAX_CAPACITY - 1 : (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Whether the entry at {@code slot} may move back into {@code gap} after a removal,
+     * that is its home slot is not cyclically within {@code (gap, slot]}.
+     */
+    static boolean canShift(long key, int gap, int slot, int mask) {
+        int home = mix(key) & mask;
+        return ((slot - home) & mask) >= ((slot - gap) & mask);
+    }
+}
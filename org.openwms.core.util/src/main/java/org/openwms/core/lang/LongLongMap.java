@@ -0,0 +1,270 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import java.util.Arrays;
+
+/**
+ * A LongLongMap maps primitive {@code long} keys to {@code long} values with open
+ * addressing in two parallel arrays. Absent keys are reported with a missing value chosen
+ * at construction time. A LongLongMap is not thread-safe.
+ *
+ * @author Heiko Scherrer
+ */
+public class LongLongMap {
+
+    private final long missingValue;
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /**
+     * A callback for each mapping.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * Accept a mapping.
+         *
+         * @param key The key
+         * @param value The value
+         */
+        void accept(long key, long value);
+    }
+
+    /**
+     * Create an empty LongLongMap that reports absent keys with {@literal 0}.
+     */
+    public LongLongMap() {
+        this(0, 0);
+    }
+
+    /**
+     * Create a LongLongMap that holds the expected number of mappings without resizing.
+     *
+     * @param expectedSize The expected number of mappings
+     * @param missingValue Returned for absent keys
+     */
+    public LongLongMap(int expectedSize, long missingValue) {
+        this.missingValue = missingValue;
+        allocate(LongHashing.capacityFor(expectedSize));
+    }
+
+    /**
+     * Get the value returned for absent keys.
+     *
+     * @return The missing value
+     */
+    public long getMissingValue() {
+        return missingValue;
+    }
+
+    /**
+     * Get the value mapped to a key.
+     *
+     * @param key The key
+     * @return The value or the missing value
+     */
+    public long get(long key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        int slot = LongHashing.mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * Check whether a key is mapped.
+     *
+     * @param key The key
+     * @return {@literal true} if mapped
+     */
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        int slot = LongHashing.mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Map a key to a value.
+     *
+     * @param key The key
+     * @param value The value
+     * @return The previous value or the missing value
+     */
+    public long put(long key, long value) {
+        if (key == 0) {
+            long previous = hasZeroKey ? zeroValue : missingValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int slot = LongHashing.mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return missingValue;
+    }
+
+    /**
+     * Remove the mapping of a key.
+     *
+     * @param key The key
+     * @return The removed value or the missing value
+     */
+    public long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        int slot = LongHashing.mix(key) & mask;
+        long k;
+        while ((k = keys[slot]) != 0) {
+            if (k == key) {
+                long previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * Get the number of mappings.
+     *
+     * @return The size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether the map is empty.
+     *
+     * @return {@literal true} if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all mappings, the capacity is kept.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * Call back for each mapping in no particular order. The map must not be modified
+     * meanwhile.
+     *
+     * @param consumer The callback
+     */
+    public void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int i = slot;
+        long k;
+        while ((k = keys[i = (i + 1) & mask]) != 0) {
+            if (LongHashing.canShift(k, gap, i, mask)) {
+                keys[gap] = k;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = LongHashing.resizeAt(capacity);
+    }
+
+    private void rehash(int capacity) {
+        if (keys.length == LongHashing.MAX_CAPACITY) {
+            throw new IllegalStateException("LongLongMap cannot grow beyond its maximum capacity");
+        }
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long k = oldKeys[i];
+            if (k != 0) {
+                int slot = LongHashing.mix(k) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = k;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * A Partitions splits collections into chunks of bounded size, typically the parameters
+ * of {@code IN (...)} queries or {@code findAllById} calls. Padded chunks are filled up
+ * with the last element to a power of two size, so that a database sees only a few
+ * distinct statement shapes and can reuse prepared statements and plans. Repeating an
+ * element does not change the result of an {@code IN} clause.
+ *
+ * @author Heiko Scherrer
+ */
+public final class Partitions {
+
+    /** A chunk size most databases accept as number of bind parameters. */
+    public static final int DEFAULT_PARTITION_SIZE = 1000;
+    /** The smallest size a padded chunk is filled up to. */
+    public static final int MIN_BUCKET_SIZE = 8;
+
+    private Partitions() {
+    }
+
+    /**
+     * Split a collection into chunks of at most {@code size} elements, lists are split
+     * into views without copying.
+     *
+     * @param items The elements to split
+     * @param size The maximum chunk size
+     * @param <T> Type of elements
+     * @return The chunks in iteration order, an empty list for {@literal null}
+     */
+    public static <T> List<List<T>> partition(Collection<T> items, int size) {
+        checkSize(size);
+        if (items == null || items.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<T> list = items instanceof List ? (List<T>) items : new ArrayList<>(items);
+        List<List<T>> result = new ArrayList<>((list.size() + size - 1) / size);
+        for (int from = 0; from < list.size(); from += size) {
+            result.add(list.subList(from, Math.min(list.size(), from + size)));
+        }
+        return result;
+    }
+
+    /**
+     * Split a collection into chunks whose sizes are taken from a small set of buckets.
+     * All chunks but the last one have {@code size} elements, the last one is padded with
+     * its last element up to {@link #bucketSize(int, int)}.
+     *
+     * @param items The elements to split
+     * @param size The maximum chunk size
+     * @param <T> Type of elements
+     * @return The chunks in iteration order, an empty list for {@literal null}
+     */
+    public static <T> List<List<T>> partitionPadded(Collection<T> items, int size) {
+        List<List<T>> result = partition(items, size);
+        if (!result.isEmpty()) {
+            List<T> last = result.get(result.size() - 1);
+            int bucket = bucketSize(last.size(), size);
+            if (bucket > last.size()) {
+                List<T> padded = new ArrayList<>(bucket);
+                padded.addAll(last);
+                T filler = last.get(last.size() - 1);
+                while (padded.size() < bucket) {
+                    padded.add(filler);
+                }
+                result.set(result.size() - 1, padded);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the padded size of a chunk, the next power of two of at least
+     * {@link #MIN_BUCKET_SIZE}, limited to the maximum chunk size.
+     *
+     * @param count The number of elements in the chunk
+     * @param size The maximum chunk size
+     * @return The padded size
+     */
+    public static int bucketSize(int count, int size) {
+        checkSize(size);
+        if (count <= MIN_BUCKET_SIZE) {
+            return Math.min(MIN_BUCKET_SIZE, size);
+        }
+        return (int) Math.min(Long.highestOneBit(count - 1L) << 1, size);
+    }
+
+    /**
+     * Call a bulk operation for each padded chunk one after the other and merge the
+     * results.
+     *
+     * @param items The elements to split
+     * @param size The maximum chunk size
+     * @param batch The bulk operation, must tolerate repeated elements
+     * @param <T> Type of elements
+     * @param <R> Type of results
+     * @return All results in chunk order
+     */
+    public static <T, R> List<R> execute(Collection<T> items, int size, Function<List<T>, ? extends Collection<R>> batch) {
+        List<R> result = new ArrayList<>();
+        for (List<T> chunk : partitionPadded(items, size)) {
+            result.addAll(batch.apply(chunk));
+        }
+        return result;
+    }
+
+    /**
+     * Call a bulk operation for each padded chunk on an {@link Executor} and merge the
+     * results in chunk order. Each call runs on its own thread, so JPA repositories need a
+     * transaction per call and must not share an EntityManager.
+     *
+     * @param items The elements to split
+     * @param size The maximum chunk size
+     * @param batch The bulk operation, must tolerate repeated elements
+     * @param executor Runs the calls
+     * @param <T> Type of elements
+     * @param <R> Type of results
+     * @return All results in chunk order
+     */
+    public static <T, R> List<R> executeParallel(Collection<T> items, int size, Function<List<T>, ? extends Collection<R>> batch,
+            Executor executor) {
+        List<List<T>> chunks = partitionPadded(items, size);
+        if (chunks.size() < 2) {
+            return execute(items, size, batch);
+        }
+        List<CompletableFuture<? extends Collection<R>>> futures = new ArrayList<>(chunks.size());
+        for (List<T> chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(() -> batch.apply(chunk), executor));
+        }
+        List<R> result = new ArrayList<>();
+        try {
+            for (CompletableFuture<? extends Collection<R>> future : futures) {
+                result.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            futures.forEach(f -> f.cancel(false));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    private static void checkSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException(format("Partition size must be positive but is [%d]", size));
+        }
+    }
+}
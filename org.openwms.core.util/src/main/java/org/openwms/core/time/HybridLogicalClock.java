@@ -0,0 +1,175 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.time;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static java.lang.String.format;
+
+/**
+ * A HybridLogicalClock issues 64-bit timestamps that combine the physical time of the
+ * node with a logical counter. The upper 48 bits hold the milliseconds since the epoch
+ * and the lower 16 bits a counter that orders timestamps issued within the same
+ * millisecond or after a remote timestamp from the future has been seen. Timestamps are
+ * strictly monotonic per node and respect causality across nodes as long as each node
+ * calls {@link #update(long)} with the timestamps it receives. Hence, timestamps can be
+ * ordered with a single {@code long} comparison.
+ * <p>
+ * If the counter overflows within one millisecond the physical part is advanced by one
+ * millisecond, monotonicity is kept.
+ * </p>
+ *
+ * @author Heiko Scherrer
+ * @see TimeProvider
+ */
+public class HybridLogicalClock {
+
+    /** The number of bits used by the logical counter. */
+    public static final int LOGICAL_BITS = 16;
+    private static final long LOGICAL_MASK = (1L << LOGICAL_BITS) - 1;
+    /** Default of the maximum accepted offset of remote timestamps in milliseconds. */
+    public static final long DEFAULT_MAX_OFFSET_MILLIS = 60_000;
+
+    private final LongSupplier wallClock;
+    private final long maxOffsetMillis;
+    private final AtomicLong last = new AtomicLong();
+
+    /**
+     * Create a HybridLogicalClock that is based on the system clock.
+     */
+    public HybridLogicalClock() {
+        this(System::currentTimeMillis, DEFAULT_MAX_OFFSET_MILLIS);
+    }
+
+    /**
+     * Create a HybridLogicalClock that is based on the given TimeProvider.
+     *
+     * @param timeProvider Provides the physical time
+     */
+    public HybridLogicalClock(TimeProvider timeProvider) {
+        this(() -> timeProvider.now().toEpochMilli(), DEFAULT_MAX_OFFSET_MILLIS);
+    }
+
+    /**
+     * Create a HybridLogicalClock.
+     *
+     * @param wallClock Provides the physical time in milliseconds since the epoch
+     * @param maxOffsetMillis Remote timestamps with a physical time more than this ahead of
+     * the local physical time are rejected
+     */
+    public HybridLogicalClock(LongSupplier wallClock, long maxOffsetMillis) {
+        this.wallClock = wallClock;
+        this.maxOffsetMillis = maxOffsetMillis;
+    }
+
+    /**
+     * Issue a new timestamp for a local or send event.
+     *
+     * @return The timestamp, greater than all timestamps issued or seen before
+     */
+    public long now() {
+        long wall = wallClock.getAsLong();
+        while (true) {
+            long prev = last.get();
+            long next = wall > physicalTime(prev) ? encode(wall, 0) : prev + 1;
+            if (last.compareAndSet(prev, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Merge a timestamp received from a remote node into this clock and issue a new
+     * timestamp for the receive event.
+     *
+     * @param remote The timestamp received from the remote node
+     * @return The timestamp, greater than the remote and all local timestamps before
+     * @throws IllegalArgumentException In case the remote physical time is too far ahead
+     */
+    public long update(long remote) {
+        long wall = wallClock.getAsLong();
+        long remotePhysical = physicalTime(remote);
+        if (remotePhysical - wall > maxOffsetMillis) {
+            throw new IllegalArgumentException(format("Remote timestamp is [%d] ms ahead of local time, maximum offset is [%d] ms",
+                    remotePhysical - wall, maxOffsetMillis));
+        }
+        while (true) {
+            long prev = last.get();
+            long prevPhysical = physicalTime(prev);
+            long next;
+            if (wall > prevPhysical && wall > remotePhysical) {
+                next = encode(wall, 0);
+            } else {
+                next = Math.max(prev, remote) + 1;
+            }
+            if (last.compareAndSet(prev, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Return the last timestamp issued or seen by this clock without advancing it.
+     *
+     * @return The timestamp
+     */
+    public long current() {
+        return last.get();
+    }
+
+    /**
+     * Build a timestamp from its parts.
+     *
+     * @param physicalMillis Milliseconds since the epoch
+     * @param logical The logical counter
+     * @return The timestamp
+     */
+    public static long encode(long physicalMillis, int logical) {
+        return (physicalMillis << LOGICAL_BITS) | (logical & LOGICAL_MASK);
+    }
+
+    /**
+     * Extract the physical part of a timestamp.
+     *
+     * @param timestamp The timestamp
+     * @return Milliseconds since the epoch
+     */
+    public static long physicalTime(long timestamp) {
+        return timestamp >>> LOGICAL_BITS;
+    }
+
+    /**
+     * Extract the logical counter of a timestamp.
+     *
+     * @param timestamp The timestamp
+     * @return The counter
+     */
+    public static int logicalCounter(long timestamp) {
+        return (int) (timestamp & LOGICAL_MASK);
+    }
+
+    /**
+     * Convert the physical part of a timestamp into an Instant.
+     *
+     * @param timestamp The timestamp
+     * @return The Instant
+     */
+    public static Instant toInstant(long timestamp) {
+        return Instant.ofEpochMilli(physicalTime(timestamp));
+    }
+}
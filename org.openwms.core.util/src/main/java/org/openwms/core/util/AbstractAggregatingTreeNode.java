@@ -0,0 +1,137 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+/**
+ * An AbstractAggregatingTreeNode is a {@link TreeNodeImpl} that keeps an aggregate over the
+ * data of its whole subtree, e.g. the sum of stock quantities below a zone. Changes of
+ * data or children update the aggregates of all ancestors, the propagation stops as soon
+ * as an aggregate does not change. Reading an aggregate costs O(1).
+ * <p>
+ * All nodes of a tree must be of the same type and use the same aggregation. A node must
+ * be removed from its former parent before it is added to another one.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public abstract class AbstractAggregatingTreeNode<T> extends TreeNodeImpl<T> {
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Updates the aggregates of this node and its ancestors.
+     */
+    @Override
+    public void setData(T data) {
+        T former = getData();
+        super.setData(data);
+        dataChanged(former);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Updates the aggregates of this node and its ancestors. A replaced child is detached,
+     * so later changes of its subtree do not reach this node anymore.
+     *
+     * @throws IllegalArgumentException If the child does not use the same aggregation
+     */
+    @Override
+    public void addChild(Object identifier, TreeNode<T> child) {
+        if (!isCompatible(child)) {
+            throw new IllegalArgumentException("The child must be aggregated the same way as its parent: " + child);
+        }
+        TreeNode<T> former = getChild(identifier);
+        super.addChild(identifier, child);
+        if (former != child) {
+            if (former != null && former.getParent() == this) {
+                former.setParent(null);
+            }
+            childReplaced(former, child);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Updates the aggregates of this node and its ancestors.
+     */
+    @Override
+    public void removeChild(Object identifier) {
+        TreeNode<T> former = getChild(identifier);
+        super.removeChild(identifier);
+        if (former != null) {
+            childReplaced(former, null);
+        }
+    }
+
+    /**
+     * Check whether a node can become a child of this node.
+     *
+     * @param child The node
+     * @return {@literal true} if it has the same type and aggregation
+     */
+    protected abstract boolean isCompatible(TreeNode<T> child);
+
+    /**
+     * Recompute the aggregate of this node from its own data and the aggregates of its
+     * children.
+     *
+     * @return {@literal true} if the aggregate has changed
+     */
+    protected abstract boolean recompute();
+
+    /**
+     * Called after the data of this node has been replaced, propagates by default.
+     *
+     * @param former The former data
+     */
+    protected void dataChanged(T former) {
+        propagate();
+    }
+
+    /**
+     * Called after a child has been added, replaced or removed, propagates by default.
+     *
+     * @param former The former child or {@literal null}
+     * @param child The new child or {@literal null}
+     */
+    protected void childReplaced(TreeNode<T> former, TreeNode<T> child) {
+        propagate();
+    }
+
+    /**
+     * Recompute the aggregates from this node up to the root, stops at the first node whose
+     * aggregate does not change.
+     */
+    protected final void propagate() {
+        AbstractAggregatingTreeNode<T> node = this;
+        while (node != null && node.recompute()) {
+            node = node.parentNode();
+        }
+    }
+
+    /**
+     * Get the parent if it is aggregating as well.
+     *
+     * @return The parent or {@literal null}
+     */
+    protected final AbstractAggregatingTreeNode<T> parentNode() {
+        TreeNode<T> parent = getParent();
+        return parent instanceof AbstractAggregatingTreeNode ? (AbstractAggregatingTreeNode<T>) parent : null;
+    }
+}
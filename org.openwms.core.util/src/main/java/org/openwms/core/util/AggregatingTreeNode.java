@@ -0,0 +1,210 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An AggregatingTreeNode keeps an aggregate of any type over its subtree. A change of an
+ * {@link Aggregation#isInvertible() invertible} aggregation is propagated as a delta, a
+ * change of a {@link Aggregation#isSelective() selective} one only recombines the
+ * children of an ancestor whose aggregate is removed or worsened. Each ancestor is then
+ * updated in O(1). Other aggregations recombine the aggregates of the children on each
+ * level up to the root.
+ *
+ * @param <T> The type of node data
+ * @param <A> The type of aggregate
+ * @author Heiko Scherrer
+ * @see LongAggregatingTreeNode
+ * @see DoubleAggregatingTreeNode
+ */
+public class AggregatingTreeNode<T, A> extends AbstractAggregatingTreeNode<T> {
+
+    private final Aggregation<T, A> aggregation;
+    private A aggregate;
+
+    /**
+     * An associative Aggregation.
+     *
+     * @param <T> The type of node data
+     * @param <A> The type of aggregate
+     */
+    public interface Aggregation<T, A> extends Serializable {
+
+        /**
+         * Get the contribution of a single node.
+         *
+         * @param data The data of the node, may be {@literal null}
+         * @return The aggregate of the node alone
+         */
+        A valueOf(T data);
+
+        /**
+         * Combine two aggregates, must be associative.
+         *
+         * @param left One aggregate
+         * @param right Another aggregate
+         * @return The combined aggregate
+         */
+        A combine(A left, A right);
+
+        /**
+         * Check whether {@link #remove(Object, Object)} is supported.
+         *
+         * @return {@literal true} if so
+         */
+        default boolean isInvertible() {
+            return false;
+        }
+
+        /**
+         * Remove a part from an aggregate, the inverse of {@link #combine(Object, Object)}.
+         *
+         * @param aggregate The aggregate
+         * @param part The part to remove
+         * @return The aggregate without the part
+         */
+        default A remove(A aggregate, A part) {
+            throw new UnsupportedOperationException("Aggregation is not invertible");
+        }
+
+        /**
+         * Check whether {@link #combine(Object, Object)} always returns one of its
+         * arguments, like min and max do.
+         *
+         * @return {@literal true} if so
+         */
+        default boolean isSelective() {
+            return false;
+        }
+    }
+
+    /**
+     * Create an AggregatingTreeNode.
+     *
+     * @param data The data of the node
+     * @param aggregation The aggregation shared by all nodes of the tree
+     */
+    public AggregatingTreeNode(T data, Aggregation<T, A> aggregation) {
+        this.aggregation = Objects.requireNonNull(aggregation);
+        this.aggregate = aggregation.valueOf(null);
+        setData(data);
+    }
+
+    /**
+     * Get the aggregate over this node and all its descendants.
+     *
+     * @return The aggregate
+     */
+    public A getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isCompatible(TreeNode<T> child) {
+        return child instanceof AggregatingTreeNode && ((AggregatingTreeNode<?, ?>) child).aggregation == aggregation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean recompute() {
+        A result = combineAll();
+        if (Objects.equals(result, aggregate)) {
+            return false;
+        }
+        aggregate = result;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private A combineAll() {
+        A result = aggregation.valueOf(getData());
+        Iterator<Map.Entry<Object, TreeNode<T>>> children = getChildren();
+        while (children.hasNext()) {
+            result = aggregation.combine(result, ((AggregatingTreeNode<T, A>) children.next().getValue()).aggregate);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void dataChanged(T former) {
+        if (isIncremental()) {
+            applyDelta(aggregation.valueOf(former), aggregation.valueOf(getData()));
+        } else {
+            propagate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A missing child contributes the aggregate of a node without data.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void childReplaced(TreeNode<T> former, TreeNode<T> child) {
+        if (!isIncremental()) {
+            propagate();
+            return;
+        }
+        A removed = former == null ? aggregation.valueOf(null) : ((AggregatingTreeNode<T, A>) former).aggregate;
+        A added = child == null ? aggregation.valueOf(null) : ((AggregatingTreeNode<T, A>) child).aggregate;
+        applyDelta(removed, added);
+    }
+
+    private boolean isIncremental() {
+        return aggregation.isInvertible() || aggregation.isSelective();
+    }
+
+    /**
+     * Replace a part of the aggregate on each level up to the root. A selective
+     * aggregation only recombines the children of a node whose aggregate was the removed
+     * part and is not matched by the added one.
+     */
+    @SuppressWarnings("unchecked")
+    private void applyDelta(A removed, A added) {
+        AggregatingTreeNode<T, A> node = this;
+        while (node != null) {
+            A before = node.aggregate;
+            A after;
+            if (aggregation.isInvertible()) {
+                after = aggregation.combine(aggregation.remove(before, removed), added);
+            } else if (!Objects.equals(removed, before) || Objects.equals(aggregation.combine(added, removed), added)) {
+                after = aggregation.combine(before, added);
+            } else {
+                after = node.combineAll();
+            }
+            if (Objects.equals(after, before)) {
+                return;
+            }
+            node.aggregate = after;
+            removed = before;
+            added = after;
+            node = (AggregatingTreeNode<T, A>) node.parentNode();
+        }
+    }
+}
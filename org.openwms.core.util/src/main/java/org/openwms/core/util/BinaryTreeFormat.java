@@ -0,0 +1,418 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.lang.String.format;
+
+/**
+ * A BinaryTreeFormat writes and reads {@link TreeNode} hierarchies in a compact binary
+ * format without recursion and in a single pass over the tree. The stream starts with
+ * the magic bytes {@code OWTR}, the format version and the number of nodes, followed by
+ * one record per node in depth-first pre-order and an end marker. Each record holds the
+ * index of the parent, the identifier of the node within its parent and the node data.
+ * Identifiers and data are encoded with pluggable {@link Codec}s.
+ * <p>
+ * The number of nodes is patched into the header of files after the tree has been
+ * written. Streams carry {@link #UNKNOWN_COUNT} instead, because they cannot be
+ * rewound. Trees are read into a {@link CompactTree} that is sized upfront if the number
+ * of nodes is known, the node at index {@literal 0} is the root. Files can be read
+ * through a memory-mapped buffer.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class BinaryTreeFormat<T> {
+
+    /** The magic bytes {@code OWTR}. */
+    public static final int MAGIC = 0x4F575452;
+    /** The current format version. */
+    public static final short VERSION = 1;
+    /** The node count in the header of a stream that is written without knowing the size of the tree. */
+    public static final int UNKNOWN_COUNT = -1;
+    /** The parent index that marks the end of the records. */
+    private static final int END = -2;
+    /** Magic bytes and version precede the node count. */
+    private static final int COUNT_OFFSET = Integer.BYTES + Short.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte HAS_DATA = 1;
+
+    private final Codec<Object> identifierCodec;
+    private final Codec<T> dataCodec;
+
+    /**
+     * Encodes and decodes values of a type.
+     *
+     * @param <V> The type of value
+     */
+    public interface Codec<V> {
+
+        /**
+         * Write a value.
+         *
+         * @param value The value, never {@literal null}
+         * @param out The output to write to
+         * @throws IOException In case of write errors
+         */
+        void write(V value, DataOutput out) throws IOException;
+
+        /**
+         * Read a value.
+         *
+         * @param in The input to read from
+         * @return The value
+         * @throws IOException In case of read errors
+         */
+        V read(DataInput in) throws IOException;
+    }
+
+    /** A Codec for Strings in modified UTF-8. */
+    public static final Codec<String> STRING = new Codec<>() {
+        @Override
+        public void write(String value, DataOutput out) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    /** A Codec for Longs. */
+    public static final Codec<Long> LONG = new Codec<>() {
+        @Override
+        public void write(Long value, DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    /** A Codec for Integers. */
+    public static final Codec<Integer> INTEGER = new Codec<>() {
+        @Override
+        public void write(Integer value, DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    /**
+     * Create a BinaryTreeFormat.
+     *
+     * @param identifierCodec Encodes the child identifiers, that must all be of the type
+     * the codec expects
+     * @param dataCodec Encodes the node data
+     */
+    @SuppressWarnings("unchecked")
+    public BinaryTreeFormat(Codec<?> identifierCodec, Codec<T> dataCodec) {
+        this.identifierCodec = (Codec<Object>) Objects.requireNonNull(identifierCodec);
+        this.dataCodec = Objects.requireNonNull(dataCodec);
+    }
+
+    /**
+     * Write a tree to a file, an existing file is overwritten. The number of nodes is
+     * patched into the header afterwards.
+     *
+     * @param root The root of the tree
+     * @param file The file
+     * @throws IOException In case of write errors
+     */
+    public void write(TreeNode<T> root, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            OutputStream os = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            DataOutputStream out = new DataOutputStream(os);
+            int count = writeTree(root, out);
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).putInt(0, count);
+            while (header.hasRemaining()) {
+                channel.write(header, COUNT_OFFSET + header.position());
+            }
+        }
+    }
+
+    /**
+     * Write a tree. The header carries {@link #UNKNOWN_COUNT} as the number of nodes.
+     *
+     * @param root The root of the tree
+     * @param out The output to write to
+     * @throws IOException In case of write errors
+     */
+    public void write(TreeNode<T> root, DataOutput out) throws IOException {
+        writeTree(root, out);
+    }
+
+    private int writeTree(TreeNode<T> root, DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(UNKNOWN_COUNT);
+        writeRecord(CompactTree.NONE, null, root, out);
+        int next = 1;
+        Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[]{0, root.getChildren()});
+        while (!stack.isEmpty()) {
+            Object[] top = stack.peek();
+            @SuppressWarnings("unchecked")
+            Iterator<Map.Entry<Object, TreeNode<T>>> it = (Iterator<Map.Entry<Object, TreeNode<T>>>) top[1];
+            if (it.hasNext()) {
+                Map.Entry<Object, TreeNode<T>> entry = it.next();
+                if (entry.getKey() == null) {
+                    throw new IllegalArgumentException("Child identifiers must not be null");
+                }
+                if (next == Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Tree exceeds the format limit of nodes");
+                }
+                writeRecord((Integer) top[0], entry.getKey(), entry.getValue(), out);
+                stack.push(new Object[]{next++, entry.getValue().getChildren()});
+            } else {
+                stack.pop();
+            }
+        }
+        out.writeInt(END);
+        return next;
+    }
+
+    private void writeRecord(int parentIndex, Object identifier, TreeNode<T> node, DataOutput out) throws IOException {
+        out.writeInt(parentIndex);
+        if (identifier != null) {
+            identifierCodec.write(identifier, out);
+        }
+        T data = node.getData();
+        out.writeByte(data == null ? 0 : HAS_DATA);
+        if (data != null) {
+            dataCodec.write(data, out);
+        }
+    }
+
+    /**
+     * Read a tree from a memory-mapped file.
+     *
+     * @param file The file, up to 2 GB
+     * @return The tree
+     * @throws IOException In case of read errors or if the content is not valid
+     */
+    public CompactTree<T> read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(format("File [%s] exceeds the size that can be mapped at once", file));
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(new ByteBufferDataInput(buffer));
+        }
+    }
+
+    /**
+     * Read a tree.
+     *
+     * @param in The input to read from
+     * @return The tree
+     * @throws IOException In case of read errors or if the content is not valid
+     */
+    public CompactTree<T> read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Input is not in the binary tree format");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException(format("Unsupported binary tree format version [%d]", version));
+        }
+        int count = in.readInt();
+        if (count < 1 && count != UNKNOWN_COUNT) {
+            throw new IOException(format("Invalid node count [%d]", count));
+        }
+        CompactTree<T> tree = count == UNKNOWN_COUNT ? new CompactTree<>() : new CompactTree<>(count);
+        for (int i = 0; ; i++) {
+            int parentIndex = in.readInt();
+            if (parentIndex == END && i > 0) {
+                break;
+            }
+            if (i == 0 ? parentIndex != CompactTree.NONE : parentIndex < 0 || parentIndex >= i) {
+                throw new IOException(format("Invalid parent index [%d] of node [%d]", parentIndex, i));
+            }
+            Object identifier = i == 0 ? null : identifierCodec.read(in);
+            T data = in.readByte() == HAS_DATA ? dataCodec.read(in) : null;
+            tree.addNode(parentIndex, identifier, data);
+        }
+        if (count != UNKNOWN_COUNT && tree.size() != count) {
+            throw new IOException(format("Expected [%d] nodes but read [%d]", count, tree.size()));
+        }
+        return tree;
+    }
+
+    /**
+     * A ByteBufferDataInput reads from a {@link ByteBuffer} through the {@link DataInput}
+     * interface, in big-endian byte order like {@link DataOutputStream} writes.
+     */
+    public static class ByteBufferDataInput implements DataInput {
+
+        private final ByteBuffer buffer;
+
+        /**
+         * Create a ByteBufferDataInput that reads from the current position of the buffer.
+         *
+         * @param buffer The buffer
+         */
+        public ByteBufferDataInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void readFully(byte[] b) throws IOException {
+            readFully(b, 0, b.length);
+        }
+
+        @Override
+        public void readFully(byte[] b, int off, int len) throws IOException {
+            try {
+                buffer.get(b, off, len);
+            } catch (BufferUnderflowException e) {
+                throw new EOFException();
+            }
+        }
+
+        @Override
+        public int skipBytes(int n) {
+            int skip = Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + skip);
+            return skip;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            require(Byte.BYTES);
+            return buffer.get();
+        }
+
+        @Override
+        public int readUnsignedByte() throws IOException {
+            return readByte() & 0xFF;
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            require(Short.BYTES);
+            return buffer.getShort();
+        }
+
+        @Override
+        public int readUnsignedShort() throws IOException {
+            return readShort() & 0xFFFF;
+        }
+
+        @Override
+        public char readChar() throws IOException {
+            require(Character.BYTES);
+            return buffer.getChar();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            require(Float.BYTES);
+            return buffer.getFloat();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            require(Double.BYTES);
+            return buffer.getDouble();
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * Reads bytes up to a line terminator and maps each byte to one char.
+         */
+        @Override
+        public String readLine() {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            while (buffer.hasRemaining()) {
+                char c = (char) (buffer.get() & 0xFF);
+                if (c == '\n') {
+                    break;
+                }
+                if (c == '\r') {
+                    if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+                        buffer.get();
+                    }
+                    break;
+                }
+                sb.append(c);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public String readUTF() throws IOException {
+            return DataInputStream.readUTF(this);
+        }
+
+        private void require(int bytes) throws EOFException {
+            if (buffer.remaining() < bytes) {
+                throw new EOFException();
+            }
+        }
+    }
+}
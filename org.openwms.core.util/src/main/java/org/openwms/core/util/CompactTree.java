@@ -0,0 +1,663 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A CompactTree stores a whole tree in parallel primitive arrays instead of one object
+ * with a children map per node. Each node is an index into the arrays that hold the
+ * parent, first child, last child and next sibling index together with an index into a
+ * table of interned identifiers. Nodes are exposed as flyweight {@link TreeNode} views
+ * that only hold the tree and the index.
+ * <p>
+ * Children keep their insertion order. Looking up a child by identifier scans the
+ * siblings, which is cheap for the fan-out of typical hierarchies. Identifiers are
+ * interned in an open addressing table of {@code int} slots, so neither lookups nor
+ * inserts box. Nodes added from a foreign {@link TreeNode} implementation are copied
+ * into the tree. Adding a child with an identifier that exists already replaces the
+ * existing child at its position. Slots of removed nodes are not reclaimed, a removed
+ * node is detached and can be added again.
+ * </p>
+ * <p>
+ * The views support {@link TreeNode#setParent(TreeNode)} only to detach a node (with a
+ * {@literal null} argument), use {@link TreeNode#addChild(Object, TreeNode)} on a node of
+ * the same tree to attach it. Nodes of a CompactTree cannot be added to a foreign
+ * {@link TreeNode} implementation, their {@code setParent} rejects a foreign parent with
+ * an {@link IllegalArgumentException}. A CompactTree is not thread-safe.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class CompactTree<T> implements Serializable {
+
+    /** Index value that marks a missing node. */
+    public static final int NONE = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] parent;
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] nextSibling;
+    private int[] identifier;
+    private Object[] data;
+    private int size;
+    private Object[] identifiers;
+    private int identifierCount;
+    /** Open addressing table of identifier indices plus one, {@literal 0} marks a free slot. */
+    private transient int[] identifierTable;
+
+    /**
+     * Create an empty CompactTree.
+     */
+    public CompactTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty CompactTree with room for the expected number of nodes.
+     *
+     * @param expectedNodes The expected number of nodes
+     */
+    public CompactTree(int expectedNodes) {
+        int capacity = Math.max(expectedNodes, 1);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        nextSibling = new int[capacity];
+        identifier = new int[capacity];
+        data = new Object[capacity];
+        identifiers = new Object[Math.max(capacity / 8, DEFAULT_CAPACITY)];
+    }
+
+    /**
+     * Copy any tree into a new CompactTree.
+     *
+     * @param root The root of the tree to copy
+     * @param <T> The type of node data
+     * @return The copy, the root is at index {@literal 0}
+     */
+    public static <T> CompactTree<T> copyOf(TreeNode<T> root) {
+        CompactTree<T> tree = new CompactTree<>();
+        tree.copySubtree(NONE, null, root);
+        return tree;
+    }
+
+    /**
+     * Create a new detached node.
+     *
+     * @param data The node data
+     * @return The node view
+     */
+    public TreeNode<T> newNode(T data) {
+        return node(addNode(NONE, null, data));
+    }
+
+    /**
+     * Get the root node, that is the node at index {@literal 0}.
+     *
+     * @return The root or {@literal null} if the tree is empty
+     */
+    public TreeNode<T> getRoot() {
+        return size == 0 ? null : node(0);
+    }
+
+    /**
+     * Get a view of the node at the given index.
+     *
+     * @param index The node index
+     * @return The view
+     */
+    public TreeNode<T> node(int index) {
+        Objects.checkIndex(index, size);
+        return new Node<>(this, index);
+    }
+
+    /**
+     * Get the index of a node view of this tree.
+     *
+     * @param node The node
+     * @return The index or {@link #NONE} if the node does not belong to this tree
+     */
+    public int indexOf(TreeNode<T> node) {
+        if (node instanceof Node && ((Node<?>) node).tree == this) {
+            return ((Node<?>) node).index;
+        }
+        return NONE;
+    }
+
+    /**
+     * Get the number of nodes ever created in this tree, including detached ones.
+     *
+     * @return The number
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Append a new node as last child of a parent.
+     *
+     * @param parentIndex The index of the parent or {@link #NONE} for a detached node
+     * @param id The identifier of the node within its parent
+     * @param nodeData The node data
+     * @return The index of the new node
+     */
+    public int addNode(int parentIndex, Object id, T nodeData) {
+        ensureCapacity(size + 1);
+        int index = size++;
+        parent[index] = NONE;
+        firstChild[index] = NONE;
+        lastChild[index] = NONE;
+        nextSibling[index] = NONE;
+        identifier[index] = id == null ? NONE : intern(id);
+        data[index] = nodeData;
+        if (parentIndex != NONE) {
+            link(parentIndex, index);
+        }
+        return index;
+    }
+
+    /**
+     * Get the index of the parent.
+     *
+     * @param index The node index
+     * @return The parent index or {@link #NONE}
+     */
+    public int parentOf(int index) {
+        return parent[index];
+    }
+
+    /**
+     * Get the index of the first child.
+     *
+     * @param index The node index
+     * @return The first child index or {@link #NONE}
+     */
+    public int firstChildOf(int index) {
+        return firstChild[index];
+    }
+
+    /**
+     * Get the index of the next sibling.
+     *
+     * @param index The node index
+     * @return The next sibling index or {@link #NONE}
+     */
+    public int nextSiblingOf(int index) {
+        return nextSibling[index];
+    }
+
+    /**
+     * Get the identifier of a node within its parent.
+     *
+     * @param index The node index
+     * @return The identifier or {@literal null}
+     */
+    public Object identifierOf(int index) {
+        int id = identifier[index];
+        return id == NONE ? null : identifiers[id];
+    }
+
+    /**
+     * Get the data of a node.
+     *
+     * @param index The node index
+     * @return The data
+     */
+    @SuppressWarnings("unchecked")
+    public T dataOf(int index) {
+        return (T) data[index];
+    }
+
+    /**
+     * Find the index of the child with the given identifier.
+     *
+     * @param index The parent index
+     * @param id The identifier
+     * @return The child index or {@link #NONE}
+     */
+    public int childOf(int index, Object id) {
+        int interned = identifierIndexOf(id);
+        if (interned == NONE) {
+            return NONE;
+        }
+        for (int c = firstChild[index]; c != NONE; c = nextSibling[c]) {
+            if (identifier[c] == interned) {
+                return c;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Create a cursor that starts at the root.
+     *
+     * @return The cursor
+     * @throws IllegalStateException If the tree is empty
+     */
+    public TreeCursor<T> cursor() {
+        if (size == 0) {
+            throw new IllegalStateException("The tree is empty");
+        }
+        return cursor(0);
+    }
+
+    /**
+     * Create a cursor over the subtree of a node. The cursor moves along the index arrays
+     * and does not allocate anything while moving.
+     *
+     * @param index The index of the start node
+     * @return The cursor
+     */
+    public TreeCursor<T> cursor(int index) {
+        Objects.checkIndex(index, size);
+        return new Cursor<>(this, index);
+    }
+
+    /**
+     * Trim the internal arrays to the current number of nodes.
+     */
+    public void trimToSize() {
+        resize(Math.max(size, 1));
+        identifiers = Arrays.copyOf(identifiers, Math.max(identifierCount, 1));
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > parent.length) {
+            resize(Math.max(capacity, parent.length + (parent.length >> 1) + 1));
+        }
+    }
+
+    private void resize(int capacity) {
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        lastChild = Arrays.copyOf(lastChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        identifier = Arrays.copyOf(identifier, capacity);
+        data = Arrays.copyOf(data, capacity);
+    }
+
+    private static int slotOf(Object id, int mask) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int[] identifierTable() {
+        if (identifierTable == null) {
+            rehashIdentifiers(Math.max(Integer.highestOneBit(Math.max(identifierCount, 1)) << 2, DEFAULT_CAPACITY));
+        }
+        return identifierTable;
+    }
+
+    private void rehashIdentifiers(int capacity) {
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < identifierCount; i++) {
+            int slot = slotOf(identifiers[i], mask);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+        identifierTable = table;
+    }
+
+    private int identifierIndexOf(Object id) {
+        if (id == null) {
+            return NONE;
+        }
+        int[] table = identifierTable();
+        int mask = table.length - 1;
+        for (int slot = slotOf(id, mask); table[slot] != 0; slot = (slot + 1) & mask) {
+            if (identifiers[table[slot] - 1].equals(id)) {
+                return table[slot] - 1;
+            }
+        }
+        return NONE;
+    }
+
+    private int intern(Object id) {
+        int existing = identifierIndexOf(id);
+        if (existing != NONE) {
+            return existing;
+        }
+        if (identifierCount == identifiers.length) {
+            identifiers = Arrays.copyOf(identifiers, identifierCount + (identifierCount >> 1) + 1);
+        }
+        identifiers[identifierCount++] = id;
+        if (identifierCount * 2 > identifierTable.length) {
+            rehashIdentifiers(identifierTable.length << 1);
+        } else {
+            int mask = identifierTable.length - 1;
+            int slot = slotOf(id, mask);
+            while (identifierTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            identifierTable[slot] = identifierCount;
+        }
+        return identifierCount - 1;
+    }
+
+    private void link(int parentIndex, int child) {
+        parent[child] = parentIndex;
+        nextSibling[child] = NONE;
+        if (lastChild[parentIndex] == NONE) {
+            firstChild[parentIndex] = child;
+        } else {
+            nextSibling[lastChild[parentIndex]] = child;
+        }
+        lastChild[parentIndex] = child;
+    }
+
+    private void unlink(int child) {
+        int p = parent[child];
+        if (p == NONE) {
+            return;
+        }
+        int prev = NONE;
+        for (int c = firstChild[p]; c != child; c = nextSibling[c]) {
+            prev = c;
+        }
+        if (prev == NONE) {
+            firstChild[p] = nextSibling[child];
+        } else {
+            nextSibling[prev] = nextSibling[child];
+        }
+        if (lastChild[p] == child) {
+            lastChild[p] = prev;
+        }
+        parent[child] = NONE;
+        nextSibling[child] = NONE;
+    }
+
+    /**
+     * Put a detached node at the position of a linked one and detach the latter.
+     */
+    private void replace(int existing, int replacement) {
+        int p = parent[existing];
+        int prev = NONE;
+        for (int c = firstChild[p]; c != existing; c = nextSibling[c]) {
+            prev = c;
+        }
+        if (prev == NONE) {
+            firstChild[p] = replacement;
+        } else {
+            nextSibling[prev] = replacement;
+        }
+        if (lastChild[p] == existing) {
+            lastChild[p] = replacement;
+        }
+        parent[replacement] = p;
+        nextSibling[replacement] = nextSibling[existing];
+        parent[existing] = NONE;
+        nextSibling[existing] = NONE;
+    }
+
+    private boolean isAncestorOrSelf(int candidate, int index) {
+        for (int i = index; i != NONE; i = parent[i]) {
+            if (i == candidate) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addChild(int parentIndex, Object id, TreeNode<T> child) {
+        Objects.requireNonNull(id, "The identifier of a child must not be null");
+        int existing = childOf(parentIndex, id);
+        int childIndex = indexOf(child);
+        if (existing != NONE && existing == childIndex) {
+            return;
+        }
+        if (childIndex == NONE) {
+            childIndex = copySubtree(NONE, id, child);
+        } else {
+            if (isAncestorOrSelf(childIndex, parentIndex)) {
+                throw new IllegalArgumentException("A node cannot become a child of itself or of its descendants");
+            }
+            unlink(childIndex);
+            identifier[childIndex] = intern(id);
+        }
+        if (existing == NONE) {
+            link(parentIndex, childIndex);
+        } else {
+            replace(existing, childIndex);
+        }
+    }
+
+    private int copySubtree(int parentIndex, Object id, TreeNode<T> source) {
+        Deque<Object[]> stack = new ArrayDeque<>();
+        int rootIndex = addNode(parentIndex, id, source.getData());
+        stack.push(new Object[]{rootIndex, source.getChildren()});
+        while (!stack.isEmpty()) {
+            Object[] top = stack.peek();
+            @SuppressWarnings("unchecked")
+            Iterator<Map.Entry<Object, TreeNode<T>>> it = (Iterator<Map.Entry<Object, TreeNode<T>>>) top[1];
+            if (it.hasNext()) {
+                Map.Entry<Object, TreeNode<T>> entry = it.next();
+                int index = addNode((Integer) top[0], entry.getKey(), entry.getValue().getData());
+                stack.push(new Object[]{index, entry.getValue().getChildren()});
+            } else {
+                stack.pop();
+            }
+        }
+        return rootIndex;
+    }
+
+    /**
+     * A cursor that keeps the current index and the depth relative to its start.
+     */
+    private static final class Cursor<T> implements TreeCursor<T> {
+
+        private final CompactTree<T> tree;
+        private final int start;
+        private int index;
+        private int depth;
+
+        Cursor(CompactTree<T> tree, int start) {
+            this.tree = tree;
+            this.start = start;
+            this.index = start;
+        }
+
+        @Override
+        public T getData() {
+            return tree.dataOf(index);
+        }
+
+        @Override
+        public Object getIdentifier() {
+            return index == start ? null : tree.identifierOf(index);
+        }
+
+        @Override
+        public TreeNode<T> getNode() {
+            return tree.node(index);
+        }
+
+        @Override
+        public int getDepth() {
+            return depth;
+        }
+
+        @Override
+        public boolean toParent() {
+            if (index == start) {
+                return false;
+            }
+            index = tree.parent[index];
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean toFirstChild() {
+            int child = tree.firstChild[index];
+            if (child == NONE) {
+                return false;
+            }
+            index = child;
+            depth++;
+            return true;
+        }
+
+        @Override
+        public boolean toNextSibling() {
+            if (index == start) {
+                return false;
+            }
+            int sibling = tree.nextSibling[index];
+            if (sibling == NONE) {
+                return false;
+            }
+            index = sibling;
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            index = start;
+            depth = 0;
+        }
+    }
+
+    /**
+     * A flyweight view on one node of a CompactTree.
+     */
+    private static final class Node<T> implements TreeNode<T> {
+
+        private final CompactTree<T> tree;
+        private final int index;
+
+        Node(CompactTree<T> tree, int index) {
+            this.tree = tree;
+            this.index = index;
+        }
+
+        @Override
+        public T getData() {
+            return tree.dataOf(index);
+        }
+
+        @Override
+        public void setData(T data) {
+            tree.data[index] = data;
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return tree.firstChild[index] == NONE;
+        }
+
+        @Override
+        public Iterator<Map.Entry<Object, TreeNode<T>>> getChildren() {
+            return new Iterator<>() {
+                private int next = tree.firstChild[index];
+
+                @Override
+                public boolean hasNext() {
+                    return next != NONE;
+                }
+
+                @Override
+                public Map.Entry<Object, TreeNode<T>> next() {
+                    if (next == NONE) {
+                        throw new NoSuchElementException();
+                    }
+                    int current = next;
+                    next = tree.nextSibling[current];
+                    return new AbstractMap.SimpleImmutableEntry<>(tree.identifierOf(current), new Node<>(tree, current));
+                }
+            };
+        }
+
+        @Override
+        public TreeNode<T> getChild(Object id) {
+            int child = tree.childOf(index, id);
+            return child == NONE ? null : new Node<>(tree, child);
+        }
+
+        @Override
+        public void addChild(Object identifier, TreeNode<T> child) {
+            tree.addChild(index, identifier, child);
+        }
+
+        @Override
+        public void removeChild(Object id) {
+            int child = tree.childOf(index, id);
+            if (child != NONE) {
+                tree.unlink(child);
+            }
+        }
+
+        @Override
+        public TreeNode<T> getParent() {
+            int p = tree.parent[index];
+            return p == NONE ? null : new Node<>(tree, p);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @throws IllegalArgumentException If {@code parent} belongs to another tree, like a
+         * foreign {@link TreeNode} that adds this node as child (copy the node with
+         * {@link CompactTree#copyOf(TreeNode)} instead), or if it is not the current parent
+         * of this node (use {@link TreeNode#addChild(Object, TreeNode)} to move it)
+         */
+        @Override
+        public void setParent(TreeNode<T> parent) {
+            if (parent == null) {
+                tree.unlink(index);
+            } else if (tree.indexOf(parent) == NONE) {
+                throw new IllegalArgumentException("A node of a CompactTree cannot be attached to a node of another tree, copy it with CompactTree.copyOf");
+            } else if (tree.parent[index] != tree.indexOf(parent)) {
+                throw new IllegalArgumentException("Use addChild on the parent to attach a node of a CompactTree");
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node<?> other = (Node<?>) o;
+            return tree == other.tree && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(tree) * 31 + index;
+        }
+
+        @Override
+        public String toString() {
+            return "CompactTree.Node[index=" + index + ", data=" + tree.data[index] + "]";
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A ConcurrentTreeNode is a thread-safe {@link TreeNode}. Children are kept in a
+ * {@link ConcurrentHashMap} and parent links are volatile, so lookups and iterations never
+ * block. Structural modifications lock only the affected parent node, modifications of
+ * different subtrees proceed in parallel.
+ * <p>
+ * Re-parenting a node, either with {@link #moveTo(ConcurrentTreeNode, Object)} or with
+ * {@link #addChild(Object, TreeNode)} of a node that has a parent or children already,
+ * locks the moved node, the old and the new parent and all nodes on the paths from both
+ * parents up to their lowest common ancestor. Locks are taken in the order of their
+ * identity hash codes, so concurrent moves neither deadlock nor form a cycle, and moves
+ * within different subtrees do not block each other. Attaching a leaf without a parent
+ * locks only the new parent and the leaf.
+ * </p>
+ * <p>
+ * Iterators returned by {@link #getChildren()} are weakly consistent, they never throw a
+ * {@link java.util.ConcurrentModificationException} and may or may not reflect
+ * concurrent modifications. Children are not kept in insertion order. Use
+ * {@link #moveTo(ConcurrentTreeNode, Object)} to re-parent a node atomically.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class ConcurrentTreeNode<T> implements TreeNode<T> {
+
+    /** Orders lock acquisition of nodes with the same identity hash code. */
+    private static final Object TIE_LOCK = new Object();
+    private static final Comparator<Object> LOCK_ORDER = Comparator.comparingInt(System::identityHashCode);
+
+    private volatile T data;
+    private volatile TreeNode<T> parent;
+    private volatile Object identifier;
+    private final ConcurrentHashMap<Object, TreeNode<T>> childrenMap = new ConcurrentHashMap<>();
+
+    /**
+     * Create a node without data.
+     */
+    public ConcurrentTreeNode() {
+    }
+
+    /**
+     * Create a node.
+     *
+     * @param data The data of the node
+     */
+    public ConcurrentTreeNode(T data) {
+        this.data = data;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T getData() {
+        return data;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setData(T data) {
+        this.data = data;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isLeaf() {
+        return childrenMap.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The iterator is weakly consistent and does not support removal.
+     */
+    @Override
+    public Iterator<Map.Entry<Object, TreeNode<T>>> getChildren() {
+        return Collections.unmodifiableMap(childrenMap).entrySet().iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeNode<T> getChild(Object id) {
+        return childrenMap.get(id);
+    }
+
+    /**
+     * Get the number of children.
+     *
+     * @return The number
+     */
+    public int getChildCount() {
+        return childrenMap.size();
+    }
+
+    /**
+     * Get the identifier this node is registered with at its parent.
+     *
+     * @return The identifier or {@literal null} if the node is a root
+     */
+    public Object getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A former child with the same identifier is detached. A ConcurrentTreeNode that has a
+     * parent already is moved like with {@link #moveTo(ConcurrentTreeNode, Object)}.
+     *
+     * @throws IllegalArgumentException If the child is this node or one of its ancestors
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void addChild(Object identifier, TreeNode<T> child) {
+        if (child instanceof ConcurrentTreeNode) {
+            adopt(identifier, (ConcurrentTreeNode<T>) child);
+            return;
+        }
+        synchronized (this) {
+            attach(identifier, child);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeChild(Object id) {
+        synchronized (this) {
+            TreeNode<T> removed = childrenMap.remove(id);
+            if (removed != null) {
+                detach(removed);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeNode<T> getParent() {
+        return parent;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setParent(TreeNode<T> parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Move this node with its subtree to a new parent. Removal from the current parent and
+     * insertion into the new parent happen while both parents and the paths up to their
+     * lowest common ancestor are locked, concurrent modifications of either parent wait
+     * for the move to complete. Readers may briefly find the node under both parents.
+     *
+     * @param newParent The new parent
+     * @param newIdentifier The identifier at the new parent, a former child with the same
+     * identifier is detached
+     * @throws IllegalArgumentException If the new parent is this node or one of its
+     * descendants
+     */
+    public void moveTo(ConcurrentTreeNode<T> newParent, Object newIdentifier) {
+        newParent.adopt(newIdentifier, this);
+    }
+
+    private void adopt(Object newIdentifier, ConcurrentTreeNode<T> child) {
+        boolean done;
+        do {
+            Set<Object> locks = lockSet(child);
+            Object[] ordered = locks.toArray();
+            Arrays.sort(ordered, LOCK_ORDER);
+            done = hasTies(ordered)
+                    ? lockAll(new Object[]{TIE_LOCK}, 0, () -> lockAll(ordered, 0, () -> moveIn(locks, child, newIdentifier)))
+                    : lockAll(ordered, 0, () -> moveIn(locks, child, newIdentifier));
+        } while (!done);
+    }
+
+    /**
+     * Collect the nodes to lock for moving a child below this node. Read without locks and
+     * validated again once all of them are held.
+     */
+    private Set<Object> lockSet(ConcurrentTreeNode<T> child) {
+        Set<Object> locks = Collections.newSetFromMap(new IdentityHashMap<>());
+        locks.add(this);
+        locks.add(child);
+        TreeNode<T> oldParent = child.parent;
+        if (oldParent != null) {
+            locks.add(oldParent);
+        }
+        if (child.childrenMap.isEmpty()) {
+            // a leaf is no ancestor of this node and cannot become one while it is locked
+            return locks;
+        }
+        Set<Object> oldAncestors = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (TreeNode<T> n = oldParent; n != null; n = n.getParent()) {
+            oldAncestors.add(n);
+        }
+        TreeNode<T> common = null;
+        for (TreeNode<T> n = this; n != null && common == null; n = n.getParent()) {
+            locks.add(n);
+            if (oldAncestors.contains(n)) {
+                common = n;
+            }
+        }
+        for (TreeNode<T> n = oldParent; n != null && n != common; n = n.getParent()) {
+            locks.add(n);
+        }
+        return locks;
+    }
+
+    private boolean moveIn(Set<Object> locks, ConcurrentTreeNode<T> child, Object newIdentifier) {
+        if (!locks.containsAll(lockSet(child))) {
+            // the tree has changed before all locks were taken
+            return false;
+        }
+        for (TreeNode<T> n = this; n != null; n = n.getParent()) {
+            if (n == child) {
+                throw new IllegalArgumentException("Cannot move a node below itself or one of its descendants");
+            }
+        }
+        TreeNode<T> oldParent = child.parent;
+        Object oldIdentifier = child.identifier;
+        attach(newIdentifier, child);
+        if (oldParent instanceof ConcurrentTreeNode) {
+            if (oldParent != this || !newIdentifier.equals(oldIdentifier)) {
+                ((ConcurrentTreeNode<T>) oldParent).childrenMap.remove(oldIdentifier, child);
+            }
+        } else if (oldParent != null && oldParent.getChild(oldIdentifier) == child) {
+            oldParent.removeChild(oldIdentifier);
+            child.parent = this;
+        }
+        return true;
+    }
+
+    private static boolean hasTies(Object[] ordered) {
+        for (int i = 1; i < ordered.length; i++) {
+            if (System.identityHashCode(ordered[i - 1]) == System.identityHashCode(ordered[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean lockAll(Object[] locks, int i, BooleanSupplier action) {
+        if (i == locks.length) {
+            return action.getAsBoolean();
+        }
+        synchronized (locks[i]) {
+            return lockAll(locks, i + 1, action);
+        }
+    }
+
+    private void attach(Object identifier, TreeNode<T> child) {
+        child.setParent(this);
+        if (child instanceof ConcurrentTreeNode) {
+            ((ConcurrentTreeNode<T>) child).identifier = identifier;
+        }
+        TreeNode<T> former = childrenMap.put(identifier, child);
+        if (former != null && former != child) {
+            detach(former);
+        }
+    }
+
+    private void detach(TreeNode<T> child) {
+        if (child.getParent() == this) {
+            child.setParent(null);
+            if (child instanceof ConcurrentTreeNode) {
+                ((ConcurrentTreeNode<T>) child).identifier = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A DoubleAggregatingTreeNode keeps a primitive {@code double} aggregate over its subtree
+ * without boxing. For invertible aggregations like sums a change is propagated as a
+ * delta, so each ancestor is updated in O(1). Selective aggregations like min and max are
+ * updated in O(1) per ancestor as well, only an ancestor whose extreme value is removed
+ * or worsened recombines the aggregates of its children. Other aggregations recombine the
+ * aggregates of the children on each level.
+ * <p>
+ * Rounding errors of the deltas accumulate over many updates of a sum. Use a
+ * {@link LongAggregatingTreeNode} over the smallest unit where sums must be exact.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class DoubleAggregatingTreeNode<T> extends AbstractAggregatingTreeNode<T> {
+
+    private final DoubleAggregation<T> aggregation;
+    private double aggregate;
+
+    /**
+     * An associative DoubleAggregation.
+     *
+     * @param <T> The type of node data
+     */
+    public interface DoubleAggregation<T> extends Serializable {
+
+        /**
+         * Get the contribution of a single node.
+         *
+         * @param data The data of the node, may be {@literal null}
+         * @return The aggregate of the node alone
+         */
+        double valueOf(T data);
+
+        /**
+         * Combine two aggregates, must be associative.
+         *
+         * @param left One aggregate
+         * @param right Another aggregate
+         * @return The combined aggregate
+         */
+        double combine(double left, double right);
+
+        /**
+         * Check whether {@link #remove(double, double)} is supported.
+         *
+         * @return {@literal true} if so
+         */
+        default boolean isInvertible() {
+            return false;
+        }
+
+        /**
+         * Remove a part from an aggregate, the inverse of {@link #combine(double, double)}.
+         *
+         * @param aggregate The aggregate
+         * @param part The part to remove
+         * @return The aggregate without the part
+         */
+        default double remove(double aggregate, double part) {
+            throw new UnsupportedOperationException("Aggregation is not invertible");
+        }
+
+        /**
+         * Check whether {@link #combine(double, double)} always returns one of its
+         * arguments, like min and max do.
+         *
+         * @return {@literal true} if so
+         */
+        default boolean isSelective() {
+            return false;
+        }
+
+        /**
+         * Sum up a value of each node.
+         *
+         * @param value Extracts the value of a node
+         * @param <T> The type of node data
+         * @return The aggregation
+         */
+        static <T> DoubleAggregation<T> sum(SerializableToDoubleFunction<T> value) {
+            return new DoubleAggregation<>() {
+                @Override
+                public double valueOf(T data) {
+                    return data == null ? 0 : value.applyAsDouble(data);
+                }
+
+                @Override
+                public double combine(double left, double right) {
+                    return left + right;
+                }
+
+                @Override
+                public boolean isInvertible() {
+                    return true;
+                }
+
+                @Override
+                public double remove(double aggregate, double part) {
+                    return aggregate - part;
+                }
+            };
+        }
+
+        /**
+         * Find the minimum value, nodes without data are ignored.
+         *
+         * @param value Extracts the value of a node
+         * @param <T> The type of node data
+         * @return The aggregation
+         */
+        static <T> DoubleAggregation<T> min(SerializableToDoubleFunction<T> value) {
+            return new DoubleAggregation<>() {
+                @Override
+                public double valueOf(T data) {
+                    return data == null ? Double.POSITIVE_INFINITY : value.applyAsDouble(data);
+                }
+
+                @Override
+                public double combine(double left, double right) {
+                    return Math.min(left, right);
+                }
+
+                @Override
+                public boolean isSelective() {
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Find the maximum value, nodes without data are ignored.
+         *
+         * @param value Extracts the value of a node
+         * @param <T> The type of node data
+         * @return The aggregation
+         */
+        static <T> DoubleAggregation<T> max(SerializableToDoubleFunction<T> value) {
+            return new DoubleAggregation<>() {
+                @Override
+                public double valueOf(T data) {
+                    return data == null ? Double.NEGATIVE_INFINITY : value.applyAsDouble(data);
+                }
+
+                @Override
+                public double combine(double left, double right) {
+                    return Math.max(left, right);
+                }
+
+                @Override
+                public boolean isSelective() {
+                    return true;
+                }
+            };
+        }
+    }
+
+    /**
+     * A serializable {@link java.util.function.ToDoubleFunction}.
+     *
+     * @param <T> The type of input
+     */
+    @FunctionalInterface
+    public interface SerializableToDoubleFunction<T> extends Serializable {
+
+        /**
+         * Apply the function.
+         *
+         * @param value The input
+         * @return The result
+         */
+        double applyAsDouble(T value);
+    }
+
+    /**
+     * Create a DoubleAggregatingTreeNode.
+     *
+     * @param data The data of the node
+     * @param aggregation The aggregation shared by all nodes of the tree
+     */
+    public DoubleAggregatingTreeNode(T data, DoubleAggregation<T> aggregation) {
+        this.aggregation = Objects.requireNonNull(aggregation);
+        this.aggregate = aggregation.valueOf(null);
+        setData(data);
+    }
+
+    /**
+     * Get the aggregate over this node and all its descendants.
+     *
+     * @return The aggregate
+     */
+    public double getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isCompatible(TreeNode<T> child) {
+        return child instanceof DoubleAggregatingTreeNode && ((DoubleAggregatingTreeNode<?>) child).aggregation == aggregation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean recompute() {
+        double result = combineAll();
+        if (Double.compare(result, aggregate) == 0) {
+            return false;
+        }
+        aggregate = result;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private double combineAll() {
+        double result = aggregation.valueOf(getData());
+        Iterator<Map.Entry<Object, TreeNode<T>>> children = getChildren();
+        while (children.hasNext()) {
+            result = aggregation.combine(result, ((DoubleAggregatingTreeNode<T>) children.next().getValue()).aggregate);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void dataChanged(T former) {
+        if (isIncremental()) {
+            applyDelta(aggregation.valueOf(former), aggregation.valueOf(getData()));
+        } else {
+            propagate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A missing child contributes the aggregate of a node without data.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void childReplaced(TreeNode<T> former, TreeNode<T> child) {
+        if (!isIncremental()) {
+            propagate();
+            return;
+        }
+        double removed = former == null ? aggregation.valueOf(null) : ((DoubleAggregatingTreeNode<T>) former).aggregate;
+        double added = child == null ? aggregation.valueOf(null) : ((DoubleAggregatingTreeNode<T>) child).aggregate;
+        applyDelta(removed, added);
+    }
+
+    private boolean isIncremental() {
+        return aggregation.isInvertible() || aggregation.isSelective();
+    }
+
+    /**
+     * Replace a part of the aggregate on each level up to the root. A selective
+     * aggregation only recombines the children of a node whose aggregate was the removed
+     * part and is not matched by the added one.
+     */
+    @SuppressWarnings("unchecked")
+    private void applyDelta(double removed, double added) {
+        DoubleAggregatingTreeNode<T> node = this;
+        while (node != null) {
+            double before = node.aggregate;
+            double after;
+            if (aggregation.isInvertible()) {
+                after = aggregation.combine(aggregation.remove(before, removed), added);
+            } else if (Double.compare(removed, before) != 0 || Double.compare(aggregation.combine(added, removed), added) == 0) {
+                after = aggregation.combine(before, added);
+            } else {
+                after = node.combineAll();
+            }
+            if (Double.compare(after, before) == 0) {
+                return;
+            }
+            node.aggregate = after;
+            removed = before;
+            added = after;
+            node = (DoubleAggregatingTreeNode<T>) node.parentNode();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An EulerTourIndex answers ancestor and lowest common ancestor queries over a
+ * {@link TreeNode} hierarchy in constant time. Each node is numbered in depth-first
+ * pre-order and gets the interval of pre-order numbers of its subtree, a node is an
+ * ancestor of another one if the interval contains the number of the other. The lowest
+ * common ancestor is found with a range minimum query over the node depths in pre-order,
+ * answered by a sparse table built in O(n log n).
+ * <p>
+ * Adding nodes through {@link #addChild(TreeNode, Object, TreeNode)} or calling
+ * {@link #invalidate()} after a direct modification of the tree marks the index as stale,
+ * it is rebuilt with the next query. Removing a subtree through
+ * {@link #removeChild(TreeNode, Object)} keeps the index valid for all remaining nodes and
+ * does not require a rebuild. Queries may be called concurrently, modifications must be
+ * synchronized with all other users of the tree.
+ * </p>
+ * <p>
+ * Nodes are looked up by {@code equals}, so flyweight nodes like those of a
+ * {@link CompactTree} are found regardless of the instance passed in.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class EulerTourIndex<T> {
+
+    private final TreeNode<T> root;
+    private volatile Snapshot<T> snapshot;
+
+    /**
+     * Create an index, it is built with the first query.
+     *
+     * @param root The root of the tree
+     */
+    public EulerTourIndex(TreeNode<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * Check whether a node is a proper ancestor of another node.
+     *
+     * @param ancestor The potential ancestor
+     * @param descendant The potential descendant
+     * @return {@literal true} if so, {@literal false} if both are the same node
+     * @throws IllegalArgumentException If one of the nodes is not part of the tree
+     */
+    public boolean isAncestor(TreeNode<T> ancestor, TreeNode<T> descendant) {
+        Snapshot<T> s = current();
+        int a = s.indexOf(ancestor);
+        int d = s.indexOf(descendant);
+        return a < d && d <= s.last[a];
+    }
+
+    /**
+     * Find the lowest common ancestor of two nodes.
+     *
+     * @param first One node
+     * @param second Another node
+     * @return The deepest node that is an ancestor of or the same as both nodes
+     * @throws IllegalArgumentException If one of the nodes is not part of the tree
+     */
+    public TreeNode<T> lowestCommonAncestor(TreeNode<T> first, TreeNode<T> second) {
+        Snapshot<T> s = current();
+        int a = s.indexOf(first);
+        int b = s.indexOf(second);
+        if (a == b) {
+            return first;
+        }
+        if (a > b) {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+        if (b <= s.last[a]) {
+            return s.nodes[a];
+        }
+        return s.nodes[s.parent[s.minDepth(a + 1, b)]];
+    }
+
+    /**
+     * Get the depth of a node, the root has depth {@literal 0}.
+     *
+     * @param node The node
+     * @return The depth
+     * @throws IllegalArgumentException If the node is not part of the tree
+     */
+    public int depthOf(TreeNode<T> node) {
+        Snapshot<T> s = current();
+        return s.depth[s.indexOf(node)];
+    }
+
+    /**
+     * Get the number of indexed nodes.
+     *
+     * @return The number
+     */
+    public int size() {
+        return current().size;
+    }
+
+    /**
+     * Mark the index as stale, it is rebuilt with the next query.
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    /**
+     * Add a child to the tree and mark the index as stale.
+     *
+     * @param parent The parent
+     * @param identifier The identifier of the child
+     * @param child The child
+     */
+    public void addChild(TreeNode<T> parent, Object identifier, TreeNode<T> child) {
+        parent.addChild(identifier, child);
+        invalidate();
+    }
+
+    /**
+     * Remove a child from the tree and drop its subtree from the index. Ancestor and
+     * lowest common ancestor queries of the remaining nodes are not affected by the
+     * removal of a subtree, so the index stays valid.
+     *
+     * @param parent The parent
+     * @param identifier The identifier of the child
+     */
+    public void removeChild(TreeNode<T> parent, Object identifier) {
+        TreeNode<T> child = parent.getChild(identifier);
+        if (child == null) {
+            return;
+        }
+        parent.removeChild(identifier);
+        Snapshot<T> s = snapshot;
+        if (s != null) {
+            Integer index = s.indices.get(child);
+            if (index != null && s.alive[index]) {
+                for (int i = index; i <= s.last[index]; i++) {
+                    s.alive[i] = false;
+                }
+                s.size -= s.last[index] - index + 1;
+            }
+        }
+    }
+
+    private Snapshot<T> current() {
+        Snapshot<T> s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                s = snapshot;
+                if (s == null) {
+                    s = Snapshot.build(root);
+                    snapshot = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    private static final class Snapshot<T> {
+
+        private final Map<TreeNode<T>, Integer> indices;
+        private final TreeNode<T>[] nodes;
+        private final int[] parent;
+        private final int[] last;
+        private final int[] depth;
+        private final boolean[] alive;
+        private final int[][] sparse;
+        private volatile int size;
+
+        private Snapshot(List<TreeNode<T>> order, int[] parent, int[] depth) {
+            int n = order.size();
+            this.nodes = toArray(order);
+            this.parent = parent;
+            this.depth = depth;
+            this.size = n;
+            this.alive = new boolean[n];
+            this.last = new int[n];
+            this.indices = new HashMap<>(n * 4 / 3 + 1);
+            for (int i = 0; i < n; i++) {
+                indices.put(nodes[i], i);
+                alive[i] = true;
+                last[i] = i;
+            }
+            // children follow their parent in pre-order, so one backward pass propagates
+            for (int i = n - 1; i > 0; i--) {
+                last[parent[i]] = Math.max(last[parent[i]], last[i]);
+            }
+            int levels = 32 - Integer.numberOfLeadingZeros(Math.max(n, 1));
+            this.sparse = new int[levels][];
+            sparse[0] = new int[n];
+            for (int i = 0; i < n; i++) {
+                sparse[0][i] = i;
+            }
+            for (int k = 1; k < levels; k++) {
+                int half = 1 << (k - 1);
+                int length = n - (1 << k) + 1;
+                int[] prev = sparse[k - 1];
+                int[] row = new int[Math.max(length, 0)];
+                for (int i = 0; i < length; i++) {
+                    int l = prev[i];
+                    int r = prev[i + half];
+                    row[i] = depth[l] <= depth[r] ? l : r;
+                }
+                sparse[k] = row;
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static <T> TreeNode<T>[] toArray(List<TreeNode<T>> nodes) {
+            return nodes.toArray(new TreeNode[0]);
+        }
+
+        static <T> Snapshot<T> build(TreeNode<T> root) {
+            List<TreeNode<T>> order = new ArrayList<>();
+            List<Integer> parents = new ArrayList<>();
+            List<Integer> depths = new ArrayList<>();
+            order.add(root);
+            parents.add(-1);
+            depths.add(0);
+            Deque<Object[]> stack = new ArrayDeque<>();
+            stack.push(new Object[]{0, root.getChildren()});
+            while (!stack.isEmpty()) {
+                Object[] top = stack.peek();
+                @SuppressWarnings("unchecked")
+                Iterator<Map.Entry<Object, TreeNode<T>>> it = (Iterator<Map.Entry<Object, TreeNode<T>>>) top[1];
+                if (it.hasNext()) {
+                    TreeNode<T> child = it.next().getValue();
+                    int parentIndex = (Integer) top[0];
+                    int index = order.size();
+                    order.add(child);
+                    parents.add(parentIndex);
+                    depths.add(depths.get(parentIndex) + 1);
+                    stack.push(new Object[]{index, child.getChildren()});
+                } else {
+                    stack.pop();
+                }
+            }
+            return new Snapshot<>(order, parents.stream().mapToInt(Integer::intValue).toArray(),
+                    depths.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        int indexOf(TreeNode<T> node) {
+            Integer index = indices.get(node);
+            if (index == null || !alive[index]) {
+                throw new IllegalArgumentException("The node is not part of the indexed tree: " + node);
+            }
+            return index;
+        }
+
+        /**
+         * Find the position of the minimum depth within [from, to].
+         */
+        int minDepth(int from, int to) {
+            int k = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+            int l = sparse[k][from];
+            int r = sparse[k][to - (1 << k) + 1];
+            return depth[l] <= depth[r] ? l : r;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A HierarchicalTimingWheel holds a large number of pending timers and hands each task
+ * to an expiry handler when its deadline has passed. Timers are kept in a hierarchy of
+ * wheels, each wheel has {@code 2^wheelBits} slots of doubly linked lists, where each
+ * slot of a higher wheel spans one full rotation of the wheel below. Scheduling and
+ * cancelling a timer costs O(1), timers are cascaded down to the lower wheels when time
+ * advances. Deadlines are accurate to one tick.
+ * <p>
+ * One daemon thread advances the wheel. The expiry handler is called on that thread and
+ * should therefore hand off expensive work to an executor. Timers beyond the range of
+ * all wheels are parked in the last slot of the top wheel and re-evaluated on each
+ * rotation.
+ * </p>
+ *
+ * @param <T> The type of task
+ * @author Heiko Scherrer
+ */
+public class HierarchicalTimingWheel<T> implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HierarchicalTimingWheel.class);
+    /** Default tick duration in milliseconds. */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    private static final int DEFAULT_WHEEL_BITS = 8;
+    private static final int DEFAULT_LEVELS = 4;
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickMillis;
+    private final int wheelBits;
+    private final int levels;
+    private final int mask;
+    private final Node<T>[] slots;
+    private final Consumer<T> expiryHandler;
+    private final Object lock = new Object();
+    private final long startMillis;
+    private final Thread worker;
+    private long currentTick;
+    private int size;
+    private volatile boolean running = true;
+
+    /**
+     * A handle to a scheduled task.
+     *
+     * @param <T> The type of task
+     */
+    public interface Timeout<T> {
+
+        /** @return The scheduled task */
+        T getTask();
+
+        /** @return The deadline in milliseconds since the epoch */
+        long getDeadline();
+
+        /**
+         * Cancel the timer.
+         *
+         * @return {@literal true} if cancelled, {@literal false} if already expired or cancelled
+         */
+        boolean cancel();
+
+        /** @return Whether the timer has been cancelled */
+        boolean isCancelled();
+
+        /** @return Whether the timer has expired and the task was handed to the expiry handler */
+        boolean isExpired();
+    }
+
+    /**
+     * Create a HierarchicalTimingWheel with a tick of {@value #DEFAULT_TICK_MILLIS} ms and
+     * four wheels of 256 slots each.
+     *
+     * @param name The name of the worker thread
+     * @param expiryHandler Called with each task when its deadline has passed
+     */
+    public HierarchicalTimingWheel(String name, Consumer<T> expiryHandler) {
+        this(name, expiryHandler, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_BITS, DEFAULT_LEVELS);
+    }
+
+    /**
+     * Create a HierarchicalTimingWheel.
+     *
+     * @param name The name of the worker thread
+     * @param expiryHandler Called with each task when its deadline has passed
+     * @param tickMillis The duration of one tick in milliseconds
+     * @param wheelBits Each wheel has 2^wheelBits slots
+     * @param levels The number of wheels
+     */
+    public HierarchicalTimingWheel(String name, Consumer<T> expiryHandler, long tickMillis, int wheelBits, int levels) {
+        if (tickMillis <= 0 || wheelBits <= 0 || levels <= 0 || (long) wheelBits * levels > 62) {
+            throw new IllegalArgumentException(String.format("Invalid timing wheel dimensions, tick [%d], bits [%d], levels [%d]",
+                    tickMillis, wheelBits, levels));
+        }
+        this.expiryHandler = Objects.requireNonNull(expiryHandler);
+        this.tickMillis = tickMillis;
+        this.wheelBits = wheelBits;
+        this.levels = levels;
+        this.mask = (1 << wheelBits) - 1;
+        this.slots = newSlots(levels << wheelBits);
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Node<>(null, 0, 0, this);
+        }
+        this.startMillis = System.currentTimeMillis();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Schedule a task after a delay.
+     *
+     * @param task The task
+     * @param delay The delay
+     * @return The handle to cancel the timer
+     */
+    public Timeout<T> schedule(T task, Duration delay) {
+        return schedule(task, System.currentTimeMillis() + delay.toMillis());
+    }
+
+    /**
+     * Schedule a task at a point in time.
+     *
+     * @param task The task
+     * @param deadline The point in time
+     * @return The handle to cancel the timer
+     */
+    public Timeout<T> schedule(T task, Instant deadline) {
+        return schedule(task, deadline.toEpochMilli());
+    }
+
+    /**
+     * Schedule a task at a point in time.
+     *
+     * @param task The task
+     * @param deadlineMillis Milliseconds since the epoch, deadlines in the past expire with
+     * the next tick
+     * @return The handle to cancel the timer
+     * @throws IllegalStateException If the wheel has been closed
+     */
+    public Timeout<T> schedule(T task, long deadlineMillis) {
+        long ticks = Math.max(0, deadlineMillis - startMillis);
+        Node<T> node = new Node<>(task, deadlineMillis, (ticks + tickMillis - 1) / tickMillis, this);
+        synchronized (lock) {
+            if (!running) {
+                throw new IllegalStateException("Timing wheel has been closed");
+            }
+            if (size == 0) {
+                // The worker may have stopped ticking while idle, catch up first
+                currentTick = Math.max(currentTick, elapsedTicks());
+                lock.notifyAll();
+            }
+            place(node, currentTick + 1);
+            size++;
+        }
+        return node;
+    }
+
+    /**
+     * Get the number of pending timers.
+     *
+     * @return The number
+     */
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * Stop the worker thread and return all tasks that have not expired yet.
+     *
+     * @return The pending tasks
+     */
+    public List<T> stop() {
+        List<T> result = new ArrayList<>();
+        synchronized (lock) {
+            running = false;
+            for (Node<T> head : slots) {
+                for (Node<T> n = head.next; n != head; ) {
+                    Node<T> next = n.next;
+                    result.add(n.task);
+                    n.prev = n.next = null;
+                    n = next;
+                }
+                head.next = head.prev = head;
+            }
+            size = 0;
+            lock.notifyAll();
+        }
+        worker.interrupt();
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Stops the worker thread and drops all pending timers.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Node<T>[] newSlots(int count) {
+        return new Node[count];
+    }
+
+    private long elapsedTicks() {
+        return (System.currentTimeMillis() - startMillis) / tickMillis;
+    }
+
+    private void place(Node<T> node, long earliestTick) {
+        long deadline = Math.max(node.deadlineTick, earliestTick);
+        long delta = deadline - currentTick;
+        int level = 0;
+        while (level < levels && (delta >>> (wheelBits * (level + 1))) != 0) {
+            level++;
+        }
+        int index;
+        if (level == levels) {
+            // beyond the range of all wheels: park in the slot of the top wheel that is cascaded last
+            level = levels - 1;
+            index = (int) ((currentTick >>> (wheelBits * level)) - 1) & mask;
+        } else {
+            index = (int) (deadline >>> (wheelBits * level)) & mask;
+        }
+        Node<T> head = slots[(level << wheelBits) + index];
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    private void unlink(Node<T> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = node.next = null;
+    }
+
+    private void tick(List<Node<T>> expired) {
+        currentTick++;
+        for (int level = levels - 1; level > 0; level--) {
+            long lowerMask = (1L << (wheelBits * level)) - 1;
+            if ((currentTick & lowerMask) == 0) {
+                Node<T> head = slots[(level << wheelBits) + ((int) (currentTick >>> (wheelBits * level)) & mask)];
+                Node<T> n = head.next;
+                head.next = head.prev = head;
+                while (n != head) {
+                    Node<T> next = n.next;
+                    place(n, currentTick);
+                    n = next;
+                }
+            }
+        }
+        Node<T> head = slots[(int) currentTick & mask];
+        for (Node<T> n = head.next; n != head; ) {
+            Node<T> next = n.next;
+            unlink(n);
+            n.state = EXPIRED;
+            size--;
+            expired.add(n);
+            n = next;
+        }
+    }
+
+    private void run() {
+        List<Node<T>> expired = new ArrayList<>();
+        while (running) {
+            try {
+                long nextTickMillis;
+                synchronized (lock) {
+                    while (running && size == 0) {
+                        lock.wait();
+                    }
+                    long target = elapsedTicks();
+                    while (currentTick < target && size > 0) {
+                        tick(expired);
+                    }
+                    if (size == 0) {
+                        currentTick = Math.max(currentTick, target);
+                    }
+                    nextTickMillis = startMillis + (currentTick + 1) * tickMillis;
+                }
+                for (Node<T> n : expired) {
+                    try {
+                        expiryHandler.accept(n.task);
+                    } catch (Exception e) {
+                        LOGGER.error("Expiry handler failed for task [{}]: {}", n.task, e.getMessage(), e);
+                    }
+                }
+                expired.clear();
+                long sleep = nextTickMillis - System.currentTimeMillis();
+                if (sleep > 0) {
+                    Thread.sleep(sleep);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Node<T> implements Timeout<T> {
+
+        private final T task;
+        private final long deadlineMillis;
+        private final long deadlineTick;
+        private final HierarchicalTimingWheel<T> wheel;
+        private Node<T> prev = this;
+        private Node<T> next = this;
+        private int state = PENDING;
+
+        Node(T task, long deadlineMillis, long deadlineTick, HierarchicalTimingWheel<T> wheel) {
+            this.task = task;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+            this.wheel = wheel;
+        }
+
+        @Override
+        public T getTask() {
+            return task;
+        }
+
+        @Override
+        public long getDeadline() {
+            return deadlineMillis;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (wheel.lock) {
+                if (state != PENDING || prev == null) {
+                    return false;
+                }
+                wheel.unlink(this);
+                wheel.size--;
+                state = CANCELLED;
+                return true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (wheel.lock) {
+                return state == CANCELLED;
+            }
+        }
+
+        @Override
+        public boolean isExpired() {
+            synchronized (wheel.lock) {
+                return state == EXPIRED;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Timeout[task=" + task + ", deadline=" + deadlineMillis + "]";
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+/**
+ * A HierarchyExtractor extracts the identity and the parent reference from a flat row of a
+ * hierarchy.
+ *
+ * @param <K> Type of identifier
+ * @param <V> Type of row
+ * @author Heiko Scherrer
+ * @see TreeBuilder
+ */
+public interface HierarchyExtractor<K, V> {
+
+    /**
+     * From a row extract the identifier.
+     *
+     * @param row The row
+     * @return The identifier, never {@literal null}
+     */
+    K extractId(V row);
+
+    /**
+     * From a row extract the identifier of the parent.
+     *
+     * @param row The row
+     * @return The identifier of the parent or {@literal null} for a root
+     */
+    K extractParentId(V row);
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.ToIntFunction;
+
+/**
+ * A LazyTreeCache bounds the memory held by the loaded children of {@link LazyTreeNode}s.
+ * Every node with loaded children has a weight, by default the number of its children
+ * plus one, that is evaluated again when children are added or removed. When the total
+ * weight exceeds the limit, cold nodes are unloaded together with all loaded nodes below
+ * them, nodes with pending modifications are skipped.
+ * <p>
+ * Recency is tracked with the CLOCK approximation of LRU: reading the children of a node
+ * only sets a flag on the node and takes no lock. When the cache looks for a node to
+ * unload, it visits the nodes in the order they were loaded, a node that has been read
+ * since the last visit gets a second chance and is moved to the end.
+ * </p>
+ * <p>
+ * With a prefetch {@link Executor}, the children of all siblings of a freshly loaded node
+ * are loaded in the background.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class LazyTreeCache<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LazyTreeCache.class);
+
+    private final LazyTreeNode.ChildLoader<T> loader;
+    private final long maxWeight;
+    private final ToIntFunction<LazyTreeNode<T>> weigher;
+    private final Executor prefetchExecutor;
+    private final Map<LazyTreeNode<T>, Integer> weights = new LinkedHashMap<>();
+    private long totalWeight;
+    private long evictions;
+
+    /**
+     * Create a LazyTreeCache without prefetching.
+     *
+     * @param loader Loads the children of a node
+     * @param maxWeight The weight limit
+     */
+    public LazyTreeCache(LazyTreeNode.ChildLoader<T> loader, long maxWeight) {
+        this(loader, maxWeight, null, null);
+    }
+
+    /**
+     * Create a LazyTreeCache.
+     *
+     * @param loader Loads the children of a node
+     * @param maxWeight The weight limit
+     * @param weigher Computes the weight of a node with loaded children, {@literal null}
+     * to count the children
+     * @param prefetchExecutor Loads siblings in the background, {@literal null} to disable
+     * prefetching
+     */
+    public LazyTreeCache(LazyTreeNode.ChildLoader<T> loader, long maxWeight, ToIntFunction<LazyTreeNode<T>> weigher, Executor prefetchExecutor) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("The weight limit must be positive");
+        }
+        this.loader = Objects.requireNonNull(loader);
+        this.maxWeight = maxWeight;
+        this.weigher = weigher == null ? n -> sizeOf(n) + 1 : weigher;
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    /**
+     * Create a root node backed by this cache.
+     *
+     * @param data The data of the root
+     * @return The root
+     */
+    public LazyTreeNode<T> root(T data) {
+        return new LazyTreeNode<>(data, this);
+    }
+
+    /**
+     * Get the total weight of all nodes with loaded children.
+     *
+     * @return The weight
+     */
+    public synchronized long getWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Get the number of nodes with loaded children.
+     *
+     * @return The number
+     */
+    public synchronized int size() {
+        return weights.size();
+    }
+
+    /**
+     * Get the number of nodes unloaded so far, including their loaded descendants.
+     *
+     * @return The number
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    LazyTreeNode.ChildLoader<T> getLoader() {
+        return loader;
+    }
+
+    /**
+     * Attach a deserialized tree to this cache. The loaded nodes of the tree are
+     * registered, nodes that are modified stay pinned.
+     *
+     * @param root The root of the deserialized tree
+     */
+    public void attach(LazyTreeNode<T> root) {
+        List<LazyTreeNode<T>> nodes = new ArrayList<>();
+        Deque<LazyTreeNode<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            LazyTreeNode<T> current = stack.pop();
+            nodes.add(current);
+            Map<Object, TreeNode<T>> children = current.loadedChildren();
+            if (children != null) {
+                for (TreeNode<T> child : children.values()) {
+                    if (child instanceof LazyTreeNode) {
+                        stack.push((LazyTreeNode<T>) child);
+                    }
+                }
+            }
+        }
+        // children precede their parents in reverse order, so subtree counts are complete
+        Map<LazyTreeNode<T>, Integer> pins = new IdentityHashMap<>(nodes.size());
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            LazyTreeNode<T> node = nodes.get(i);
+            int count = pins.getOrDefault(node, 0) + (node.isModified() ? 1 : 0);
+            node.attach(this, count);
+            if (i > 0 && node.getParent() instanceof LazyTreeNode) {
+                pins.merge((LazyTreeNode<T>) node.getParent(), count, Integer::sum);
+            }
+        }
+        for (LazyTreeNode<T> node : nodes) {
+            admit(node);
+        }
+    }
+
+    synchronized void admit(LazyTreeNode<T> node) {
+        if (!node.isLoaded() || weights.containsKey(node)) {
+            return;
+        }
+        int weight = weigher.applyAsInt(node);
+        weights.put(node, weight);
+        totalWeight += weight;
+        evictOverLimit(node);
+    }
+
+    /**
+     * Evaluate the weight of a node again after its children have changed.
+     */
+    synchronized void reweigh(LazyTreeNode<T> node) {
+        Integer former = weights.get(node);
+        if (former == null) {
+            return;
+        }
+        int weight = weigher.applyAsInt(node);
+        if (weight != former) {
+            weights.put(node, weight);
+            totalWeight += weight - former;
+            evictOverLimit(node);
+        }
+    }
+
+    private void evictOverLimit(LazyTreeNode<T> keep) {
+        while (totalWeight > maxWeight) {
+            LazyTreeNode<T> victim = nextVictim(keep);
+            if (victim == null) {
+                LOGGER.debug("Weight limit [{}] exceeded but all loaded nodes are in use or modified", maxWeight);
+                return;
+            }
+            evict(victim);
+        }
+    }
+
+    /**
+     * Advance the clock hand until a node is found that has not been read since the last
+     * visit, is not pinned and is no ancestor of the node to keep, visited nodes are moved
+     * to the end.
+     */
+    private LazyTreeNode<T> nextVictim(LazyTreeNode<T> keep) {
+        for (int visits = 2 * weights.size(); visits > 0; visits--) {
+            Iterator<Map.Entry<LazyTreeNode<T>, Integer>> it = weights.entrySet().iterator();
+            Map.Entry<LazyTreeNode<T>, Integer> head = it.next();
+            LazyTreeNode<T> candidate = head.getKey();
+            if (!candidate.clearReferenced() && !candidate.isPinned() && !isAncestorOrSelf(candidate, keep)) {
+                return candidate;
+            }
+            Integer weight = head.getValue();
+            it.remove();
+            weights.put(candidate, weight);
+        }
+        return null;
+    }
+
+    void prefetchSiblings(LazyTreeNode<T> node) {
+        if (prefetchExecutor == null || !(node.getParent() instanceof LazyTreeNode)) {
+            return;
+        }
+        Map<Object, TreeNode<T>> siblings = ((LazyTreeNode<T>) node.getParent()).loadedChildren();
+        if (siblings == null) {
+            return;
+        }
+        for (TreeNode<T> sibling : siblings.values()) {
+            if (sibling != node && sibling instanceof LazyTreeNode && !((LazyTreeNode<T>) sibling).isLoaded()) {
+                try {
+                    prefetchExecutor.execute(((LazyTreeNode<T>) sibling)::prefetch);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.debug("Prefetching rejected: {}", e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    private static <T> int sizeOf(LazyTreeNode<T> node) {
+        Map<Object, TreeNode<T>> children = node.loadedChildren();
+        return children == null ? 0 : children.size();
+    }
+
+    private static boolean isAncestorOrSelf(TreeNode<?> candidate, TreeNode<?> node) {
+        for (TreeNode<?> n = node; n != null; n = n.getParent()) {
+            if (n == candidate) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unload a node with all loaded nodes below it, the walk is proportional to the number
+     * of unloaded nodes.
+     */
+    private void evict(LazyTreeNode<T> victim) {
+        List<LazyTreeNode<T>> subtree = loadedSubtree(victim);
+        for (int i = subtree.size() - 1; i >= 0; i--) {
+            LazyTreeNode<T> loaded = subtree.get(i);
+            if (loaded.unloadIfClean()) {
+                Integer weight = weights.remove(loaded);
+                if (weight != null) {
+                    totalWeight -= weight;
+                }
+                evictions++;
+            }
+        }
+    }
+
+    private List<LazyTreeNode<T>> loadedSubtree(LazyTreeNode<T> node) {
+        List<LazyTreeNode<T>> result = new ArrayList<>();
+        Deque<LazyTreeNode<T>> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            LazyTreeNode<T> current = stack.pop();
+            result.add(current);
+            Map<Object, TreeNode<T>> children = current.loadedChildren();
+            if (children != null) {
+                for (TreeNode<T> child : children.values()) {
+                    if (child instanceof LazyTreeNode && ((LazyTreeNode<T>) child).isLoaded()) {
+                        stack.push((LazyTreeNode<T>) child);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A LazyTreeNode is a {@link TreeNode} that loads its children on first access through a
+ * {@link ChildLoader}. Nodes with loaded children are registered in a
+ * {@link LazyTreeCache} that unloads the children of cold nodes when its weight limit is
+ * exceeded, they are loaded again on the next access.
+ * <p>
+ * A node that has been modified through {@link #setData(Object)}, {@link #addChild(Object,
+ * TreeNode)} or {@link #removeChild(Object)} is pinned, neither the node nor any of its
+ * ancestors is unloaded until {@link #markClean()} is called, e.g. after the changes have
+ * been written to the database. Each node counts the modified nodes of its subtree, so
+ * the cache checks a node in constant time. Iterators over the children work on a
+ * snapshot.
+ * </p>
+ * <p>
+ * The cache is not serialized, a deserialized tree must be attached to a cache with
+ * {@link LazyTreeCache#attach(LazyTreeNode)} before children are loaded.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class LazyTreeNode<T> implements TreeNode<T> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<LazyTreeNode> PINS = AtomicIntegerFieldUpdater.newUpdater(LazyTreeNode.class, "pins");
+
+    private transient volatile LazyTreeCache<T> cache;
+    private volatile T data;
+    private volatile TreeNode<T> parent;
+    private volatile Map<Object, TreeNode<T>> childrenMap;
+    private volatile boolean modified;
+    /** The number of modified nodes in the subtree of this node, including itself. */
+    private transient volatile int pins;
+    /** Set on each access, cleared by the cache when it looks for nodes to unload. */
+    private transient volatile boolean referenced;
+
+    /**
+     * Loads the children of a node.
+     *
+     * @param <T> The type of node data
+     */
+    @FunctionalInterface
+    public interface ChildLoader<T> {
+
+        /**
+         * Load the children of a node, e.g. with a repository query for the key held in the
+         * node data.
+         *
+         * @param node The node to load the children for
+         * @return The data of the children by their identifiers in child order, never
+         * {@literal null}
+         */
+        Map<Object, T> loadChildren(LazyTreeNode<T> node);
+    }
+
+    /**
+     * Create a node, usually the root of a lazily loaded tree.
+     *
+     * @param data The data of the node
+     * @param cache The cache for the loaded children
+     */
+    public LazyTreeNode(T data, LazyTreeCache<T> cache) {
+        this.data = data;
+        this.cache = Objects.requireNonNull(cache);
+    }
+
+    /**
+     * Check whether the children have been loaded.
+     *
+     * @return {@literal true} if loaded
+     */
+    public boolean isLoaded() {
+        return childrenMap != null;
+    }
+
+    /**
+     * Check whether this node has been modified since it was loaded or marked clean.
+     *
+     * @return {@literal true} if modified
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Mark this node as clean, so that it can be unloaded again.
+     */
+    public synchronized void markClean() {
+        if (modified) {
+            modified = false;
+            pin(this, -1);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T getData() {
+        return data;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Marks this node as modified.
+     */
+    @Override
+    public void setData(T data) {
+        markModified();
+        this.data = data;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Loads the children if necessary.
+     */
+    @Override
+    public boolean isLeaf() {
+        return children().isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Loads the children if necessary. The iterator works on a snapshot and does not
+     * support removal.
+     */
+    @Override
+    public Iterator<Map.Entry<Object, TreeNode<T>>> getChildren() {
+        return children().entrySet().iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Loads the children if necessary.
+     */
+    @Override
+    public TreeNode<T> getChild(Object id) {
+        return children().get(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Loads the children if necessary and marks this node as modified.
+     */
+    @Override
+    public void addChild(Object identifier, TreeNode<T> child) {
+        while (true) {
+            children();
+            synchronized (this) {
+                Map<Object, TreeNode<T>> current = childrenMap;
+                if (current != null) {
+                    markModified();
+                    Map<Object, TreeNode<T>> copy = new LinkedHashMap<>(current);
+                    pin(this, pinsOf(child) - pinsOf(copy.put(identifier, child)));
+                    child.setParent(this);
+                    childrenMap = Collections.unmodifiableMap(copy);
+                    break;
+                }
+            }
+        }
+        cache().reweigh(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Loads the children if necessary and marks this node as modified.
+     */
+    @Override
+    public void removeChild(Object id) {
+        while (true) {
+            children();
+            synchronized (this) {
+                Map<Object, TreeNode<T>> current = childrenMap;
+                if (current != null) {
+                    if (!current.containsKey(id)) {
+                        return;
+                    }
+                    markModified();
+                    Map<Object, TreeNode<T>> copy = new LinkedHashMap<>(current);
+                    TreeNode<T> removed = copy.remove(id);
+                    pin(this, -pinsOf(removed));
+                    removed.setParent(null);
+                    childrenMap = Collections.unmodifiableMap(copy);
+                    break;
+                }
+            }
+        }
+        cache().reweigh(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeNode<T> getParent() {
+        return parent;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setParent(TreeNode<T> parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Load the children in the background without prefetching further siblings.
+     */
+    void prefetch() {
+        if (childrenMap == null) {
+            load(false);
+        }
+    }
+
+    /**
+     * Drop the loaded children unless the subtree has been modified, called by the cache
+     * only.
+     *
+     * @return {@literal true} if unloaded
+     */
+    synchronized boolean unloadIfClean() {
+        if (pins > 0) {
+            return false;
+        }
+        childrenMap = null;
+        return true;
+    }
+
+    /**
+     * Check whether this node or a node below it has been modified.
+     *
+     * @return {@literal true} if pinned
+     */
+    boolean isPinned() {
+        return pins > 0;
+    }
+
+    /**
+     * Check and clear whether this node has been accessed since the last call.
+     *
+     * @return {@literal true} if accessed
+     */
+    boolean clearReferenced() {
+        boolean result = referenced;
+        if (result) {
+            referenced = false;
+        }
+        return result;
+    }
+
+    /**
+     * Bind this node to a cache after deserialization, called by the cache only.
+     *
+     * @param cache The cache
+     * @param subtreePins The number of modified nodes in the subtree
+     */
+    void attach(LazyTreeCache<T> cache, int subtreePins) {
+        this.cache = cache;
+        this.pins = subtreePins;
+    }
+
+    /**
+     * Get the loaded children without loading them.
+     *
+     * @return The children or {@literal null}
+     */
+    Map<Object, TreeNode<T>> loadedChildren() {
+        return childrenMap;
+    }
+
+    private Map<Object, TreeNode<T>> children() {
+        Map<Object, TreeNode<T>> current = childrenMap;
+        if (current != null) {
+            if (!referenced) {
+                referenced = true;
+            }
+            return current;
+        }
+        return load(true);
+    }
+
+    private Map<Object, TreeNode<T>> load(boolean prefetchSiblings) {
+        LazyTreeCache<T> owner = cache();
+        Map<Object, TreeNode<T>> loaded;
+        synchronized (this) {
+            if (childrenMap != null) {
+                return childrenMap;
+            }
+            Map<Object, T> raw = owner.getLoader().loadChildren(this);
+            Map<Object, TreeNode<T>> nodes = new LinkedHashMap<>((int) (raw.size() / 0.75f) + 1);
+            for (Map.Entry<Object, T> entry : raw.entrySet()) {
+                LazyTreeNode<T> child = new LazyTreeNode<>(entry.getValue(), owner);
+                child.parent = this;
+                nodes.put(entry.getKey(), child);
+            }
+            loaded = Collections.unmodifiableMap(nodes);
+            childrenMap = loaded;
+        }
+        // register outside the node lock, the cache locks nodes while unloading them
+        owner.admit(this);
+        if (prefetchSiblings) {
+            owner.prefetchSiblings(this);
+        }
+        return loaded;
+    }
+
+    private LazyTreeCache<T> cache() {
+        LazyTreeCache<T> current = cache;
+        if (current == null) {
+            throw new IllegalStateException("The node has been deserialized, attach it to a LazyTreeCache first");
+        }
+        return current;
+    }
+
+    private synchronized void markModified() {
+        if (!modified) {
+            modified = true;
+            pin(this, 1);
+        }
+    }
+
+    private static int pinsOf(TreeNode<?> node) {
+        return node instanceof LazyTreeNode ? ((LazyTreeNode<?>) node).pins : 0;
+    }
+
+    /**
+     * Add to the number of modified nodes of a node and all its ancestors.
+     */
+    private static void pin(TreeNode<?> node, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (TreeNode<?> n = node; n instanceof LazyTreeNode; n = n.getParent()) {
+            PINS.addAndGet((LazyTreeNode<?>) n, delta);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "LazyTreeNode[data=" + data + ", loaded=" + isLoaded() + "]";
+    }
+}
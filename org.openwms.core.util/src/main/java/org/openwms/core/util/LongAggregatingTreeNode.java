@@ -0,0 +1,316 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A LongAggregatingTreeNode keeps a primitive {@code long} aggregate over its subtree
+ * without boxing. For invertible aggregations like sums and counts a change is propagated
+ * as a delta, so each ancestor is updated in O(1). Selective aggregations like min and
+ * max are updated in O(1) per ancestor as well, only an ancestor whose extreme value is
+ * removed or worsened recombines the aggregates of its children. Other aggregations
+ * recombine the aggregates of the children on each level.
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class LongAggregatingTreeNode<T> extends AbstractAggregatingTreeNode<T> {
+
+    private final LongAggregation<T> aggregation;
+    private long aggregate;
+
+    /**
+     * An associative LongAggregation.
+     *
+     * @param <T> The type of node data
+     */
+    public interface LongAggregation<T> extends Serializable {
+
+        /**
+         * Get the contribution of a single node.
+         *
+         * @param data The data of the node, may be {@literal null}
+         * @return The aggregate of the node alone
+         */
+        long valueOf(T data);
+
+        /**
+         * Combine two aggregates, must be associative.
+         *
+         * @param left One aggregate
+         * @param right Another aggregate
+         * @return The combined aggregate
+         */
+        long combine(long left, long right);
+
+        /**
+         * Check whether {@link #remove(long, long)} is supported.
+         *
+         * @return {@literal true} if so
+         */
+        default boolean isInvertible() {
+            return false;
+        }
+
+        /**
+         * Remove a part from an aggregate, the inverse of {@link #combine(long, long)}.
+         *
+         * @param aggregate The aggregate
+         * @param part The part to remove
+         * @return The aggregate without the part
+         */
+        default long remove(long aggregate, long part) {
+            throw new UnsupportedOperationException("Aggregation is not invertible");
+        }
+
+        /**
+         * Check whether {@link #combine(long, long)} always returns one of its arguments,
+         * like min and max do.
+         *
+         * @return {@literal true} if so
+         */
+        default boolean isSelective() {
+            return false;
+        }
+
+        /**
+         * Sum up a value of each node.
+         *
+         * @param value Extracts the value of a node
+         * @param <T> The type of node data
+         * @return The aggregation
+         */
+        static <T> LongAggregation<T> sum(SerializableToLongFunction<T> value) {
+            return new LongAggregation<>() {
+                @Override
+                public long valueOf(T data) {
+                    return data == null ? 0 : value.applyAsLong(data);
+                }
+
+                @Override
+                public long combine(long left, long right) {
+                    return left + right;
+                }
+
+                @Override
+                public boolean isInvertible() {
+                    return true;
+                }
+
+                @Override
+                public long remove(long aggregate, long part) {
+                    return aggregate - part;
+                }
+            };
+        }
+
+        /**
+         * Count the nodes with data.
+         *
+         * @param <T> The type of node data
+         * @return The aggregation
+         */
+        static <T> LongAggregation<T> count() {
+            return sum(data -> 1);
+        }
+
+        /**
+         * Find the minimum value, nodes without data are ignored.
+         *
+         * @param value Extracts the value of a node
+         * @param <T> The type of node data
+         * @return The aggregation
+         */
+        static <T> LongAggregation<T> min(SerializableToLongFunction<T> value) {
+            return new LongAggregation<>() {
+                @Override
+                public long valueOf(T data) {
+                    return data == null ? Long.MAX_VALUE : value.applyAsLong(data);
+                }
+
+                @Override
+                public long combine(long left, long right) {
+                    return Math.min(left, right);
+                }
+
+                @Override
+                public boolean isSelective() {
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * Find the maximum value, nodes without data are ignored.
+         *
+         * @param value Extracts the value of a node
+         * @param <T> The type of node data
+         * @return The aggregation
+         */
+        static <T> LongAggregation<T> max(SerializableToLongFunction<T> value) {
+            return new LongAggregation<>() {
+                @Override
+                public long valueOf(T data) {
+                    return data == null ? Long.MIN_VALUE : value.applyAsLong(data);
+                }
+
+                @Override
+                public long combine(long left, long right) {
+                    return Math.max(left, right);
+                }
+
+                @Override
+                public boolean isSelective() {
+                    return true;
+                }
+            };
+        }
+    }
+
+    /**
+     * A serializable {@link java.util.function.ToLongFunction}.
+     *
+     * @param <T> The type of input
+     */
+    @FunctionalInterface
+    public interface SerializableToLongFunction<T> extends Serializable {
+
+        /**
+         * Apply the function.
+         *
+         * @param value The input
+         * @return The result
+         */
+        long applyAsLong(T value);
+    }
+
+    /**
+     * Create a LongAggregatingTreeNode.
+     *
+     * @param data The data of the node
+     * @param aggregation The aggregation shared by all nodes of the tree
+     */
+    public LongAggregatingTreeNode(T data, LongAggregation<T> aggregation) {
+        this.aggregation = Objects.requireNonNull(aggregation);
+        this.aggregate = aggregation.valueOf(null);
+        setData(data);
+    }
+
+    /**
+     * Get the aggregate over this node and all its descendants.
+     *
+     * @return The aggregate
+     */
+    public long getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isCompatible(TreeNode<T> child) {
+        return child instanceof LongAggregatingTreeNode && ((LongAggregatingTreeNode<?>) child).aggregation == aggregation;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean recompute() {
+        long result = combineAll();
+        if (result == aggregate) {
+            return false;
+        }
+        aggregate = result;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private long combineAll() {
+        long result = aggregation.valueOf(getData());
+        Iterator<Map.Entry<Object, TreeNode<T>>> children = getChildren();
+        while (children.hasNext()) {
+            result = aggregation.combine(result, ((LongAggregatingTreeNode<T>) children.next().getValue()).aggregate);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void dataChanged(T former) {
+        if (isIncremental()) {
+            applyDelta(aggregation.valueOf(former), aggregation.valueOf(getData()));
+        } else {
+            propagate();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A missing child contributes the aggregate of a node without data.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void childReplaced(TreeNode<T> former, TreeNode<T> child) {
+        if (!isIncremental()) {
+            propagate();
+            return;
+        }
+        long removed = former == null ? aggregation.valueOf(null) : ((LongAggregatingTreeNode<T>) former).aggregate;
+        long added = child == null ? aggregation.valueOf(null) : ((LongAggregatingTreeNode<T>) child).aggregate;
+        applyDelta(removed, added);
+    }
+
+    private boolean isIncremental() {
+        return aggregation.isInvertible() || aggregation.isSelective();
+    }
+
+    /**
+     * Replace a part of the aggregate on each level up to the root. A selective
+     * aggregation only recombines the children of a node whose aggregate was the removed
+     * part and is not matched by the added one.
+     */
+    @SuppressWarnings("unchecked")
+    private void applyDelta(long removed, long added) {
+        LongAggregatingTreeNode<T> node = this;
+        while (node != null) {
+            long before = node.aggregate;
+            long after;
+            if (aggregation.isInvertible()) {
+                after = aggregation.combine(aggregation.remove(before, removed), added);
+            } else if (removed != before || aggregation.combine(added, removed) == added) {
+                after = aggregation.combine(before, added);
+            } else {
+                after = node.combineAll();
+            }
+            if (after == before) {
+                return;
+            }
+            node.aggregate = after;
+            removed = before;
+            added = after;
+            node = (LongAggregatingTreeNode<T>) node.parentNode();
+        }
+    }
+}
@@ -0,0 +1,694 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.openwms.core.DomainObject;
+import org.openwms.core.lang.LongLongMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+/**
+ * An OffHeapSnapshotStore keeps encoded snapshots of {@link DomainObject}s with
+ * {@code Long} ids outside the Java heap, in direct or memory-mapped {@link ByteBuffer}
+ * slabs. Only a {@link LongLongMap} from id to record address stays on the heap, so the
+ * garbage collector neither scans nor copies the snapshots.
+ * <p>
+ * Each record is a header of payload length, id and version followed by the payload
+ * written by a {@link Codec}. Readers get a {@link Record} flyweight and access single
+ * fields at payload offsets instead of decoding the whole entity. An update is appended
+ * and only accepted if its version is not older than the stored one, replaced and removed
+ * records stay garbage in their slab until {@link #compact()} is called.
+ * </p>
+ * <p>
+ * Reads may run concurrently, updates and compaction are exclusive. A {@link Record} is
+ * only valid within the callback it has been passed to.
+ * </p>
+ * <p>
+ * Released slabs are only dropped from the store, the JDK offers no supported way to
+ * unmap a buffer. The native memory of a direct slab, and the mapping and disk space of a
+ * mapped slab, are freed when the garbage collector collects the buffer.
+ * </p>
+ *
+ * @param <T> Type of entities
+ * @author Heiko Scherrer
+ */
+public class OffHeapSnapshotStore<T extends DomainObject<Long>> implements AutoCloseable {
+
+    /** The default slab size of 64 MiB. */
+    public static final int DEFAULT_SLAB_SIZE = 64 << 20;
+    private static final int HEADER_SIZE = Integer.BYTES + 2 * Long.BYTES;
+    private static final int ID_OFFSET = Integer.BYTES;
+    private static final int VERSION_OFFSET = ID_OFFSET + Long.BYTES;
+    private static final long ABSENT = -1L;
+
+    private final Codec<T> codec;
+    private final SlabAllocator allocator;
+    private final int slabSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private LongLongMap addresses = new LongLongMap(0, ABSENT);
+    private Slabs slabs = new Slabs();
+    private long garbageBytes;
+    private boolean closed;
+
+    /**
+     * Encodes entities into a fixed layout that readers address by offset.
+     *
+     * @param <T> Type of entities
+     */
+    public interface Codec<T> {
+
+        /**
+         * Get the exact number of bytes {@link #encode(Object, ByteBuffer)} writes.
+         *
+         * @param entity The entity
+         * @return The payload size
+         */
+        int sizeOf(T entity);
+
+        /**
+         * Write the payload of an entity.
+         *
+         * @param entity The entity
+         * @param target A buffer of exactly {@link #sizeOf(Object)} bytes starting at
+         * offset {@literal 0}
+         */
+        void encode(T entity, ByteBuffer target);
+
+        /**
+         * Create a detached entity from a record.
+         *
+         * @param record The record
+         * @return The entity
+         */
+        T decode(Record record);
+    }
+
+    /**
+     * A Record is a flyweight over one stored snapshot, all offsets are relative to the
+     * start of the payload.
+     */
+    public static final class Record {
+
+        private final ByteBuffer slab;
+        private final int start;
+
+        Record(ByteBuffer slab, int start) {
+            this.slab = slab;
+            this.start = start;
+        }
+
+        /**
+         * Get the id of the entity.
+         *
+         * @return The id
+         */
+        public long getId() {
+            return slab.getLong(start + ID_OFFSET);
+        }
+
+        /**
+         * Get the version of the entity.
+         *
+         * @return The version
+         */
+        public long getVersion() {
+            return slab.getLong(start + VERSION_OFFSET);
+        }
+
+        /**
+         * Get the size of the payload.
+         *
+         * @return The number of bytes
+         */
+        public int getPayloadSize() {
+            return slab.getInt(start);
+        }
+
+        /**
+         * Read a {@code byte}.
+         *
+         * @param offset The payload offset
+         * @return The value
+         */
+        public byte getByte(int offset) {
+            return slab.get(position(offset, Byte.BYTES));
+        }
+
+        /**
+         * Read an {@code int}.
+         *
+         * @param offset The payload offset
+         * @return The value
+         */
+        public int getInt(int offset) {
+            return slab.getInt(position(offset, Integer.BYTES));
+        }
+
+        /**
+         * Read a {@code long}.
+         *
+         * @param offset The payload offset
+         * @return The value
+         */
+        public long getLong(int offset) {
+            return slab.getLong(position(offset, Long.BYTES));
+        }
+
+        /**
+         * Read a {@code double}.
+         *
+         * @param offset The payload offset
+         * @return The value
+         */
+        public double getDouble(int offset) {
+            return slab.getDouble(position(offset, Double.BYTES));
+        }
+
+        /**
+         * Read a String written with {@link OffHeapSnapshotStore#putString(ByteBuffer, int, String)}.
+         *
+         * @param offset The payload offset
+         * @return The String or {@literal null}
+         */
+        public String getString(int offset) {
+            int length = getInt(offset);
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            int from = position(offset + Integer.BYTES, length);
+            for (int i = 0; i < length; i++) {
+                bytes[i] = slab.get(from + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int position(int offset, int size) {
+            if (offset < 0 || offset + size > getPayloadSize()) {
+                throw new IndexOutOfBoundsException(format("Offset [%d] with size [%d] is outside the payload of [%d] bytes", offset, size, getPayloadSize()));
+            }
+            return start + HEADER_SIZE + offset;
+        }
+    }
+
+    private OffHeapSnapshotStore(Codec<T> codec, SlabAllocator allocator, int slabSize) {
+        if (slabSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException(format("Slab size [%d] is too small", slabSize));
+        }
+        this.codec = Objects.requireNonNull(codec);
+        this.allocator = allocator;
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * Create a store in direct buffers.
+     *
+     * @param codec Encodes the entities
+     * @param slabSize The size of each slab in bytes, limits the size of a record
+     * @param <T> Type of entities
+     * @return The store
+     */
+    public static <T extends DomainObject<Long>> OffHeapSnapshotStore<T> direct(Codec<T> codec, int slabSize) {
+        return new OffHeapSnapshotStore<>(codec, new DirectAllocator(), slabSize);
+    }
+
+    /**
+     * Create a store in files that are mapped into memory, the operating system pages
+     * them out under memory pressure. The files are deleted on compaction and close while
+     * they are still mapped. Each store creates its files in a new subdirectory of the
+     * given directory, which may be shared. Their disk space is freed once the garbage
+     * collector has collected the buffers. On Windows, deleting a mapped file fails with
+     * an {@link UncheckedIOException}.
+     *
+     * @param codec Encodes the entities
+     * @param directory An existing directory for the slab files
+     * @param slabSize The size of each slab in bytes, limits the size of a record
+     * @param <T> Type of entities
+     * @return The store
+     */
+    public static <T extends DomainObject<Long>> OffHeapSnapshotStore<T> mapped(Codec<T> codec, Path directory, int slabSize) {
+        return new OffHeapSnapshotStore<>(codec, new MappedAllocator(directory), slabSize);
+    }
+
+    /**
+     * Store a snapshot of an entity unless a newer version is stored already.
+     *
+     * @param entity The persisted entity
+     * @return {@literal true} if stored, {@literal false} if the stored version is newer
+     * @throws IllegalArgumentException if the entity has no id or does not fit into a slab
+     */
+    public boolean put(T entity) {
+        Long id = entity.getId();
+        if (id == null) {
+            throw new IllegalArgumentException(format("Transient entity [%s] cannot be stored", entity));
+        }
+        int payloadSize = codec.sizeOf(entity);
+        int recordSize = HEADER_SIZE + payloadSize;
+        if (payloadSize < 0 || recordSize > slabSize) {
+            throw new IllegalArgumentException(format("Record of [%d] bytes does not fit into a slab of [%d] bytes", recordSize, slabSize));
+        }
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            long existing = addresses.get(id);
+            if (existing != ABSENT) {
+                if (slabs.slabOf(existing).getLong(offsetOf(existing) + VERSION_OFFSET) > entity.getVersion()) {
+                    return false;
+                }
+            }
+            long address = append(id, entity, payloadSize);
+            if (existing != ABSENT) {
+                garbageBytes += sizeAt(existing);
+            }
+            addresses.put(id, address);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read fields of a stored snapshot.
+     *
+     * @param id The id
+     * @param reader Called with the record, which must not escape the call
+     * @param <R> Type of result
+     * @return The result of the reader or {@literal null} if absent
+     */
+    public <R> R read(long id, Function<Record, R> reader) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            long address = addresses.get(id);
+            return address == ABSENT ? null : reader.apply(new Record(slabs.slabOf(address), offsetOf(address)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Decode a stored snapshot into a detached entity.
+     *
+     * @param id The id
+     * @return The entity or {@literal null}
+     */
+    public T get(long id) {
+        return read(id, codec::decode);
+    }
+
+    /**
+     * Get the version of a stored snapshot.
+     *
+     * @param id The id
+     * @return The version or {@literal -1} if absent
+     */
+    public long getVersion(long id) {
+        Long version = read(id, Record::getVersion);
+        return version == null ? -1 : version;
+    }
+
+    /**
+     * Check whether a snapshot is stored.
+     *
+     * @param id The id
+     * @return {@literal true} if stored
+     */
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return addresses.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a snapshot.
+     *
+     * @param id The id
+     * @return {@literal true} if it was stored
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            long address = addresses.remove(id);
+            if (address == ABSENT) {
+                return false;
+            }
+            garbageBytes += sizeAt(address);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Call back for each stored snapshot in no particular order.
+     *
+     * @param consumer Called with each record, which must not escape the call
+     */
+    public void forEach(Consumer<Record> consumer) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            addresses.forEach((id, address) -> consumer.accept(new Record(slabs.slabOf(address), offsetOf(address))));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of stored snapshots.
+     *
+     * @return The size
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return addresses.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of bytes occupied by replaced and removed records.
+     *
+     * @return The garbage in bytes
+     */
+    public long getGarbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbageBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of bytes occupied by all records, including garbage.
+     *
+     * @return The used bytes
+     */
+    public long getUsedBytes() {
+        lock.readLock().lock();
+        try {
+            return slabs.usedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copy all live records into new slabs and release the old ones. If copying fails,
+     * the new slabs are released and the store keeps its former slabs.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            int firstNew = allocator.count();
+            Slabs target = new Slabs();
+            LongLongMap moved = new LongLongMap(addresses.size(), ABSENT);
+            try {
+                addresses.forEach((id, address) -> {
+                    ByteBuffer from = slabs.slabOf(address);
+                    int offset = offsetOf(address);
+                    int recordSize = HEADER_SIZE + from.getInt(offset);
+                    long copy = target.reserve(recordSize);
+                    ByteBuffer to = target.slabOf(copy);
+                    for (int i = 0; i < recordSize; i++) {
+                        to.put(offsetOf(copy) + i, from.get(offset + i));
+                    }
+                    moved.put(id, copy);
+                });
+            } catch (RuntimeException e) {
+                allocator.release(firstNew, allocator.count());
+                throw e;
+            }
+            slabs = target;
+            addresses = moved;
+            garbageBytes = 0;
+            allocator.release(0, firstNew);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Release all slabs, the store cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                addresses.clear();
+                slabs = new Slabs();
+                allocator.release(0, allocator.count());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write a String as its UTF-8 length followed by the bytes, {@literal null} is
+     * written as length {@literal -1}.
+     *
+     * @param target The payload buffer
+     * @param offset The payload offset
+     * @param value The String
+     * @return The number of bytes written
+     */
+    public static int putString(ByteBuffer target, int offset, String value) {
+        if (value == null) {
+            target.putInt(offset, -1);
+            return Integer.BYTES;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        target.putInt(offset, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            target.put(offset + Integer.BYTES + i, bytes[i]);
+        }
+        return Integer.BYTES + bytes.length;
+    }
+
+    /**
+     * Get the number of bytes {@link #putString(ByteBuffer, int, String)} writes.
+     *
+     * @param value The String
+     * @return The number of bytes
+     */
+    public static int sizeOf(String value) {
+        return value == null ? Integer.BYTES : Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private long append(long id, T entity, int payloadSize) {
+        int recordSize = HEADER_SIZE + payloadSize;
+        long address = slabs.reserve(recordSize);
+        ByteBuffer slab = slabs.slabOf(address);
+        int offset = offsetOf(address);
+        slab.putInt(offset, payloadSize);
+        slab.putLong(offset + ID_OFFSET, id);
+        slab.putLong(offset + VERSION_OFFSET, entity.getVersion());
+        ByteBuffer payload = slab.duplicate();
+        payload.limit(offset + recordSize).position(offset + HEADER_SIZE);
+        try {
+            codec.encode(entity, payload.slice());
+        } catch (RuntimeException e) {
+            garbageBytes += recordSize;
+            throw e;
+        }
+        return address;
+    }
+
+    private int sizeAt(long address) {
+        return HEADER_SIZE + slabs.slabOf(address).getInt(offsetOf(address));
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The store has been closed");
+        }
+    }
+
+    private static long addressOf(int slabIndex, int offset) {
+        return ((long) slabIndex << 32) | offset;
+    }
+
+    private static int slabIndexOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    /**
+     * The slabs records are appended to and the offset of the next record in the last
+     * one. Records never span two slabs.
+     */
+    private final class Slabs {
+
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private int writeOffset;
+        private long usedBytes;
+
+        long reserve(int recordSize) {
+            if (buffers.isEmpty() || writeOffset + recordSize > slabSize) {
+                buffers.add(allocator.allocate(slabSize));
+                writeOffset = 0;
+            }
+            long address = addressOf(buffers.size() - 1, writeOffset);
+            writeOffset += recordSize;
+            usedBytes += recordSize;
+            return address;
+        }
+
+        ByteBuffer slabOf(long address) {
+            return buffers.get(slabIndexOf(address));
+        }
+    }
+
+    /**
+     * Allocates slabs numbered in allocation order and releases ranges of them.
+     */
+    private interface SlabAllocator {
+
+        ByteBuffer allocate(int size);
+
+        int count();
+
+        void release(int from, int to);
+    }
+
+    private static final class DirectAllocator implements SlabAllocator {
+
+        private int count;
+
+        @Override
+        public ByteBuffer allocate(int size) {
+            count++;
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public void release(int from, int to) {
+            // Direct buffers are freed once they are unreachable
+        }
+    }
+
+    /**
+     * Creates the slab files in a subdirectory of its own, so that stores sharing a
+     * directory and files left over by a former process do not collide. The subdirectory
+     * is deleted with the last slab file.
+     */
+    private static final class MappedAllocator implements SlabAllocator {
+
+        private final Path directory;
+        private final List<Path> files = new ArrayList<>();
+        private Path slabDirectory;
+        private int live;
+
+        MappedAllocator(Path directory) {
+            this.directory = Objects.requireNonNull(directory);
+        }
+
+        @Override
+        public ByteBuffer allocate(int size) {
+            Path file = null;
+            try {
+                if (slabDirectory == null) {
+                    slabDirectory = Files.createTempDirectory(directory, "slabs-");
+                }
+                file = slabDirectory.resolve(format("slab-%d.bin", files.size()));
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    files.add(file);
+                    live++;
+                    return buffer;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(format("Cannot map slab file [%s]", file == null ? directory : file), e);
+            }
+        }
+
+        @Override
+        public int count() {
+            return files.size();
+        }
+
+        /**
+         * Delete the files, they are still mapped until the buffers are collected.
+         */
+        @Override
+        public void release(int from, int to) {
+            UncheckedIOException failure = null;
+            for (int i = from; i < to; i++) {
+                Path file = files.get(i);
+                if (file != null) {
+                    try {
+                        Files.deleteIfExists(file);
+                        files.set(i, null);
+                        live--;
+                    } catch (IOException e) {
+                        if (failure == null) {
+                            failure = new UncheckedIOException(format("Cannot delete slab file [%s]", file), e);
+                        }
+                    }
+                }
+            }
+            if (live == 0 && slabDirectory != null) {
+                try {
+                    Files.deleteIfExists(slabDirectory);
+                    slabDirectory = null;
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = new UncheckedIOException(format("Cannot delete slab directory [%s]", slabDirectory), e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A PersistentChildren is the immutable, insertion ordered children map of a
+ * {@link PersistentTreeNode}. Modifications return a new instance that shares all but
+ * O(log n) arrays with the original one, so the cost of a change does not grow with the
+ * fan-out of a node.
+ * <p>
+ * Identifiers are resolved with a hash array mapped trie (HAMT) of 32-way bitmap nodes.
+ * The insertion order is kept in a 32-way persistent vector of entries, each entry knows
+ * its slot in the vector. A replaced child keeps its slot, a removed child leaves an empty
+ * slot that is skipped while iterating. Once more than half of the slots are empty, the
+ * vector is compacted.
+ * </p>
+ * <p>
+ * Instances are serialized as the list of identifiers and children in insertion order
+ * and rebuilt on deserialization, so the hash layout of the trie is not part of the
+ * serialized form.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+final class PersistentChildren<T> implements Iterable<Map.Entry<Object, TreeNode<T>>>, Serializable {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final PersistentChildren<?> EMPTY = new PersistentChildren<>(null, new Object[0], 0, 0, 0);
+
+    /** The root of the HAMT, {@literal null} when empty. */
+    private final Object index;
+    /** The root of the vector of entries in insertion order. */
+    private final Object[] slots;
+    private final int shift;
+    private final int slotCount;
+    private final int size;
+
+    private PersistentChildren(Object index, Object[] slots, int shift, int slotCount, int size) {
+        this.index = index;
+        this.slots = slots;
+        this.shift = shift;
+        this.slotCount = slotCount;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PersistentChildren<T> empty() {
+        return (PersistentChildren<T>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    TreeNode<T> get(Object id) {
+        Entry<T> entry = find(id);
+        return entry == null ? null : entry.child;
+    }
+
+    boolean containsKey(Object id) {
+        return find(id) != null;
+    }
+
+    /**
+     * Add or replace a child, a replaced child keeps its position.
+     */
+    PersistentChildren<T> put(Object id, TreeNode<T> child) {
+        Objects.requireNonNull(id, "The identifier of a child must not be null");
+        Entry<T> existing = find(id);
+        if (existing != null) {
+            if (existing.child == child) {
+                return this;
+            }
+            Entry<T> replacement = new Entry<>(id, child, existing.slot);
+            return new PersistentChildren<>(put(index, 0, hash(id), replacement), setSlot(slots, shift, existing.slot, replacement),
+                    shift, slotCount, size);
+        }
+        Entry<T> entry = new Entry<>(id, child, slotCount);
+        Object newIndex = put(index, 0, hash(id), entry);
+        if (slotCount == WIDTH << shift) {
+            Object[] root = {slots, newPath(shift, entry)};
+            return new PersistentChildren<>(newIndex, root, shift + BITS, slotCount + 1, size + 1);
+        }
+        return new PersistentChildren<>(newIndex, setSlot(slots, shift, slotCount, entry), shift, slotCount + 1, size + 1);
+    }
+
+    /**
+     * Remove a child, the remaining children keep their order.
+     */
+    PersistentChildren<T> remove(Object id) {
+        Entry<T> existing = find(id);
+        if (existing == null) {
+            return this;
+        }
+        if (size == 1) {
+            return empty();
+        }
+        PersistentChildren<T> result = new PersistentChildren<>(remove(index, 0, hash(id), id), setSlot(slots, shift, existing.slot, null),
+                shift, slotCount, size - 1);
+        return result.size * 2 < result.slotCount && result.slotCount > WIDTH ? result.compact() : result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Iterates the children in insertion order.
+     */
+    @Override
+    public Iterator<Map.Entry<Object, TreeNode<T>>> iterator() {
+        return new Iterator<>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                int i = from;
+                while (i < slotCount && slot(i) == null) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < slotCount;
+            }
+
+            @Override
+            public Map.Entry<Object, TreeNode<T>> next() {
+                if (next >= slotCount) {
+                    throw new NoSuchElementException();
+                }
+                Entry<T> entry = slot(next);
+                next = advance(next + 1);
+                return entry;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (Map.Entry<Object, TreeNode<T>> entry : this) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey());
+        }
+        return sb.append(']').toString();
+    }
+
+    private Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("A PersistentChildren is deserialized from its SerializedForm");
+    }
+
+    /**
+     * The serialized form of a PersistentChildren, the identifiers and children in
+     * insertion order.
+     */
+    private static final class SerializedForm implements Serializable {
+
+        private final Object[] entries;
+
+        SerializedForm(PersistentChildren<?> children) {
+            entries = new Object[children.size * 2];
+            int i = 0;
+            for (Map.Entry<Object, ? extends TreeNode<?>> entry : children) {
+                entries[i++] = entry.getKey();
+                entries[i++] = entry.getValue();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readResolve() {
+            PersistentChildren<Object> result = empty();
+            for (int i = 0; i < entries.length; i += 2) {
+                result = result.put(entries[i], (TreeNode<Object>) entries[i + 1]);
+            }
+            return result;
+        }
+    }
+
+    private PersistentChildren<T> compact() {
+        PersistentChildren<T> result = empty();
+        for (Map.Entry<Object, TreeNode<T>> entry : this) {
+            result = result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private static int hash(Object id) {
+        int h = id.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<T> slot(int i) {
+        Object[] node = slots;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(i >>> level) & MASK];
+        }
+        return (Entry<T>) node[i & MASK];
+    }
+
+    private static Object[] newPath(int level, Object value) {
+        Object[] node = new Object[WIDTH];
+        if (level == 0) {
+            node[0] = value;
+        } else {
+            node[0] = newPath(level - BITS, value);
+        }
+        return node;
+    }
+
+    private static Object[] setSlot(Object[] node, int level, int i, Object value) {
+        Object[] copy = node.length == WIDTH ? node.clone() : Arrays.copyOf(node, WIDTH);
+        if (level == 0) {
+            copy[i & MASK] = value;
+        } else {
+            int child = (i >>> level) & MASK;
+            Object[] below = (Object[]) copy[child];
+            copy[child] = below == null ? newPath(level - BITS, value) : setSlot(below, level - BITS, i, value);
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<T> find(Object id) {
+        if (id == null || index == null) {
+            return null;
+        }
+        int hash = hash(id);
+        Object node = index;
+        for (int level = 0; ; level += BITS) {
+            if (node instanceof Collision) {
+                for (Entry<?> entry : ((Collision) node).entries) {
+                    if (entry.id.equals(id)) {
+                        return (Entry<T>) entry;
+                    }
+                }
+                return null;
+            }
+            Bitmap bitmap = (Bitmap) node;
+            int bit = 1 << ((hash >>> level) & MASK);
+            if ((bitmap.bits & bit) == 0) {
+                return null;
+            }
+            Object element = bitmap.elements[Integer.bitCount(bitmap.bits & (bit - 1))];
+            if (element instanceof Entry) {
+                Entry<T> entry = (Entry<T>) element;
+                return entry.id.equals(id) ? entry : null;
+            }
+            node = element;
+        }
+    }
+
+    private static Object put(Object node, int level, int hash, Entry<?> entry) {
+        if (node == null) {
+            return new Bitmap(1 << ((hash >>> level) & MASK), new Object[]{entry});
+        }
+        if (node instanceof Collision) {
+            Collision collision = (Collision) node;
+            if (collision.hash != hash) {
+                Object wrapped = new Bitmap(1 << ((collision.hash >>> level) & MASK), new Object[]{collision});
+                return put(wrapped, level, hash, entry);
+            }
+            Entry<?>[] entries = collision.entries;
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].id.equals(entry.id)) {
+                    Entry<?>[] copy = entries.clone();
+                    copy[i] = entry;
+                    return new Collision(hash, copy);
+                }
+            }
+            Entry<?>[] copy = Arrays.copyOf(entries, entries.length + 1);
+            copy[entries.length] = entry;
+            return new Collision(hash, copy);
+        }
+        Bitmap bitmap = (Bitmap) node;
+        int bit = 1 << ((hash >>> level) & MASK);
+        int pos = Integer.bitCount(bitmap.bits & (bit - 1));
+        if ((bitmap.bits & bit) == 0) {
+            Object[] elements = new Object[bitmap.elements.length + 1];
+            System.arraycopy(bitmap.elements, 0, elements, 0, pos);
+            elements[pos] = entry;
+            System.arraycopy(bitmap.elements, pos, elements, pos + 1, bitmap.elements.length - pos);
+            return new Bitmap(bitmap.bits | bit, elements);
+        }
+        Object element = bitmap.elements[pos];
+        Object replacement;
+        if (element instanceof Entry) {
+            Entry<?> existing = (Entry<?>) element;
+            replacement = existing.id.equals(entry.id) ? entry : merge(existing, hash(existing.id), entry, hash, level + BITS);
+        } else {
+            replacement = put(element, level + BITS, hash, entry);
+        }
+        Object[] elements = bitmap.elements.clone();
+        elements[pos] = replacement;
+        return new Bitmap(bitmap.bits, elements);
+    }
+
+    private static Object merge(Entry<?> first, int firstHash, Entry<?> second, int secondHash, int level) {
+        if (firstHash == secondHash || level >= Integer.SIZE) {
+            return new Collision(firstHash, new Entry<?>[]{first, second});
+        }
+        int firstBit = 1 << ((firstHash >>> level) & MASK);
+        int secondBit = 1 << ((secondHash >>> level) & MASK);
+        if (firstBit == secondBit) {
+            return new Bitmap(firstBit, new Object[]{merge(first, firstHash, second, secondHash, level + BITS)});
+        }
+        return new Bitmap(firstBit | secondBit, Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Object[]{first, second}
+                : new Object[]{second, first});
+    }
+
+    private static Object remove(Object node, int level, int hash, Object id) {
+        if (node instanceof Collision) {
+            Collision collision = (Collision) node;
+            if (collision.entries.length == 1) {
+                return null;
+            }
+            Entry<?>[] copy = new Entry<?>[collision.entries.length - 1];
+            int j = 0;
+            for (Entry<?> entry : collision.entries) {
+                if (!entry.id.equals(id)) {
+                    copy[j++] = entry;
+                }
+            }
+            return new Collision(collision.hash, copy);
+        }
+        Bitmap bitmap = (Bitmap) node;
+        int bit = 1 << ((hash >>> level) & MASK);
+        int pos = Integer.bitCount(bitmap.bits & (bit - 1));
+        Object element = bitmap.elements[pos];
+        Object replacement = element instanceof Entry ? null : remove(element, level + BITS, hash, id);
+        if (replacement != null) {
+            Object[] elements = bitmap.elements.clone();
+            elements[pos] = replacement;
+            return new Bitmap(bitmap.bits, elements);
+        }
+        if (bitmap.elements.length == 1) {
+            return null;
+        }
+        Object[] elements = new Object[bitmap.elements.length - 1];
+        System.arraycopy(bitmap.elements, 0, elements, 0, pos);
+        System.arraycopy(bitmap.elements, pos + 1, elements, pos, elements.length - pos);
+        return new Bitmap(bitmap.bits & ~bit, elements);
+    }
+
+    private static final class Entry<T> implements Map.Entry<Object, TreeNode<T>> {
+
+        private final Object id;
+        private final TreeNode<T> child;
+        private final int slot;
+
+        Entry(Object id, TreeNode<T> child, int slot) {
+            this.id = id;
+            this.child = child;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object getKey() {
+            return id;
+        }
+
+        @Override
+        public TreeNode<T> getValue() {
+            return child;
+        }
+
+        @Override
+        public TreeNode<T> setValue(TreeNode<T> value) {
+            throw new UnsupportedOperationException("The children of a PersistentTreeNode are immutable");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return id.equals(other.getKey()) && Objects.equals(child, other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode() ^ Objects.hashCode(child);
+        }
+
+        @Override
+        public String toString() {
+            return id + "=" + child;
+        }
+    }
+
+    /** An inner node of the HAMT, elements are entries or nodes of the next level. */
+    private static final class Bitmap {
+
+        private final int bits;
+        private final Object[] elements;
+
+        Bitmap(int bits, Object[] elements) {
+            this.bits = bits;
+            this.elements = elements;
+        }
+    }
+
+    /** Entries whose identifiers have the same hash. */
+    private static final class Collision {
+
+        private final int hash;
+        private final Entry<?>[] entries;
+
+        Collision(int hash, Entry<?>[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+    }
+}
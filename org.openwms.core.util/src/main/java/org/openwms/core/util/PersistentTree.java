@@ -0,0 +1,129 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * A PersistentTree publishes the current version of an immutable tree of
+ * {@link PersistentTreeNode}s. Readers take a {@link #snapshot()} without blocking and
+ * see a consistent tree for as long as they hold it. Writers copy the path to the
+ * modified node and swap the root atomically, concurrent writers retry on conflict.
+ * <p>
+ * Update functions may be called more than once and must not have side effects.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class PersistentTree<T> {
+
+    private final AtomicReference<PersistentTreeNode<T>> root;
+
+    /**
+     * Create a PersistentTree.
+     *
+     * @param root The initial root
+     */
+    public PersistentTree(PersistentTreeNode<T> root) {
+        this.root = new AtomicReference<>(Objects.requireNonNull(root));
+    }
+
+    /**
+     * Get the current version of the tree.
+     *
+     * @return The root
+     */
+    public PersistentTreeNode<T> snapshot() {
+        return root.get();
+    }
+
+    /**
+     * Resolve a node in the current version of the tree.
+     *
+     * @param path The identifiers from the root down to the node
+     * @return The node or {@literal null}
+     */
+    public PersistentTreeNode<T> get(List<?> path) {
+        return root.get().get(path);
+    }
+
+    /**
+     * Replace the root if it has not been changed in between.
+     *
+     * @param expected The root the update is based on
+     * @param update The new root
+     * @return {@literal true} if replaced
+     */
+    public boolean compareAndSet(PersistentTreeNode<T> expected, PersistentTreeNode<T> update) {
+        return root.compareAndSet(expected, Objects.requireNonNull(update));
+    }
+
+    /**
+     * Replace the node at the given path.
+     *
+     * @param path The identifiers from the root down to the node
+     * @param update Computes the replacement of the node
+     * @return The new root
+     * @throws IllegalArgumentException If the path does not exist
+     */
+    public PersistentTreeNode<T> update(List<?> path, UnaryOperator<PersistentTreeNode<T>> update) {
+        while (true) {
+            PersistentTreeNode<T> current = root.get();
+            PersistentTreeNode<T> next = current.update(path, update);
+            if (next == current || root.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Set the data of the node at the given path.
+     *
+     * @param path The identifiers from the root down to the node
+     * @param data The new data
+     * @return The new root
+     */
+    public PersistentTreeNode<T> setData(List<?> path, T data) {
+        return update(path, n -> n.withData(data));
+    }
+
+    /**
+     * Add or replace a child of the node at the given path.
+     *
+     * @param path The identifiers from the root down to the parent
+     * @param identifier The identifier of the child
+     * @param child The child
+     * @return The new root
+     */
+    public PersistentTreeNode<T> putChild(List<?> path, Object identifier, PersistentTreeNode<T> child) {
+        return update(path, n -> n.withChild(identifier, child));
+    }
+
+    /**
+     * Remove a child of the node at the given path.
+     *
+     * @param path The identifiers from the root down to the parent
+     * @param identifier The identifier of the child
+     * @return The new root
+     */
+    public PersistentTreeNode<T> removeChild(List<?> path, Object identifier) {
+        return update(path, n -> n.withoutChild(identifier));
+    }
+}
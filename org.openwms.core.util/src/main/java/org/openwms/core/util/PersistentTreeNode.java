@@ -0,0 +1,271 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * A PersistentTreeNode is an immutable {@link TreeNode}. Modifications return a new node
+ * that shares all unchanged children with the original one, so a modification deep in a
+ * tree copies only the nodes along the path to the root. The children of each node are
+ * held in a persistent map, so each copied node costs O(log n) in its fan-out instead of
+ * a copy of all its children. Instances can be read by any number of threads without
+ * synchronization.
+ * <p>
+ * Because subtrees are shared between versions of a tree, a node does not know its
+ * parent and {@link #getParent()} always returns {@literal null}. All mutating methods of
+ * the {@link TreeNode} interface throw an {@link UnsupportedOperationException}. A tree
+ * is serializable if its identifiers and data are.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ * @see PersistentTree
+ */
+public final class PersistentTreeNode<T> implements TreeNode<T> {
+
+    private final T data;
+    private final PersistentChildren<T> children;
+
+    private PersistentTreeNode(T data, PersistentChildren<T> children) {
+        this.data = data;
+        this.children = children;
+    }
+
+    /**
+     * Create a leaf.
+     *
+     * @param data The data of the node, may be {@literal null}
+     * @param <T> The type of node data
+     * @return The node
+     */
+    public static <T> PersistentTreeNode<T> of(T data) {
+        return new PersistentTreeNode<>(data, PersistentChildren.empty());
+    }
+
+    /**
+     * Create an immutable copy of a tree.
+     *
+     * @param root The root of the tree to copy
+     * @param <T> The type of node data
+     * @return The root of the copy
+     */
+    public static <T> PersistentTreeNode<T> copyOf(TreeNode<T> root) {
+        if (root instanceof PersistentTreeNode) {
+            return (PersistentTreeNode<T>) root;
+        }
+        Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[]{root, root.getChildren(), PersistentChildren.<T>empty(), null});
+        PersistentTreeNode<T> result = null;
+        while (!stack.isEmpty()) {
+            Object[] top = stack.peek();
+            @SuppressWarnings("unchecked")
+            Iterator<Map.Entry<Object, TreeNode<T>>> it = (Iterator<Map.Entry<Object, TreeNode<T>>>) top[1];
+            if (it.hasNext()) {
+                Map.Entry<Object, TreeNode<T>> entry = it.next();
+                TreeNode<T> child = entry.getValue();
+                stack.push(new Object[]{child, child.getChildren(), PersistentChildren.<T>empty(), entry.getKey()});
+            } else {
+                stack.pop();
+                @SuppressWarnings("unchecked")
+                TreeNode<T> node = (TreeNode<T>) top[0];
+                @SuppressWarnings("unchecked")
+                PersistentChildren<T> copied = (PersistentChildren<T>) top[2];
+                result = new PersistentTreeNode<>(node.getData(), copied);
+                if (!stack.isEmpty()) {
+                    @SuppressWarnings("unchecked")
+                    PersistentChildren<T> siblings = (PersistentChildren<T>) stack.peek()[2];
+                    stack.peek()[2] = siblings.put(top[3], result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return a node with the given data and the same children.
+     *
+     * @param data The new data
+     * @return The new node
+     */
+    public PersistentTreeNode<T> withData(T data) {
+        return new PersistentTreeNode<>(data, children);
+    }
+
+    /**
+     * Return a node with the given child added or replaced.
+     *
+     * @param identifier The identifier of the child
+     * @param child The child
+     * @return The new node
+     */
+    public PersistentTreeNode<T> withChild(Object identifier, PersistentTreeNode<T> child) {
+        PersistentChildren<T> updated = children.put(identifier, child);
+        return updated == children ? this : new PersistentTreeNode<>(data, updated);
+    }
+
+    /**
+     * Return a node without the given child.
+     *
+     * @param identifier The identifier of the child to remove
+     * @return The new node or this node if it has no such child
+     */
+    public PersistentTreeNode<T> withoutChild(Object identifier) {
+        PersistentChildren<T> updated = children.remove(identifier);
+        return updated == children ? this : new PersistentTreeNode<>(data, updated);
+    }
+
+    /**
+     * Resolve a descendant by the identifiers along the path.
+     *
+     * @param path The identifiers from this node down to the descendant, empty for this node
+     * @return The descendant or {@literal null}
+     */
+    public PersistentTreeNode<T> get(List<?> path) {
+        PersistentTreeNode<T> node = this;
+        for (int i = 0; i < path.size() && node != null; i++) {
+            node = (PersistentTreeNode<T>) node.children.get(path.get(i));
+        }
+        return node;
+    }
+
+    /**
+     * Replace a descendant and copy all nodes along the path, unchanged subtrees are
+     * shared.
+     *
+     * @param path The identifiers from this node down to the descendant, empty for this node
+     * @param update Computes the replacement of the descendant
+     * @return The new node or this node if the update returned the same descendant
+     * @throws IllegalArgumentException If the path does not exist
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentTreeNode<T> update(List<?> path, UnaryOperator<PersistentTreeNode<T>> update) {
+        PersistentTreeNode<T>[] nodes = newArray(path.size() + 1);
+        nodes[0] = this;
+        for (int i = 0; i < path.size(); i++) {
+            nodes[i + 1] = (PersistentTreeNode<T>) nodes[i].children.get(path.get(i));
+            if (nodes[i + 1] == null) {
+                throw new IllegalArgumentException("No node found at path " + path.subList(0, i + 1));
+            }
+        }
+        PersistentTreeNode<T> replaced = update.apply(nodes[path.size()]);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            replaced = nodes[i].withChild(path.get(i), replaced);
+        }
+        return replaced;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> PersistentTreeNode<T>[] newArray(int length) {
+        return new PersistentTreeNode[length];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T getData() {
+        return data;
+    }
+
+    /**
+     * Not supported, use {@link #withData(Object)}.
+     *
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public void setData(T data) {
+        throw new UnsupportedOperationException("A PersistentTreeNode is immutable, use withData");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isLeaf() {
+        return children.isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<Map.Entry<Object, TreeNode<T>>> getChildren() {
+        return children.iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeNode<T> getChild(Object id) {
+        return children.get(id);
+    }
+
+    /**
+     * Not supported, use {@link #withChild(Object, PersistentTreeNode)}.
+     *
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public void addChild(Object identifier, TreeNode<T> child) {
+        throw new UnsupportedOperationException("A PersistentTreeNode is immutable, use withChild");
+    }
+
+    /**
+     * Not supported, use {@link #withoutChild(Object)}.
+     *
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public void removeChild(Object id) {
+        throw new UnsupportedOperationException("A PersistentTreeNode is immutable, use withoutChild");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A PersistentTreeNode may be shared by several parents and always returns
+     * {@literal null}.
+     */
+    @Override
+    public TreeNode<T> getParent() {
+        return null;
+    }
+
+    /**
+     * Not supported.
+     *
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public void setParent(TreeNode<T> parent) {
+        throw new UnsupportedOperationException("A PersistentTreeNode is immutable and does not reference its parent");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "PersistentTreeNode[data=" + data + ", children=" + children + "]";
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+
+/**
+ * A TreeBuilder assembles {@link TreeNode} hierarchies from flat rows that reference their
+ * parent by identifier, like rows loaded from a table with a parent id column. All rows
+ * are indexed by identifier in a hash map, then each row is attached to its parent, so the
+ * whole build is linear in the number of rows. Children keep the order of the rows.
+ * <p>
+ * Rows whose parent identifier does not exist are reported as orphans, rows that are part
+ * of or hang below a parent cycle are reported and not attached at all.
+ * </p>
+ *
+ * @author Heiko Scherrer
+ */
+public final class TreeBuilder {
+
+    /** Minimum number of rows to create nodes in parallel. */
+    public static final int PARALLEL_THRESHOLD = 10_000;
+    private static final byte UNKNOWN = 0;
+    private static final byte VISITING = 1;
+    private static final byte ROOTED = 2;
+    private static final byte ORPHANED = 3;
+    private static final byte CYCLIC = 4;
+
+    private TreeBuilder() {
+    }
+
+    /**
+     * Build the hierarchy of {@link TreeNodeImpl}s, each node holds its row as data.
+     *
+     * @param rows The rows
+     * @param extractor Extracts identifier and parent identifier of a row
+     * @param <K> Type of identifier
+     * @param <V> Type of row
+     * @return The result
+     * @throws IllegalArgumentException If two rows have the same identifier
+     */
+    public static <K, V> Result<K, V> build(List<V> rows, HierarchyExtractor<K, V> extractor) {
+        return build(rows, extractor, TreeBuilder::newNode, false);
+    }
+
+    /**
+     * Build the hierarchy.
+     *
+     * @param rows The rows
+     * @param extractor Extracts identifier and parent identifier of a row
+     * @param nodeFactory Creates the node of a row
+     * @param parallel Whether nodes are created in parallel, for large lists only and the
+     * factory must be thread-safe then
+     * @param <K> Type of identifier
+     * @param <V> Type of row
+     * @return The result
+     * @throws IllegalArgumentException If two rows have the same identifier
+     */
+    public static <K, V> Result<K, V> build(List<V> rows, HierarchyExtractor<K, V> extractor,
+            Function<V, TreeNode<V>> nodeFactory, boolean parallel) {
+        int n = rows.size();
+        TreeNode<V>[] nodes = newArray(n);
+        IntStream range = IntStream.range(0, n);
+        if (parallel && n >= PARALLEL_THRESHOLD) {
+            range = range.parallel();
+        }
+        range.forEach(i -> nodes[i] = nodeFactory.apply(rows.get(i)));
+
+        Object[] ids = new Object[n];
+        Map<K, Integer> index = new HashMap<>((int) (n / 0.75f) + 1);
+        for (int i = 0; i < n; i++) {
+            K id = Objects.requireNonNull(extractor.extractId(rows.get(i)), "Identifier must not be null");
+            ids[i] = id;
+            if (index.putIfAbsent(id, i) != null) {
+                throw new IllegalArgumentException(format("Duplicate identifier [%s]", id));
+            }
+        }
+        int[] parents = new int[n];
+        byte[] state = new byte[n];
+        for (int i = 0; i < n; i++) {
+            K parentId = extractor.extractParentId(rows.get(i));
+            if (parentId == null) {
+                parents[i] = -1;
+                state[i] = ROOTED;
+            } else {
+                Integer p = index.get(parentId);
+                parents[i] = p == null ? -1 : p;
+                state[i] = p == null ? ORPHANED : UNKNOWN;
+            }
+        }
+        List<TreeNode<V>> roots = new ArrayList<>();
+        List<TreeNode<V>> orphans = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (parents[i] == -1) {
+                (state[i] == ROOTED ? roots : orphans).add(nodes[i]);
+            }
+        }
+        classify(parents, state);
+
+        List<V> cyclic = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (state[i] == CYCLIC) {
+                cyclic.add(rows.get(i));
+                nodes[i] = null;
+            } else if (parents[i] != -1) {
+                nodes[parents[i]].addChild(ids[i], nodes[i]);
+            }
+        }
+        return new Result<>(roots, orphans, cyclic, index, nodes);
+    }
+
+    /**
+     * Resolve the state of each node by walking up to the first node with a known state,
+     * every node is walked over once.
+     */
+    private static void classify(int[] parents, byte[] state) {
+        int[] path = new int[16];
+        for (int i = 0; i < state.length; i++) {
+            if (state[i] != UNKNOWN) {
+                continue;
+            }
+            int length = 0;
+            int current = i;
+            while (state[current] == UNKNOWN) {
+                state[current] = VISITING;
+                if (length == path.length) {
+                    int[] grown = new int[length * 2];
+                    System.arraycopy(path, 0, grown, 0, length);
+                    path = grown;
+                }
+                path[length++] = current;
+                current = parents[current];
+            }
+            // a node still being visited means the walk ran into itself
+            byte resolved = state[current] == VISITING ? CYCLIC : state[current];
+            for (int k = 0; k < length; k++) {
+                state[path[k]] = resolved;
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <V> TreeNode<V>[] newArray(int length) {
+        return new TreeNode[length];
+    }
+
+    private static <V> TreeNode<V> newNode(V row) {
+        TreeNodeImpl<V> node = new TreeNodeImpl<>();
+        node.setData(row);
+        return node;
+    }
+
+    /**
+     * The Result of a build.
+     *
+     * @param <K> Type of identifier
+     * @param <V> Type of row
+     */
+    public static final class Result<K, V> {
+
+        private final List<TreeNode<V>> roots;
+        private final List<TreeNode<V>> orphans;
+        private final List<V> cyclic;
+        private final Map<K, Integer> index;
+        private final TreeNode<V>[] nodes;
+
+        private Result(List<TreeNode<V>> roots, List<TreeNode<V>> orphans, List<V> cyclic, Map<K, Integer> index, TreeNode<V>[] nodes) {
+            this.roots = Collections.unmodifiableList(roots);
+            this.orphans = Collections.unmodifiableList(orphans);
+            this.cyclic = Collections.unmodifiableList(cyclic);
+            this.index = index;
+            this.nodes = nodes;
+        }
+
+        /**
+         * Get the only root.
+         *
+         * @return The root
+         * @throws IllegalStateException If there is not exactly one root
+         */
+        public TreeNode<V> getRoot() {
+            if (roots.size() != 1) {
+                throw new IllegalStateException(format("Expected exactly one root but found [%d]", roots.size()));
+            }
+            return roots.get(0);
+        }
+
+        /**
+         * Get all nodes without parent identifier.
+         *
+         * @return The roots in row order
+         */
+        public List<TreeNode<V>> getRoots() {
+            return roots;
+        }
+
+        /**
+         * Get all nodes whose parent identifier does not exist, with their subtrees.
+         *
+         * @return The orphans in row order
+         */
+        public List<TreeNode<V>> getOrphans() {
+            return orphans;
+        }
+
+        /**
+         * Get all rows that are part of a parent cycle or hang below one. These rows have
+         * not been attached to any node.
+         *
+         * @return The rows in row order
+         */
+        public List<V> getCyclicRows() {
+            return cyclic;
+        }
+
+        /**
+         * Check whether all rows have been attached to a root.
+         *
+         * @return {@literal true} if there are neither orphans nor cycles
+         */
+        public boolean isComplete() {
+            return orphans.isEmpty() && cyclic.isEmpty();
+        }
+
+        /**
+         * Find the node of a row.
+         *
+         * @param id The identifier of the row
+         * @return The node or {@literal null} if unknown or part of a cycle
+         */
+        public TreeNode<V> getNode(K id) {
+            Integer i = index.get(id);
+            return i == null ? null : nodes[i];
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * A TreeChangeRecorder applies mutations to a {@link TreeNode} hierarchy and records each
+ * of them in a change log. The log is drained as a {@link TreePatch} and shipped to
+ * replicas instead of the whole tree. Repeated data changes of the same node between two
+ * structural changes are collapsed into one operation.
+ * <p>
+ * All nodes passed in must belong to the tree of the recorder. A TreeChangeRecorder is not
+ * thread-safe.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class TreeChangeRecorder<T> {
+
+    private final TreeNode<T> root;
+    private final List<TreePatch.Operation<T>> log = new ArrayList<>();
+    private final Map<List<Object>, Integer> lastDataChange = new HashMap<>();
+
+    /**
+     * Create a TreeChangeRecorder.
+     *
+     * @param root The root of the tree to record changes of
+     */
+    public TreeChangeRecorder(TreeNode<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * Add or replace a child and record the operation. The path of the parent is resolved
+     * by searching the identifier of each ancestor among its siblings, prefer
+     * {@link #addChild(List, Object, TreeNode)} if the path is known.
+     *
+     * @param parent The parent
+     * @param identifier The identifier of the child
+     * @param child The child with its subtree
+     */
+    public void addChild(TreeNode<T> parent, Object identifier, TreeNode<T> child) {
+        addChild(parent, pathOf(parent), identifier, child);
+    }
+
+    /**
+     * Add or replace a child below the node at a path and record the operation.
+     *
+     * @param parentPath The identifiers from the root down to the parent
+     * @param identifier The identifier of the child
+     * @param child The child with its subtree
+     * @throws IllegalArgumentException If the path does not exist
+     */
+    public void addChild(List<Object> parentPath, Object identifier, TreeNode<T> child) {
+        addChild(nodeAt(parentPath), new ArrayList<>(parentPath), identifier, child);
+    }
+
+    private void addChild(TreeNode<T> parent, List<Object> path, Object identifier, TreeNode<T> child) {
+        parent.addChild(identifier, child);
+        structuralChange();
+        log.add(TreePatch.Operation.add(path, identifier, child));
+    }
+
+    /**
+     * Remove a child and record the operation. The path of the parent is resolved by
+     * searching the identifier of each ancestor among its siblings, prefer
+     * {@link #removeChild(List, Object)} if the path is known.
+     *
+     * @param parent The parent
+     * @param identifier The identifier of the child
+     */
+    public void removeChild(TreeNode<T> parent, Object identifier) {
+        if (parent.getChild(identifier) != null) {
+            removeChild(parent, pathOf(parent), identifier);
+        }
+    }
+
+    /**
+     * Remove a child of the node at a path and record the operation.
+     *
+     * @param parentPath The identifiers from the root down to the parent
+     * @param identifier The identifier of the child
+     * @throws IllegalArgumentException If the path does not exist
+     */
+    public void removeChild(List<Object> parentPath, Object identifier) {
+        TreeNode<T> parent = nodeAt(parentPath);
+        if (parent.getChild(identifier) != null) {
+            removeChild(parent, new ArrayList<>(parentPath), identifier);
+        }
+    }
+
+    private void removeChild(TreeNode<T> parent, List<Object> path, Object identifier) {
+        parent.removeChild(identifier);
+        structuralChange();
+        log.add(TreePatch.Operation.remove(path, identifier));
+    }
+
+    /**
+     * Set the data of a node and record the operation. The path of the node is resolved
+     * by searching the identifier of each ancestor among its siblings, prefer
+     * {@link #setData(List, Object)} if the path is known.
+     *
+     * @param node The node
+     * @param data The new data
+     */
+    public void setData(TreeNode<T> node, T data) {
+        setData(node, pathOf(node), data);
+    }
+
+    /**
+     * Set the data of the node at a path and record the operation.
+     *
+     * @param path The identifiers from the root down to the node
+     * @param data The new data
+     * @throws IllegalArgumentException If the path does not exist
+     */
+    public void setData(List<Object> path, T data) {
+        setData(nodeAt(path), new ArrayList<>(path), data);
+    }
+
+    private void setData(TreeNode<T> node, List<Object> path, T data) {
+        node.setData(data);
+        TreePatch.Operation<T> op = TreePatch.Operation.setData(path, data);
+        Integer former = lastDataChange.get(path);
+        if (former != null) {
+            log.set(former, op);
+        } else {
+            lastDataChange.put(path, log.size());
+            log.add(op);
+        }
+    }
+
+    /**
+     * Get the number of recorded operations.
+     *
+     * @return The number
+     */
+    public int size() {
+        return log.size();
+    }
+
+    /**
+     * Return all recorded operations as patch and clear the log.
+     *
+     * @return The patch
+     */
+    public TreePatch<T> drain() {
+        TreePatch<T> patch = new TreePatch<>(log);
+        log.clear();
+        lastDataChange.clear();
+        return patch;
+    }
+
+    private void structuralChange() {
+        // paths recorded before may no longer address the same node
+        lastDataChange.clear();
+    }
+
+    private TreeNode<T> nodeAt(List<Object> path) {
+        TreeNode<T> node = root;
+        for (Object id : path) {
+            node = node.getChild(id);
+            if (node == null) {
+                throw new IllegalArgumentException(format("Path %s does not exist in the recorded tree", path));
+            }
+        }
+        return node;
+    }
+
+    private List<Object> pathOf(TreeNode<T> node) {
+        Deque<Object> path = new ArrayDeque<>();
+        TreeNode<T> current = node;
+        while (!current.equals(root)) {
+            TreeNode<T> parent = current.getParent();
+            if (parent == null) {
+                throw new IllegalArgumentException("The node does not belong to the recorded tree: " + node);
+            }
+            path.addFirst(identifierOf(parent, current));
+            current = parent;
+        }
+        return new ArrayList<>(path);
+    }
+
+    private Object identifierOf(TreeNode<T> parent, TreeNode<T> child) {
+        Iterator<Map.Entry<Object, TreeNode<T>>> children = parent.getChildren();
+        while (children.hasNext()) {
+            Map.Entry<Object, TreeNode<T>> entry = children.next();
+            if (child.equals(entry.getValue())) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalArgumentException("The node is not a child of its parent: " + child);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+/**
+ * A TreeCursor points to one node of a tree and moves along the parent, first child and
+ * next sibling links. The cursor never leaves the subtree it has been created for, the
+ * start node is treated as root. A cursor is reused while it moves, so the values it
+ * returns are only valid for the current position.
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ * @see TreeWalker
+ */
+public interface TreeCursor<T> {
+
+    /**
+     * Get the data of the current node.
+     *
+     * @return The data
+     */
+    T getData();
+
+    /**
+     * Get the identifier of the current node within its parent.
+     *
+     * @return The identifier or {@literal null} at the start node
+     */
+    Object getIdentifier();
+
+    /**
+     * Get the current node, implementations may have to create a view for it.
+     *
+     * @return The node
+     */
+    TreeNode<T> getNode();
+
+    /**
+     * Get the depth of the current node relative to the start node.
+     *
+     * @return The depth, {@literal 0} at the start node
+     */
+    int getDepth();
+
+    /**
+     * Move to the parent, unless the cursor is at the start node.
+     *
+     * @return {@literal true} if moved
+     */
+    boolean toParent();
+
+    /**
+     * Move to the first child.
+     *
+     * @return {@literal true} if moved, {@literal false} for a leaf
+     */
+    boolean toFirstChild();
+
+    /**
+     * Move to the next sibling, unless the cursor is at the start node.
+     *
+     * @return {@literal true} if moved, {@literal false} for the last child
+     */
+    boolean toNextSibling();
+
+    /**
+     * Move back to the start node.
+     */
+    void reset();
+}
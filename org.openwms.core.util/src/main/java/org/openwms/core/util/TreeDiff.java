@@ -0,0 +1,89 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A TreeDiff computes the {@link TreePatch} between two versions of a {@link TreeNode}
+ * hierarchy. Children are matched by their identifiers, node data is compared with
+ * {@link Object#equals(Object)}. Identical node instances are not descended into, so
+ * versions of a {@link PersistentTreeNode} that share most of their subtrees are compared
+ * in time proportional to the changed paths.
+ *
+ * @author Heiko Scherrer
+ */
+public final class TreeDiff {
+
+    private TreeDiff() {
+    }
+
+    /**
+     * Compute the patch that transforms one tree into the other.
+     *
+     * @param source The root of the old version
+     * @param target The root of the new version
+     * @param <T> The type of node data
+     * @return The patch, empty if both trees are equal
+     */
+    public static <T> TreePatch<T> diff(TreeNode<T> source, TreeNode<T> target) {
+        List<TreePatch.Operation<T>> operations = new ArrayList<>();
+        Deque<Object[]> pending = new ArrayDeque<>();
+        pending.push(new Object[]{new ArrayList<>(), source, target});
+        while (!pending.isEmpty()) {
+            Object[] pair = pending.pop();
+            @SuppressWarnings("unchecked")
+            List<Object> path = (List<Object>) pair[0];
+            @SuppressWarnings("unchecked")
+            TreeNode<T> from = (TreeNode<T>) pair[1];
+            @SuppressWarnings("unchecked")
+            TreeNode<T> to = (TreeNode<T>) pair[2];
+            if (from == to) {
+                continue;
+            }
+            if (!Objects.equals(from.getData(), to.getData())) {
+                operations.add(TreePatch.Operation.setData(path, to.getData()));
+            }
+            Iterator<Map.Entry<Object, TreeNode<T>>> fromChildren = from.getChildren();
+            while (fromChildren.hasNext()) {
+                Object id = fromChildren.next().getKey();
+                if (to.getChild(id) == null) {
+                    operations.add(TreePatch.Operation.remove(path, id));
+                }
+            }
+            Iterator<Map.Entry<Object, TreeNode<T>>> toChildren = to.getChildren();
+            while (toChildren.hasNext()) {
+                Map.Entry<Object, TreeNode<T>> entry = toChildren.next();
+                TreeNode<T> existing = from.getChild(entry.getKey());
+                if (existing == null) {
+                    operations.add(TreePatch.Operation.add(path, entry.getKey(), entry.getValue()));
+                } else {
+                    List<Object> childPath = new ArrayList<>(path.size() + 1);
+                    childPath.addAll(path);
+                    childPath.add(entry.getKey());
+                    pending.push(new Object[]{childPath, existing, entry.getValue()});
+                }
+            }
+        }
+        return new TreePatch<>(operations);
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A TreeNodes offers {@link Stream} views and parallel aggregation over {@link TreeNode}
+ * hierarchies. The streams are backed by {@link Spliterator}s that split the work by
+ * subtrees, so that {@code parallel()} streams scale across cores. Traversals are
+ * iterative and do not overflow the stack on deep trees.
+ * <p>
+ * The tree must not be modified while a stream or an aggregation is running.
+ * </p>
+ *
+ * @author Heiko Scherrer
+ */
+public final class TreeNodes {
+
+    /** Default depth up to which {@link #aggregate(TreeNode, BiFunction)} forks subtasks. */
+    public static final int DEFAULT_FORK_DEPTH = 4;
+    /**
+     * The size of a tree is not known upfront. Like {@link java.util.Spliterators.AbstractSpliterator}
+     * the spliterators start with an estimate of {@link Long#MAX_VALUE} and halve it with
+     * each split, so the stream framework stops splitting after a few levels. Beyond
+     * {@value #MAX_SPLIT_DEPTH} splits a spliterator does not split any further.
+     */
+    private static final int MAX_SPLIT_DEPTH = 10;
+    private static final long MIN_SPLIT_ESTIMATE = Long.MAX_VALUE >>> MAX_SPLIT_DEPTH;
+    /** How many subtree roots are expanded at most to find something to split. */
+    private static final int MAX_EXPANSIONS = 64;
+
+    private TreeNodes() {
+    }
+
+    /**
+     * Stream all nodes of a tree in depth-first pre-order, including the root. The stream
+     * is ordered, also when executed in parallel.
+     *
+     * @param root The root of the tree
+     * @param <T> The type of node data
+     * @return A sequential stream, use {@code parallel()} to process subtrees in parallel
+     */
+    public static <T> Stream<TreeNode<T>> depthFirst(TreeNode<T> root) {
+        return StreamSupport.stream(new DepthFirstSpliterator<>(root), false);
+    }
+
+    /**
+     * Stream all nodes of a tree in breadth-first order, including the root. Only
+     * sequential streams keep the breadth-first order, parallel streams process subtrees
+     * independently and are unordered.
+     *
+     * @param root The root of the tree
+     * @param <T> The type of node data
+     * @return A sequential stream, use {@code parallel()} to process subtrees in parallel
+     */
+    public static <T> Stream<TreeNode<T>> breadthFirst(TreeNode<T> root) {
+        return StreamSupport.stream(new BreadthFirstSpliterator<>(root), false);
+    }
+
+    /**
+     * Aggregate a tree bottom-up in the common {@link ForkJoinPool}.
+     *
+     * @param root The root of the tree
+     * @param aggregator Computes the result of a node from the node and the results of its
+     * children
+     * @param <T> The type of node data
+     * @param <R> The type of result
+     * @return The result of the root
+     * @see #aggregate(TreeNode, BiFunction, ForkJoinPool, int)
+     */
+    public static <T, R> R aggregate(TreeNode<T> root, BiFunction<TreeNode<T>, List<R>, R> aggregator) {
+        return aggregate(root, aggregator, ForkJoinPool.commonPool(), DEFAULT_FORK_DEPTH);
+    }
+
+    /**
+     * Aggregate a tree bottom-up. Subtrees up to the fork depth are aggregated in separate
+     * fork-join tasks, deeper subtrees are aggregated sequentially within the task of their
+     * ancestor.
+     *
+     * @param root The root of the tree
+     * @param aggregator Computes the result of a node from the node and the results of its
+     * children in child order
+     * @param pool The pool to execute the tasks
+     * @param forkDepth Up to this depth, each child is aggregated in its own task
+     * @param <T> The type of node data
+     * @param <R> The type of result
+     * @return The result of the root
+     */
+    public static <T, R> R aggregate(TreeNode<T> root, BiFunction<TreeNode<T>, List<R>, R> aggregator, ForkJoinPool pool, int forkDepth) {
+        return pool.invoke(new AggregateTask<>(root, aggregator, 0, forkDepth));
+    }
+
+    private static <T, R> R aggregateSequential(TreeNode<T> root, BiFunction<TreeNode<T>, List<R>, R> aggregator) {
+        Deque<Frame<T, R>> stack = new ArrayDeque<>();
+        stack.push(new Frame<>(root));
+        R result = null;
+        while (!stack.isEmpty()) {
+            Frame<T, R> top = stack.peek();
+            if (top.children.hasNext()) {
+                stack.push(new Frame<>(top.children.next().getValue()));
+            } else {
+                stack.pop();
+                result = aggregator.apply(top.node, top.results);
+                if (!stack.isEmpty()) {
+                    stack.peek().results.add(result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static final class Frame<T, R> {
+
+        private final TreeNode<T> node;
+        private final Iterator<Map.Entry<Object, TreeNode<T>>> children;
+        private final List<R> results = new ArrayList<>();
+
+        Frame(TreeNode<T> node) {
+            this.node = node;
+            this.children = node.getChildren();
+        }
+    }
+
+    private static final class AggregateTask<T, R> extends RecursiveTask<R> {
+
+        private final TreeNode<T> node;
+        private final BiFunction<TreeNode<T>, List<R>, R> aggregator;
+        private final int depth;
+        private final int forkDepth;
+
+        AggregateTask(TreeNode<T> node, BiFunction<TreeNode<T>, List<R>, R> aggregator, int depth, int forkDepth) {
+            this.node = node;
+            this.aggregator = aggregator;
+            this.depth = depth;
+            this.forkDepth = forkDepth;
+        }
+
+        @Override
+        protected R compute() {
+            if (depth >= forkDepth || node.isLeaf()) {
+                return aggregateSequential(node, aggregator);
+            }
+            List<AggregateTask<T, R>> tasks = new ArrayList<>();
+            Iterator<Map.Entry<Object, TreeNode<T>>> children = node.getChildren();
+            while (children.hasNext()) {
+                tasks.add(new AggregateTask<>(children.next().getValue(), aggregator, depth + 1, forkDepth));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            List<R> results = new ArrayList<>(tasks.size());
+            for (AggregateTask<T, R> task : tasks) {
+                results.add(task.join());
+            }
+            return aggregator.apply(node, results);
+        }
+    }
+
+    /**
+     * A pending entry of a spliterator is either a subtree or a run of single nodes whose
+     * subtrees are handled elsewhere.
+     */
+    private abstract static class TreeSpliterator<T> implements Spliterator<TreeNode<T>> {
+
+        final Deque<Object> pending;
+        long estimate;
+
+        TreeSpliterator(Deque<Object> pending, long estimate) {
+            this.pending = pending;
+            this.estimate = estimate;
+        }
+
+        /** Add the children of a node to the pending entries. */
+        abstract void addChildren(TreeNode<T> node);
+
+        /** Create a spliterator over the given pending entries. */
+        abstract TreeSpliterator<T> create(Deque<Object> entries, long estimate);
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super TreeNode<T>> action) {
+            Object next = pending.peekFirst();
+            if (next == null) {
+                return false;
+            }
+            if (next instanceof SingleNodes) {
+                Deque<TreeNode<T>> nodes = ((SingleNodes<T>) next).nodes;
+                TreeNode<T> node = nodes.pollFirst();
+                if (nodes.isEmpty()) {
+                    pending.pollFirst();
+                }
+                action.accept(node);
+                return true;
+            }
+            pending.pollFirst();
+            TreeNode<T> node = (TreeNode<T>) next;
+            addChildren(node);
+            action.accept(node);
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         * <p>
+         * As long as there is only one pending subtree, its root is moved to the run of
+         * single nodes and replaced by its children, so a chain of single children does
+         * not end up in splits of one node. The leading half of the pending entries is
+         * handed off, that is a prefix in encounter order.
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public Spliterator<TreeNode<T>> trySplit() {
+            if (estimate < MIN_SPLIT_ESTIMATE) {
+                return null;
+            }
+            for (int i = 0; i < MAX_EXPANSIONS && hasOneSubtree(); i++) {
+                TreeNode<T> node = (TreeNode<T>) pending.pollLast();
+                SingleNodes<T> singles = pending.isEmpty() ? new SingleNodes<>() : (SingleNodes<T>) pending.pollFirst();
+                singles.nodes.addLast(node);
+                addChildren(node);
+                pending.addFirst(singles);
+            }
+            int half = pending.size() / 2;
+            if (half == 0) {
+                return null;
+            }
+            Deque<Object> prefix = new ArrayDeque<>(half);
+            for (int i = 0; i < half; i++) {
+                prefix.addLast(pending.pollFirst());
+            }
+            long split = estimate >>> 1;
+            estimate -= split;
+            return create(prefix, split);
+        }
+
+        /** Whether the pending entries are one subtree, optionally after a run of single nodes. */
+        private boolean hasOneSubtree() {
+            if (pending.peekLast() instanceof SingleNodes) {
+                return false;
+            }
+            return pending.size() == 1 || pending.size() == 2 && pending.peekFirst() instanceof SingleNodes;
+        }
+
+        @Override
+        public long estimateSize() {
+            return pending.isEmpty() ? 0 : estimate;
+        }
+    }
+
+    private static <T> Deque<Object> rootOf(TreeNode<T> root) {
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.add(root);
+        return pending;
+    }
+
+    /**
+     * Iterates in pre-order, children are added in front of the pending entries.
+     */
+    private static final class DepthFirstSpliterator<T> extends TreeSpliterator<T> {
+
+        DepthFirstSpliterator(TreeNode<T> root) {
+            super(rootOf(root), Long.MAX_VALUE);
+        }
+
+        private DepthFirstSpliterator(Deque<Object> pending, long estimate) {
+            super(pending, estimate);
+        }
+
+        @Override
+        void addChildren(TreeNode<T> node) {
+            Iterator<Map.Entry<Object, TreeNode<T>>> children = node.getChildren();
+            if (!children.hasNext()) {
+                return;
+            }
+            List<TreeNode<T>> list = new ArrayList<>();
+            children.forEachRemaining(e -> list.add(e.getValue()));
+            for (int i = list.size() - 1; i >= 0; i--) {
+                pending.addFirst(list.get(i));
+            }
+        }
+
+        @Override
+        TreeSpliterator<T> create(Deque<Object> entries, long estimate) {
+            return new DepthFirstSpliterator<>(entries, estimate);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+
+    private static final class SingleNodes<T> {
+
+        private final Deque<TreeNode<T>> nodes = new ArrayDeque<>();
+    }
+
+    /**
+     * Iterates in breadth-first order, children are added at the end of the pending
+     * entries. Splitting hands off half of the current frontier together with their
+     * subtrees.
+     */
+    private static final class BreadthFirstSpliterator<T> extends TreeSpliterator<T> {
+
+        BreadthFirstSpliterator(TreeNode<T> root) {
+            super(rootOf(root), Long.MAX_VALUE);
+        }
+
+        private BreadthFirstSpliterator(Deque<Object> pending, long estimate) {
+            super(pending, estimate);
+        }
+
+        @Override
+        void addChildren(TreeNode<T> node) {
+            Iterator<Map.Entry<Object, TreeNode<T>>> children = node.getChildren();
+            while (children.hasNext()) {
+                pending.addLast(children.next().getValue());
+            }
+        }
+
+        @Override
+        TreeSpliterator<T> create(Deque<Object> entries, long estimate) {
+            return new BreadthFirstSpliterator<>(entries, estimate);
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+
+/**
+ * A TreePatch is an ordered list of {@link Operation}s that transforms one version of a
+ * {@link TreeNode} hierarchy into another. Nodes are addressed by the identifiers along
+ * the path from the root, so a patch can be applied to any replica of the tree.
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ * @see TreeDiff
+ * @see TreeChangeRecorder
+ */
+public class TreePatch<T> implements Serializable {
+
+    private final List<Operation<T>> operations;
+
+    /**
+     * The kind of an {@link Operation}.
+     */
+    public enum OperationType {
+        /** Add or replace a child with its subtree. */
+        ADD,
+        /** Remove a child with its subtree. */
+        REMOVE,
+        /** Replace the data of a node. */
+        SET_DATA
+    }
+
+    /**
+     * Create a TreePatch.
+     *
+     * @param operations The operations in the order to apply
+     */
+    public TreePatch(List<Operation<T>> operations) {
+        this.operations = Collections.unmodifiableList(new ArrayList<>(operations));
+    }
+
+    /**
+     * Get the operations.
+     *
+     * @return The operations in the order to apply, unmodifiable
+     */
+    public List<Operation<T>> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Check whether the patch contains any operation.
+     *
+     * @return {@literal true} if not
+     */
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * Apply the patch to a replica, new nodes are created as {@link TreeNodeImpl}.
+     *
+     * @param root The root of the replica
+     * @throws IllegalStateException If a path does not exist in the replica
+     */
+    public void applyTo(TreeNode<T> root) {
+        applyTo(root, TreeNodeImpl::new);
+    }
+
+    /**
+     * Apply the patch to a replica.
+     *
+     * @param root The root of the replica
+     * @param nodeFactory Creates the nodes of added subtrees
+     * @throws IllegalStateException If a path does not exist in the replica
+     */
+    public void applyTo(TreeNode<T> root, Supplier<TreeNode<T>> nodeFactory) {
+        for (Operation<T> op : operations) {
+            op.applyTo(root, nodeFactory);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "TreePatch" + operations;
+    }
+
+    /**
+     * An Operation is one modification of the tree.
+     *
+     * @param <T> The type of node data
+     */
+    public static final class Operation<T> implements Serializable {
+
+        private final OperationType type;
+        private final List<Object> path;
+        private final Object identifier;
+        private final T data;
+        private final Subtree<T> subtree;
+
+        private Operation(OperationType type, List<Object> path, Object identifier, T data, Subtree<T> subtree) {
+            this.type = type;
+            this.path = Collections.unmodifiableList(new ArrayList<>(path));
+            this.identifier = identifier;
+            this.data = data;
+            this.subtree = subtree;
+        }
+
+        /**
+         * Create an operation that adds or replaces a child with a copy of its subtree.
+         *
+         * @param parentPath The path of the parent
+         * @param identifier The identifier of the child
+         * @param child The child
+         * @param <T> The type of node data
+         * @return The operation
+         */
+        public static <T> Operation<T> add(List<Object> parentPath, Object identifier, TreeNode<T> child) {
+            return new Operation<>(OperationType.ADD, parentPath, identifier, null, Subtree.copyOf(child));
+        }
+
+        /**
+         * Create an operation that removes a child.
+         *
+         * @param parentPath The path of the parent
+         * @param identifier The identifier of the child
+         * @param <T> The type of node data
+         * @return The operation
+         */
+        public static <T> Operation<T> remove(List<Object> parentPath, Object identifier) {
+            return new Operation<>(OperationType.REMOVE, parentPath, identifier, null, null);
+        }
+
+        /**
+         * Create an operation that replaces the data of a node.
+         *
+         * @param path The path of the node
+         * @param data The new data
+         * @param <T> The type of node data
+         * @return The operation
+         */
+        public static <T> Operation<T> setData(List<Object> path, T data) {
+            return new Operation<>(OperationType.SET_DATA, path, null, data, null);
+        }
+
+        public OperationType getType() {
+            return type;
+        }
+
+        /**
+         * Get the path of the parent for {@code ADD} and {@code REMOVE}, or the path of the
+         * node for {@code SET_DATA}.
+         *
+         * @return The identifiers from the root down
+         */
+        public List<Object> getPath() {
+            return path;
+        }
+
+        public Object getIdentifier() {
+            return identifier;
+        }
+
+        public T getData() {
+            return data;
+        }
+
+        /**
+         * Get the number of nodes added by this operation.
+         *
+         * @return The number
+         */
+        public int getAddedNodes() {
+            return subtree == null ? 0 : subtree.size();
+        }
+
+        void applyTo(TreeNode<T> root, Supplier<TreeNode<T>> nodeFactory) {
+            TreeNode<T> target = root;
+            for (Object id : path) {
+                target = target.getChild(id);
+                if (target == null) {
+                    throw new IllegalStateException(format("Path %s does not exist in the tree", path));
+                }
+            }
+            switch (type) {
+                case ADD:
+                    target.addChild(identifier, subtree.create(nodeFactory));
+                    break;
+                case REMOVE:
+                    target.removeChild(identifier);
+                    break;
+                case SET_DATA:
+                    target.setData(data);
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported operation " + type);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            switch (type) {
+                case ADD:
+                    return "ADD " + path + "/" + identifier + " (" + subtree.size() + " nodes)";
+                case REMOVE:
+                    return "REMOVE " + path + "/" + identifier;
+                default:
+                    return "SET_DATA " + path + "=" + data;
+            }
+        }
+    }
+
+    /**
+     * A detached copy of a subtree in pre-order, each node refers to its parent by index.
+     */
+    private static final class Subtree<T> implements Serializable {
+
+        private final int[] parents;
+        private final Object[] identifiers;
+        private final Object[] data;
+
+        private Subtree(int[] parents, Object[] identifiers, Object[] data) {
+            this.parents = parents;
+            this.identifiers = identifiers;
+            this.data = data;
+        }
+
+        static <T> Subtree<T> copyOf(TreeNode<T> root) {
+            List<Integer> parents = new ArrayList<>();
+            List<Object> identifiers = new ArrayList<>();
+            List<Object> data = new ArrayList<>();
+            parents.add(-1);
+            identifiers.add(null);
+            data.add(root.getData());
+            Deque<Object[]> stack = new ArrayDeque<>();
+            stack.push(new Object[]{0, root.getChildren()});
+            while (!stack.isEmpty()) {
+                Object[] top = stack.peek();
+                @SuppressWarnings("unchecked")
+                Iterator<Map.Entry<Object, TreeNode<T>>> it = (Iterator<Map.Entry<Object, TreeNode<T>>>) top[1];
+                if (it.hasNext()) {
+                    Map.Entry<Object, TreeNode<T>> entry = it.next();
+                    int index = parents.size();
+                    parents.add((Integer) top[0]);
+                    identifiers.add(entry.getKey());
+                    data.add(entry.getValue().getData());
+                    stack.push(new Object[]{index, entry.getValue().getChildren()});
+                } else {
+                    stack.pop();
+                }
+            }
+            return new Subtree<>(parents.stream().mapToInt(Integer::intValue).toArray(), identifiers.toArray(), data.toArray());
+        }
+
+        int size() {
+            return parents.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        TreeNode<T> create(Supplier<TreeNode<T>> nodeFactory) {
+            List<TreeNode<T>> nodes = new ArrayList<>(parents.length);
+            for (int i = 0; i < parents.length; i++) {
+                TreeNode<T> node = nodeFactory.get();
+                node.setData((T) data[i]);
+                nodes.add(node);
+                if (parents[i] >= 0) {
+                    nodes.get(parents[i]).addChild(identifiers[i], node);
+                }
+            }
+            return nodes.get(0);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static java.lang.String.format;
+
+/**
+ * A TreePathIndex maps materialized paths to the nodes of a tree. A path is built from the
+ * String representations of the identifiers from the root down to the node, joined by a
+ * separator, e.g. {@code WH1/ZONE-A/AISLE-03/RACK-12}. A hash map resolves a full path in
+ * constant time, a sorted map of the same paths finds all nodes below a path or with a
+ * common prefix with a range scan. A third map resolves the path of a node.
+ * <p>
+ * The index is kept up-to-date incrementally when the tree is modified through
+ * {@link #addChild(TreeNode, Object, TreeNode)} and {@link #removeChild(TreeNode, Object)}.
+ * Modifications applied to the tree directly require a {@link #reindex()}. Identifiers
+ * must not contain the separator. A TreePathIndex is not thread-safe.
+ * </p>
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public class TreePathIndex<T> {
+
+    /** The default path separator. */
+    public static final String DEFAULT_SEPARATOR = "/";
+
+    private final TreeNode<T> root;
+    private final String rootPath;
+    private final String separator;
+    private final Map<String, TreeNode<T>> nodesByPath = new HashMap<>();
+    private final NavigableMap<String, TreeNode<T>> sortedPaths = new TreeMap<>();
+    private final Map<TreeNode<T>, String> pathsByNode = new HashMap<>();
+
+    /**
+     * Create an index over a tree, the root has the empty path.
+     *
+     * @param root The root of the tree
+     */
+    public TreePathIndex(TreeNode<T> root) {
+        this(root, "", DEFAULT_SEPARATOR);
+    }
+
+    /**
+     * Create an index over a tree.
+     *
+     * @param root The root of the tree
+     * @param rootPath The path of the root node, e.g. its own identifier
+     * @param separator Separates the identifiers within a path
+     */
+    public TreePathIndex(TreeNode<T> root, String rootPath, String separator) {
+        if (separator == null || separator.isEmpty()) {
+            throw new IllegalArgumentException("The path separator must not be empty");
+        }
+        this.root = root;
+        this.rootPath = rootPath;
+        this.separator = separator;
+        reindex();
+    }
+
+    /**
+     * Rebuild the whole index from the tree.
+     */
+    public void reindex() {
+        nodesByPath.clear();
+        sortedPaths.clear();
+        pathsByNode.clear();
+        index(rootPath, root);
+    }
+
+    /**
+     * Resolve a node by its full path.
+     *
+     * @param path The path
+     * @return The node or {@literal null}
+     */
+    public TreeNode<T> get(String path) {
+        return nodesByPath.get(path);
+    }
+
+    /**
+     * Get the path of a node of the tree.
+     *
+     * @param node The node
+     * @return The path or {@literal null} if the node is not part of the index
+     */
+    public String pathOf(TreeNode<T> node) {
+        return pathsByNode.get(node);
+    }
+
+    /**
+     * Find all nodes whose paths start with the given String prefix.
+     *
+     * @param prefix The prefix, e.g. {@code WH1/ZONE-A/AISLE-0}
+     * @return The nodes sorted by path, an unmodifiable view
+     */
+    public NavigableMap<String, TreeNode<T>> findByPrefix(String prefix) {
+        return Collections.unmodifiableNavigableMap(sortedPaths.subMap(prefix, true, prefix + Character.MAX_VALUE, false));
+    }
+
+    /**
+     * Get all descendants of the node with the given path, not including the node itself.
+     *
+     * @param path The path of the node
+     * @return The descendants sorted by path
+     */
+    public Collection<TreeNode<T>> descendants(String path) {
+        return Collections.unmodifiableCollection(below(path).values());
+    }
+
+    /**
+     * Get the number of indexed nodes.
+     *
+     * @return The number
+     */
+    public int size() {
+        return nodesByPath.size();
+    }
+
+    /**
+     * Add a child to an indexed node and index the child with its subtree. A former child
+     * with the same identifier is removed from the index, a child that is moved within the
+     * tree is re-indexed.
+     *
+     * @param parent The parent, must be part of the index
+     * @param identifier The identifier of the child
+     * @param child The child
+     */
+    public void addChild(TreeNode<T> parent, Object identifier, TreeNode<T> child) {
+        String parentPath = requirePath(parent);
+        TreeNode<T> former = parent.getChild(identifier);
+        if (former != null) {
+            unindex(pathOf(former));
+        }
+        String moved = pathOf(child);
+        if (moved != null) {
+            unindex(moved);
+        }
+        String childPath = childPath(parentPath, identifier);
+        parent.addChild(identifier, child);
+        index(childPath, child);
+    }
+
+    /**
+     * Remove a child from an indexed node and remove the child with its subtree from the
+     * index.
+     *
+     * @param parent The parent, must be part of the index
+     * @param identifier The identifier of the child to remove
+     */
+    public void removeChild(TreeNode<T> parent, Object identifier) {
+        requirePath(parent);
+        TreeNode<T> child = parent.getChild(identifier);
+        if (child != null) {
+            unindex(pathOf(child));
+            parent.removeChild(identifier);
+        }
+    }
+
+    private String requirePath(TreeNode<T> node) {
+        String path = pathsByNode.get(node);
+        if (path == null) {
+            throw new IllegalArgumentException("The node is not part of the index: " + node);
+        }
+        return path;
+    }
+
+    private String childPath(String parentPath, Object identifier) {
+        String id = String.valueOf(identifier);
+        if (id.contains(separator)) {
+            throw new IllegalArgumentException(format("Identifier [%s] contains the path separator [%s]", id, separator));
+        }
+        return parentPath.isEmpty() ? id : parentPath + separator + id;
+    }
+
+    /**
+     * Get the view of all paths below a path, the empty path of a root has all other paths
+     * below it.
+     */
+    private NavigableMap<String, TreeNode<T>> below(String path) {
+        if (path.isEmpty()) {
+            return sortedPaths.tailMap("", false);
+        }
+        String prefix = path + separator;
+        return sortedPaths.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private void put(String path, TreeNode<T> node) {
+        nodesByPath.put(path, node);
+        sortedPaths.put(path, node);
+        pathsByNode.put(node, path);
+    }
+
+    private void index(String path, TreeNode<T> node) {
+        Deque<Object[]> stack = new ArrayDeque<>();
+        put(path, node);
+        stack.push(new Object[]{path, node.getChildren()});
+        while (!stack.isEmpty()) {
+            Object[] top = stack.peek();
+            @SuppressWarnings("unchecked")
+            Iterator<Map.Entry<Object, TreeNode<T>>> it = (Iterator<Map.Entry<Object, TreeNode<T>>>) top[1];
+            if (it.hasNext()) {
+                Map.Entry<Object, TreeNode<T>> entry = it.next();
+                String childPath = childPath((String) top[0], entry.getKey());
+                put(childPath, entry.getValue());
+                stack.push(new Object[]{childPath, entry.getValue().getChildren()});
+            } else {
+                stack.pop();
+            }
+        }
+    }
+
+    private void unindex(String path) {
+        TreeNode<T> node = nodesByPath.remove(path);
+        if (node != null) {
+            sortedPaths.remove(path);
+            pathsByNode.remove(node);
+        }
+        NavigableMap<String, TreeNode<T>> below = below(path);
+        for (Map.Entry<String, TreeNode<T>> descendant : below.entrySet()) {
+            nodesByPath.remove(descendant.getKey());
+            pathsByNode.remove(descendant.getValue());
+        }
+        below.clear();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+/**
+ * A TreeVisitor is called back by the {@link TreeWalker} before and after the children of
+ * each node are visited. The cursor passed in must not be moved by the visitor.
+ *
+ * @param <T> The type of node data
+ * @author Heiko Scherrer
+ */
+public interface TreeVisitor<T> {
+
+    /**
+     * Controls how the walk continues.
+     */
+    enum Result {
+        /** Continue with the children or the next node. */
+        CONTINUE,
+        /** Do not visit the children, the post-order callback is skipped as well. */
+        SKIP_SUBTREE,
+        /** Stop the walk. */
+        TERMINATE
+    }
+
+    /**
+     * Called before the children of a node are visited.
+     *
+     * @param cursor Points to the node
+     * @return How to continue
+     */
+    default Result preVisit(TreeCursor<T> cursor) {
+        return Result.CONTINUE;
+    }
+
+    /**
+     * Called after all children of a node have been visited.
+     *
+     * @param cursor Points to the node
+     * @return How to continue, {@code SKIP_SUBTREE} is treated as {@code CONTINUE}
+     */
+    default Result postVisit(TreeCursor<T> cursor) {
+        return Result.CONTINUE;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A TreeWalker walks a tree depth-first with a {@link TreeCursor} and calls a
+ * {@link TreeVisitor} in pre-order and post-order. The walk only moves the cursor and
+ * keeps no state of its own, so it is iterative and does not allocate anything beyond
+ * what the cursor allocates. A {@link CompactTree#cursor()} walks without any allocation.
+ *
+ * @author Heiko Scherrer
+ */
+public final class TreeWalker {
+
+    private TreeWalker() {
+    }
+
+    /**
+     * Walk the subtree of any {@link TreeNode}.
+     *
+     * @param root The start node
+     * @param visitor The visitor
+     * @param <T> The type of node data
+     * @return {@literal true} if the walk completed, {@literal false} if terminated
+     */
+    public static <T> boolean walk(TreeNode<T> root, TreeVisitor<T> visitor) {
+        return walk(cursor(root), visitor);
+    }
+
+    /**
+     * Walk the subtree of the start node of a cursor, the cursor is reset first.
+     *
+     * @param cursor The cursor
+     * @param visitor The visitor
+     * @param <T> The type of node data
+     * @return {@literal true} if the walk completed, {@literal false} if terminated
+     */
+    public static <T> boolean walk(TreeCursor<T> cursor, TreeVisitor<T> visitor) {
+        cursor.reset();
+        while (true) {
+            TreeVisitor.Result result = visitor.preVisit(cursor);
+            if (result == TreeVisitor.Result.TERMINATE) {
+                return false;
+            }
+            if (result == TreeVisitor.Result.CONTINUE && cursor.toFirstChild()) {
+                continue;
+            }
+            if (result == TreeVisitor.Result.CONTINUE && visitor.postVisit(cursor) == TreeVisitor.Result.TERMINATE) {
+                return false;
+            }
+            while (!cursor.toNextSibling()) {
+                if (!cursor.toParent()) {
+                    return true;
+                }
+                if (visitor.postVisit(cursor) == TreeVisitor.Result.TERMINATE) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a cursor over any {@link TreeNode}. Because a TreeNode only exposes its
+     * children through an iterator, this cursor allocates one iterator per visited inner
+     * node, prefer {@link CompactTree#cursor()} for allocation-free walks.
+     *
+     * @param root The start node
+     * @param <T> The type of node data
+     * @return The cursor
+     */
+    public static <T> TreeCursor<T> cursor(TreeNode<T> root) {
+        return new NodeCursor<>(root);
+    }
+
+    /**
+     * Keeps the child iterators of all nodes on the path from the start node.
+     */
+    private static final class NodeCursor<T> implements TreeCursor<T> {
+
+        private final TreeNode<T> root;
+        private final List<Iterator<Map.Entry<Object, TreeNode<T>>>> siblings = new ArrayList<>();
+        private final List<Map.Entry<Object, TreeNode<T>>> path = new ArrayList<>();
+
+        NodeCursor(TreeNode<T> root) {
+            this.root = root;
+        }
+
+        @Override
+        public T getData() {
+            return getNode().getData();
+        }
+
+        @Override
+        public Object getIdentifier() {
+            return path.isEmpty() ? null : path.get(path.size() - 1).getKey();
+        }
+
+        @Override
+        public TreeNode<T> getNode() {
+            return path.isEmpty() ? root : path.get(path.size() - 1).getValue();
+        }
+
+        @Override
+        public int getDepth() {
+            return path.size();
+        }
+
+        @Override
+        public boolean toParent() {
+            if (path.isEmpty()) {
+                return false;
+            }
+            path.remove(path.size() - 1);
+            siblings.remove(siblings.size() - 1);
+            return true;
+        }
+
+        @Override
+        public boolean toFirstChild() {
+            TreeNode<T> node = getNode();
+            if (node.isLeaf()) {
+                return false;
+            }
+            Iterator<Map.Entry<Object, TreeNode<T>>> children = node.getChildren();
+            if (!children.hasNext()) {
+                return false;
+            }
+            path.add(children.next());
+            siblings.add(children);
+            return true;
+        }
+
+        @Override
+        public boolean toNextSibling() {
+            if (path.isEmpty()) {
+                return false;
+            }
+            Iterator<Map.Entry<Object, TreeNode<T>>> it = siblings.get(siblings.size() - 1);
+            if (!it.hasNext()) {
+                return false;
+            }
+            path.set(path.size() - 1, it.next());
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            path.clear();
+            siblings.clear();
+        }
+    }
+}
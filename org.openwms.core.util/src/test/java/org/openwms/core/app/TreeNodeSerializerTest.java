@@ -0,0 +1,124 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.jupiter.api.Test;
+import org.openwms.core.util.LazyTreeCache;
+import org.openwms.core.util.LazyTreeNode;
+import org.openwms.core.util.TreeNode;
+import org.openwms.core.util.TreeNodeImpl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A TreeNodeSerializerTest.
+ *
+ * @author Heiko Scherrer
+ */
+class TreeNodeSerializerTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private static ObjectMapper mapper(TreeNodeSerializer serializer) {
+        return new ObjectMapper().registerModule(new SimpleModule().addSerializer(serializer));
+    }
+
+    private static TreeNode<String> node(TreeNode<String> parent, Object id, String data) {
+        var node = new TreeNodeImpl<String>();
+        node.setData(data);
+        if (parent != null) {
+            parent.addChild(id, node);
+        }
+        return node;
+    }
+
+    /** Each node has two children, the tree is three levels deep. */
+    private Map<Object, String> load(LazyTreeNode<String> node) {
+        loads.incrementAndGet();
+        Map<Object, String> children = new LinkedHashMap<>();
+        if (node.getData().split("/").length < 3) {
+            for (int i = 0; i < 2; i++) {
+                children.put(String.valueOf(i), node.getData() + "/" + i);
+            }
+        }
+        return children;
+    }
+
+    @Test void testShape() throws Exception {
+        var root = node(null, null, "R");
+        var a = node(root, "a", "A");
+        node(a, "c", "C");
+        node(root, "b", "B");
+
+        assertEquals("{\"data\":\"R\",\"children\":["
+                        + "{\"id\":\"a\",\"data\":\"A\",\"children\":[{\"id\":\"c\",\"data\":\"C\"}]},"
+                        + "{\"id\":\"b\",\"data\":\"B\"}]}",
+                mapper(new TreeNodeSerializer()).writeValueAsString(root),
+                "Nodes shall be written with id, data and children, leaves without children");
+    }
+
+    @Test void testDepthLimit() throws Exception {
+        var root = node(null, null, "R");
+        var a = node(root, "a", "A");
+        node(a, "c", "C");
+        node(root, "b", "B");
+        var mapper = mapper(new TreeNodeSerializer(1, false));
+
+        assertEquals("{\"data\":\"R\",\"children\":["
+                        + "{\"id\":\"a\",\"data\":\"A\",\"hasChildren\":true},"
+                        + "{\"id\":\"b\",\"data\":\"B\"}]}",
+                mapper.writeValueAsString(root),
+                "Inner nodes at the depth limit shall be flagged, leaves shall not");
+        assertEquals("{\"data\":\"R\",\"hasChildren\":true}",
+                mapper.writer().withAttribute(TreeNodeSerializer.MAX_DEPTH_ATTRIBUTE, 0).writeValueAsString(root),
+                "The attribute shall override the default depth limit");
+        assertEquals("{\"data\":\"R\",\"children\":["
+                        + "{\"id\":\"a\",\"data\":\"A\",\"children\":[{\"id\":\"c\",\"data\":\"C\"}]},"
+                        + "{\"id\":\"b\",\"data\":\"B\"}]}",
+                mapper.writer().withAttribute(TreeNodeSerializer.MAX_DEPTH_ATTRIBUTE, 5).writeValueAsString(root),
+                "The attribute shall also raise the default depth limit");
+    }
+
+    @Test void testUnloadedLazyNodesAreNotLoaded() throws Exception {
+        var cache = new LazyTreeCache<String>(this::load, 1000);
+        var root = cache.root("R");
+
+        assertEquals("{\"data\":\"R\",\"hasChildren\":true}",
+                mapper(new TreeNodeSerializer()).writeValueAsString(root),
+                "An unloaded node shall be flagged");
+        assertEquals(0, loads.get(), "Nothing shall be loaded without loadLazyChildren");
+
+        assertEquals("{\"data\":\"R\",\"children\":["
+                        + "{\"id\":\"0\",\"data\":\"R/0\",\"hasChildren\":true},"
+                        + "{\"id\":\"1\",\"data\":\"R/1\",\"hasChildren\":true}]}",
+                mapper(new TreeNodeSerializer(1, true)).writeValueAsString(root),
+                "Unloaded nodes at the depth limit shall be flagged");
+        assertEquals(1, loads.get(), "Only the levels above the depth limit shall be loaded");
+        assertTrue(root.isLoaded(), "The root shall be loaded");
+        assertFalse(((LazyTreeNode<String>) root.getChild("0")).isLoaded(), "Nodes at the depth limit shall not be loaded");
+
+        mapper(new TreeNodeSerializer(5, true)).writeValueAsString(root);
+        assertEquals(7, loads.get(), "All levels within the depth limit shall be loaded");
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.junit.jupiter.api.Test;
+import org.openwms.core.time.HybridLogicalClock;
+import org.openwms.core.time.TimeProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A EventClockTest.
+ *
+ * @author Heiko Scherrer
+ */
+class EventClockTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+    private final AtomicLong wall = new AtomicLong(T0);
+
+    private EventClock eventClock() {
+        var beans = new StaticListableBeanFactory();
+        beans.addBean("timeProvider", new TimeProvider() {
+            @Override
+            public Instant now() {
+                return Instant.ofEpochMilli(wall.get());
+            }
+        });
+        return new EventClock(beans.getBeanProvider(TimeProvider.class));
+    }
+
+    @Test void testStampOnlyUnstampedEvents() {
+        var clock = eventClock();
+        var event = new RootApplicationEvent(this);
+        assertSame(event, clock.stamp(event), "The same event shall be returned");
+        assertEquals(HybridLogicalClock.encode(T0, 0), event.getHlcTimestamp(), "The event shall be stamped with the TimeProvider time");
+
+        var stamped = new RootApplicationEvent(this);
+        stamped.setHlcTimestamp(42);
+        clock.stamp(stamped);
+        assertEquals(42, stamped.getHlcTimestamp(), "An already stamped event shall keep its timestamp");
+    }
+
+    @Test void testStampsIncreaseWithStalledClock() {
+        var clock = eventClock();
+        var first = clock.stamp(new RootApplicationEvent(this));
+        var second = clock.stamp(new RootApplicationEvent(this));
+        wall.set(T0 - 5_000);
+        var third = clock.stamp(new RootApplicationEvent(this));
+        assertTrue(first.getHlcTimestamp() < second.getHlcTimestamp(), "Events of the same millisecond shall be ordered");
+        assertTrue(second.getHlcTimestamp() < third.getHlcTimestamp(), "A backward clock shall not reorder events");
+    }
+
+    @Test void testReceivedAdvancesClock() {
+        var clock = eventClock();
+        clock.stamp(new RootApplicationEvent(this));
+        var remote = new RootApplicationEvent(this);
+        remote.setHlcTimestamp(HybridLogicalClock.encode(T0 + 1_000, 3));
+        clock.received(remote);
+        var reply = clock.stamp(new RootApplicationEvent(this));
+        assertTrue(reply.getHlcTimestamp() > remote.getHlcTimestamp(), "An event published after a received one shall be ordered after it");
+
+        long before = clock.getClock().current();
+        clock.received(new RootApplicationEvent(this));
+        assertEquals(before, clock.getClock().current(), "An unstamped remote event shall not change the clock");
+    }
+
+    @Test void testHlcOrder() {
+        var clock = eventClock();
+        var a = clock.stamp(new RootApplicationEvent("a"));
+        var b = clock.stamp(new RootApplicationEvent("b"));
+        wall.set(T0 + 1);
+        var c = clock.stamp(new RootApplicationEvent("c"));
+        List<RootApplicationEvent> events = new ArrayList<>(List.of(c, a, b));
+        events.sort(RootApplicationEvent.HLC_ORDER);
+        assertEquals(List.of(a, b, c), events, "Events shall be sorted by their clock timestamp");
+    }
+}
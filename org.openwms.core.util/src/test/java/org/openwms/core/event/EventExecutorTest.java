@@ -0,0 +1,87 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.junit.jupiter.api.Test;
+import org.openwms.core.exception.IllegalConfigurationValueException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A EventExecutorTest.
+ *
+ * @author Heiko Scherrer
+ */
+class EventExecutorTest {
+
+    @Test void testPropertiesBinding() {
+        var source = new MapConfigurationPropertySource(Map.of(
+                "owms.core.event.executor.core-pool-size", "3",
+                "owms.core.event.executor.max-pool-size", "5",
+                "owms.core.event.executor.queue-capacity", "0",
+                "owms.core.event.executor.keep-alive", "10s",
+                "owms.core.event.executor.rejection-policy", "abort",
+                "owms.core.event.executor.thread-name-prefix", "test-"));
+        var properties = new Binder(source).bind(EventExecutorProperties.PREFIX, EventExecutorProperties.class).get();
+        assertEquals(3, properties.getCorePoolSize(), "The core pool size shall be bound");
+        assertEquals(5, properties.getMaxPoolSize(), "The max pool size shall be bound");
+        assertEquals(0, properties.getQueueCapacity(), "The queue capacity shall be bound");
+        assertEquals(Duration.ofSeconds(10), properties.getKeepAlive(), "The keep alive shall be bound");
+        assertEquals(EventExecutorProperties.RejectionPolicy.ABORT, properties.getRejectionPolicy(), "The policy shall be bound case-insensitive");
+        assertFalse(properties.isVirtualThreads(), "Platform threads are the default");
+    }
+
+    @Test void testInvalidSizes() {
+        assertThrows(IllegalConfigurationValueException.class, () -> EventExecutor.platformThreads(4, 2, 10, Duration.ZERO,
+                EventExecutorProperties.RejectionPolicy.ABORT, "t-"), "Max pool size must not be less than the core size");
+        assertThrows(IllegalConfigurationValueException.class, () -> EventExecutor.platformThreads(1, 2, -1, Duration.ZERO,
+                EventExecutorProperties.RejectionPolicy.ABORT, "t-"), "A negative queue capacity is invalid");
+        assertThrows(IllegalConfigurationValueException.class, () -> EventExecutor.platformThreads(1, 2, 0, Duration.ZERO,
+                EventExecutorProperties.RejectionPolicy.DISCARD_OLDEST, "t-"), "DISCARD_OLDEST cannot be used with direct hand-off");
+    }
+
+    @Test void testRejectionsAreCounted() throws Exception {
+        var executor = EventExecutor.platformThreads(1, 1, 0, Duration.ofSeconds(1),
+                EventExecutorProperties.RejectionPolicy.DISCARD, "t-");
+        var release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            executor.execute(() -> { });
+            assertEquals(1, executor.getRejectedCount(), "The second task shall be rejected while the only thread is busy");
+            assertEquals(2, executor.getSubmittedCount(), "Both tasks were submitted");
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertTrue(executor.getCompletedCount() >= 1, "The first task shall complete");
+    }
+}
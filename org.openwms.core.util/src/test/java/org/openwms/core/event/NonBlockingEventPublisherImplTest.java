@@ -0,0 +1,166 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openwms.core.time.TimeProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A NonBlockingEventPublisherImplTest.
+ *
+ * @author Heiko Scherrer
+ */
+class NonBlockingEventPublisherImplTest {
+
+    private static final Instant NOW = Instant.parse("2023-01-01T00:00:00Z");
+    private final InMemoryStore store = new InMemoryStore();
+    private final List<RootApplicationEvent> received = new CopyOnWriteArrayList<>();
+    private CountDownLatch delivered;
+    private EventExecutor executor;
+    private NonBlockingEventPublisherImpl<RootApplicationEvent> publisher;
+
+    @BeforeEach void onBefore() {
+        delivered = new CountDownLatch(1);
+        executor = EventExecutor.platformThreads(1, 1, 10, Duration.ofSeconds(1), EventExecutorProperties.RejectionPolicy.ABORT, "t-");
+        var dispatcher = new SimpleEventDispatcher(null);
+        dispatcher.subscribe(RootApplicationEvent.class, e -> {
+            received.add(e);
+            delivered.countDown();
+        });
+        var beans = new StaticListableBeanFactory();
+        beans.addBean("eventClock", new EventClock(beans.getBeanProvider(TimeProvider.class)));
+        beans.addBean("pendingEventStore", store);
+        beans.addBean("timeProvider", new TimeProvider() {
+            @Override
+            public Instant now() {
+                return NOW;
+            }
+        });
+        publisher = new NonBlockingEventPublisherImpl<>(dispatcher, beans.getBeanProvider(EventClock.class), executor,
+                beans.getBeanProvider(PendingEventStore.class), beans.getBeanProvider(TimeProvider.class));
+    }
+
+    @AfterEach void onAfter() {
+        publisher.destroy();
+        executor.shutdown();
+    }
+
+    @Test void testEventsAreStampedOnTheCallingThread() throws Exception {
+        var release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        var event = new RootApplicationEvent(this);
+        publisher.publish(event);
+        assertNotEquals(0, event.getHlcTimestamp(), "The event shall be stamped before it is handed to the executor");
+        assertTrue(received.isEmpty(), "The event shall be dispatched asynchronously");
+        release.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS), "The event shall be dispatched");
+    }
+
+    @Test void testPublishAfterUsesTheTimeProvider() {
+        var scheduled = publisher.publishAfter(new RootApplicationEvent(this), Duration.ofMinutes(5));
+        assertEquals(NOW.plus(Duration.ofMinutes(5)), scheduled.getDueAt(), "The due time shall be calculated from the TimeProvider");
+        assertEquals(scheduled.getDueAt(), store.events.get(scheduled.getId()).getDueAt(), "The event shall be stored with its due time");
+    }
+
+    @Test void testPublishAfterFiresAfterTheDelay() throws Exception {
+        long start = System.nanoTime();
+        publisher.publishAfter(new RootApplicationEvent(this), Duration.ofMillis(300));
+        assertFalse(delivered.await(150, TimeUnit.MILLISECONDS), "The event shall not be published before the delay has passed");
+        assertTrue(delivered.await(5, TimeUnit.SECONDS), "The event shall be published after the delay");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 290, "The event shall be published after the delay");
+    }
+
+    @Test void testPublishAtUsesTheClockOfTheTimeProvider() throws Exception {
+        long start = System.nanoTime();
+        publisher.publishAt(new RootApplicationEvent(this), NOW.plusMillis(300));
+        assertFalse(delivered.await(150, TimeUnit.MILLISECONDS), "The event shall not be published before it is due on the TimeProvider's clock");
+        assertTrue(delivered.await(5, TimeUnit.SECONDS), "The event shall be published when due");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 290, "The event shall be published when due");
+    }
+
+    @Test void testDelayedEventsAreRemovedFromTheStoreWhenPublished() throws Exception {
+        var event = new RootApplicationEvent(this);
+        var scheduled = publisher.publishAt(event, NOW.plusMillis(50));
+        assertTrue(store.events.containsKey(scheduled.getId()), "The scheduled event shall be stored");
+        assertTrue(delivered.await(5, TimeUnit.SECONDS), "The event shall be published when due");
+        assertEquals(List.of(event), received, "The scheduled event shall be published");
+        assertNotEquals(0, event.getHlcTimestamp(), "Delayed events shall be stamped when published");
+        assertTrue(store.removed.await(5, TimeUnit.SECONDS), "A published event shall be removed from the store");
+        assertTrue(store.events.isEmpty(), "No event shall be left in the store");
+    }
+
+    @Test void testCancelledEventsAreRemovedFromTheStore() throws Exception {
+        var scheduled = publisher.publishAfter(new RootApplicationEvent(this), Duration.ofHours(1));
+        assertTrue(scheduled.cancel(), "A pending event can be cancelled");
+        assertTrue(store.events.isEmpty(), "A cancelled event shall be removed from the store");
+    }
+
+    @Test void testStoredEventsAreRescheduledOnStartup() throws Exception {
+        var event = new RootApplicationEvent(this);
+        store.save("stored", event, NOW.minusSeconds(1));
+        publisher.afterPropertiesSet();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS), "An overdue stored event shall be published after a restart");
+        assertEquals(List.of(event), received, "The stored event shall be published");
+        assertTrue(store.removed.await(5, TimeUnit.SECONDS), "The published event shall be removed from the store");
+        assertTrue(store.events.isEmpty(), "No event shall be left in the store");
+    }
+
+    private static final class InMemoryStore implements PendingEventStore {
+
+        private final Map<String, PendingEvent> events = new ConcurrentHashMap<>();
+        private final CountDownLatch removed = new CountDownLatch(1);
+
+        @Override
+        public void save(String id, RootApplicationEvent event, Instant dueAt) {
+            events.put(id, new PendingEvent(id, event, dueAt));
+        }
+
+        @Override
+        public void remove(String id) {
+            events.remove(id);
+            removed.countDown();
+        }
+
+        @Override
+        public Collection<PendingEvent> loadAll() {
+            return List.copyOf(events.values());
+        }
+    }
+}
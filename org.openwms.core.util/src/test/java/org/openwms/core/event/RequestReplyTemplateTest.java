@@ -0,0 +1,151 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A RequestReplyTemplateTest.
+ *
+ * @author Heiko Scherrer
+ */
+class RequestReplyTemplateTest {
+
+    private SimpleEventDispatcher dispatcher;
+    private RequestReplyTemplate template;
+    private final List<Request> requests = new ArrayList<>();
+
+    @BeforeEach void onBefore() {
+        dispatcher = new SimpleEventDispatcher(null);
+        template = new RequestReplyTemplate(dispatcher);
+        dispatcher.subscribe(Request.class, e -> requests.add((Request) e));
+    }
+
+    @AfterEach void onAfter() {
+        template.destroy();
+    }
+
+    @Test void testReplyCompletesRequest() throws Exception {
+        dispatcher.subscribe(Request.class, e -> template.reply(e, new Reply(this, ((Request) e).payload + "-reply")));
+        var future = template.request(new Request(this, "a"), Reply.class);
+        assertEquals("a-reply", future.get(5, TimeUnit.SECONDS).payload, "The request shall complete with the reply");
+        assertEquals(0, template.getPendingCount(), "A completed request shall not be pending anymore");
+    }
+
+    @Test void testRepliesAreCorrelated() throws Exception {
+        var first = template.request(new Request(this, "a"), Reply.class);
+        var second = template.request(new Request(this, "b"), Reply.class);
+        assertEquals(2, template.getPendingCount(), "Both requests shall wait for a reply");
+        assertNotNull(requests.get(0).getCorrelationId(), "The request shall be stamped with a correlation id");
+
+        template.reply(requests.get(1), new Reply(this, "b-reply"));
+        assertTrue(second.isDone(), "The second request shall complete with its reply");
+        assertFalse(first.isDone(), "A reply to another request shall not complete the first request");
+        template.reply(requests.get(0), new Reply(this, "a-reply"));
+        assertEquals("a-reply", first.get(5, TimeUnit.SECONDS).payload, "The first request shall complete with its own reply");
+        assertEquals("b-reply", second.get(5, TimeUnit.SECONDS).payload, "The second request shall complete with its own reply");
+    }
+
+    @Test void testUnrelatedRepliesAreIgnored() {
+        var future = template.request(new Request(this, "a"), Reply.class);
+        var unknown = new Reply(this, "unknown");
+        unknown.setCorrelationId("unknown");
+        dispatcher.dispatch(unknown);
+        dispatcher.dispatch(new Reply(this, "uncorrelated"));
+        assertFalse(future.isDone(), "Replies with another or no correlation id shall be ignored");
+        assertEquals(1, template.getPendingCount(), "The request shall still wait for its reply");
+    }
+
+    @Test void testTimeout() {
+        var future = template.request(new Request(this, "a"), Reply.class, Duration.ofMillis(50));
+        var ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS), "The request shall time out");
+        assertInstanceOf(TimeoutException.class, ex.getCause(), "The request shall complete with a TimeoutException");
+        assertEquals(0, template.getPendingCount(), "A timed out request shall not be pending anymore");
+
+        template.reply(requests.get(0), new Reply(this, "late"));
+        assertInstanceOf(TimeoutException.class, assertThrows(ExecutionException.class, future::get).getCause(),
+                "A late reply shall not change a timed out request");
+    }
+
+    @Test void testCancellationRemovesPendingRequest() {
+        var future = template.request(new Request(this, "a"), Reply.class, Duration.ofHours(1));
+        assertTrue(future.cancel(false), "A pending request can be cancelled");
+        assertEquals(0, template.getPendingCount(), "A cancelled request shall not be pending anymore");
+        template.reply(requests.get(0), new Reply(this, "late"));
+        assertThrows(CancellationException.class, future::join, "A late reply shall not change a cancelled request");
+    }
+
+    @Test void testFailingDispatchCompletesExceptionally() {
+        var failure = new IllegalStateException("failed");
+        dispatcher.subscribe(Request.class, e -> {
+            throw failure;
+        });
+        var future = template.request(new Request(this, "a"), Reply.class);
+        assertSame(failure, assertThrows(ExecutionException.class, future::get).getCause(), "A failing dispatch shall complete the request");
+        assertEquals(0, template.getPendingCount(), "A failed request shall not be pending anymore");
+    }
+
+    @Test void testDestroyCancelsPendingRequests() {
+        var future = template.request(new Request(this, "a"), Reply.class, Duration.ofHours(1));
+        template.destroy();
+        assertThrows(CancellationException.class, () -> {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }, "Pending requests shall be cancelled on shutdown");
+        assertEquals(0, template.getPendingCount(), "No request shall be pending after shutdown");
+    }
+
+    private static final class Request extends RootApplicationEvent {
+
+        private final String payload;
+
+        Request(Object source, String payload) {
+            super(source);
+            this.payload = payload;
+        }
+    }
+
+    private static final class Reply extends RootApplicationEvent {
+
+        private final String payload;
+
+        Reply(Object source, String payload) {
+            super(source);
+            this.payload = payload;
+        }
+    }
+}
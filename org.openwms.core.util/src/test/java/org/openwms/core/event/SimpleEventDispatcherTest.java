@@ -0,0 +1,76 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A SimpleEventDispatcherTest.
+ *
+ * @author Heiko Scherrer
+ */
+class SimpleEventDispatcherTest {
+
+    @Test void testFirstSubscriberReceivesEvents() {
+        var dispatcher = new SimpleEventDispatcher(null);
+        List<RootApplicationEvent> received = new ArrayList<>();
+        dispatcher.subscribe(RootApplicationEvent.class, received::add);
+        var event = new RootApplicationEvent(this);
+        dispatcher.dispatch(event);
+        assertEquals(List.of(event), received, "The first subscriber of an event type shall receive the event");
+    }
+
+    @Test void testAllSubscribersReceiveEvents() {
+        var dispatcher = new SimpleEventDispatcher(null);
+        List<String> received = new ArrayList<>();
+        dispatcher.subscribe(RootApplicationEvent.class, e -> received.add("first"));
+        dispatcher.subscribe(RootApplicationEvent.class, e -> received.add("second"));
+        dispatcher.dispatch(new RootApplicationEvent(this));
+        assertEquals(List.of("first", "second"), received, "All subscribers shall receive the event in order of subscription");
+    }
+
+    @Test void testUnsubscribe() {
+        var dispatcher = new SimpleEventDispatcher(null);
+        List<RootApplicationEvent> received = new ArrayList<>();
+        EventListener listener = received::add;
+        dispatcher.subscribe(RootApplicationEvent.class, listener);
+        dispatcher.unsubscribe(RootApplicationEvent.class, listener);
+        dispatcher.dispatch(new RootApplicationEvent(this));
+        assertTrue(received.isEmpty(), "An unsubscribed listener shall not receive events");
+    }
+
+    @Test void testDispatchToExactTypeOnly() {
+        var dispatcher = new SimpleEventDispatcher(null);
+        List<RootApplicationEvent> received = new ArrayList<>();
+        dispatcher.subscribe(RootApplicationEvent.class, received::add);
+        dispatcher.dispatch(new OtherEvent(this));
+        dispatcher.dispatch(null);
+        assertTrue(received.isEmpty(), "Events shall only be dispatched to subscribers of the exact type");
+    }
+
+    private static final class OtherEvent extends RootApplicationEvent {
+
+        OtherEvent(Object source) {
+            super(source);
+        }
+    }
+}
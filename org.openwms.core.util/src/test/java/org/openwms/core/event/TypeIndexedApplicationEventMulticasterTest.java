@@ -0,0 +1,227 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.event;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A TypeIndexedApplicationEventMulticasterTest.
+ *
+ * @author Heiko Scherrer
+ */
+class TypeIndexedApplicationEventMulticasterTest {
+
+    @Test void testDispatchByEventType() {
+        var multicaster = new TypeIndexedApplicationEventMulticaster();
+        var a = new ListenerA();
+        var b = new ListenerB();
+        multicaster.addApplicationListener(a);
+        multicaster.addApplicationListener(b);
+
+        multicaster.multicastEvent(new EventA(this));
+        multicaster.multicastEvent(new EventA(this));
+        multicaster.multicastEvent(new EventB(this));
+        assertEquals(2, a.received.size(), "ListenerA shall only receive EventA");
+        assertEquals(1, b.received.size(), "ListenerB shall only receive EventB");
+    }
+
+    @Test void testSubtypesAreDispatchedToSupertypeListeners() {
+        var multicaster = new TypeIndexedApplicationEventMulticaster();
+        var a = new ListenerA();
+        multicaster.addApplicationListener(a);
+
+        multicaster.multicastEvent(new SubEventA(this));
+        assertEquals(1, a.received.size(), "A listener of EventA shall receive subtypes of EventA");
+    }
+
+    @Test void testIndexIsInvalidatedOnListenerChanges() {
+        var multicaster = new TypeIndexedApplicationEventMulticaster();
+        var first = new ListenerA();
+        multicaster.addApplicationListener(first);
+        multicaster.multicastEvent(new EventA(this));
+
+        var second = new ListenerA();
+        multicaster.addApplicationListener(second);
+        multicaster.multicastEvent(new EventA(this));
+        assertEquals(1, second.received.size(), "A listener added after the index was built shall be resolved");
+
+        multicaster.removeApplicationListener(first);
+        multicaster.multicastEvent(new EventA(this));
+        assertEquals(2, first.received.size(), "A removed listener shall not be called anymore");
+        assertEquals(2, second.received.size(), "The remaining listener shall still be called");
+    }
+
+    @Test void testStatisticsAndTimingRecorder() {
+        var multicaster = new TypeIndexedApplicationEventMulticaster();
+        List<String> recorded = new CopyOnWriteArrayList<>();
+        multicaster.setTimingRecorder((name, nanos, failed) -> recorded.add(name + (failed ? ":failure" : ":success")));
+        multicaster.addApplicationListener(new ListenerA());
+        multicaster.addApplicationListener(new FailingListener());
+
+        multicaster.multicastEvent(new EventA(this));
+        assertThrows(IllegalStateException.class, () -> multicaster.multicastEvent(new EventB(this)), "Listener failures shall be propagated");
+
+        assertEquals(List.of(ListenerA.class.getName() + ":success", FailingListener.class.getName() + ":failure"), recorded,
+                "Each invocation shall be recorded with its outcome");
+        var statistics = multicaster.getListenerStatistics();
+        assertEquals(1, statistics.get(ListenerA.class.getName()).getInvocations(), "One invocation of ListenerA");
+        assertEquals(1, statistics.get(FailingListener.class.getName()).getFailures(), "One failure of FailingListener");
+    }
+
+    @Test void testParallelModeWaitsForAllListeners() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            var multicaster = new TypeIndexedApplicationEventMulticaster();
+            multicaster.setExecutor(executor);
+            multicaster.setDefaultMode(TypeIndexedApplicationEventMulticaster.DispatchMode.PARALLEL);
+            var first = new ListenerA();
+            var second = new ListenerA();
+            multicaster.addApplicationListener(first);
+            multicaster.addApplicationListener(second);
+
+            multicaster.multicastEvent(new EventA(this));
+            assertEquals(1, first.received.size(), "The first listener shall be done when multicast returns");
+            assertEquals(1, second.received.size(), "The second listener shall be done when multicast returns");
+            assertTrue(first.threads.get(0).startsWith("pool-"), "Parallel listeners shall run on the executor");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test void testNestedParallelDispatchOnSingleThreadPool() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertNestedDispatchCompletes(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test void testNestedParallelDispatchOnEventExecutor() {
+        var executor = EventExecutor.platformThreads(1, 1, 10, Duration.ofSeconds(1),
+                EventExecutorProperties.RejectionPolicy.ABORT, "event-");
+        try {
+            // an event published by infrastructure on an executor thread, e.g. after a transaction
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                var multicaster = parallelMulticaster(executor);
+                var b = new ListenerB();
+                multicaster.addApplicationListener(b);
+                var done = new CompletableFuture<Void>();
+                executor.execute(() -> {
+                    multicaster.multicastEvent(new EventB(this));
+                    done.complete(null);
+                });
+                done.join();
+                assertEquals(1, b.received.size(), "The listener shall be invoked when published on an executor thread");
+            }, "A parallel dispatch on an executor thread must not wait for the executor");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void assertNestedDispatchCompletes(Executor executor) {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            var multicaster = parallelMulticaster(executor);
+            var b = new ListenerB();
+            multicaster.addApplicationListener(b);
+            multicaster.addApplicationListener(new PublishingListener(multicaster));
+
+            multicaster.multicastEvent(new EventA(this));
+            assertEquals(1, b.received.size(), "The nested event shall be dispatched before the outer multicast returns");
+        }, "A nested parallel dispatch must not wait for tasks queued behind itself");
+    }
+
+    private static TypeIndexedApplicationEventMulticaster parallelMulticaster(Executor executor) {
+        var multicaster = new TypeIndexedApplicationEventMulticaster();
+        multicaster.setExecutor(executor);
+        multicaster.setDefaultMode(TypeIndexedApplicationEventMulticaster.DispatchMode.PARALLEL);
+        return multicaster;
+    }
+
+    static class EventA extends ApplicationEvent {
+        EventA(Object source) {
+            super(source);
+        }
+    }
+
+    static class SubEventA extends EventA {
+        SubEventA(Object source) {
+            super(source);
+        }
+    }
+
+    static class EventB extends ApplicationEvent {
+        EventB(Object source) {
+            super(source);
+        }
+    }
+
+    static class ListenerA implements ApplicationListener<EventA> {
+        final List<ApplicationEvent> received = new CopyOnWriteArrayList<>();
+        final List<String> threads = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onApplicationEvent(EventA event) {
+            received.add(event);
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+
+    static class ListenerB implements ApplicationListener<EventB> {
+        final List<ApplicationEvent> received = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onApplicationEvent(EventB event) {
+            received.add(event);
+        }
+    }
+
+    static class PublishingListener implements ApplicationListener<EventA> {
+        private final TypeIndexedApplicationEventMulticaster multicaster;
+
+        PublishingListener(TypeIndexedApplicationEventMulticaster multicaster) {
+            this.multicaster = multicaster;
+        }
+
+        @Override
+        public void onApplicationEvent(EventA event) {
+            multicaster.multicastEvent(new EventB(event.getSource()));
+        }
+    }
+
+    static class FailingListener implements ApplicationListener<EventB> {
+
+        @Override
+        public void onApplicationEvent(EventB event) {
+            throw new IllegalStateException("Listener failed");
+        }
+    }
+}
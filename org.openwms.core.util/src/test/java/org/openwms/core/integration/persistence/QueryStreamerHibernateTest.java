@@ -0,0 +1,140 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.integration.persistence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A QueryStreamerHibernateTest runs the Hibernate scroll of the {@link QueryStreamer}
+ * against H2.
+ *
+ * @author Heiko Scherrer
+ */
+@DataJpaTest
+class QueryStreamerHibernateTest {
+
+    private static final int ROWS = 25;
+    private static final String ALL = "select i from StreamedItem i order by i.id";
+
+    @Autowired
+    private EntityManager em;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= ROWS; id++) {
+            em.persist(new StreamedItem(id, 0));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private List<Integer> quantities() {
+        em.flush();
+        em.clear();
+        return em.createQuery("select i.quantity from StreamedItem i order by i.id", Integer.class).getResultList();
+    }
+
+    @Test void testStreamFlushesChanges() {
+        var streamer = new QueryStreamer(em, 7, 10);
+        try (var rows = streamer.stream(em.createQuery(ALL, StreamedItem.class))) {
+            assertEquals(List.of(1L, 2L, 3L), rows.limit(3).map(StreamedItem::getId).collect(Collectors.toList()),
+                    "The rows shall be streamed in query order");
+        }
+
+        long count = streamer.forEach(em.createQuery(ALL, StreamedItem.class), item -> item.setQuantity(item.getQuantity() + 1));
+        assertEquals(ROWS, count, "All rows shall be processed");
+        assertTrue(quantities().stream().allMatch(quantity -> quantity == 1), "Changes to the streamed rows shall be written");
+    }
+
+    @Test void testChunksAreDetachedAfterProcessing() {
+        var streamer = new QueryStreamer(em, 7, 10);
+        List<StreamedItem> processed = new ArrayList<>();
+        long count = streamer.forEachChunk(em.createQuery(ALL, StreamedItem.class), 10, chunk -> {
+            chunk.forEach(item -> {
+                assertTrue(em.contains(item), "The rows of a chunk shall be managed while it is processed");
+                item.setQuantity(2);
+            });
+            processed.addAll(chunk);
+        });
+        assertEquals(ROWS, count, "All rows shall be processed");
+        assertFalse(em.contains(processed.get(0)), "The rows of processed chunks shall be detached");
+        assertTrue(quantities().stream().allMatch(quantity -> quantity == 2), "Changes to the rows of each chunk shall be written");
+    }
+
+    @Test void testRowsWithSeveralSelections() {
+        var streamer = new QueryStreamer(em);
+        try (var rows = streamer.stream(em.createQuery("select i.id, i.quantity from StreamedItem i where i.id = 1", Object[].class))) {
+            assertArrayEquals(new Object[]{1L, 0}, rows.findFirst().orElseThrow(), "A row with several selections shall be an array");
+        }
+    }
+
+    @Entity(name = "StreamedItem")
+    @Table(name = "TST_STREAMED_ITEM")
+    static class StreamedItem {
+
+        @Id
+        @Column(name = "C_ID")
+        private Long id;
+
+        @Column(name = "C_QUANTITY", nullable = false)
+        private int quantity;
+
+        /** Dear JPA... */
+        protected StreamedItem() {
+        }
+
+        StreamedItem(Long id, int quantity) {
+            this.id = id;
+            this.quantity = quantity;
+        }
+
+        Long getId() {
+            return id;
+        }
+
+        int getQuantity() {
+            return quantity;
+        }
+
+        void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = QueryStreamerHibernateTest.class)
+    static class TestConfiguration {
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.integration.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A QueryStreamerTest.
+ *
+ * @author Heiko Scherrer
+ */
+class QueryStreamerTest {
+
+    private final List<String> log = new CopyOnWriteArrayList<>();
+
+    /**
+     * An EntityManager that only records flush and clear.
+     */
+    private EntityManager entityManager() {
+        return (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{EntityManager.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "flush":
+                case "clear":
+                    log.add(method.getName());
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * A query of another JPA provider that records each row read from the result stream.
+     */
+    @SuppressWarnings("unchecked")
+    private TypedQuery<Integer> query(int rows) {
+        return (TypedQuery<Integer>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{TypedQuery.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "unwrap":
+                    throw new PersistenceException("No Hibernate query");
+                case "setHint":
+                    return proxy;
+                case "getResultStream":
+                    return IntStream.rangeClosed(1, rows).boxed().peek(row -> log.add("read " + row));
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test void testStreamClearsEveryInterval() {
+        var streamer = new QueryStreamer(entityManager(), 10, 2);
+        long count = streamer.forEach(query(5), row -> log.add("row " + row));
+        assertEquals(5, count, "All rows shall be processed");
+        assertEquals(List.of("read 1", "row 1", "read 2", "row 2", "flush", "clear", "read 3", "row 3", "read 4", "row 4", "flush", "clear",
+                "read 5", "row 5"), log, "The persistence context shall be cleared before the row after each interval is read");
+    }
+
+    @Test void testStreamWithoutClearing() {
+        var streamer = new QueryStreamer(entityManager(), 10, 0);
+        try (var rows = streamer.stream(query(3))) {
+            assertEquals(List.of(1, 2, 3), rows.collect(Collectors.toList()), "All rows shall be streamed");
+        }
+        assertFalse(log.contains("clear"), "A clear interval of 0 shall never clear");
+    }
+
+    @Test void testChunksAreClearedAtChunkBoundaries() {
+        var streamer = new QueryStreamer(entityManager(), 10, 1);
+        long count = streamer.forEachChunk(query(5), 2, chunk -> log.add("chunk " + chunk));
+        assertEquals(5, count, "All rows shall be processed");
+        assertEquals(List.of("read 1", "read 2", "chunk [1, 2]", "flush", "clear", "read 3", "read 4", "chunk [3, 4]", "flush", "clear",
+                "read 5", "chunk [5]", "flush", "clear"), log, "The persistence context shall only be cleared after a chunk has been processed");
+    }
+
+    @Test void testParallelChunksAreDetachedBeforeHandOff() {
+        var streamer = new QueryStreamer(entityManager(), 10, 0);
+        long count = streamer.forEachChunk(query(5), 2, chunk -> log.add("chunk " + chunk), runnable -> {
+            log.add("hand off");
+            runnable.run();
+        }, 2);
+        assertEquals(5, count, "All rows shall be processed");
+        assertEquals(List.of("read 1", "read 2", "flush", "clear", "hand off", "chunk [1, 2]", "read 3", "read 4", "flush", "clear", "hand off",
+                "chunk [3, 4]", "read 5", "flush", "clear", "hand off", "chunk [5]"), log,
+                "The persistence context shall be cleared before each chunk is handed off, regardless of the clear interval");
+    }
+
+    @Test void testParallelFailureStopsReading() {
+        var streamer = new QueryStreamer(entityManager());
+        var failure = new IllegalStateException("Chunk failed");
+        var thrown = assertThrows(IllegalStateException.class, () -> streamer.forEachChunk(query(10), 2, chunk -> {
+            if (chunk.contains(3)) {
+                throw failure;
+            }
+        }, Runnable::run, 1), "The failure of a callback shall be rethrown");
+        assertSame(failure, thrown, "The original exception shall be rethrown");
+        assertFalse(log.contains("read 5"), "Reading shall stop after a failure");
+    }
+
+    @Test void testParallelChunksOnThreadPool() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            var streamer = new QueryStreamer(entityManager());
+            List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+            long count = streamer.forEachChunk(query(100), 7, received::addAll, executor, 2);
+            assertEquals(100, count, "All rows shall be counted");
+            var sorted = new ArrayList<>(received);
+            Collections.sort(sorted);
+            assertEquals(IntStream.rangeClosed(1, 100).boxed().collect(Collectors.toList()), sorted,
+                    "Each row shall be processed exactly once when forEachChunk returns");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new QueryStreamer(entityManager(), 0, 1), "The fetch size must be positive");
+        assertThrows(IllegalArgumentException.class, () -> new QueryStreamer(entityManager(), 1, -1), "The clear interval must not be negative");
+        var streamer = new QueryStreamer(entityManager());
+        assertThrows(IllegalArgumentException.class, () -> streamer.forEachChunk(query(1), 0, chunk -> {}), "The chunk size must be positive");
+        assertThrows(IllegalArgumentException.class, () -> streamer.forEachChunk(query(1), 1, chunk -> {}, Runnable::run, 0),
+                "At least one chunk must be allowed to be pending");
+    }
+}
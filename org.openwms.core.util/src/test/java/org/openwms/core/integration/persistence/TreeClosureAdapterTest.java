@@ -0,0 +1,124 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.integration.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.openwms.core.util.CompactTree;
+import org.openwms.core.util.TreeNode;
+import org.openwms.core.util.TreeNodeImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A TreeClosureAdapterTest.
+ *
+ * @author Heiko Scherrer
+ */
+@DataJpaTest
+class TreeClosureAdapterTest {
+
+    @Autowired
+    private EntityManager em;
+
+    private TreeClosureAdapter<String> adapter(String tree) {
+        return new TreeClosureAdapter<>(new TreeClosureRepository(em, tree), TreeNode::getData);
+    }
+
+    private static TreeNode<String> node(String data) {
+        TreeNode<String> node = new TreeNodeImpl<>();
+        node.setData(data);
+        return node;
+    }
+
+    @Test void testInsert() {
+        var adapter = adapter("insert");
+        var root = node("WH1");
+        adapter.getRepository().insertRoot("WH1");
+        var zone = node("ZONE-A");
+        zone.addChild("AISLE-01", node("AISLE-01"));
+        adapter.addChild(root, "ZONE-A", zone);
+
+        var repository = adapter.getRepository();
+        assertEquals(List.of("ZONE-A", "AISLE-01"), repository.findDescendants("WH1"), "The subtree shall be inserted with all descendants");
+        assertEquals(List.of("WH1", "ZONE-A"), repository.findAncestors("AISLE-01"), "The path shall lead from the root down to the parent");
+        assertEquals(2, repository.depthOf("AISLE-01"), "An aisle is two levels below the root");
+    }
+
+    @Test void testMoveCompactTreeNode() {
+        var tree = new CompactTree<String>();
+        var root = tree.newNode("WH1");
+        var a = tree.newNode("ZONE-A");
+        var b = tree.newNode("ZONE-B");
+        root.addChild("ZONE-A", a);
+        root.addChild("ZONE-B", b);
+        a.addChild("AISLE-01", tree.newNode("AISLE-01"));
+        var adapter = adapter("move");
+        adapter.rebuild(root);
+
+        var aisle = root.getChild("ZONE-A").getChild("AISLE-01");
+        adapter.moveTo(aisle, root.getChild("ZONE-B"), "AISLE-01");
+        assertNull(root.getChild("ZONE-A").getChild("AISLE-01"), "The moved node shall be removed from its former parent");
+        assertEquals("ZONE-B", root.getChild("ZONE-B").getChild("AISLE-01").getParent().getData(), "The moved node shall be a child of the new parent");
+        assertEquals(List.of("WH1", "ZONE-B"), adapter.getRepository().findAncestors("AISLE-01"), "The closure shall follow the move");
+        assertThrows(IllegalArgumentException.class, () -> adapter.moveTo(root.getChild("ZONE-B"), root.getChild("ZONE-B").getChild("AISLE-01"), "ZONE-B"),
+                "A node cannot be moved below its own descendant");
+    }
+
+    @Test void testDeleteSubtreeAndInsertAgain() {
+        var adapter = adapter("delete");
+        var root = node("WH1");
+        adapter.rebuild(root);
+        var zone = node("ZONE-A");
+        zone.addChild("AISLE-01", node("AISLE-01"));
+        adapter.addChild(root, "ZONE-A", zone);
+
+        adapter.removeChild(root, "ZONE-A");
+        var repository = adapter.getRepository();
+        assertTrue(repository.findDescendants("WH1").isEmpty(), "The subtree shall be deleted");
+        assertTrue(repository.findAncestors("AISLE-01").isEmpty(), "No rows of the subtree shall remain");
+
+        assertDoesNotThrow(() -> adapter.addChild(root, "ZONE-A", zone), "Deleted rows shall be insertable again");
+        assertDoesNotThrow(() -> adapter.rebuild(root), "A deleted tree shall be rebuildable within the same transaction");
+        assertEquals(List.of("ZONE-A", "AISLE-01"), repository.findDescendants("WH1"), "The subtree shall be inserted again");
+    }
+
+    @Test void testPersistAllDetachesOnlyItsRows() {
+        var managed = new TreeClosure("other", "X", "X", 0);
+        em.persist(managed);
+        var row = new TreeClosure("batch", "A", "A", 0);
+
+        new TreeClosureRepository(em, "batch").persistAll(List.of(row, new TreeClosure("batch", "A", "B", 1)), 1);
+        assertTrue(em.contains(managed), "Entities of the caller shall stay managed");
+        assertFalse(em.contains(row), "Persisted rows shall be detached");
+    }
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = TreeClosure.class)
+    static class TestConfiguration {
+    }
+}
@@ -17,11 +17,22 @@ package org.openwms.core.lang;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * A CollectionUtilTest.
@@ -46,4 +57,73 @@ class CollectionUtilTest {
         assertEquals(Collections.EMPTY_MAP, CollectionUtil.asHashMap(Collections.emptyList(), null), "Calling with an empty list shall result in an empty map");
         assertEquals(Collections.EMPTY_MAP, CollectionUtil.asHashMap(strings, null), "Calling with a list and no extractor shall result in an empty map");
     }
-}
\ No newline at end of file
+
+    @Test void testAsHashMapWithPolicies() {
+        var strings = Arrays.asList("a1", "b1", "a2");
+        var extractor = new FirstCharExtractor();
+        assertEquals("a1", CollectionUtil.asHashMap(strings, extractor, DuplicateKeyPolicy.keepFirst()).get("a"));
+        assertEquals("a2", CollectionUtil.asHashMap(strings, extractor, DuplicateKeyPolicy.keepLast()).get("a"));
+        assertEquals("a1a2", CollectionUtil.asUnorderedMap(strings, extractor, DuplicateKeyPolicy.merge(String::concat)).get("a"));
+        assertThrows(IllegalStateException.class, () -> CollectionUtil.asHashMap(strings, extractor, DuplicateKeyPolicy.fail()));
+        assertEquals(List.of("a", "b"), new ArrayList<>(CollectionUtil.asHashMap(strings, extractor, DuplicateKeyPolicy.keepLast()).keySet()));
+    }
+
+    @Test void testLargeListsKeepListOrder() {
+        List<String> strings = IntStream.range(0, CollectionUtil.PARALLEL_THRESHOLD * 3)
+                .mapToObj(i -> (char) ('a' + i % 26) + String.valueOf(i))
+                .collect(Collectors.toList());
+        var extractor = new FirstCharExtractor();
+        Map<String, String> sequential = strings.stream().collect(CollectionUtil.toMap(extractor, DuplicateKeyPolicy.merge((l, r) -> r)));
+        Map<String, String> parallel = strings.parallelStream().collect(CollectionUtil.toMap(extractor, DuplicateKeyPolicy.keepLast()));
+        Map<String, String> bulk = CollectionUtil.asHashMap(strings, extractor, DuplicateKeyPolicy.keepLast());
+        assertEquals(26, bulk.size());
+        assertEquals(sequential, bulk);
+        assertEquals(sequential, parallel);
+        assertEquals(new ArrayList<>(sequential.keySet()), new ArrayList<>(bulk.keySet()));
+    }
+
+    @Test void testLegacyAsHashMapIsSequential() {
+        List<String> strings = IntStream.range(0, CollectionUtil.PARALLEL_THRESHOLD * 3)
+                .mapToObj(i -> (char) ('a' + i % 26) + String.valueOf(i))
+                .collect(Collectors.toList());
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        var extractor = new FirstCharExtractor() {
+            @Override
+            public <T> String extractKey(T listNode) {
+                threads.add(Thread.currentThread());
+                return super.extractKey(listNode);
+            }
+        };
+        assertEquals(26, CollectionUtil.asHashMap(strings, extractor).size());
+        assertEquals(Set.of(Thread.currentThread()), threads, "The legacy overload shall only extract on the calling thread");
+    }
+
+    @Test void testAsMapView() {
+        var extractor = new FirstCharExtractor();
+        var small = Arrays.asList("a1", "b1", "a2");
+        assertEquals(CollectionUtil.asHashMap(small, extractor), CollectionUtil.asMapView(small, extractor));
+        List<String> large = IntStream.range(0, 1000)
+                .mapToObj(i -> (char) ('a' + i % 26) + String.valueOf(i))
+                .collect(Collectors.toCollection(LinkedList::new));
+        var view = (ListMapView<String, String>) CollectionUtil.asMapView(large, extractor);
+        assertFalse(view.isIndexed());
+        assertEquals("a988", view.get("a"));
+        assertTrue(view.isIndexed());
+        assertNull(view.get("A"));
+        assertEquals(CollectionUtil.asHashMap(large, extractor), view);
+        assertThrows(UnsupportedOperationException.class, () -> view.put("x", "x1"));
+    }
+
+    private static class FirstCharExtractor implements ListExtractor<String, String> {
+
+        @Override
+        public <T> String extractKey(T listNode) {
+            return listNode.toString().substring(0, 1);
+        }
+
+        @Override
+        public <T> String extractValue(T listNode) {
+            return (String) listNode;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import org.junit.jupiter.api.Test;
+import org.openwms.core.DomainObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A DomainObjectIndexTest.
+ *
+ * @author Heiko Scherrer
+ */
+class DomainObjectIndexTest {
+
+    @Test void testRejectsStaleVersions() {
+        var index = new DomainObjectIndex<Entity>();
+        assertTrue(index.put(new Entity(1L, 2)), "A new entity shall be stored");
+        assertFalse(index.put(new Entity(1L, 1)), "An older version shall be rejected");
+        assertEquals(2, index.getVersion(1), "The newer version shall be kept");
+        var same = new Entity(1L, 2);
+        assertTrue(index.put(same), "The same version shall replace the stored one");
+        assertSame(same, index.get(1), "The latest instance shall be stored");
+        assertTrue(index.put(new Entity(1L, 3)), "A newer version shall be stored");
+        assertTrue(index.isCurrent(1, 3), "The newest version is current");
+        assertFalse(index.isCurrent(1, 2), "An older version is not current");
+        assertNull(index.get(2), "Unknown ids shall result in null");
+        assertEquals(-1, index.getVersion(2), "Unknown ids have no version");
+    }
+
+    @Test void testBehavesLikeHashMapOfLatestVersions() {
+        var index = new DomainObjectIndex<Entity>();
+        var reference = new HashMap<Long, Entity>();
+        var random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long id = random.nextInt(2_000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(reference.remove(id), index.remove(id), "Removing id " + id + " in step " + i);
+            } else {
+                var entity = new Entity(id, random.nextInt(10));
+                var stored = reference.get(id);
+                boolean newer = stored == null || stored.getVersion() <= entity.getVersion();
+                if (newer) {
+                    reference.put(id, entity);
+                }
+                assertEquals(newer, index.put(entity), "Putting id " + id + " in version " + entity.getVersion() + " in step " + i);
+            }
+            assertEquals(reference.size(), index.size(), "Size after step " + i);
+        }
+        for (long id = 0; id < 2_000; id++) {
+            assertSame(reference.get(id), index.get(id), "Entity with id " + id);
+        }
+        var visited = new HashMap<Long, Entity>();
+        index.forEach(e -> visited.put(e.getId(), e));
+        assertEquals(reference, visited, "forEach shall visit all entities");
+    }
+
+    @Test void testOf() {
+        var index = DomainObjectIndex.of(List.of(new Entity(1L, 1), new Entity(1L, 3), new Entity(1L, 2), new Entity(2L, 0)));
+        assertEquals(2, index.size(), "Each id shall be stored once");
+        assertEquals(3, index.getVersion(1), "The latest version of each id shall win");
+        assertThrows(IllegalArgumentException.class, () -> index.put(new Entity(null, 0)), "Transient entities cannot be indexed");
+    }
+
+    private static class Entity implements DomainObject<Long> {
+
+        private final Long id;
+        private final long version;
+
+        Entity(Long id, long version) {
+            this.id = id;
+            this.version = version;
+        }
+
+        @Override
+        public boolean isNew() {
+            return id == null;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+    }
+}
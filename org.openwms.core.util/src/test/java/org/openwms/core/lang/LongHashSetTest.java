@@ -0,0 +1,80 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A LongHashSetTest.
+ *
+ * @author Heiko Scherrer
+ */
+class LongHashSetTest {
+
+    @Test void testBehavesLikeHashSet() {
+        var set = new LongHashSet();
+        var reference = new HashSet<Long>();
+        var random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long value = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(value), set.remove(value), "Removing " + value + " in step " + i);
+            } else {
+                assertEquals(reference.add(value), set.add(value), "Adding " + value + " in step " + i);
+            }
+            assertEquals(reference.size(), set.size(), "Size after step " + i);
+        }
+        for (long value = -100; value < 4_900; value++) {
+            assertEquals(reference.contains(value), set.contains(value), "Presence of " + value);
+        }
+        Set<Long> visited = new HashSet<>();
+        set.forEach(visited::add);
+        assertEquals(reference, visited, "forEach shall visit all values");
+        assertEquals(reference, Arrays.stream(set.toArray()).boxed().collect(Collectors.toSet()), "toArray shall contain all values");
+        assertEquals(reference.size(), set.toArray().length, "toArray shall contain each value once");
+    }
+
+    @Test void testZeroValue() {
+        var set = new LongHashSet();
+        assertFalse(set.contains(0), "Zero is absent initially");
+        assertTrue(set.add(0), "Zero shall be added");
+        assertFalse(set.add(0), "Zero is added only once");
+        assertEquals(1, set.toArray().length, "toArray shall contain zero once");
+        assertTrue(set.remove(0), "Zero shall be removed");
+        assertTrue(set.isEmpty(), "The set is empty after removing zero");
+    }
+
+    @Test void testClear() {
+        var set = new LongHashSet(4);
+        for (long value = -50; value < 50; value++) {
+            set.add(value);
+        }
+        set.clear();
+        assertTrue(set.isEmpty(), "A cleared set is empty");
+        assertEquals(0, set.toArray().length, "A cleared set has no values");
+        assertTrue(set.add(1), "A cleared set shall be reusable");
+    }
+}
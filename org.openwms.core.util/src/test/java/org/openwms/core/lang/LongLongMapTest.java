@@ -0,0 +1,83 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A LongLongMapTest.
+ *
+ * @author Heiko Scherrer
+ */
+class LongLongMapTest {
+
+    private static final long MISSING = -1;
+
+    private static long orMissing(Long value) {
+        return value == null ? MISSING : value;
+    }
+
+    @Test void testBehavesLikeHashMap() {
+        var map = new LongLongMap(0, MISSING);
+        var reference = new HashMap<Long, Long>();
+        var random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(orMissing(reference.remove(key)), map.remove(key), "Removing key " + key + " in step " + i);
+            } else {
+                long value = random.nextLong();
+                assertEquals(orMissing(reference.put(key, value)), map.put(key, value), "Putting key " + key + " in step " + i);
+            }
+            assertEquals(reference.size(), map.size(), "Size after step " + i);
+        }
+        for (long key = -100; key < 4_900; key++) {
+            assertEquals(orMissing(reference.get(key)), map.get(key), "Value of key " + key);
+            assertEquals(reference.containsKey(key), map.containsKey(key), "Presence of key " + key);
+        }
+        var visited = new HashMap<Long, Long>();
+        map.forEach(visited::put);
+        assertEquals(reference, visited, "forEach shall visit all mappings");
+    }
+
+    @Test void testZeroKey() {
+        var map = new LongLongMap(4, MISSING);
+        assertEquals(MISSING, map.get(0), "An absent zero key shall return the missing value");
+        assertEquals(MISSING, map.put(0, 7), "The zero key was absent");
+        assertTrue(map.containsKey(0), "The zero key shall be present");
+        assertEquals(1, map.size(), "The zero key shall be counted");
+        assertEquals(7, map.remove(0), "The zero key shall be removable");
+        assertFalse(map.containsKey(0), "The zero key shall be removed");
+        assertEquals(MISSING, map.remove(0), "Removing an absent key returns the missing value");
+    }
+
+    @Test void testMissingValueCanBeStored() {
+        var map = new LongLongMap();
+        assertEquals(0, map.getMissingValue(), "The default missing value is zero");
+        map.put(5, 0);
+        assertTrue(map.containsKey(5), "A stored missing value shall be distinguishable by containsKey");
+        map.clear();
+        assertTrue(map.isEmpty(), "A cleared map is empty");
+        assertFalse(map.containsKey(5), "A cleared map has no mappings");
+    }
+}
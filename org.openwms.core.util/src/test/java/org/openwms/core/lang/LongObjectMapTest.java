@@ -0,0 +1,81 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A LongObjectMapTest.
+ *
+ * @author Heiko Scherrer
+ */
+class LongObjectMapTest {
+
+    @Test void testBehavesLikeHashMap() {
+        var map = new LongObjectMap<String>();
+        var reference = new HashMap<Long, String>();
+        var random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), map.remove(key), "Removing key " + key + " in step " + i);
+            } else {
+                assertEquals(reference.put(key, "v" + i), map.put(key, "v" + i), "Putting key " + key + " in step " + i);
+            }
+            assertEquals(reference.size(), map.size(), "Size after step " + i);
+        }
+        for (long key = -100; key < 4_900; key++) {
+            assertEquals(reference.get(key), map.get(key), "Value of key " + key);
+            assertEquals(reference.containsKey(key), map.containsKey(key), "Presence of key " + key);
+        }
+        var visited = new HashMap<Long, String>();
+        map.forEach(visited::put);
+        assertEquals(reference, visited, "forEach shall visit all mappings");
+    }
+
+    @Test void testExtremeKeys() {
+        var map = new LongObjectMap<String>(4);
+        var reference = new HashMap<Long, String>();
+        long[] keys = {0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, 1L << 32, -(1L << 32)};
+        for (long key : keys) {
+            assertEquals(reference.put(key, "v" + key), map.put(key, "v" + key), "Putting key " + key);
+        }
+        for (long key : keys) {
+            assertEquals(reference.get(key), map.get(key), "Value of key " + key);
+        }
+        assertEquals(keys.length, map.size(), "All keys shall be stored");
+        assertEquals("v0", map.remove(0), "The zero key shall be removable");
+        assertFalse(map.containsKey(0), "The zero key shall be removed");
+        assertNull(map.remove(0), "Removing an absent key returns null");
+    }
+
+    @Test void testComputeIfAbsentAndClear() {
+        var map = new LongObjectMap<String>();
+        assertEquals("a", map.computeIfAbsent(7, k -> "a"), "An absent value shall be computed");
+        assertEquals("a", map.computeIfAbsent(7, k -> "b"), "A present value shall be kept");
+        map.clear();
+        assertTrue(map.isEmpty(), "A cleared map is empty");
+        assertNull(map.get(7), "A cleared map has no mappings");
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A PartitionsTest.
+ *
+ * @author Heiko Scherrer
+ */
+class PartitionsTest {
+
+    private static List<Integer> range(int from, int to) {
+        return IntStream.rangeClosed(from, to).boxed().collect(Collectors.toList());
+    }
+
+    @Test void testBucketSize() {
+        assertEquals(8, Partitions.bucketSize(0, 1000), "Empty chunks shall use the smallest bucket");
+        assertEquals(8, Partitions.bucketSize(1, 1000), "Small chunks shall use the smallest bucket");
+        assertEquals(8, Partitions.bucketSize(8, 1000), "8 elements fit the smallest bucket");
+        assertEquals(16, Partitions.bucketSize(9, 1000), "9 elements need the next bucket");
+        assertEquals(16, Partitions.bucketSize(16, 1000), "16 elements fit exactly");
+        assertEquals(32, Partitions.bucketSize(17, 1000), "17 elements need the next bucket");
+        assertEquals(1000, Partitions.bucketSize(513, 1000), "Buckets shall be limited to the maximum size");
+        assertEquals(1000, Partitions.bucketSize(1000, 1000), "A full chunk keeps its size");
+        assertEquals(5, Partitions.bucketSize(3, 5), "The smallest bucket shall be limited to the maximum size");
+        assertEquals(12, Partitions.bucketSize(9, 12), "Buckets shall be limited to the maximum size");
+        assertEquals(1, Partitions.bucketSize(1, 1), "A maximum size of one is never padded");
+        assertThrows(IllegalArgumentException.class, () -> Partitions.bucketSize(1, 0), "The maximum size must be positive");
+    }
+
+    @Test void testPartition() {
+        assertTrue(Partitions.partition(null, 3).isEmpty(), "Null shall result in no chunks");
+        assertTrue(Partitions.partition(Collections.emptyList(), 3).isEmpty(), "An empty collection shall result in no chunks");
+        assertEquals(List.of(List.of(1, 2, 3), List.of(4, 5, 6), List.of(7)), Partitions.partition(range(1, 7), 3),
+                "All chunks but the last shall be full");
+        assertEquals(List.of(List.of(1, 2, 3), List.of(4, 5, 6)), Partitions.partition(range(1, 6), 3),
+                "An exact multiple shall not produce an empty chunk");
+        assertThrows(IllegalArgumentException.class, () -> Partitions.partition(range(1, 3), 0), "The size must be positive");
+    }
+
+    @Test void testPartitionPadded() {
+        var chunks = Partitions.partitionPadded(range(1, 9), 1000);
+        assertEquals(1, chunks.size(), "One chunk is enough");
+        var expected = new ArrayList<>(range(1, 9));
+        expected.addAll(Collections.nCopies(7, 9));
+        assertEquals(expected, chunks.get(0), "The chunk shall be padded with its last element to 16");
+
+        chunks = Partitions.partitionPadded(range(1, 11), 5);
+        assertEquals(List.of(range(1, 5), range(6, 10), List.of(11, 11, 11, 11, 11)), chunks,
+                "Only the last chunk shall be padded, up to the maximum size");
+        assertEquals(List.of(range(1, 8)), Partitions.partitionPadded(range(1, 8), 1000), "A chunk of a bucket size is not padded");
+        assertTrue(Partitions.partitionPadded(null, 5).isEmpty(), "Null shall result in no chunks");
+    }
+
+    @Test void testExecute() {
+        List<List<Integer>> calls = new ArrayList<>();
+        var result = Partitions.execute(range(1, 20), 8, chunk -> {
+            calls.add(chunk);
+            return chunk.stream().distinct().map(i -> i * 10).collect(Collectors.toList());
+        });
+        assertEquals(3, calls.size(), "One call per chunk");
+        assertEquals(range(1, 20).stream().map(i -> i * 10).collect(Collectors.toList()), result, "Results shall be merged in chunk order");
+    }
+
+    @Test void testExecuteParallelKeepsChunkOrder() {
+        int chunks = 4;
+        var finished = new CountDownLatch[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            finished[i] = new CountDownLatch(1);
+        }
+        finished[chunks].countDown();
+        List<Integer> completion = new CopyOnWriteArrayList<>();
+        Executor executor = r -> new Thread(r).start();
+
+        var result = Partitions.executeParallel(range(1, 32), 8, chunk -> {
+            int i = (chunk.get(0) - 1) / 8;
+            try {
+                // the last chunk completes first, then the one before and so on
+                assertTrue(finished[i + 1].await(10, TimeUnit.SECONDS), "The following chunk shall complete");
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            completion.add(i);
+            finished[i].countDown();
+            return chunk;
+        }, executor);
+        assertEquals(List.of(3, 2, 1, 0), completion, "Chunks shall have completed in reverse order");
+        assertEquals(range(1, 32), result, "Results shall be merged in chunk order");
+    }
+
+    @Test void testExecuteParallelPropagatesFailureAndCancels() {
+        List<Runnable> queued = new ArrayList<>();
+        Executor executor = r -> {
+            // the first chunk runs immediately, all others wait in the queue
+            if (queued.isEmpty()) {
+                queued.add(() -> {});
+                r.run();
+            } else {
+                queued.add(r);
+            }
+        };
+        List<List<Integer>> calls = new ArrayList<>();
+        var failure = new IllegalStateException("Query failed");
+
+        var thrown = assertThrows(IllegalStateException.class, () -> Partitions.executeParallel(range(1, 24), 8, chunk -> {
+            calls.add(chunk);
+            throw failure;
+        }, executor), "The failure of a chunk shall be propagated");
+        assertSame(failure, thrown, "The original exception shall be rethrown");
+
+        queued.forEach(Runnable::run);
+        assertEquals(1, calls.size(), "Chunks not started before the failure shall be cancelled");
+    }
+
+    @Test void testExecuteParallelWithOneChunkRunsOnCaller() {
+        var caller = Thread.currentThread();
+        var result = Partitions.executeParallel(range(1, 3), 8, chunk -> {
+            assertSame(caller, Thread.currentThread(), "A single chunk shall not be handed to the executor");
+            return chunk.subList(0, 3);
+        }, r -> {
+            throw new AssertionError("The executor shall not be used");
+        });
+        assertEquals(range(1, 3), result, "The result of the single chunk shall be returned");
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.time;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A HybridLogicalClockTest.
+ *
+ * @author Heiko Scherrer
+ */
+class HybridLogicalClockTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test void testFollowsAdvancingWallClock() {
+        var wall = new AtomicLong(T0);
+        var clock = new HybridLogicalClock(wall::get, 1_000);
+        long first = clock.now();
+        assertEquals(HybridLogicalClock.encode(T0, 0), first, "The first timestamp shall carry the wall clock time");
+        wall.set(T0 + 5);
+        long second = clock.now();
+        assertEquals(T0 + 5, HybridLogicalClock.physicalTime(second), "The physical part shall follow the wall clock");
+        assertEquals(0, HybridLogicalClock.logicalCounter(second), "The counter shall restart with a new millisecond");
+        assertEquals(second, clock.current(), "current shall return the last timestamp without advancing");
+    }
+
+    @Test void testMonotonicWithStalledAndBackwardClock() {
+        var wall = new AtomicLong(T0);
+        var clock = new HybridLogicalClock(wall::get, 1_000);
+        long previous = clock.now();
+        for (int i = 0; i < 100; i++) {
+            long next = clock.now();
+            assertTrue(next > previous, "Timestamps shall increase with a stalled clock, step " + i);
+            previous = next;
+        }
+        assertEquals(100, HybridLogicalClock.logicalCounter(previous), "A stalled clock shall advance the counter");
+
+        wall.set(T0 - 10_000);
+        long afterJump = clock.now();
+        assertTrue(afterJump > previous, "Timestamps shall increase when the clock jumps backwards");
+        assertEquals(T0, HybridLogicalClock.physicalTime(afterJump), "The physical part shall not go backwards");
+    }
+
+    @Test void testCounterOverflowAdvancesPhysicalPart() {
+        var clock = new HybridLogicalClock(() -> T0, 1_000);
+        long previous = clock.now();
+        for (int i = 1; i <= 1 << HybridLogicalClock.LOGICAL_BITS; i++) {
+            long next = clock.now();
+            assertTrue(next > previous, "Timestamps shall increase across the overflow, step " + i);
+            previous = next;
+        }
+        assertEquals(T0 + 1, HybridLogicalClock.physicalTime(previous), "An overflow shall advance the physical part by one millisecond");
+        assertEquals(0, HybridLogicalClock.logicalCounter(previous), "The counter shall restart after an overflow");
+    }
+
+    @Test void testUpdateMergesRemoteTimestamp() {
+        var wall = new AtomicLong(T0);
+        var clock = new HybridLogicalClock(wall::get, 1_000);
+        long local = clock.now();
+
+        long remote = HybridLogicalClock.encode(T0 + 500, 7);
+        long received = clock.update(remote);
+        assertTrue(received > remote, "The receive timestamp shall be after the remote one");
+        assertEquals(T0 + 500, HybridLogicalClock.physicalTime(received), "The remote physical time shall be taken over");
+        assertEquals(8, HybridLogicalClock.logicalCounter(received), "The remote counter shall be advanced");
+        assertTrue(clock.now() > received, "Later local timestamps shall be after the received one");
+
+        long old = HybridLogicalClock.encode(T0 - 1_000, 3);
+        long afterOld = clock.update(old);
+        assertTrue(afterOld > received && afterOld > local, "A remote timestamp from the past shall not move the clock back");
+
+        wall.set(T0 + 2_000);
+        assertEquals(HybridLogicalClock.encode(T0 + 2_000, 0), clock.update(HybridLogicalClock.encode(T0 + 1_000, 9)),
+                "A wall clock ahead of both shall win");
+    }
+
+    @Test void testRejectsRemoteTimestampTooFarAhead() {
+        var clock = new HybridLogicalClock(() -> T0, 1_000);
+        long before = clock.now();
+        assertThrows(IllegalArgumentException.class, () -> clock.update(HybridLogicalClock.encode(T0 + 1_001, 0)),
+                "A remote timestamp beyond the maximum offset shall be rejected");
+        assertEquals(before, clock.current(), "A rejected timestamp shall not change the clock");
+    }
+
+    @Test void testTimeProviderAndConversion() {
+        var clock = new HybridLogicalClock(new TimeProvider() {
+            @Override
+            public Instant now() {
+                return Instant.ofEpochMilli(T0);
+            }
+        });
+        assertEquals(Instant.ofEpochMilli(T0), HybridLogicalClock.toInstant(clock.now()), "The TimeProvider shall be used");
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * An AggregatingTreeNodeTest covers the {@link AggregatingTreeNode},
+ * {@link LongAggregatingTreeNode} and {@link DoubleAggregatingTreeNode}.
+ *
+ * @author Heiko Scherrer
+ */
+class AggregatingTreeNodeTest {
+
+    private static final LongAggregatingTreeNode.LongAggregation<Long> LONG_SUM = LongAggregatingTreeNode.LongAggregation.sum(v -> v);
+    private static final LongAggregatingTreeNode.LongAggregation<Long> LONG_MIN = LongAggregatingTreeNode.LongAggregation.min(v -> v);
+    private static final LongAggregatingTreeNode.LongAggregation<Long> LONG_MAX = LongAggregatingTreeNode.LongAggregation.max(v -> v);
+    private static final DoubleAggregatingTreeNode.DoubleAggregation<Long> DOUBLE_SUM = DoubleAggregatingTreeNode.DoubleAggregation.sum(v -> v);
+    private static final DoubleAggregatingTreeNode.DoubleAggregation<Long> DOUBLE_MIN = DoubleAggregatingTreeNode.DoubleAggregation.min(v -> v);
+    private static final DoubleAggregatingTreeNode.DoubleAggregation<Long> DOUBLE_MAX = DoubleAggregatingTreeNode.DoubleAggregation.max(v -> v);
+
+    /** A min aggregation over Longs that counts the calls to combine. */
+    private static final class CountingMin implements AggregatingTreeNode.Aggregation<Long, Long> {
+
+        private final AtomicInteger combined = new AtomicInteger();
+
+        @Override
+        public Long valueOf(Long data) {
+            return data == null ? Long.MAX_VALUE : data;
+        }
+
+        @Override
+        public Long combine(Long left, Long right) {
+            combined.incrementAndGet();
+            return Math.min(left, right);
+        }
+
+        @Override
+        public boolean isSelective() {
+            return true;
+        }
+    }
+
+    /** A sum over Longs that is invertible. */
+    private static final AggregatingTreeNode.Aggregation<Long, Long> SUM = new AggregatingTreeNode.Aggregation<>() {
+        @Override
+        public Long valueOf(Long data) {
+            return data == null ? 0L : data;
+        }
+
+        @Override
+        public Long combine(Long left, Long right) {
+            return left + right;
+        }
+
+        @Override
+        public boolean isInvertible() {
+            return true;
+        }
+
+        @Override
+        public Long remove(Long aggregate, Long part) {
+            return aggregate - part;
+        }
+    };
+
+    @Test void testPropagationOfSetData() {
+        var root = new LongAggregatingTreeNode<>(1L, LONG_SUM);
+        var zone = new LongAggregatingTreeNode<>(2L, LONG_SUM);
+        var bin = new LongAggregatingTreeNode<>(3L, LONG_SUM);
+        root.addChild("zone", zone);
+        zone.addChild("bin", bin);
+        assertEquals(6, root.getAggregate(), "The aggregate shall cover the whole subtree");
+        bin.setData(10L);
+        assertEquals(13, root.getAggregate(), "A change of data shall be propagated to the root");
+        assertEquals(12, zone.getAggregate(), "A change of data shall be propagated to each ancestor");
+        bin.setData(null);
+        assertEquals(3, root.getAggregate(), "A node without data shall contribute nothing");
+    }
+
+    @Test void testPropagationOfAddRemoveAndReplace() {
+        var root = new DoubleAggregatingTreeNode<>(0L, DOUBLE_SUM);
+        var zone = new DoubleAggregatingTreeNode<>(1L, DOUBLE_SUM);
+        root.addChild("zone", zone);
+        var replaced = new DoubleAggregatingTreeNode<>(2L, DOUBLE_SUM);
+        zone.addChild("a", replaced);
+        zone.addChild("b", new DoubleAggregatingTreeNode<>(4L, DOUBLE_SUM));
+        assertEquals(7.0, root.getAggregate(), 0, "Added children shall be aggregated");
+        zone.addChild("a", new DoubleAggregatingTreeNode<>(8L, DOUBLE_SUM));
+        assertEquals(13.0, root.getAggregate(), 0, "A replaced child shall be removed from the aggregate");
+        replaced.setData(100L);
+        assertEquals(13.0, root.getAggregate(), 0, "Changes of a replaced child shall not reach its former parent");
+        zone.removeChild("b");
+        assertEquals(9.0, root.getAggregate(), 0, "A removed child shall be removed from the aggregate");
+        root.removeChild("zone");
+        assertEquals(0.0, root.getAggregate(), 0, "A removed subtree shall be removed from the aggregate");
+        assertEquals(9.0, zone.getAggregate(), 0, "A removed subtree keeps its own aggregate");
+    }
+
+    @Test void testMinMaxRemoval() {
+        var min = new LongAggregatingTreeNode<>(null, LONG_MIN);
+        var max = new DoubleAggregatingTreeNode<>(null, DOUBLE_MAX);
+        for (long v = 1; v <= 5; v++) {
+            min.addChild(v, new LongAggregatingTreeNode<>(v, LONG_MIN));
+            max.addChild(v, new DoubleAggregatingTreeNode<>(v, DOUBLE_MAX));
+        }
+        assertEquals(1, min.getAggregate(), "The minimum shall be found");
+        assertEquals(5.0, max.getAggregate(), 0, "The maximum shall be found");
+        min.removeChild(1L);
+        max.removeChild(5L);
+        assertEquals(2, min.getAggregate(), "Removing the minimum shall find the next one");
+        assertEquals(4.0, max.getAggregate(), 0, "Removing the maximum shall find the next one");
+        min.getChild(2L).setData(9L);
+        max.getChild(4L).setData(0L);
+        assertEquals(3, min.getAggregate(), "Raising the minimum shall find the next one");
+        assertEquals(3.0, max.getAggregate(), 0, "Lowering the maximum shall find the next one");
+        min.getChild(3L).setData(-1L);
+        assertEquals(-1, min.getAggregate(), "A new minimum shall be taken over");
+        for (long v = 2; v <= 5; v++) {
+            min.removeChild(v);
+        }
+        assertEquals(Long.MAX_VALUE, min.getAggregate(), "Without data the minimum is the neutral value");
+    }
+
+    @Test void testSelectiveUpdatesDoNotRecombineSiblings() {
+        var aggregation = new CountingMin();
+        var root = new AggregatingTreeNode<Long, Long>(null, aggregation);
+        var zone = new AggregatingTreeNode<Long, Long>(null, aggregation);
+        root.addChild("zone", zone);
+        List<AggregatingTreeNode<Long, Long>> bins = new ArrayList<>();
+        for (long v = 0; v < 1_000; v++) {
+            var bin = new AggregatingTreeNode<>(v + 10, aggregation);
+            bins.add(bin);
+            zone.addChild(v, bin);
+        }
+        assertEquals(Long.valueOf(10), root.getAggregate(), "The minimum shall be found");
+
+        aggregation.combined.set(0);
+        bins.get(500).setData(5L);
+        assertEquals(Long.valueOf(5), root.getAggregate(), "A new minimum shall be propagated");
+        bins.get(700).setData(2_000L);
+        assertEquals(Long.valueOf(5), root.getAggregate(), "A change of another value shall not change the minimum");
+        assertTrue(aggregation.combined.get() < 20, "Changes shall not recombine all siblings, combined " + aggregation.combined.get() + " times");
+
+        bins.get(500).setData(3_000L);
+        assertEquals(Long.valueOf(10), root.getAggregate(), "Raising the minimum shall find the next one");
+    }
+
+    @Test void testInvertibleAggregation() {
+        var root = new AggregatingTreeNode<>(1L, SUM);
+        var child = new AggregatingTreeNode<>(2L, SUM);
+        root.addChild("child", child);
+        child.addChild("leaf", new AggregatingTreeNode<>(3L, SUM));
+        assertEquals(Long.valueOf(6), root.getAggregate(), "The sum shall cover the subtree");
+        child.setData(5L);
+        assertEquals(Long.valueOf(9), root.getAggregate(), "A change shall be applied as a delta");
+        child.removeChild("leaf");
+        assertEquals(Long.valueOf(6), root.getAggregate(), "A removed child shall be subtracted");
+    }
+
+    @Test void testIncompatibleChildIsRejected() {
+        var root = new LongAggregatingTreeNode<>(1L, LONG_SUM);
+        assertThrows(IllegalArgumentException.class, () -> root.addChild("x", new LongAggregatingTreeNode<>(1L, LONG_MIN)),
+                "A child with another aggregation shall be rejected");
+        assertThrows(IllegalArgumentException.class, () -> root.addChild("x", new DoubleAggregatingTreeNode<>(1L, DOUBLE_SUM)),
+                "A child of another type shall be rejected");
+    }
+
+    @Test void testRandomChangesMatchFullRecomputation() {
+        var random = new Random(42);
+        List<LongAggregatingTreeNode.LongAggregation<Long>> longs = List.of(LONG_SUM, LONG_MIN, LONG_MAX);
+        List<DoubleAggregatingTreeNode.DoubleAggregation<Long>> doubles = List.of(DOUBLE_SUM, DOUBLE_MIN, DOUBLE_MAX);
+        for (int a = 0; a < 3; a++) {
+            var longAggregation = longs.get(a);
+            var doubleAggregation = doubles.get(a);
+            List<LongAggregatingTreeNode<Long>> longNodes = new ArrayList<>();
+            List<DoubleAggregatingTreeNode<Long>> doubleNodes = new ArrayList<>();
+            longNodes.add(new LongAggregatingTreeNode<>(0L, longAggregation));
+            doubleNodes.add(new DoubleAggregatingTreeNode<>(0L, doubleAggregation));
+            for (int i = 0; i < 5_000; i++) {
+                int op = random.nextInt(3);
+                int target = random.nextInt(longNodes.size());
+                Long value = random.nextInt(10) == 0 ? null : (long) random.nextInt(1_000);
+                if (op == 0 || longNodes.size() < 50) {
+                    Object id = random.nextInt(4);
+                    var longChild = new LongAggregatingTreeNode<>(value, longAggregation);
+                    var doubleChild = new DoubleAggregatingTreeNode<>(value, doubleAggregation);
+                    longNodes.get(target).addChild(id, longChild);
+                    doubleNodes.get(target).addChild(id, doubleChild);
+                    longNodes.add(longChild);
+                    doubleNodes.add(doubleChild);
+                } else if (op == 1) {
+                    longNodes.get(target).setData(value);
+                    doubleNodes.get(target).setData(value);
+                } else {
+                    Object id = random.nextInt(4);
+                    longNodes.get(target).removeChild(id);
+                    doubleNodes.get(target).removeChild(id);
+                }
+            }
+            var longRoot = longNodes.get(0);
+            var doubleRoot = doubleNodes.get(0);
+            long expected = TreeNodes.aggregate(longRoot, (n, r) -> {
+                long result = longAggregation.valueOf(n.getData());
+                for (Long child : r) {
+                    result = longAggregation.combine(result, child);
+                }
+                return result;
+            });
+            assertEquals(expected, longRoot.getAggregate(), format("The incremental long aggregate [%d] shall match a full recomputation", a));
+            assertEquals((double) expected, doubleRoot.getAggregate(), 0, format("The incremental double aggregate [%d] shall match a full recomputation", a));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A BinaryTreeFormatTest.
+ *
+ * @author Heiko Scherrer
+ */
+class BinaryTreeFormatTest {
+
+    private final BinaryTreeFormat<String> format = new BinaryTreeFormat<>(BinaryTreeFormat.STRING, BinaryTreeFormat.STRING);
+
+    @TempDir
+    Path directory;
+
+    private static TreeNode<String> node(String data) {
+        TreeNode<String> node = new TreeNodeImpl<>();
+        node.setData(data);
+        return node;
+    }
+
+    private static TreeNode<String> warehouse() {
+        var root = node("WH1");
+        var zone = node("ZONE-A");
+        root.addChild("ZONE-A", zone);
+        zone.addChild("AISLE-01", node("AISLE-01"));
+        zone.addChild("AISLE-02", node(null));
+        root.addChild("ZONE-B", node("ZONE-B"));
+        return root;
+    }
+
+    /** Identifiers and data in pre-order. */
+    private static List<String> describe(TreeNode<String> root) {
+        List<String> result = new ArrayList<>();
+        result.add("/" + root.getData());
+        TreeNodes.depthFirst(root).forEach(n -> n.getChildren().forEachRemaining(e -> result.add(e.getKey() + "/" + e.getValue().getData())));
+        return result;
+    }
+
+    private byte[] toBytes(TreeNode<String> root) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(bytes)) {
+            format.write(root, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private CompactTree<String> fromBytes(byte[] bytes) throws IOException {
+        return format.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test void testStreamRoundTrip() throws IOException {
+        var root = warehouse();
+        var bytes = toBytes(root);
+        assertEquals(BinaryTreeFormat.UNKNOWN_COUNT, ByteBuffer.wrap(bytes).getInt(6), "A stream shall not carry the node count");
+        var tree = fromBytes(bytes);
+        assertEquals(5, tree.size(), "All nodes shall be read");
+        assertEquals(describe(root), describe(tree.getRoot()), "The structure and data shall be read");
+        assertNull(tree.getRoot().getChild("ZONE-A").getChild("AISLE-02").getData(), "Missing data shall be read as null");
+    }
+
+    @Test void testMappedFileRoundTrip() throws IOException {
+        var root = warehouse();
+        var file = directory.resolve("tree.bin");
+        format.write(root, file);
+        assertEquals(5, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(6), "The node count shall be patched into the file header");
+        var tree = format.read(file);
+        assertEquals(describe(root), describe(tree.getRoot()), "The structure and data shall be read from the mapped file");
+
+        format.write(node("small"), file);
+        assertEquals(List.of("/small"), describe(format.read(file).getRoot()), "An existing file shall be overwritten");
+    }
+
+    @Test void testOtherCodecs() throws IOException {
+        var longs = new BinaryTreeFormat<>(BinaryTreeFormat.LONG, BinaryTreeFormat.INTEGER);
+        TreeNode<Integer> root = new TreeNodeImpl<>();
+        root.setData(0);
+        TreeNode<Integer> child = new TreeNodeImpl<>();
+        child.setData(1);
+        root.addChild(42L, child);
+        var bytes = new ByteArrayOutputStream();
+        longs.write(root, new DataOutputStream(bytes));
+        var tree = longs.read(new BinaryTreeFormat.ByteBufferDataInput(ByteBuffer.wrap(bytes.toByteArray())));
+        assertEquals(Integer.valueOf(1), tree.getRoot().getChild(42L).getData(), "Long identifiers and Integer data shall be read");
+    }
+
+    @Test void testDeepTree() throws IOException {
+        var root = node("0");
+        var current = root;
+        for (int i = 1; i <= 100_000; i++) {
+            var child = node(String.valueOf(i));
+            current.addChild("c", child);
+            current = child;
+        }
+        var file = directory.resolve("deep.bin");
+        format.write(root, file);
+        var tree = format.read(file);
+        assertEquals(100_001, tree.size(), "A deep tree shall be written and read without recursion");
+        assertEquals("100000", tree.dataOf(100_000), "The deepest node shall be read");
+    }
+
+    @Test void testBadMagic() throws IOException {
+        var bytes = toBytes(warehouse());
+        bytes[0] = 'X';
+        assertThrows(IOException.class, () -> fromBytes(bytes), "Input without the magic bytes shall be rejected");
+    }
+
+    @Test void testBadVersion() throws IOException {
+        var bytes = toBytes(warehouse());
+        ByteBuffer.wrap(bytes).putShort(4, (short) (BinaryTreeFormat.VERSION + 1));
+        assertThrows(IOException.class, () -> fromBytes(bytes), "An unknown version shall be rejected");
+    }
+
+    @Test void testTruncatedInput() throws IOException {
+        var bytes = toBytes(warehouse());
+        for (int length : new int[]{3, 8, bytes.length / 2, bytes.length - 1}) {
+            var truncated = Arrays.copyOf(bytes, length);
+            assertThrows(EOFException.class, () -> fromBytes(truncated), "Truncated input shall be rejected at length " + length);
+            assertThrows(EOFException.class, () -> format.read(new BinaryTreeFormat.ByteBufferDataInput(ByteBuffer.wrap(truncated))),
+                    "Truncated input shall be rejected at length " + length);
+        }
+    }
+
+    @Test void testWrongNodeCount() throws IOException {
+        var file = directory.resolve("tree.bin");
+        format.write(warehouse(), file);
+        var bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(6, 4);
+        assertThrows(IOException.class, () -> fromBytes(bytes), "A node count that does not match the records shall be rejected");
+        ByteBuffer.wrap(bytes).putInt(6, 0);
+        assertThrows(IOException.class, () -> fromBytes(bytes), "An invalid node count shall be rejected");
+    }
+}
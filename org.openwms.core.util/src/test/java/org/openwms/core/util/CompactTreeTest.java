@@ -0,0 +1,113 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A CompactTreeTest.
+ *
+ * @author Heiko Scherrer
+ */
+class CompactTreeTest {
+
+    private static TreeNode<String> node(String data) {
+        TreeNode<String> node = new TreeNodeImpl<>();
+        node.setData(data);
+        return node;
+    }
+
+    @Test void testCopyOf() {
+        var root = node("WH1");
+        var zone = node("ZONE-A");
+        root.addChild("ZONE-A", zone);
+        zone.addChild("AISLE-01", node("AISLE-01"));
+        zone.addChild("AISLE-02", node("AISLE-02"));
+
+        var tree = CompactTree.copyOf(root);
+        assertEquals(4, tree.size(), "All nodes shall be copied");
+        assertEquals("AISLE-02", tree.getRoot().getChild("ZONE-A").getChild("AISLE-02").getData(), "Children shall be found by identifier");
+        assertEquals("WH1", tree.getRoot().getChild("ZONE-A").getParent().getData(), "The parent shall be resolved");
+        assertTrue(tree.getRoot().getChild("ZONE-A").getChild("AISLE-01").isLeaf(), "An aisle is a leaf");
+        assertNull(tree.getRoot().getChild("UNKNOWN"), "Unknown identifiers shall result in null");
+    }
+
+    @Test void testMoveAndRemove() {
+        var tree = new CompactTree<String>();
+        var root = tree.newNode("root");
+        var a = tree.newNode("a");
+        var b = tree.newNode("b");
+        root.addChild("a", a);
+        root.addChild("b", b);
+
+        a.addChild("b", b);
+        assertEquals("a", b.getParent().getData(), "A node shall be moved to the new parent");
+        assertNull(root.getChild("b"), "A moved node shall be removed from the old parent");
+        assertThrows(IllegalArgumentException.class, () -> b.addChild("root", root), "Cycles are not allowed");
+
+        root.removeChild("a");
+        assertTrue(root.isLeaf(), "The root has no children after removal");
+        assertNull(a.getParent(), "A removed node is detached");
+        assertFalse(a.isLeaf(), "A removed node keeps its subtree");
+    }
+
+    @Test void testReplaceKeepsPosition() {
+        var tree = new CompactTree<String>();
+        var root = tree.newNode("root");
+        root.addChild("a", tree.newNode("a"));
+        root.addChild("b", tree.newNode("b"));
+        root.addChild("c", tree.newNode("c"));
+        var old = root.getChild("b");
+
+        root.addChild("b", node("b2"));
+        root.addChild("a", tree.newNode("a2"));
+        root.addChild("c", root.getChild("a"));
+        var children = new ArrayList<String>();
+        root.getChildren().forEachRemaining(e -> children.add(e.getKey() + "=" + e.getValue().getData()));
+        assertEquals(List.of("b=b2", "c=a2"), children, "Replaced children shall keep their position");
+        assertNull(old.getParent(), "A replaced child is detached");
+    }
+
+    @Test void testForeignParentIsRejected() {
+        var tree = new CompactTree<String>();
+        var child = tree.newNode("child");
+        var parent = node("parent");
+        assertThrows(IllegalArgumentException.class, () -> parent.addChild("child", child), "A CompactTree node cannot get a foreign parent");
+        assertTrue(parent.isLeaf(), "The foreign parent shall not be changed");
+    }
+
+    @Test void testManyIdentifiers() {
+        var tree = new CompactTree<Integer>();
+        var root = tree.newNode(-1);
+        for (int i = 0; i < 10_000; i++) {
+            root.addChild("ID-" + i, tree.newNode(i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(Integer.valueOf(i), root.getChild("ID-" + i).getData(), "Each identifier shall be found");
+        }
+        assertNull(root.getChild("ID-10000"), "Unknown identifiers shall result in null");
+        assertNull(root.getChild(null), "A null identifier shall result in null");
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A ConcurrentTreeNodeTest.
+ *
+ * @author Heiko Scherrer
+ */
+class ConcurrentTreeNodeTest {
+
+    @Test void testMoveAndCycles() {
+        var root = new ConcurrentTreeNode<>("root");
+        var a = new ConcurrentTreeNode<>("a");
+        var b = new ConcurrentTreeNode<>("b");
+        root.addChild("a", a);
+        a.addChild("b", b);
+
+        assertThrows(IllegalArgumentException.class, () -> a.moveTo(b, "a"), "A node cannot be moved below its descendant");
+        assertThrows(IllegalArgumentException.class, () -> b.addChild("a", a), "addChild shall reject cycles as well");
+        assertThrows(IllegalArgumentException.class, () -> a.addChild("a", a), "A node cannot be its own child");
+
+        root.addChild("b", b);
+        assertSame(root, b.getParent(), "addChild shall re-parent the node");
+        assertNull(a.getChild("b"), "The node shall be removed from its former parent");
+        assertEquals("b", b.getIdentifier(), "The identifier shall be updated");
+    }
+
+    @Test void testParallelMoves() throws Exception {
+        var root = new ConcurrentTreeNode<>("root");
+        List<ConcurrentTreeNode<String>> nodes = new ArrayList<>();
+        for (int g = 0; g < 8; g++) {
+            var group = new ConcurrentTreeNode<>("G" + g);
+            root.addChild(group.getData(), group);
+            nodes.add(group);
+            for (int i = 0; i < 8; i++) {
+                var node = new ConcurrentTreeNode<>("N" + g + "-" + i);
+                group.addChild(node.getData(), node);
+                nodes.add(node);
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    var random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        var node = nodes.get(random.nextInt(nodes.size()));
+                        var target = random.nextInt(10) == 0 ? root : nodes.get(random.nextInt(nodes.size()));
+                        try {
+                            if (random.nextBoolean()) {
+                                node.moveTo(target, node.getData());
+                            } else {
+                                target.addChild(node.getData(), node);
+                            }
+                        } catch (IllegalArgumentException e) {
+                            // the move would have formed a cycle
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<TreeNode<String>, Boolean> reachable = new IdentityHashMap<>();
+        collect(root, reachable);
+        assertEquals(nodes.size() + 1, reachable.size(), "Each node shall be reachable from the root exactly once, no cycle and no lost child");
+        for (var node : nodes) {
+            var parent = node.getParent();
+            assertTrue(parent != null && parent.getChild(node.getIdentifier()) == node,
+                    format("Node [%s] shall be registered at its parent", node.getData()));
+        }
+    }
+
+    private static void collect(TreeNode<String> node, Map<TreeNode<String>, Boolean> reachable) {
+        assertNull(reachable.put(node, Boolean.TRUE), format("Node [%s] is reachable twice", node.getData()));
+        node.getChildren().forEachRemaining(e -> collect(e.getValue(), reachable));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * An EulerTourIndexTest.
+ *
+ * @author Heiko Scherrer
+ */
+class EulerTourIndexTest {
+
+    private static CompactTree<String> warehouse() {
+        var tree = new CompactTree<String>();
+        int root = tree.addNode(CompactTree.NONE, null, "WH1");
+        int zoneA = tree.addNode(root, "ZONE-A", "ZONE-A");
+        int zoneB = tree.addNode(root, "ZONE-B", "ZONE-B");
+        tree.addNode(zoneA, "AISLE-01", "AISLE-01");
+        tree.addNode(zoneA, "AISLE-02", "AISLE-02");
+        tree.addNode(zoneB, "AISLE-03", "AISLE-03");
+        return tree;
+    }
+
+    @Test void testQueriesOverCompactTree() {
+        var tree = warehouse();
+        var index = new EulerTourIndex<>(tree.getRoot());
+        var root = tree.getRoot();
+        assertEquals(6, index.size(), "All nodes shall be indexed");
+        assertTrue(index.isAncestor(root.getChild("ZONE-A"), root.getChild("ZONE-A").getChild("AISLE-02")),
+                "Flyweights of the same node shall be found in the index");
+        assertFalse(index.isAncestor(root.getChild("ZONE-B"), root.getChild("ZONE-A").getChild("AISLE-01")),
+                "A zone is no ancestor of an aisle of another zone");
+        assertEquals(2, index.depthOf(root.getChild("ZONE-B").getChild("AISLE-03")), "Aisles are two levels below the root");
+        assertEquals(root.getChild("ZONE-A"),
+                index.lowestCommonAncestor(root.getChild("ZONE-A").getChild("AISLE-01"), root.getChild("ZONE-A").getChild("AISLE-02")),
+                "Aisles of the same zone meet at the zone");
+        assertEquals(root, index.lowestCommonAncestor(root.getChild("ZONE-A").getChild("AISLE-01"), root.getChild("ZONE-B").getChild("AISLE-03")),
+                "Aisles of different zones meet at the root");
+    }
+
+    @Test void testRemoveAndAddCompactTreeNodes() {
+        var tree = warehouse();
+        var root = tree.getRoot();
+        var index = new EulerTourIndex<>(root);
+        var aisle = root.getChild("ZONE-A").getChild("AISLE-01");
+        assertEquals(6, index.size(), "All nodes shall be indexed");
+
+        index.removeChild(root, "ZONE-A");
+        assertEquals(3, index.size(), "The removed subtree shall be dropped without rebuild");
+        assertThrows(IllegalArgumentException.class, () -> index.depthOf(aisle), "Removed nodes shall not be found");
+
+        index.addChild(root.getChild("ZONE-B"), "AISLE-04", tree.newNode("AISLE-04"));
+        assertEquals(4, index.size(), "The index shall be rebuilt after an addition");
+        assertTrue(index.isAncestor(root, root.getChild("ZONE-B").getChild("AISLE-04")), "The added node shall be indexed");
+    }
+
+    @Test void testNodesAreKeptApartByIdentity() {
+        TreeNode<String> root = new TreeNodeImpl<>();
+        TreeNode<String> first = new TreeNodeImpl<>();
+        TreeNode<String> second = new TreeNodeImpl<>();
+        root.addChild("A", first);
+        first.addChild("B", second);
+        var index = new EulerTourIndex<>(root);
+        assertTrue(index.isAncestor(first, second), "Nodes without data shall not be confused with each other");
+        assertEquals(first, index.lowestCommonAncestor(first, second), "A node is the lowest common ancestor of its descendants");
+    }
+}
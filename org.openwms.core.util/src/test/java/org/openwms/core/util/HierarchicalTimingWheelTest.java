@@ -0,0 +1,155 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A HierarchicalTimingWheelTest.
+ *
+ * @author Heiko Scherrer
+ */
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 5;
+
+    @Test void testInvalidDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<String>("t", s -> { }, 0, 8, 4), "A tick must be positive");
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<String>("t", s -> { }, 10, 16, 4), "Wheels must not exceed 62 bits");
+    }
+
+    @Test void testTimersNeverExpireEarly() throws Exception {
+        var timings = new Timings(6);
+        // two wheels of four slots: 4 ticks on the lowest wheel, 16 ticks in total
+        try (var wheel = new HierarchicalTimingWheel<Long>("t", timings::expired, TICK, 2, 2)) {
+            long now = System.currentTimeMillis();
+            long[] deadlines = {
+                    now - 100,          // in the past, expires with the next tick
+                    now + TICK,         // exactly one tick
+                    now + 3 * TICK + 1, // just after a tick boundary of the lowest wheel
+                    now + 12 * TICK,    // cascaded from the second wheel
+                    now + 40 * TICK,    // beyond all wheels, parked and re-evaluated
+                    now + 70 * TICK     // beyond all wheels, several rotations
+            };
+            for (long deadline : deadlines) {
+                wheel.schedule(deadline, deadline);
+            }
+            assertEquals(deadlines.length, wheel.size(), "All timers shall be pending");
+            assertTrue(timings.await(), "All timers shall expire");
+            for (long deadline : deadlines) {
+                assertTrue(timings.expiredAt.get(deadline) >= deadline, format("Timer [%d] expired early at [%d]", deadline, timings.expiredAt.get(deadline)));
+            }
+            assertEquals(List.of(deadlines[0], deadlines[1], deadlines[2], deadlines[3], deadlines[4], deadlines[5]), timings.order,
+                    "Timers shall expire in the order of their deadlines");
+            assertEquals(0, wheel.size(), "No timer shall be pending");
+        }
+    }
+
+    @Test void testSameTickExpiresTogether() throws Exception {
+        var timings = new Timings(3);
+        try (var wheel = new HierarchicalTimingWheel<Long>("t", timings::expired, 50, 8, 4)) {
+            long deadline = System.currentTimeMillis() + 60;
+            wheel.schedule(deadline, deadline);
+            wheel.schedule(deadline + 1, deadline + 1);
+            wheel.schedule(deadline + 2, deadline + 2);
+            assertTrue(timings.await(), "All timers shall expire");
+            assertTrue(timings.expiredAt.get(deadline + 2) >= deadline + 2, "The latest deadline shall not expire early");
+        }
+    }
+
+    @Test void testCancel() throws Exception {
+        var timings = new Timings(1);
+        try (var wheel = new HierarchicalTimingWheel<Long>("t", timings::expired, TICK, 2, 2)) {
+            long now = System.currentTimeMillis();
+            var cancelled = wheel.schedule(now + 10 * TICK, now + 10 * TICK);
+            var overflow = wheel.schedule(now + 40 * TICK, now + 40 * TICK);
+            var expiring = wheel.schedule(now + 20 * TICK, now + 20 * TICK);
+
+            assertTrue(cancelled.cancel(), "A pending timer can be cancelled");
+            assertFalse(cancelled.cancel(), "A timer can only be cancelled once");
+            assertTrue(cancelled.isCancelled(), "The timer shall be marked as cancelled");
+            assertTrue(overflow.cancel(), "A parked timer can be cancelled");
+            assertEquals(1, wheel.size(), "Cancelled timers are not pending");
+
+            assertTrue(timings.await(), "The remaining timer shall expire");
+            assertTrue(expiring.isExpired(), "The timer shall be marked as expired");
+            assertFalse(expiring.cancel(), "An expired timer cannot be cancelled");
+            TimeUnit.MILLISECONDS.sleep(25 * TICK);
+            assertEquals(List.of(now + 20 * TICK), timings.order, "Cancelled timers shall never expire");
+        }
+    }
+
+    @Test void testStopReturnsPendingTasks() {
+        var wheel = new HierarchicalTimingWheel<String>("t", s -> { });
+        wheel.schedule("a", Duration.ofHours(1));
+        wheel.schedule("b", Duration.ofDays(400));
+        var pending = new ArrayList<>(wheel.stop());
+        pending.sort(String::compareTo);
+        assertEquals(List.of("a", "b"), pending, "Stopping shall return all pending tasks");
+        assertThrows(IllegalStateException.class, () -> wheel.schedule("c", Duration.ZERO), "A stopped wheel does not accept timers");
+    }
+
+    @Test void testFailingHandlerDoesNotStopTheWheel() throws Exception {
+        var timings = new Timings(1);
+        try (var wheel = new HierarchicalTimingWheel<Long>("t", l -> {
+            if (l < 0) {
+                throw new IllegalStateException("Handler failed");
+            }
+            timings.expired(l);
+        }, TICK, 2, 2)) {
+            wheel.schedule(-1L, Duration.ZERO);
+            wheel.schedule(1L, Duration.ofMillis(3 * TICK));
+            assertTrue(timings.await(), "Timers after a failure shall still expire");
+        }
+    }
+
+    private static final class Timings {
+
+        private final Map<Long, Long> expiredAt = new ConcurrentHashMap<>();
+        private final List<Long> order = new ArrayList<>();
+        private final CountDownLatch latch;
+
+        Timings(int expected) {
+            this.latch = new CountDownLatch(expected);
+        }
+
+        void expired(Long deadline) {
+            expiredAt.put(deadline, System.currentTimeMillis());
+            synchronized (order) {
+                order.add(deadline);
+            }
+            latch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A LazyTreeCacheTest.
+ *
+ * @author Heiko Scherrer
+ */
+class LazyTreeCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    /** Each node has four children, the tree is three levels deep. */
+    private Map<Object, String> load(LazyTreeNode<String> node) {
+        loads.incrementAndGet();
+        Map<Object, String> children = new LinkedHashMap<>();
+        if (node.getData().split("/").length < 4) {
+            for (int i = 0; i < 4; i++) {
+                children.put(String.valueOf(i), node.getData() + "/" + i);
+            }
+        }
+        return children;
+    }
+
+    private static LazyTreeNode<String> child(TreeNode<String> parent, String id) {
+        return (LazyTreeNode<String>) parent.getChild(id);
+    }
+
+    @Test void testColdNodesAreUnloaded() {
+        var cache = new LazyTreeCache<String>(this::load, 22);
+        var root = cache.root("R");
+        for (int i = 0; i < 3; i++) {
+            child(root, String.valueOf(i)).isLeaf();
+        }
+        assertEquals(20, cache.getWeight(), "Root and three children are loaded with a weight of five each");
+        assertEquals(4, loads.get(), "Each node shall be loaded once");
+
+        child(root, "0").isLeaf();
+        child(root, "2").isLeaf();
+        child(root, "3").isLeaf();
+        assertEquals(20, cache.getWeight(), "The weight limit shall be kept");
+        assertFalse(child(root, "1").isLoaded(), "The node not read since it was loaded shall be unloaded");
+        assertTrue(child(root, "0").isLoaded() && child(root, "2").isLoaded(), "Recently read nodes get a second chance");
+        assertEquals(1, cache.getEvictionCount(), "One node shall have been unloaded");
+    }
+
+    @Test void testModifiedNodesArePinned() {
+        var cache = new LazyTreeCache<String>(this::load, 10);
+        var root = cache.root("R");
+        var modified = child(child(root, "0"), "0");
+        modified.setData("changed");
+        assertTrue(root.isLoaded(), "The root shall be loaded");
+
+        for (int i = 1; i < 4; i++) {
+            child(root, String.valueOf(i)).isLeaf();
+        }
+        assertTrue(root.isLoaded() && child(root, "0").isLoaded(), "Ancestors of a modified node shall not be unloaded");
+
+        modified.markClean();
+        for (int i = 1; i < 4; i++) {
+            child(root, String.valueOf(i)).getChild("0");
+        }
+        assertTrue(cache.getWeight() <= 10, "Clean nodes shall be unloaded again to keep the limit");
+    }
+
+    @Test void testWeightIsEvaluatedAgainAfterChanges() {
+        var cache = new LazyTreeCache<String>(this::load, 100);
+        var root = cache.root("R");
+        root.isLeaf();
+        assertEquals(5, cache.getWeight(), "Four children plus one");
+        root.addChild("4", new TreeNodeImpl<>());
+        assertEquals(6, cache.getWeight(), "An added child shall be weighed");
+        root.removeChild("0");
+        root.removeChild("1");
+        assertEquals(4, cache.getWeight(), "Removed children shall be weighed");
+    }
+
+    @Test void testDeserializedTreeIsAttached() throws Exception {
+        var cache = new LazyTreeCache<String>(this::load, 100);
+        var root = cache.root("R");
+        child(root, "0").setData("changed");
+
+        var out = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(out)) {
+            oos.writeObject(root);
+        }
+        LazyTreeNode<String> copy;
+        try (var ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            @SuppressWarnings("unchecked")
+            LazyTreeNode<String> read = (LazyTreeNode<String>) ois.readObject();
+            copy = read;
+        }
+        assertThrows(IllegalStateException.class, () -> child(copy, "1").isLeaf(), "A detached node cannot load children");
+
+        var attached = new LazyTreeCache<String>(this::load, 100);
+        attached.attach(copy);
+        assertEquals(1, attached.size(), "The loaded root shall be registered");
+        assertFalse(child(copy, "1").isLeaf(), "Children shall be loaded after attaching");
+        assertTrue(child(copy, "0").isModified(), "The modification shall survive serialization");
+        assertTrue(copy.isPinned(), "The root of a modified node shall be pinned after attaching");
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openwms.core.DomainObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * An OffHeapSnapshotStoreTest.
+ *
+ * @author Heiko Scherrer
+ */
+class OffHeapSnapshotStoreTest {
+
+    /** Id, version and payload length. */
+    private static final int HEADER_SIZE = 20;
+    private static final int NAME_OFFSET = Double.BYTES;
+
+    @TempDir
+    Path directory;
+
+    private static long slabFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static Path slabDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(Files::isDirectory).findFirst().orElseThrow();
+        }
+    }
+
+    @Test void testPutAndRead() {
+        try (var store = OffHeapSnapshotStore.direct(new ItemCodec(), 1024)) {
+            assertTrue(store.put(new Item(1L, 0, "BIN-01", 12.5)), "A new snapshot shall be stored");
+            assertEquals("BIN-01", store.read(1, r -> r.getString(NAME_OFFSET)), "A single field shall be readable by offset");
+            assertEquals(12.5, store.read(1, r -> r.getDouble(0)), "A single field shall be readable by offset");
+            var item = store.get(1);
+            assertEquals("BIN-01", item.name, "The decoded entity shall have the stored name");
+            assertEquals(0, store.getVersion(1), "The version shall be stored");
+            assertTrue(store.contains(1), "The snapshot shall be found");
+            assertNull(store.get(2), "Unknown ids shall result in null");
+            assertEquals(-1, store.getVersion(2), "Unknown ids have no version");
+            assertThrows(IndexOutOfBoundsException.class, () -> store.read(1, r -> r.getLong(100)),
+                    "Reading outside the payload shall fail");
+
+            assertTrue(store.remove(1), "A stored snapshot shall be removable");
+            assertFalse(store.contains(1), "A removed snapshot shall not be found");
+            assertEquals(store.getUsedBytes(), store.getGarbageBytes(), "The removed record is garbage");
+        }
+    }
+
+    @Test void testRejectsOlderVersions() {
+        try (var store = OffHeapSnapshotStore.direct(new ItemCodec(), 1024)) {
+            assertTrue(store.put(new Item(1L, 2, "new", 1)), "A new snapshot shall be stored");
+            assertFalse(store.put(new Item(1L, 1, "old", 1)), "An older version shall be rejected");
+            assertEquals("new", store.get(1).name, "The newer snapshot shall be kept");
+            assertEquals(0, store.getGarbageBytes(), "A rejected snapshot is not written");
+            assertTrue(store.put(new Item(1L, 2, "same", 1)), "The same version shall replace the stored one");
+            assertEquals("same", store.get(1).name, "The replacing snapshot shall be read");
+            assertTrue(store.getGarbageBytes() > 0, "The replaced record is garbage");
+            assertThrows(IllegalArgumentException.class, () -> store.put(new Item(null, 0, "x", 0)), "Transient entities cannot be stored");
+        }
+    }
+
+    @Test void testRecordsDoNotSpanSlabs() throws IOException {
+        int slabSize = 64;
+        try (var store = OffHeapSnapshotStore.mapped(new ItemCodec(), directory, slabSize)) {
+            // 42 bytes each, the second one does not fit into the rest of the first slab
+            store.put(new Item(1L, 0, "0123456789", 1));
+            store.put(new Item(2L, 0, "abcdefghij", 2));
+            assertEquals(2, slabFiles(directory), "A record that does not fit shall start a new slab");
+            var exact = "x".repeat(slabSize - HEADER_SIZE - NAME_OFFSET - Integer.BYTES);
+            store.put(new Item(3L, 0, exact, 3));
+            assertEquals(3, slabFiles(directory), "A record of the slab size shall fill a slab of its own");
+
+            assertEquals("0123456789", store.get(1).name, "The record before the slab boundary shall be readable");
+            assertEquals("abcdefghij", store.get(2).name, "The record after the slab boundary shall be readable");
+            assertEquals(exact, store.get(3).name, "A record filling a slab shall be readable");
+            assertThrows(IllegalArgumentException.class, () -> store.put(new Item(4L, 0, exact + "x", 4)),
+                    "A record larger than a slab shall be rejected");
+        }
+    }
+
+    @Test void testCompactKeepsLiveRecords() throws IOException {
+        try (var store = OffHeapSnapshotStore.mapped(new ItemCodec(), directory, 64)) {
+            for (long id = 1; id <= 4; id++) {
+                store.put(new Item(id, 0, "item-" + id, id));
+            }
+            store.put(new Item(2L, 1, "item-2b", 2));
+            store.remove(3);
+            long live = store.getUsedBytes() - store.getGarbageBytes();
+            assertEquals(5, slabFiles(directory), "Each record fills most of a slab");
+
+            store.compact();
+            assertEquals(0, store.getGarbageBytes(), "Compaction shall drop all garbage");
+            assertEquals(live, store.getUsedBytes(), "Only live records shall be copied");
+            assertEquals(3, slabFiles(directory), "The former slab files shall be deleted");
+            assertEquals(3, store.size(), "All live records shall be kept");
+            assertEquals("item-1", store.get(1).name, "An unchanged record shall be kept");
+            assertEquals("item-2b", store.get(2).name, "The latest version of a replaced record shall be kept");
+            assertEquals(1, store.getVersion(2), "The latest version of a replaced record shall be kept");
+            assertNull(store.get(3), "A removed record shall not be copied");
+            assertEquals(4.0, store.read(4, r -> r.getDouble(0)), "The payload shall be copied unchanged");
+        }
+    }
+
+    @Test void testFailedCompactKeepsState() throws IOException {
+        try (var store = OffHeapSnapshotStore.mapped(new ItemCodec(), directory, 64)) {
+            store.put(new Item(1L, 0, "item-1", 1));
+            store.put(new Item(2L, 0, "item-2", 2));
+            store.put(new Item(2L, 1, "item-2b", 2));
+            long used = store.getUsedBytes();
+            long garbage = store.getGarbageBytes();
+            // the second new slab cannot be created
+            var slabs = slabDirectory(directory);
+            var blocker = Files.createFile(slabs.resolve("slab-4.bin"));
+
+            assertThrows(UncheckedIOException.class, store::compact, "The failure to allocate a slab shall be propagated");
+            assertEquals(used, store.getUsedBytes(), "The used bytes shall be unchanged");
+            assertEquals(garbage, store.getGarbageBytes(), "The garbage shall be unchanged");
+            assertEquals("item-1", store.get(1).name, "The records shall still be readable");
+            assertEquals("item-2b", store.get(2).name, "The records shall still be readable");
+            assertFalse(Files.exists(slabs.resolve("slab-3.bin")), "The slab of the failed compaction shall be deleted");
+
+            Files.delete(blocker);
+            store.put(new Item(3L, 0, "item-3", 3));
+            assertEquals("item-3", store.get(3).name, "The store shall be usable after a failed compaction");
+        }
+    }
+
+    @Test void testCloseDeletesFiles() throws IOException {
+        var store = OffHeapSnapshotStore.mapped(new ItemCodec(), directory, 64);
+        store.put(new Item(1L, 0, "item-1", 1));
+        store.put(new Item(2L, 0, "item-2", 2));
+        store.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count(), "All slab files and their directory shall be deleted");
+        }
+        assertThrows(IllegalStateException.class, () -> store.get(1), "A closed store cannot be read");
+        assertThrows(IllegalStateException.class, () -> store.put(new Item(3L, 0, "item-3", 3)), "A closed store cannot be written");
+        store.close();
+    }
+
+    @Test void testSharedDirectory() throws IOException {
+        var leftover = Files.createFile(directory.resolve("slab-0.bin"));
+        try (var first = OffHeapSnapshotStore.mapped(new ItemCodec(), directory, 64);
+             var second = OffHeapSnapshotStore.mapped(new ItemCodec(), directory, 64)) {
+            first.put(new Item(1L, 0, "first", 1));
+            second.put(new Item(1L, 0, "second", 2));
+            assertEquals(3, slabFiles(directory), "Each store shall create its own slab file next to the leftover one");
+            assertEquals("first", first.get(1).name, "The stores shall not share slabs");
+            assertEquals("second", second.get(1).name, "The stores shall not share slabs");
+        }
+        assertEquals(1, slabFiles(directory), "Only the leftover file shall remain");
+        assertTrue(Files.exists(leftover), "Files not created by a store shall not be deleted");
+    }
+
+    private static final class Item implements DomainObject<Long> {
+
+        private final Long id;
+        private final long version;
+        private final String name;
+        private final double weight;
+
+        Item(Long id, long version, String name, double weight) {
+            this.id = id;
+            this.version = version;
+            this.name = name;
+            this.weight = weight;
+        }
+
+        @Override
+        public boolean isNew() {
+            return id == null;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+    }
+
+    private static final class ItemCodec implements OffHeapSnapshotStore.Codec<Item> {
+
+        @Override
+        public int sizeOf(Item entity) {
+            return NAME_OFFSET + OffHeapSnapshotStore.sizeOf(entity.name);
+        }
+
+        @Override
+        public void encode(Item entity, ByteBuffer target) {
+            target.putDouble(0, entity.weight);
+            OffHeapSnapshotStore.putString(target, NAME_OFFSET, entity.name);
+        }
+
+        @Override
+        public Item decode(OffHeapSnapshotStore.Record record) {
+            return new Item(record.getId(), record.getVersion(), record.getString(NAME_OFFSET), record.getDouble(0));
+        }
+    }
+}
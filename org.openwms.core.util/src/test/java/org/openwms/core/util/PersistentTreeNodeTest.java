@@ -0,0 +1,165 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A PersistentTreeNodeTest.
+ *
+ * @author Heiko Scherrer
+ */
+class PersistentTreeNodeTest {
+
+    @Test void testChildrenBehaveLikeLinkedHashMap() {
+        var random = new Random(42);
+        var reference = new LinkedHashMap<Object, PersistentTreeNode<Integer>>();
+        var node = PersistentTreeNode.<Integer>of(0);
+        for (int i = 0; i < 50_000; i++) {
+            Object id = random.nextBoolean() ? "ID-" + random.nextInt(3_000) : new Colliding(random.nextInt(40));
+            if (random.nextInt(3) == 0) {
+                reference.remove(id);
+                node = node.withoutChild(id);
+            } else {
+                var child = PersistentTreeNode.of(i);
+                reference.put(id, child);
+                node = node.withChild(id, child);
+            }
+        }
+        var children = new ArrayList<Map.Entry<Object, TreeNode<Integer>>>();
+        node.getChildren().forEachRemaining(children::add);
+        assertEquals(new ArrayList<>(reference.keySet()), children.stream().map(Map.Entry::getKey).collect(Collectors.toList()),
+                "Children shall keep the insertion order");
+        for (var entry : reference.entrySet()) {
+            assertSame(entry.getValue(), node.getChild(entry.getKey()), format("Child [%s] shall be resolved", entry.getKey()));
+        }
+        assertNull(node.getChild("UNKNOWN"), "Unknown identifiers shall result in null");
+    }
+
+    @Test void testVersionsAreIndependent() {
+        var v1 = PersistentTreeNode.of("root").withChild("a", PersistentTreeNode.of("a")).withChild("b", PersistentTreeNode.of("b"));
+        var v2 = v1.withChild("a", PersistentTreeNode.of("a2"));
+        var v3 = v2.withoutChild("b");
+
+        assertEquals("a", v1.getChild("a").getData(), "The original version shall not change");
+        assertEquals("a2", v2.getChild("a").getData(), "The new version shall have the replaced child");
+        assertSame(v1.getChild("b"), v2.getChild("b"), "Unchanged children shall be shared");
+        assertEquals("b", v2.getChild("b").getData(), "Removing shall not change the former version");
+        assertTrue(v3.getChild("a") != null && v3.getChild("b") == null, "The child shall only be removed from the new version");
+        assertSame(v3, v3.withoutChild("b"), "Removing an absent child shall return the same node");
+        assertSame(v3, v3.withChild("a", (PersistentTreeNode<String>) v3.getChild("a")), "Putting the same child shall return the same node");
+    }
+
+    @Test void testUpdateAlongAPath() {
+        var root = PersistentTreeNode.copyOf(warehouse());
+        var updated = root.update(List.of("ZONE-A", "AISLE-01"), n -> n.withData("AISLE-01*"));
+        assertEquals("AISLE-01*", updated.get(List.of("ZONE-A", "AISLE-01")).getData(), "The descendant shall be replaced");
+        assertEquals("AISLE-01", root.get(List.of("ZONE-A", "AISLE-01")).getData(), "The former version shall be unchanged");
+        assertSame(root.getChild("ZONE-B"), updated.getChild("ZONE-B"), "Subtrees beside the path shall be shared");
+    }
+
+    @Test void testSerializationRoundTrip() throws Exception {
+        var node = PersistentTreeNode.copyOf(warehouse());
+        for (int i = 0; i < 100; i++) {
+            node = node.withChild(new Colliding(i), PersistentTreeNode.of("C" + i));
+        }
+        node = node.withoutChild(new Colliding(7)).withoutChild("ZONE-B").withChild("ZONE-B", PersistentTreeNode.of("ZONE-B2"));
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(node);
+        }
+        PersistentTreeNode<String> copy;
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            @SuppressWarnings("unchecked")
+            var read = (PersistentTreeNode<String>) in.readObject();
+            copy = read;
+        }
+
+        assertEquals(node.getData(), copy.getData(), "The data shall be deserialized");
+        assertEquals(keys(node), keys(copy), "The children shall keep their order");
+        assertEquals("AISLE-01", copy.get(List.of("ZONE-A", "AISLE-01")).getData(), "Nested children shall be deserialized");
+        assertEquals("C42", copy.getChild(new Colliding(42)).getData(), "Colliding identifiers shall be resolved");
+        assertNull(copy.getChild(new Colliding(7)), "A removed child shall not be deserialized");
+        assertTrue(copy.get(List.of("ZONE-B")).isLeaf(), "An empty children map shall be deserialized");
+        var updated = copy.withChild("ZONE-C", PersistentTreeNode.of("ZONE-C"));
+        assertEquals("ZONE-C", updated.getChild("ZONE-C").getData(), "A deserialized tree shall be modifiable");
+    }
+
+    private static List<Object> keys(TreeNode<?> node) {
+        var keys = new ArrayList<>();
+        node.getChildren().forEachRemaining(e -> keys.add(e.getKey()));
+        return keys;
+    }
+
+    private static TreeNode<String> warehouse() {
+        TreeNode<String> root = new TreeNodeImpl<>();
+        root.setData("WH1");
+        TreeNode<String> zone = new TreeNodeImpl<>();
+        zone.setData("ZONE-A");
+        TreeNode<String> aisle = new TreeNodeImpl<>();
+        aisle.setData("AISLE-01");
+        TreeNode<String> other = new TreeNodeImpl<>();
+        other.setData("ZONE-B");
+        root.addChild("ZONE-A", zone);
+        zone.addChild("AISLE-01", aisle);
+        root.addChild("ZONE-B", other);
+        return root;
+    }
+
+    /** An identifier with few distinct hash codes to force collisions. */
+    private static final class Colliding implements Serializable {
+
+        private final int value;
+
+        Colliding(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Colliding && ((Colliding) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value % 4;
+        }
+
+        @Override
+        public String toString() {
+            return "C" + value;
+        }
+    }
+}
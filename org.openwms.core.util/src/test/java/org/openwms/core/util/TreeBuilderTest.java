@@ -0,0 +1,159 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A TreeBuilderTest.
+ *
+ * @author Heiko Scherrer
+ */
+class TreeBuilderTest {
+
+    private static final HierarchyExtractor<String, Row> EXTRACTOR = new HierarchyExtractor<>() {
+        @Override
+        public String extractId(Row row) {
+            return row.id;
+        }
+
+        @Override
+        public String extractParentId(Row row) {
+            return row.parent;
+        }
+    };
+
+    private static Row row(String id, String parent) {
+        return new Row(id, parent);
+    }
+
+    private static List<String> childIds(TreeNode<Row> node) {
+        List<String> ids = new ArrayList<>();
+        node.getChildren().forEachRemaining(e -> ids.add((String) e.getKey()));
+        return ids;
+    }
+
+    private static List<String> ids(List<Row> rows) {
+        return rows.stream().map(r -> r.id).collect(Collectors.toList());
+    }
+
+    @Test void testBuildInRowOrder() {
+        var result = TreeBuilder.build(List.of(row("A1", "A"), row("A", "WH"), row("B", "WH"), row("WH", null), row("A2", "A")), EXTRACTOR);
+        assertTrue(result.isComplete(), "All rows shall be attached");
+        var root = result.getRoot();
+        assertEquals("WH", root.getData().id, "The row without parent shall be the root");
+        assertEquals(List.of("A", "B"), childIds(root), "Children shall keep the row order");
+        assertEquals(List.of("A1", "A2"), childIds(root.getChild("A")), "Children shall keep the row order, even before their parent");
+        assertSame(root.getChild("A").getChild("A2"), result.getNode("A2"), "A node shall be found by its identifier");
+        assertSame(root, result.getNode("A").getParent(), "The parent shall be set");
+        assertNull(result.getNode("UNKNOWN"), "An unknown identifier shall not be found");
+    }
+
+    @Test void testSeveralRoots() {
+        var result = TreeBuilder.build(List.of(row("WH1", null), row("WH2", null)), EXTRACTOR);
+        assertEquals(2, result.getRoots().size(), "Both rows without parent shall be roots");
+        assertThrows(IllegalStateException.class, result::getRoot, "There is not exactly one root");
+        assertTrue(TreeBuilder.build(List.of(), EXTRACTOR).getRoots().isEmpty(), "No rows result in no roots");
+    }
+
+    @Test void testOrphans() {
+        var result = TreeBuilder.build(List.of(row("WH", null), row("X", "MISSING"), row("X1", "X")), EXTRACTOR);
+        assertFalse(result.isComplete(), "An orphan shall make the result incomplete");
+        assertEquals(1, result.getOrphans().size(), "The row with an unknown parent shall be an orphan");
+        var orphan = result.getOrphans().get(0);
+        assertEquals("X", orphan.getData().id, "The orphan shall be reported");
+        assertEquals(List.of("X1"), childIds(orphan), "The subtree of an orphan shall be attached to it");
+        assertTrue(result.getRoot().isLeaf(), "The orphan shall not be attached to the root");
+        assertTrue(result.getCyclicRows().isEmpty(), "An orphan is not a cycle");
+    }
+
+    @Test void testSelfCycle() {
+        var result = TreeBuilder.build(List.of(row("WH", null), row("S", "S"), row("A", "WH")), EXTRACTOR);
+        assertEquals(List.of("S"), ids(result.getCyclicRows()), "A row that is its own parent shall be reported as cycle");
+        assertNull(result.getNode("S"), "A cyclic row shall not have a node");
+        assertEquals(List.of("A"), childIds(result.getRoot()), "The rest of the tree shall be built");
+        assertFalse(result.isComplete(), "A cycle shall make the result incomplete");
+    }
+
+    @Test void testLongerCycleWithSubtree() {
+        var result = TreeBuilder.build(List.of(row("WH", null), row("C1", "C3"), row("C2", "C1"), row("C3", "C2"),
+                row("BELOW", "C2"), row("DEEP", "BELOW"), row("A", "WH")), EXTRACTOR);
+        assertEquals(List.of("C1", "C2", "C3", "BELOW", "DEEP"), ids(result.getCyclicRows()),
+                "The rows of the cycle and the rows below it shall be reported in row order");
+        assertNull(result.getNode("DEEP"), "A row below a cycle shall not have a node");
+        assertTrue(result.getOrphans().isEmpty(), "Rows of a cycle are no orphans");
+        assertEquals(List.of("A"), childIds(result.getRoot()), "The rest of the tree shall be built");
+    }
+
+    @Test void testDuplicateIdentifiers() {
+        assertThrows(IllegalArgumentException.class, () -> TreeBuilder.build(List.of(row("WH", null), row("WH", null)), EXTRACTOR),
+                "Duplicate identifiers shall be rejected");
+        assertThrows(NullPointerException.class, () -> TreeBuilder.build(List.of(row(null, null)), EXTRACTOR),
+                "A missing identifier shall be rejected");
+    }
+
+    @Test void testParallelBuild() {
+        int n = TreeBuilder.PARALLEL_THRESHOLD * 2;
+        var random = new Random(42);
+        List<Row> rows = new ArrayList<>(n);
+        rows.add(row("0", null));
+        for (int i = 1; i < n; i++) {
+            rows.add(row(String.valueOf(i), String.valueOf(random.nextInt(i))));
+        }
+        Collections.shuffle(rows, random);
+        var result = TreeBuilder.build(rows, EXTRACTOR, r -> {
+            TreeNode<Row> node = new TreeNodeImpl<>();
+            node.setData(r);
+            return node;
+        }, true);
+        var sequential = TreeBuilder.build(rows, EXTRACTOR);
+
+        assertTrue(result.isComplete(), "All rows shall be attached");
+        assertEquals(n, TreeNodes.depthFirst(result.getRoot()).count(), "All rows shall be reachable from the root");
+        for (Row r : rows) {
+            var node = result.getNode(r.id);
+            assertSame(r, node.getData(), "Each node shall hold its row");
+            if (r.parent != null) {
+                assertSame(result.getNode(r.parent), node.getParent(), "Each node shall be attached to its parent");
+                assertEquals(childIds(sequential.getNode(r.parent)), childIds(node.getParent()), "Children shall keep the row order");
+            }
+        }
+    }
+
+    private static final class Row {
+
+        private final String id;
+        private final String parent;
+
+        Row(String id, String parent) {
+            this.id = id;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A TreeChangeRecorderTest.
+ *
+ * @author Heiko Scherrer
+ */
+class TreeChangeRecorderTest {
+
+    private static TreeNode<String> node(String data) {
+        TreeNode<String> node = new TreeNodeImpl<>();
+        node.setData(data);
+        return node;
+    }
+
+    @Test void testRecordCompactTreeNodes() {
+        var tree = new CompactTree<String>();
+        var root = tree.newNode("WH1");
+        var recorder = new TreeChangeRecorder<>(root);
+        recorder.addChild(root, "ZONE-A", node("ZONE-A"));
+        recorder.addChild(root.getChild("ZONE-A"), "AISLE-01", node("AISLE-01"));
+        recorder.setData(root.getChild("ZONE-A").getChild("AISLE-01"), "AISLE-1");
+        recorder.setData(root.getChild("ZONE-A").getChild("AISLE-01"), "AISLE-01a");
+        assertEquals(3, recorder.size(), "Data changes of the same node shall be collapsed");
+
+        var replica = node("WH1");
+        recorder.drain().applyTo(replica);
+        assertEquals("AISLE-01a", replica.getChild("ZONE-A").getChild("AISLE-01").getData(),
+                "Flyweight nodes shall be resolved to their paths");
+    }
+
+    @Test void testRecordByPath() {
+        var root = node("WH1");
+        var replica = node("WH1");
+        var recorder = new TreeChangeRecorder<>(root);
+        recorder.addChild(List.of(), "ZONE-A", node("ZONE-A"));
+        recorder.addChild(List.of("ZONE-A"), "AISLE-01", node("AISLE-01"));
+        recorder.addChild(List.of("ZONE-A"), "AISLE-02", node("AISLE-02"));
+        recorder.setData(List.of("ZONE-A", "AISLE-02"), "AISLE-2");
+        recorder.removeChild(List.of("ZONE-A"), "AISLE-01");
+        recorder.removeChild(List.of("ZONE-A"), "AISLE-01");
+        assertEquals(5, recorder.size(), "Removing an absent child shall not be recorded");
+        assertEquals("AISLE-2", root.getChild("ZONE-A").getChild("AISLE-02").getData(), "The tree shall be modified");
+
+        recorder.drain().applyTo(replica);
+        assertNull(replica.getChild("ZONE-A").getChild("AISLE-01"), "The removal shall be replayed");
+        assertEquals("AISLE-2", replica.getChild("ZONE-A").getChild("AISLE-02").getData(), "The data change shall be replayed");
+        assertThrows(IllegalArgumentException.class, () -> recorder.setData(List.of("ZONE-B"), "X"), "Unknown paths shall be rejected");
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A TreeNodesTest.
+ *
+ * @author Heiko Scherrer
+ */
+class TreeNodesTest {
+
+    private static TreeNode<String> node(String data) {
+        TreeNode<String> node = new TreeNodeImpl<>();
+        node.setData(data);
+        return node;
+    }
+
+    /**
+     * <pre>
+     * A
+     * +- B
+     * |  +- D
+     * |  +- E
+     * +- C
+     *    +- F
+     * </pre>
+     */
+    private static TreeNode<String> sample() {
+        var a = node("A");
+        var b = node("B");
+        var c = node("C");
+        a.addChild("B", b);
+        a.addChild("C", c);
+        b.addChild("D", node("D"));
+        b.addChild("E", node("E"));
+        c.addChild("F", node("F"));
+        return a;
+    }
+
+    /** A tree of {@code fanOut^depth} leaves, the data is a running number in pre-order. */
+    private static TreeNode<String> wide(int fanOut, int depth) {
+        int[] counter = {0};
+        return wide(fanOut, depth, counter);
+    }
+
+    private static TreeNode<String> wide(int fanOut, int depth, int[] counter) {
+        var n = node(String.valueOf(counter[0]++));
+        if (depth > 0) {
+            for (int i = 0; i < fanOut; i++) {
+                n.addChild(i, wide(fanOut, depth - 1, counter));
+            }
+        }
+        return n;
+    }
+
+    private static List<String> data(Stream<TreeNode<String>> stream) {
+        return stream.map(TreeNode::getData).collect(Collectors.toList());
+    }
+
+    @Test void testDepthFirstOrder() {
+        assertEquals(List.of("A", "B", "D", "E", "C", "F"), data(TreeNodes.depthFirst(sample())), "Nodes shall be streamed in pre-order");
+    }
+
+    @Test void testBreadthFirstOrder() {
+        assertEquals(List.of("A", "B", "C", "D", "E", "F"), data(TreeNodes.breadthFirst(sample())), "Nodes shall be streamed level by level");
+    }
+
+    @Test void testParallelDepthFirstKeepsOrder() {
+        var root = wide(4, 6);
+        var sequential = data(TreeNodes.depthFirst(root));
+        assertEquals(5461, sequential.size(), "All nodes shall be streamed");
+        assertEquals(sequential, data(TreeNodes.depthFirst(root).parallel()), "A parallel stream shall keep the pre-order");
+    }
+
+    @Test void testParallelBreadthFirstStreamsAllNodes() {
+        var root = wide(4, 6);
+        var parallel = data(TreeNodes.breadthFirst(root).parallel());
+        assertEquals(5461, parallel.size(), "Each node shall be streamed once");
+        assertEquals(new HashSet<>(data(TreeNodes.breadthFirst(root))), new HashSet<>(parallel), "A parallel stream shall stream all nodes");
+    }
+
+    @Test void testSplitsOfSingleRoot() {
+        Spliterator<TreeNode<String>> depthFirst = TreeNodes.depthFirst(sample()).spliterator();
+        var prefix = depthFirst.trySplit();
+        assertNotNull(prefix, "A single root shall be expanded before splitting");
+        List<String> order = new ArrayList<>();
+        prefix.forEachRemaining(n -> order.add(n.getData()));
+        depthFirst.forEachRemaining(n -> order.add(n.getData()));
+        assertEquals(List.of("A", "B", "D", "E", "C", "F"), order, "The prefix and the rest shall keep the pre-order");
+
+        Spliterator<TreeNode<String>> breadthFirst = TreeNodes.breadthFirst(sample()).spliterator();
+        var split = breadthFirst.trySplit();
+        assertNotNull(split, "The frontier of a single root shall be expanded before splitting");
+        List<String> all = new ArrayList<>();
+        split.forEachRemaining(n -> all.add(n.getData()));
+        breadthFirst.forEachRemaining(n -> all.add(n.getData()));
+        assertEquals(List.of("A", "B", "C", "D", "E", "F"), all.stream().sorted().collect(Collectors.toList()), "Each node shall be streamed once");
+    }
+
+    @Test void testEstimateHalvesAndSplittingStops() {
+        Spliterator<TreeNode<String>> spliterator = TreeNodes.depthFirst(wide(2, 16)).spliterator();
+        long estimate = spliterator.estimateSize();
+        assertEquals(Long.MAX_VALUE, estimate, "The size of a tree is unknown upfront");
+        int splits = 0;
+        while (spliterator.trySplit() != null) {
+            long next = spliterator.estimateSize();
+            assertTrue(next < estimate, "The estimate shall shrink with each split");
+            estimate = next;
+            splits++;
+        }
+        assertTrue(splits > 0 && splits <= 16, "Splitting shall stop below the threshold, but was split " + splits + " times");
+
+        Spliterator<TreeNode<String>> leaf = TreeNodes.depthFirst(node("leaf")).spliterator();
+        assertNull(leaf.trySplit(), "A single leaf shall not be split");
+        assertEquals(1, TreeNodes.breadthFirst(node("leaf")).parallel().count(), "A single leaf shall be streamed");
+    }
+
+    @Test void testSplitOfChain() {
+        var root = node("0");
+        var current = root;
+        for (int i = 1; i < 10; i++) {
+            var child = node(String.valueOf(i));
+            current.addChild(i, child);
+            current = child;
+        }
+        current.addChild("x", node("x"));
+        current.addChild("y", node("y"));
+        Spliterator<TreeNode<String>> spliterator = TreeNodes.depthFirst(root).spliterator();
+        var prefix = spliterator.trySplit();
+        assertNotNull(prefix, "A chain shall be expanded down to the first fork");
+        List<String> order = new ArrayList<>();
+        prefix.forEachRemaining(n -> order.add(n.getData()));
+        spliterator.forEachRemaining(n -> order.add(n.getData()));
+        assertEquals(List.of("0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "x", "y"), order, "The chain shall keep the pre-order");
+    }
+
+    @Test void testDeepTree() {
+        var root = node("root");
+        var current = root;
+        for (int i = 0; i < 100_000; i++) {
+            var child = node("n");
+            current.addChild(i, child);
+            current = child;
+        }
+        assertEquals(100_001, TreeNodes.depthFirst(root).parallel().count(), "A deep tree shall be streamed without recursion");
+        assertEquals(100_001, TreeNodes.breadthFirst(root).count(), "A deep tree shall be streamed without recursion");
+    }
+
+    @Test void testAggregate() {
+        var root = wide(3, 5);
+        int expected = (int) TreeNodes.depthFirst(root).count();
+        int sequential = TreeNodes.aggregate(root, (n, r) -> 1 + r.stream().mapToInt(Integer::intValue).sum(), new ForkJoinPool(1), 0);
+        int parallel = TreeNodes.aggregate(root, (n, r) -> 1 + r.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(expected, sequential, "The sequential aggregation shall count all nodes");
+        assertEquals(expected, parallel, "The parallel aggregation shall count all nodes");
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * A TreePathIndexTest.
+ *
+ * @author Heiko Scherrer
+ */
+class TreePathIndexTest {
+
+    private static TreeNode<String> node(String data) {
+        TreeNode<String> node = new TreeNodeImpl<>();
+        node.setData(data);
+        return node;
+    }
+
+    private static TreeNode<String> warehouse() {
+        var root = node("WH1");
+        var zone = node("ZONE-A");
+        root.addChild("ZONE-A", zone);
+        zone.addChild("AISLE-01", node("AISLE-01"));
+        zone.addChild("AISLE-02", node("AISLE-02"));
+        root.addChild("ZONE-B", node("ZONE-B"));
+        return root;
+    }
+
+    @Test void testResolvePaths() {
+        var root = warehouse();
+        var index = new TreePathIndex<>(root);
+        assertEquals(5, index.size(), "All nodes shall be indexed");
+        assertSame(root, index.get(""), "The root has the empty path");
+        assertEquals("AISLE-02", index.get("ZONE-A/AISLE-02").getData(), "A node shall be resolved by its path");
+        assertEquals("ZONE-A/AISLE-01", index.pathOf(root.getChild("ZONE-A").getChild("AISLE-01")), "The path of a node shall be resolved");
+        assertEquals(2, index.descendants("ZONE-A").size(), "Both aisles are below the zone");
+        assertEquals(4, index.descendants("").size(), "All nodes but the root are below the empty root path");
+        assertEquals(2, index.findByPrefix("ZONE-A/AISLE-0").size(), "Both aisles match the prefix");
+    }
+
+    @Test void testRemoveBelowEmptyRootPath() {
+        var root = warehouse();
+        var index = new TreePathIndex<>(root);
+        index.removeChild(root, "ZONE-A");
+        assertNull(index.get("ZONE-A"), "The removed node shall not be resolved");
+        assertNull(index.get("ZONE-A/AISLE-01"), "The subtree of a removed child of the root shall not be resolved");
+        assertEquals(2, index.size(), "Only the root and the remaining zone are indexed");
+    }
+
+    @Test void testReplaceAndMove() {
+        var root = warehouse();
+        var index = new TreePathIndex<>(root, "WH1", TreePathIndex.DEFAULT_SEPARATOR);
+        var aisle = index.get("WH1/ZONE-A/AISLE-01");
+        index.removeChild(index.get("WH1/ZONE-A"), "AISLE-01");
+        index.addChild(index.get("WH1/ZONE-B"), "AISLE-01", aisle);
+        assertSame(aisle, index.get("WH1/ZONE-B/AISLE-01"), "A moved node shall be indexed under its new path");
+
+        index.addChild(root, "ZONE-A", node("ZONE-A2"));
+        assertEquals("ZONE-A2", index.get("WH1/ZONE-A").getData(), "The replacement shall be indexed");
+        assertNull(index.get("WH1/ZONE-A/AISLE-02"), "The subtree of the replaced node shall be removed");
+        var paths = new ArrayList<>(index.findByPrefix("WH1/").keySet());
+        assertEquals(List.of("WH1/ZONE-A", "WH1/ZONE-B", "WH1/ZONE-B/AISLE-01"), paths, "Paths shall be sorted");
+    }
+
+    @Test void testPointLookupsMatchScans() {
+        var root = warehouse();
+        var index = new TreePathIndex<>(root);
+        index.addChild(index.get("ZONE-B"), "AISLE-03", node("AISLE-03"));
+        index.addChild(index.get("ZONE-B"), "AISLE-01", index.get("ZONE-A/AISLE-01"));
+        index.removeChild(root, "ZONE-A");
+        var scanned = index.findByPrefix("");
+        assertEquals(scanned.size(), index.size(), "Point lookups and scans shall index the same nodes");
+        scanned.forEach((path, node) -> assertSame(node, index.get(path), "The path " + path + " shall resolve to the scanned node"));
+        assertNull(index.get("ZONE-A/AISLE-01"), "A moved node shall not be resolved by its former path");
+        assertNull(index.get("ZONE-A/AISLE-02"), "A removed node shall not be resolved");
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2005-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openwms.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A TreeWalkerTest runs each walk over a {@link TreeNodeImpl} and a {@link CompactTree}.
+ *
+ * @author Heiko Scherrer
+ */
+class TreeWalkerTest {
+
+    private static final List<String> FULL_WALK = List.of("+A0", "+B1", "+D2", "-D", "+E2", "-E", "-B", "+C1", "+F2", "-F", "-C", "-A");
+
+    /**
+     * <pre>
+     * A
+     * +- B
+     * |  +- D
+     * |  +- E
+     * +- C
+     *    +- F
+     * </pre>
+     */
+    private static TreeNode<String> sample() {
+        var a = node("A");
+        var b = node("B");
+        var c = node("C");
+        a.addChild("B", b);
+        a.addChild("C", c);
+        b.addChild("D", node("D"));
+        b.addChild("E", node("E"));
+        c.addChild("F", node("F"));
+        return a;
+    }
+
+    private static TreeNode<String> node(String data) {
+        TreeNode<String> node = new TreeNodeImpl<>();
+        node.setData(data);
+        return node;
+    }
+
+    /** The cursors over the same tree. */
+    private static List<TreeCursor<String>> cursors(TreeNode<String> root) {
+        return List.of(TreeWalker.cursor(root), CompactTree.copyOf(root).cursor());
+    }
+
+    /** Records {@code +<data><depth>} before and {@code -<data>} after the children. */
+    private static final class Recorder implements TreeVisitor<String> {
+
+        private final List<String> events = new ArrayList<>();
+        private final Function<String, Result> pre;
+        private final Function<String, Result> post;
+
+        Recorder(Function<String, Result> pre, Function<String, Result> post) {
+            this.pre = pre;
+            this.post = post;
+        }
+
+        Recorder() {
+            this(d -> Result.CONTINUE, d -> Result.CONTINUE);
+        }
+
+        @Override
+        public Result preVisit(TreeCursor<String> cursor) {
+            events.add("+" + cursor.getData() + cursor.getDepth());
+            return pre.apply(cursor.getData());
+        }
+
+        @Override
+        public Result postVisit(TreeCursor<String> cursor) {
+            events.add("-" + cursor.getData());
+            return post.apply(cursor.getData());
+        }
+    }
+
+    @Test void testPreAndPostOrder() {
+        for (var cursor : cursors(sample())) {
+            var recorder = new Recorder();
+            assertTrue(TreeWalker.walk(cursor, recorder), "The walk shall complete");
+            assertEquals(FULL_WALK, recorder.events, "Nodes shall be visited in pre- and post-order by " + cursor.getClass().getSimpleName());
+            assertEquals(0, cursor.getDepth(), "The cursor shall end at the start node");
+
+            var again = new Recorder();
+            TreeWalker.walk(cursor, again);
+            assertEquals(FULL_WALK, again.events, "A cursor shall be reset before each walk");
+        }
+    }
+
+    @Test void testSkipSubtree() {
+        for (var cursor : cursors(sample())) {
+            var recorder = new Recorder(d -> "B".equals(d) ? TreeVisitor.Result.SKIP_SUBTREE : TreeVisitor.Result.CONTINUE,
+                    d -> TreeVisitor.Result.CONTINUE);
+            assertTrue(TreeWalker.walk(cursor, recorder), "A skipped subtree shall not end the walk");
+            assertEquals(List.of("+A0", "+B1", "+C1", "+F2", "-F", "-C", "-A"), recorder.events,
+                    "The children and the post-visit of a skipped node shall not be visited");
+        }
+    }
+
+    @Test void testSkipSubtreeOfLastChild() {
+        for (var cursor : cursors(sample())) {
+            var recorder = new Recorder(d -> "C".equals(d) ? TreeVisitor.Result.SKIP_SUBTREE : TreeVisitor.Result.CONTINUE,
+                    d -> TreeVisitor.Result.SKIP_SUBTREE);
+            assertTrue(TreeWalker.walk(cursor, recorder), "The walk shall complete");
+            assertEquals(List.of("+A0", "+B1", "+D2", "-D", "+E2", "-E", "-B", "+C1", "-A"), recorder.events,
+                    "The parent of a skipped last child shall be post-visited and SKIP_SUBTREE after the children continues");
+        }
+    }
+
+    @Test void testTerminate() {
+        for (var cursor : cursors(sample())) {
+            var pre = new Recorder(d -> "E".equals(d) ? TreeVisitor.Result.TERMINATE : TreeVisitor.Result.CONTINUE,
+                    d -> TreeVisitor.Result.CONTINUE);
+            assertFalse(TreeWalker.walk(cursor, pre), "A terminated walk shall return false");
+            assertEquals(List.of("+A0", "+B1", "+D2", "-D", "+E2"), pre.events, "Nothing shall be visited after a pre-visit terminated");
+
+            var post = new Recorder(d -> TreeVisitor.Result.CONTINUE,
+                    d -> "B".equals(d) ? TreeVisitor.Result.TERMINATE : TreeVisitor.Result.CONTINUE);
+            assertFalse(TreeWalker.walk(cursor, post), "A terminated walk shall return false");
+            assertEquals(List.of("+A0", "+B1", "+D2", "-D", "+E2", "-E", "-B"), post.events, "Nothing shall be visited after a post-visit terminated");
+        }
+    }
+
+    @Test void testLeafRoot() {
+        for (var cursor : cursors(node("leaf"))) {
+            var recorder = new Recorder();
+            assertTrue(TreeWalker.walk(cursor, recorder), "The walk of a leaf shall complete");
+            assertEquals(List.of("+leaf0", "-leaf"), recorder.events, "A leaf shall be pre- and post-visited");
+            assertNull(cursor.getIdentifier(), "The start node has no identifier");
+            assertFalse(cursor.toParent() || cursor.toFirstChild() || cursor.toNextSibling(), "The cursor shall not leave a leaf root");
+        }
+        assertThrows(IllegalStateException.class, () -> new CompactTree<String>().cursor(), "An empty tree has no cursor");
+    }
+
+    @Test void testCursorStaysInSubtree() {
+        var tree = CompactTree.copyOf(sample());
+        int b = tree.childOf(0, "B");
+        var recorder = new Recorder();
+        assertTrue(TreeWalker.walk(tree.cursor(b), recorder), "The walk of a subtree shall complete");
+        assertEquals(List.of("+B0", "+D1", "-D", "+E1", "-E", "-B"), recorder.events, "Only the subtree shall be visited");
+
+        var nodeRecorder = new Recorder();
+        TreeWalker.walk(sample().getChild("C"), nodeRecorder);
+        assertEquals(List.of("+C0", "+F1", "-F", "-C"), nodeRecorder.events, "Only the subtree of the start node shall be visited");
+    }
+
+    @Test void testCursorPosition() {
+        for (var cursor : cursors(sample())) {
+            assertTrue(cursor.toFirstChild(), "The root has children");
+            assertEquals("B", cursor.getIdentifier(), "The cursor shall be at the first child");
+            assertTrue(cursor.toFirstChild() && cursor.toNextSibling(), "B has two children");
+            assertEquals("E", cursor.getData(), "The cursor shall be at the second child");
+            assertEquals("E", cursor.getNode().getData(), "The node shall match the position");
+            assertEquals(2, cursor.getDepth(), "The depth shall be relative to the start node");
+            assertFalse(cursor.toNextSibling(), "E is the last child");
+            assertTrue(cursor.toParent() && cursor.toNextSibling(), "The cursor shall move to C");
+            assertEquals("C", cursor.getData(), "The cursor shall be at the sibling of the parent");
+            cursor.reset();
+            assertEquals("A", cursor.getData(), "The cursor shall be reset to the start node");
+        }
+    }
+
+    @Test void testDeepChain() {
+        int depth = 100_000;
+        var root = node("0");
+        var current = root;
+        for (int i = 1; i <= depth; i++) {
+            var child = node(String.valueOf(i));
+            current.addChild(i, child);
+            current = child;
+        }
+        for (var cursor : cursors(root)) {
+            int[] counts = new int[3];
+            assertTrue(TreeWalker.walk(cursor, new TreeVisitor<>() {
+                @Override
+                public Result preVisit(TreeCursor<String> c) {
+                    counts[0]++;
+                    counts[2] = Math.max(counts[2], c.getDepth());
+                    return Result.CONTINUE;
+                }
+
+                @Override
+                public Result postVisit(TreeCursor<String> c) {
+                    counts[1]++;
+                    return Result.CONTINUE;
+                }
+            }), "A deep walk shall complete without recursion");
+            assertEquals(depth + 1, counts[0], "Each node shall be pre-visited");
+            assertEquals(depth + 1, counts[1], "Each node shall be post-visited");
+            assertEquals(depth, counts[2], "The deepest node shall be reached");
+        }
+    }
+}